@@ -0,0 +1,211 @@
+package ru.practicum.routing;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// DataSource сервиса с репликой: соединения read-only транзакций (@Transactional(readOnly = true)) идут в пул
+// реплики, остальные — в основной пул.
+// Соединение ленивое: физическое берётся из пула при первом запросе, когда транзакция уже пометила его read-only.
+// JpaTransactionManager открывает соединение в начале транзакции, раньше, чем флаг readOnly попадает
+// в TransactionSynchronizationManager, поэтому маршрут решается по флагу самого соединения.
+// Отставание реплики проверяется фоном раз в checkInterval; пока оно больше maxLag или реплика недоступна,
+// read-only работа идёт в основной пул. Непроверенная реплика в маршрут не попадает.
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+    private final String name;
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final ScheduledExecutorService checker;
+    private final Counter primaryWrites;
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+    private volatile boolean replicaHealthy;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaRoutingDataSource(String name, DataSource primary, DataSource replica, ReplicaSettings settings,
+                                    MeterRegistry meterRegistry) {
+        this.name = name;
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMillis = settings.maxLag().toMillis();
+        this.lagQuery = settings.lagQuery();
+        this.primaryWrites = connections(meterRegistry, name, "primary", "read-write");
+        this.primaryReads = connections(meterRegistry, name, "primary", "read-only");
+        this.replicaReads = connections(meterRegistry, name, "replica", "read-only");
+        Gauge.builder("db.replica.lag", this, ds -> ds.lagSeconds)
+                .description("Replica lag reported by the last check, NaN if the replica is unreachable")
+                .baseUnit("seconds")
+                .tag("datasource", name)
+                .register(meterRegistry);
+        Gauge.builder("db.replica.healthy", this, ds -> ds.replicaHealthy ? 1 : 0)
+                .description("1 if read-only transactions are routed to the replica, 0 if to the primary")
+                .tag("datasource", name)
+                .register(meterRegistry);
+        setTargetDataSource(new ReadWriteRoute());
+        setReadOnlyDataSource(new ReadOnlyRoute());
+        afterPropertiesSet();
+
+        this.checker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "replica-lag-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkLag, 0, settings.checkInterval().toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Datasource {}: replica {}, max lag {}, check interval {}", name, settings.url(), settings.maxLag(),
+                settings.checkInterval());
+    }
+
+    // Пулы сервиса: основной — из spring.datasource.* и настроек spring.datasource.hikari.* (primaryPool),
+    // реплика — из settings. Метрики пулов — hikaricp.* с тегом pool: <name>-primary и <name>-replica
+    public static ReplicaRoutingDataSource create(String name, DataSourceProperties properties, HikariConfig primaryPool,
+                                                  ReplicaSettings settings, MeterRegistry meterRegistry) {
+        HikariDataSource primary = new HikariDataSource();
+        primaryPool.copyStateTo(primary);
+        if (primary.getJdbcUrl() == null) {
+            primary.setJdbcUrl(properties.determineUrl());
+        }
+        if (primary.getUsername() == null) {
+            primary.setUsername(properties.determineUsername());
+        }
+        if (primary.getPassword() == null) {
+            primary.setPassword(properties.determinePassword());
+        }
+        if (primary.getDriverClassName() == null) {
+            primary.setDriverClassName(properties.determineDriverClassName());
+        }
+        primary.setPoolName(name + "-primary");
+        primary.setMetricRegistry(meterRegistry);
+
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(settings.url())
+                .username(settings.username() != null ? settings.username() : properties.determineUsername())
+                .password(settings.password() != null ? settings.password() : properties.determinePassword())
+                .build();
+        replica.setPoolName(name + "-replica");
+        replica.setMaximumPoolSize(settings.maxPoolSize());
+        replica.setReadOnly(true);
+        replica.setMetricRegistry(meterRegistry);
+        return new ReplicaRoutingDataSource(name, primary, replica, settings, meterRegistry);
+    }
+
+    public boolean isReplicaHealthy() {
+        return replicaHealthy;
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+        closePool(replica);
+        closePool(primary);
+    }
+
+    private void checkLag() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            double lag = resultSet.next() ? resultSet.getDouble(1) : 0;
+            lagSeconds = lag;
+            if (lag * 1000 > maxLagMillis) {
+                markUnhealthy("lag " + lag + "s exceeds " + maxLagMillis + "ms");
+            } else if (!replicaHealthy) {
+                replicaHealthy = true;
+                log.info("Datasource {}: replica is in sync (lag {}s), read-only transactions go to the replica",
+                        name, lag);
+            }
+        } catch (SQLException | RuntimeException e) {
+            lagSeconds = Double.NaN;
+            markUnhealthy("check failed: " + e.getMessage());
+        }
+    }
+
+    private void markUnhealthy(String reason) {
+        if (replicaHealthy) {
+            replicaHealthy = false;
+            log.warn("Datasource {}: replica {}, read-only transactions go to the primary", name, reason);
+        }
+    }
+
+    private void closePool(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable pool) {
+            try {
+                pool.close();
+            } catch (Exception e) {
+                log.warn("Datasource {}: failed to close pool: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private static Counter connections(MeterRegistry meterRegistry, String name, String pool, String mode) {
+        return Counter.builder("db.routing.connections")
+                .description("Physical connections taken by the routing datasource")
+                .tag("datasource", name)
+                .tag("pool", pool)
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private final class ReadWriteRoute extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            primaryWrites.increment();
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            primaryWrites.increment();
+            return primary.getConnection(username, password);
+        }
+    }
+
+    // Отказ пула реплики не роняет запрос: реплика выводится из маршрута до следующей удачной проверки
+    private final class ReadOnlyRoute extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (replicaHealthy) {
+                try {
+                    Connection connection = replica.getConnection();
+                    replicaReads.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    markUnhealthy("connection failed: " + e.getMessage());
+                }
+            }
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+
+        // Соединение с явной учёткой берётся с ней же; при отказе откат на основной пул не делается —
+        // ошибка учётки реплику не характеризует
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            if (replicaHealthy) {
+                replicaReads.increment();
+                return replica.getConnection(username, password);
+            }
+            primaryReads.increment();
+            return primary.getConnection(username, password);
+        }
+    }
+}
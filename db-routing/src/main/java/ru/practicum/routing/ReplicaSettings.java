@@ -0,0 +1,34 @@
+package ru.practicum.routing;
+
+import org.springframework.core.env.PropertyResolver;
+
+import java.time.Duration;
+
+// Настройки реплики одного сервиса; читаются из свойств с общим префиксом, например db.replica.*.
+// Пустые username/password означают учётку основной БД.
+// lagQuery возвращает отставание реплики в секундах; по умолчанию — для PostgreSQL-реплики
+// (на основной БД, вне recovery, запрос даёт 0; реплика, проигравшая всё полученное, тоже не отстаёт,
+// даже если последняя транзакция была давно).
+public record ReplicaSettings(String url,
+                              String username,
+                              String password,
+                              int maxPoolSize,
+                              Duration maxLag,
+                              Duration checkInterval,
+                              String lagQuery) {
+
+    public static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    public static ReplicaSettings from(PropertyResolver properties, String prefix) {
+        return new ReplicaSettings(
+                properties.getRequiredProperty(prefix + ".url"),
+                properties.getProperty(prefix + ".username"),
+                properties.getProperty(prefix + ".password"),
+                properties.getProperty(prefix + ".max-pool-size", Integer.class, 10),
+                Duration.ofMillis(properties.getProperty(prefix + ".max-lag-ms", Long.class, 5000L)),
+                Duration.ofMillis(properties.getProperty(prefix + ".check-interval-ms", Long.class, 1000L)),
+                properties.getProperty(prefix + ".lag-query", POSTGRES_LAG_QUERY));
+    }
+}
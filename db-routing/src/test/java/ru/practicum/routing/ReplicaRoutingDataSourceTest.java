@@ -0,0 +1,145 @@
+package ru.practicum.routing;
+
+import com.zaxxer.hikari.HikariConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Основная БД и реплика — две независимые H2 в памяти; репликации между ними нет, поэтому по содержимому
+// routing_probe видно, куда ушёл запрос. Отставание реплики задаётся строкой в replica_status.
+public class ReplicaRoutingDataSourceTest {
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL));
+    private ReplicaRoutingDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    public void createDatabases() {
+        primary.execute("CREATE TABLE routing_probe (source VARCHAR(16))");
+        primary.update("INSERT INTO routing_probe VALUES ('primary')");
+        replica.execute("CREATE TABLE routing_probe (source VARCHAR(16))");
+        replica.update("INSERT INTO routing_probe VALUES ('replica')");
+        replica.execute("CREATE TABLE replica_status (lag_seconds DOUBLE)");
+        replica.update("INSERT INTO replica_status VALUES (0)");
+
+        ReplicaSettings settings = new ReplicaSettings(REPLICA_URL, null, null, 2, Duration.ofSeconds(1),
+                Duration.ofMillis(50), "SELECT lag_seconds FROM replica_status");
+        dataSource = new ReplicaRoutingDataSource("test", new DriverManagerDataSource(PRIMARY_URL),
+                new DriverManagerDataSource(REPLICA_URL), settings, meterRegistry);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    public void dropDatabases() {
+        dataSource.close();
+        primary.execute("DROP TABLE routing_probe");
+        replica.execute("DROP TABLE routing_probe");
+        replica.execute("DROP TABLE IF EXISTS replica_status");
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToReplica() throws InterruptedException {
+        awaitReplicaHealthy(true);
+
+        assertEquals("replica", probe(true));
+        assertEquals("primary", probe(false));
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT source FROM routing_probe", String.class));
+        assertEquals(1.0, connections("replica", "read-only"));
+        assertEquals(0.0, connections("primary", "read-only"));
+        assertEquals(1.0, meterRegistry.get("db.replica.healthy").gauge().value());
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimaryUntilItCatchesUp() throws InterruptedException {
+        awaitReplicaHealthy(true);
+
+        replica.update("UPDATE replica_status SET lag_seconds = 30");
+        awaitReplicaHealthy(false);
+        assertEquals("primary", probe(true));
+        assertEquals(1.0, connections("primary", "read-only"));
+        assertEquals(30.0, meterRegistry.get("db.replica.lag").gauge().value());
+
+        replica.update("UPDATE replica_status SET lag_seconds = 0.5");
+        awaitReplicaHealthy(true);
+        assertEquals("replica", probe(true));
+    }
+
+    @Test
+    public void testUnreachableReplicaFallsBackToPrimary() throws InterruptedException {
+        awaitReplicaHealthy(true);
+
+        replica.execute("DROP TABLE replica_status");
+        awaitReplicaHealthy(false);
+        assertEquals("primary", probe(true));
+        assertTrue(Double.isNaN(meterRegistry.get("db.replica.lag").gauge().value()));
+    }
+
+    @Test
+    public void testReadOnlyConnectionKeepsGivenCredentials() throws Exception {
+        awaitReplicaHealthy(true);
+
+        try (Connection connection = dataSource.getConnection("intruder", "wrong")) {
+            connection.setReadOnly(true);
+            assertThrows(SQLException.class, connection::createStatement);
+        }
+    }
+
+    @Test
+    public void testFactoryAppliesHikariSettingsToPrimaryPool() throws SQLException {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl(PRIMARY_URL);
+        HikariConfig primaryPool = new HikariConfig();
+        primaryPool.setMaximumPoolSize(3);
+        // учётка из spring.datasource.hikari.* важнее spring.datasource.* (для встроенной H2 там было бы "sa")
+        primaryPool.setUsername("");
+        ReplicaSettings settings = new ReplicaSettings(REPLICA_URL, "", "", 2, Duration.ofSeconds(1),
+                Duration.ofMillis(50), "SELECT lag_seconds FROM replica_status");
+
+        try (ReplicaRoutingDataSource pooled = ReplicaRoutingDataSource.create("pooled", properties, primaryPool,
+                settings, meterRegistry)) {
+            assertEquals("primary", new JdbcTemplate(pooled)
+                    .queryForObject("SELECT source FROM routing_probe", String.class));
+            assertEquals(3.0, meterRegistry.get("hikaricp.connections.max").tag("pool", "pooled-primary")
+                    .gauge().value());
+        }
+    }
+
+    private String probe(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status ->
+                jdbcTemplate.queryForObject("SELECT source FROM routing_probe", String.class));
+    }
+
+    private double connections(String pool, String mode) {
+        return meterRegistry.get("db.routing.connections").tag("pool", pool).tag("mode", mode).counter().count();
+    }
+
+    private void awaitReplicaHealthy(boolean healthy) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (dataSource.isReplicaHealthy() != healthy && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(healthy, dataSource.isReplicaHealthy());
+    }
+}
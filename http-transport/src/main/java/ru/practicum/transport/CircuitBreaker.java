@@ -0,0 +1,106 @@
+package ru.practicum.transport;
+
+import java.time.Duration;
+
+// Размыкается, когда среди последних slidingWindow вызовов (но не меньше minimumCalls) доля неудачных достигает
+// порога. Через openDuration пропускает один пробный вызов: успех замыкает цепь, неудача снова размыкает.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] failed;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int slidingWindow, int minimumCalls, double failureRateThreshold, Duration openDuration) {
+        if (slidingWindow <= 0 || minimumCalls <= 0 || minimumCalls > slidingWindow) {
+            throw new IllegalArgumentException("Minimum calls must be within (0, sliding window]");
+        }
+        this.failed = new boolean[slidingWindow];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    // Разрешение получено, но вызов так и не был сделан (например, не хватило слота bulkhead)
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                open();
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failed.length) {
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = System.nanoTime();
+    }
+
+    private void reset(State target) {
+        state = target;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        probeInFlight = false;
+    }
+}
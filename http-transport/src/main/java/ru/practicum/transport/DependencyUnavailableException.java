@@ -0,0 +1,8 @@
+package ru.practicum.transport;
+
+// Вызов не выполнялся: circuit breaker разомкнут или все слоты bulkhead заняты
+public class DependencyUnavailableException extends RuntimeException {
+    public DependencyUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Тело потокового ответа с таймаутом простоя: если одно чтение ждёт данных дольше idleTimeout, сторож закрывает
+// поток, и чтение завершается SocketTimeoutException. У JDK HttpClient таймаут запроса кончается на заголовках,
+// без этого зависший сервер держал бы поток вызывающего бесконечно. Время между чтениями (обработка строк
+// вызывающим) не считается.
+public class IdleTimeoutInputStream extends FilterInputStream {
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stream-idle-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long idleTimeoutNanos;
+    private final ScheduledFuture<?> watchdog;
+    // 0 — сейчас никто не читает
+    private volatile long readStartedAt;
+    private volatile boolean timedOut;
+
+    public IdleTimeoutInputStream(InputStream in, Duration idleTimeout) {
+        super(in);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        long periodMs = Math.max(10, idleTimeout.toMillis() / 4);
+        this.watchdog = WATCHDOG.scheduleAtFixedRate(this::checkIdle, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int read() throws IOException {
+        beforeRead();
+        try {
+            return super.read();
+        } catch (IOException e) {
+            throw timedOut ? timeout() : e;
+        } finally {
+            afterRead();
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        beforeRead();
+        try {
+            return super.read(b, off, len);
+        } catch (IOException e) {
+            throw timedOut ? timeout() : e;
+        } finally {
+            afterRead();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchdog.cancel(false);
+        super.close();
+    }
+
+    private void beforeRead() throws IOException {
+        if (timedOut) {
+            throw timeout();
+        }
+        readStartedAt = System.nanoTime();
+    }
+
+    // закрытый сторожем поток может вернуть обычный конец данных — он не должен сойти за полный ответ
+    private void afterRead() throws IOException {
+        readStartedAt = 0;
+        if (timedOut) {
+            throw timeout();
+        }
+    }
+
+    private void checkIdle() {
+        long startedAt = readStartedAt;
+        if (timedOut || startedAt == 0 || System.nanoTime() - startedAt < idleTimeoutNanos) {
+            return;
+        }
+        timedOut = true;
+        try {
+            in.close();
+        } catch (IOException | RuntimeException ignored) {
+            // поток всё равно бросается: чтение получит timeout() при следующем обращении
+        }
+    }
+
+    private SocketTimeoutException timeout() {
+        return new SocketTimeoutException("No data for " + Duration.ofNanos(idleTimeoutNanos).toMillis()
+                + " ms while reading the response body");
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.transport;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Транспорт межсервисного клиента: один HttpClient на зависимость (HTTP/1.1, соединения переиспользуются
+// keep-alive), дедлайн до заголовков ответа, таймаут простоя для тел потоковых ответов (streamBody),
+// bulkhead на число одновременных вызовов и circuit breaker.
+// Bulkhead ограничивает и число открытых соединений: синхронный вызов занимает одно соединение.
+// Ответы 4xx — ошибка вызывающего, а не признак больной зависимости, в breaker они идут как успех.
+@Slf4j
+public class ResilientTransport implements AutoCloseable {
+    private final String name;
+    private final HttpClient httpClient;
+    private final RestClient client;
+    private final Semaphore bulkhead;
+    private final long acquireTimeoutNanos;
+    private final CircuitBreaker breaker;
+    private final MeterRegistry meterRegistry;
+    private final Duration streamIdleTimeout;
+
+    public ResilientTransport(String name, String baseUrl, TransportSettings settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.connectTimeout())
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(settings.requestTimeout());
+        this.client = RestClient.builder()
+                .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .build();
+        this.bulkhead = new Semaphore(settings.maxConcurrentCalls());
+        this.acquireTimeoutNanos = settings.acquireTimeout().toNanos();
+        this.breaker = new CircuitBreaker(settings.slidingWindow(), settings.minimumCalls(),
+                settings.failureRateThreshold(), settings.openDuration());
+        this.meterRegistry = meterRegistry;
+        this.streamIdleTimeout = settings.streamIdleTimeout();
+        Gauge.builder("http.client.breaker.state", breaker, b -> b.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("http.client.in.flight", bulkhead,
+                        semaphore -> settings.maxConcurrentCalls() - semaphore.availablePermits())
+                .tag("client", name)
+                .register(meterRegistry);
+        log.info("Transport {}: {}, connect timeout {}, request timeout {}, max concurrent calls {}", name, baseUrl,
+                settings.connectTimeout(), settings.requestTimeout(), settings.maxConcurrentCalls());
+    }
+
+    // Вызов без запасного ответа: при разомкнутом breaker или занятом bulkhead — DependencyUnavailableException,
+    // ошибки самого запроса пробрасываются как есть
+    public <T> T execute(String operation, Function<RestClient, T> request) {
+        if (!breaker.tryAcquire()) {
+            reject(operation, "circuit_open");
+            throw new DependencyUnavailableException(name + " is unavailable: circuit breaker is open");
+        }
+        if (!acquireBulkhead()) {
+            breaker.release();
+            reject(operation, "bulkhead_full");
+            throw new DependencyUnavailableException(name + " is unavailable: too many concurrent calls");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = request.apply(client);
+            breaker.onSuccess();
+            record(operation, "success", start);
+            return result;
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().is4xxClientError()) {
+                breaker.onSuccess();
+                record(operation, "client_error", start);
+            } else {
+                breaker.onFailure();
+                record(operation, "failure", start);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            record(operation, "failure", start);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // Вызов с деградацией: любая ошибка, включая разомкнутый breaker, заменяется ответом fallback
+    public <T> T call(String operation, Function<RestClient, T> request, Supplier<T> fallback) {
+        try {
+            return execute(operation, request);
+        } catch (RuntimeException e) {
+            log.warn("{} {} failed, degraded response is returned: {}", name, operation, e.getMessage());
+            return fallback.get();
+        }
+    }
+
+    // Тело, читаемое по частям внутри exchange: дедлайн запроса до него не доходит, поэтому каждое чтение
+    // ограничено таймаутом простоя
+    public InputStream streamBody(InputStream body) {
+        return new IdleTimeoutInputStream(body, streamIdleTimeout);
+    }
+
+    public CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void record(String operation, String outcome, long start) {
+        Timer.builder("http.client.dependency.requests")
+                .tag("client", name)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void reject(String operation, String reason) {
+        Counter.builder("http.client.dependency.rejected")
+                .tag("client", name)
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
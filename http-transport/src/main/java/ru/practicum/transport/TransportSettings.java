@@ -0,0 +1,30 @@
+package ru.practicum.transport;
+
+import org.springframework.core.env.PropertyResolver;
+
+import java.time.Duration;
+
+// Настройки транспорта одного клиента; читаются из свойств с общим префиксом, например stats-service.transport.*
+public record TransportSettings(Duration connectTimeout,
+                                Duration requestTimeout,
+                                int maxConcurrentCalls,
+                                Duration acquireTimeout,
+                                int slidingWindow,
+                                int minimumCalls,
+                                double failureRateThreshold,
+                                Duration openDuration,
+                                Duration streamIdleTimeout) {
+
+    public static TransportSettings from(PropertyResolver properties, String prefix) {
+        return new TransportSettings(
+                Duration.ofMillis(properties.getProperty(prefix + ".connect-timeout-ms", Long.class, 1000L)),
+                Duration.ofMillis(properties.getProperty(prefix + ".request-timeout-ms", Long.class, 2000L)),
+                properties.getProperty(prefix + ".max-concurrent-calls", Integer.class, 50),
+                Duration.ofMillis(properties.getProperty(prefix + ".acquire-timeout-ms", Long.class, 20L)),
+                properties.getProperty(prefix + ".breaker.sliding-window", Integer.class, 20),
+                properties.getProperty(prefix + ".breaker.minimum-calls", Integer.class, 10),
+                properties.getProperty(prefix + ".breaker.failure-rate", Double.class, 0.5),
+                Duration.ofMillis(properties.getProperty(prefix + ".breaker.open-duration-ms", Long.class, 10000L)),
+                Duration.ofMillis(properties.getProperty(prefix + ".stream-idle-timeout-ms", Long.class, 5000L)));
+    }
+}
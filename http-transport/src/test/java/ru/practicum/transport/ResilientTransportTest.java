@@ -0,0 +1,133 @@
+package ru.practicum.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResilientTransportTest {
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile int status = 200;
+    private volatile long delayMs;
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBreakerOpensOnServerErrorsAndClosesAfterProbe() throws InterruptedException {
+        try (ResilientTransport transport = transport(Duration.ofSeconds(1), 10, Duration.ofMillis(300))) {
+            status = 503;
+            for (int i = 0; i < 4; i++) {
+                assertEquals("fallback", get(transport));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, transport.getState());
+            assertEquals(4, requests.get());
+
+            // пока цепь разомкнута, зависимость не вызывается
+            assertEquals("fallback", get(transport));
+            assertEquals(4, requests.get());
+            assertEquals(1.0, meterRegistry.get("http.client.dependency.rejected")
+                    .tag("reason", "circuit_open").counter().count());
+            assertEquals(1.0, meterRegistry.get("http.client.breaker.state").gauge().value());
+
+            status = 200;
+            Thread.sleep(400);
+            assertEquals("ok", get(transport));
+            assertEquals(CircuitBreaker.State.CLOSED, transport.getState());
+            assertEquals(1L, meterRegistry.get("http.client.dependency.requests")
+                    .tag("outcome", "success").timer().count());
+        }
+    }
+
+    @Test
+    public void testClientErrorsAreRethrownAndDoNotOpenBreaker() {
+        try (ResilientTransport transport = transport(Duration.ofSeconds(1), 10, Duration.ofSeconds(10))) {
+            status = 409;
+            for (int i = 0; i < 10; i++) {
+                assertThrows(HttpClientErrorException.class, () -> transport.execute("get",
+                        client -> client.get().uri("/").retrieve().body(String.class)));
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, transport.getState());
+            assertEquals(10, requests.get());
+        }
+    }
+
+    @Test
+    public void testSlowCallIsCutByDeadline() {
+        try (ResilientTransport transport = transport(Duration.ofMillis(200), 10, Duration.ofSeconds(10))) {
+            delayMs = 2000;
+            long start = System.nanoTime();
+            assertEquals("fallback", get(transport));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        }
+    }
+
+    @Test
+    public void testBulkheadRejectsCallsOverLimit() throws InterruptedException {
+        try (ResilientTransport transport = transport(Duration.ofSeconds(5), 1, Duration.ofSeconds(10))) {
+            delayMs = 500;
+            CountDownLatch started = new CountDownLatch(1);
+            Thread slow = new Thread(() -> {
+                started.countDown();
+                get(transport);
+            });
+            slow.start();
+            started.await();
+            Thread.sleep(100);
+            assertThrows(DependencyUnavailableException.class, () -> transport.execute("get",
+                    client -> client.get().uri("/").retrieve().body(String.class)));
+            slow.join();
+            assertEquals(1, requests.get());
+        }
+    }
+
+    private ResilientTransport transport(Duration requestTimeout, int maxConcurrentCalls, Duration openDuration) {
+        TransportSettings settings = new TransportSettings(Duration.ofMillis(500), requestTimeout,
+                maxConcurrentCalls, Duration.ofMillis(10), 10, 4, 0.5, openDuration, Duration.ofSeconds(1));
+        return new ResilientTransport("test", url, settings, meterRegistry);
+    }
+
+    private String get(ResilientTransport transport) {
+        return transport.call("get", client -> client.get().uri("/").retrieve().body(String.class),
+                () -> "fallback");
+    }
+}
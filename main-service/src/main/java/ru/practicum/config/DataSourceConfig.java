@@ -0,0 +1,33 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.practicum.routing.ReplicaRoutingDataSource;
+import ru.practicum.routing.ReplicaSettings;
+
+// С репликой (db.replica.enabled=true) публичные выборки событий, подборок, комментариев и подписок
+// (сервисы с @Transactional(readOnly = true)) читают её; модерация, заявки и все изменения — основную БД.
+// Метрики пулов — hikaricp.* с тегом pool: ewm-primary и ewm-replica.
+@Configuration
+@ConditionalOnProperty(name = "db.replica.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig primaryPoolConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties, HikariConfig primaryPoolConfig,
+                                               Environment environment, MeterRegistry meterRegistry) {
+        return ReplicaRoutingDataSource.create("ewm", properties, primaryPoolConfig,
+                ReplicaSettings.from(environment, "db.replica"), meterRegistry);
+    }
+}
@@ -5,16 +5,21 @@ import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.RatingClient;
 import ru.practicum.RatingResponseDto;
+import ru.practicum.dto.SeriesInterval;
 import ru.practicum.dtos.event.*;
 import ru.practicum.dtos.request.ParticipationRequestDto;
 import ru.practicum.service.event.EventService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static ru.practicum.dtos.utils.DateTimeFormatter.FORMAT;
+
 @Slf4j
 @RestController
 @RequiredArgsConstructor
@@ -50,6 +55,16 @@ public class EventsPrivateController {
         return eventsService.updateEventOfUser(userId, eventId, updateRequest);
     }
 
+    @GetMapping("/{eventId}/views")
+    public EventViewSeriesDto getEventViewSeries(@PathVariable Long userId, @PathVariable Long eventId,
+                                                 @RequestParam(required = false) @DateTimeFormat(pattern = FORMAT)
+                                                 LocalDateTime start,
+                                                 @RequestParam(required = false) @DateTimeFormat(pattern = FORMAT)
+                                                 LocalDateTime end,
+                                                 @RequestParam(defaultValue = "HOUR") SeriesInterval interval) {
+        return eventsService.getEventViewSeries(userId, eventId, start, end, interval);
+    }
+
     @GetMapping("/{eventId}/requests")
     public List<ParticipationRequestDto> getRequestsOfUserEvent(@PathVariable Long userId, @PathVariable Long eventId) {
         return eventsService.getRequestsOfUserEvent(userId, eventId);
@@ -7,10 +7,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.StatClient;
 import ru.practicum.dtos.event.EventFullDto;
 import ru.practicum.dtos.event.EventShortDto;
+import ru.practicum.dtos.event.EventShortPage;
 import ru.practicum.service.event.EventService;
 
 import java.time.LocalDateTime;
@@ -29,8 +31,12 @@ public class EventsPublicController {
     @Value("${stats-service.url}")
     private String applicationName;
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // С параметром cursor (для первой страницы — пустым) список отдаётся по курсору: курсор следующей страницы
+    // приходит в заголовке X-Next-Cursor, а его отсутствие значит, что событий больше нет. Без cursor — from/size.
     @GetMapping
-    public List<EventShortDto> getShortEventPublicByFilter(
+    public ResponseEntity<List<EventShortDto>> getShortEventPublicByFilter(
                                                         @RequestParam(required = false) String text,
                                                         @RequestParam(required = false) List<Long> categories,
                                                         @RequestParam(required = false) Boolean paid,
@@ -44,12 +50,29 @@ public class EventsPublicController {
                                                         boolean onlyAvailable,
                                                         @RequestParam(required = false) String sort,
                                                         @RequestParam(defaultValue = "0") int from,
-                                                        @RequestParam(defaultValue = "10") int size,
+                                                        @RequestParam(defaultValue = "10") @Positive int size,
+                                                        @RequestParam(required = false) String cursor,
                                                         HttpServletRequest request) {
         statClient.save(applicationName, request);
         log.info("GET request /events");
-        return eventService.getShortEventPublicByFilter(text, categories, paid, rangeStart,
-                rangeEnd, onlyAvailable, sort, from, size);
+        if (cursor != null) {
+            EventShortPage page = eventService.getShortEventPublicByCursor(text, categories, paid, rangeStart,
+                    rangeEnd, onlyAvailable, sort, cursor, size);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getEvents());
+        }
+        return ResponseEntity.ok(eventService.getShortEventPublicByFilter(text, categories, paid, rangeStart,
+                rangeEnd, onlyAvailable, sort, from, size));
+    }
+
+    @GetMapping("/popular")
+    public List<EventShortDto> getPopularEvents(@RequestParam(defaultValue = "24") @Positive int hours,
+                                                @RequestParam(defaultValue = "10") @Positive int size) {
+        log.info("GET /events/popular?hours={}&size={}", hours, size);
+        return eventService.getPopularEvents(hours, size);
     }
 
     @GetMapping("/{id}")
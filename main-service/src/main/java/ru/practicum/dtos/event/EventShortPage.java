@@ -0,0 +1,19 @@
+package ru.practicum.dtos.event;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// Страница публичного списка событий в режиме курсора; nextCursor == null — дальше событий нет
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventShortPage {
+
+    List<EventShortDto> events;
+    String nextCursor;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.dtos.event;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.ViewSeriesPoint;
+
+import java.util.List;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventViewSeriesDto {
+
+    Long eventId;
+    SeriesInterval interval;
+    List<ViewSeriesPoint> points;
+}
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.practicum.error.exception.*;
 import ru.practicum.error.model.ApiError;
+import ru.practicum.transport.DependencyUnavailableException;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -161,6 +162,19 @@ public class ErrorHandler {
                 .build();
     }
 
+    // rating-service или stat-server недоступен и транспорт не стал делать вызов
+    @ExceptionHandler(DependencyUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiError handleDependencyUnavailable(DependencyUnavailableException ex) {
+        log.warn(ex.getMessage());
+        return ApiError.builder()
+                .errors(List.of())
+                .message(ex.getMessage())
+                .reason("DependencyUnavailableException")
+                .status(HttpStatus.SERVICE_UNAVAILABLE.name())
+                .localDateTime(LocalDateTime.now())
+                .build();
+    }
 
     private String extractConstraintName(DataIntegrityViolationException ex) {
         Throwable rootCause = ex.getRootCause();
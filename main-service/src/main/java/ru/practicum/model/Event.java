@@ -2,6 +2,7 @@ package ru.practicum.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import ru.practicum.enums.State;
 
 import java.time.LocalDateTime;
@@ -30,6 +31,12 @@ public class Event {
     @Transient
     private Long views;
 
+    // Уникальные просмотры, синхронизированные из stat-server (EventViewSyncService); по ним идёт sort=VIEWS.
+    // Столбец пишет только синхронизация, JPA его не вставляет и не обновляет
+    @Column(name = "views", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    Long syncedViews;
+
     @Column(name = "confirmed_requests")
     Integer confirmedRequests;
 
@@ -0,0 +1,105 @@
+package ru.practicum.repository;
+
+import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dtos.category.CategoryDto;
+import ru.practicum.dtos.event.EventFullDto;
+import ru.practicum.dtos.event.EventShortDto;
+import ru.practicum.dtos.user.UserShortDto;
+import ru.practicum.model.Location;
+import ru.practicum.model.QCategory;
+import ru.practicum.model.QUser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static ru.practicum.model.QEvent.event;
+
+// Списки событий без загрузки сущностей: один запрос с join категории и инициатора выбирает только столбцы DTO
+// и собирает их конструкторами. Нет ни управляемых Event (и проверки их на изменения при коммите),
+// ни отдельных select за категориями и пользователями, а description читается только для EventFullDto.
+// Общее число строк не считается — эндпоинты отдают список без него.
+// views в результате — синхронизированные events.views; во всех списках сервис заменяет их свежими
+// просмотрами из ViewCountService.
+@Repository
+public class EventListRepository {
+    private static final QCategory CATEGORY = new QCategory("category");
+    private static final QUser INITIATOR = new QUser("initiator");
+
+    private static final ConstructorExpression<EventShortDto> SHORT = Projections.constructor(EventShortDto.class,
+            event.id,
+            event.annotation,
+            Projections.constructor(CategoryDto.class, CATEGORY.id, CATEGORY.name),
+            event.confirmedRequests,
+            event.eventDate,
+            event.publishedOn,
+            Projections.constructor(UserShortDto.class, INITIATOR.id, INITIATOR.name),
+            event.paid,
+            event.title,
+            event.syncedViews);
+
+    private static final ConstructorExpression<EventFullDto> FULL = Projections.constructor(EventFullDto.class,
+            event.id,
+            event.annotation,
+            Projections.constructor(CategoryDto.class, CATEGORY.id, CATEGORY.name),
+            event.confirmedRequests,
+            event.createdOn,
+            event.publishedOn,
+            event.description,
+            event.eventDate,
+            Projections.constructor(UserShortDto.class, INITIATOR.id, INITIATOR.name),
+            Projections.constructor(Location.class, event.lat, event.lon),
+            event.paid,
+            event.participantLimit,
+            event.state,
+            event.requestModeration,
+            event.title,
+            event.syncedViews);
+
+    private final JPAQueryFactory queryFactory;
+
+    public EventListRepository(EntityManager entityManager) {
+        this.queryFactory = new JPAQueryFactory(entityManager);
+    }
+
+    public List<EventShortDto> findShort(Predicate predicate, List<OrderSpecifier<?>> order, long offset, int limit) {
+        return query(SHORT, predicate, order, offset, limit).fetch();
+    }
+
+    public List<EventFullDto> findFull(Predicate predicate, List<OrderSpecifier<?>> order, long offset, int limit) {
+        return query(FULL, predicate, order, offset, limit).fetch();
+    }
+
+    // События с этими id в порядке ids; удалённые пропускаются
+    public List<EventShortDto> findShortByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, EventShortDto> byId = query(SHORT, event.id.in(ids), List.of(), 0, ids.size()).fetch().stream()
+                .collect(Collectors.toMap(EventShortDto::getId, dto -> dto));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private <T> JPAQuery<T> query(ConstructorExpression<T> projection, Predicate predicate,
+                                  List<OrderSpecifier<?>> order, long offset, int limit) {
+        return queryFactory.select(projection)
+                .from(event)
+                .leftJoin(event.category, CATEGORY)
+                .leftJoin(event.initiator, INITIATOR)
+                .where(predicate)
+                .orderBy(order.toArray(OrderSpecifier[]::new))
+                .offset(offset)
+                .limit(limit);
+    }
+}
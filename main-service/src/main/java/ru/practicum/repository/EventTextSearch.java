@@ -0,0 +1,58 @@
+package ru.practicum.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.query.sqm.function.SqmFunctionRegistry;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+import static ru.practicum.model.QEvent.event;
+
+// Полнотекстовый поиск событий для QueryDSL-запросов: условие и релевантность — функции HQL, которые Hibernate
+// разворачивает в SQL своей БД (регистрация — META-INF/services/org.hibernate.boot.model.FunctionContributor).
+// В PostgreSQL поиск идёт по events.search_vector (schema-search-postgresql.sql) через GIN-индекс: запрос
+// websearch_to_tsquery понимает фразы в кавычках, OR и -исключения. Сам столбец в сущность не отображается,
+// поэтому функции получают id события и обращаются к строке подзапросом по первичному ключу.
+// В H2 (тесты) вместо индекса — поиск подстроки без учёта регистра по тем же title, annotation и description
+// (до полнотекстового поиска description не учитывался); релевантность — 1.0, 0.5 или 0.1 по полю совпадения.
+public class EventTextSearch implements FunctionContributor {
+    private static final String MATCH = "event_text_match";
+    private static final String RANK = "event_text_rank";
+
+    // Hibernate 6 не принимает голый вызов функции как условие WHERE, поэтому результат сравнивается с true
+    public static BooleanExpression matches(String text) {
+        return Expressions.booleanTemplate("function('" + MATCH + "', {0}, {1}) = true", event.id, text);
+    }
+
+    // Совпадение в title весит больше, чем в annotation, а та — больше, чем в description
+    public static NumberExpression<Double> rank(String text) {
+        return Expressions.numberTemplate(Double.class, "function('" + RANK + "', {0}, {1})", event.id, text);
+    }
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        SqmFunctionRegistry registry = functionContributions.getFunctionRegistry();
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        if (functionContributions.getDialect() instanceof PostgreSQLDialect) {
+            registry.registerPattern(MATCH, "?1 in (select s.event_id from events s "
+                            + "where s.search_vector @@ websearch_to_tsquery('russian', ?2))",
+                    types.resolve(StandardBasicTypes.BOOLEAN));
+            registry.registerPattern(RANK, "(select ts_rank_cd(s.search_vector, "
+                            + "websearch_to_tsquery('russian', ?2), 32) from events s where s.event_id = ?1)",
+                    types.resolve(StandardBasicTypes.DOUBLE));
+        } else {
+            registry.registerPattern(MATCH, "?1 in (select s.event_id from events s "
+                            + "where lower(concat_ws(' ', s.title, s.annotation, s.description)) "
+                            + "like lower(concat('%', ?2, '%')))",
+                    types.resolve(StandardBasicTypes.BOOLEAN));
+            registry.registerPattern(RANK, "(select case when lower(s.title) like lower(concat('%', ?2, '%')) "
+                            + "then 1.0 when lower(s.annotation) like lower(concat('%', ?2, '%')) then 0.5 "
+                            + "else 0.1 end from events s where s.event_id = ?1)",
+                    types.resolve(StandardBasicTypes.DOUBLE));
+        }
+    }
+}
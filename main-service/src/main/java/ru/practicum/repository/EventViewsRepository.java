@@ -0,0 +1,32 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Столбец events.views для синхронизации просмотров: пачечное обновление без загрузки сущностей
+@Repository
+@RequiredArgsConstructor
+public class EventViewsRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    // События с ненулевым счётчиком: их просмотры могут уйти из окна и без новых хитов
+    public List<Long> findViewedIds() {
+        return jdbcTemplate.queryForList("SELECT event_id FROM events WHERE views > 0", Long.class);
+    }
+
+    // Строки с тем же значением не переписываются; возвращает число изменённых
+    public int updateViews(Map<Long, Long> views) {
+        List<Object[]> args = views.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey(), entry.getValue()})
+                .toList();
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE events SET views = ? WHERE event_id = ? AND views <> ?", args);
+        return Arrays.stream(updated)
+                .map(count -> Math.max(count, 0))
+                .sum();
+    }
+}
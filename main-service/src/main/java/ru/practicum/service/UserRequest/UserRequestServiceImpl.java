@@ -15,6 +15,7 @@ import ru.practicum.model.User;
 import ru.practicum.repository.EventRepository;
 import ru.practicum.repository.RequestRepository;
 import ru.practicum.repository.UserRepository;
+import ru.practicum.service.search.EventSearchCache;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -28,6 +29,7 @@ public class UserRequestServiceImpl implements UserRequestService {
     private final RequestRepository requestRepository;
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
+    private final EventSearchCache eventSearchCache;
 
     @Override
     public List<ParticipationRequestDto> getAllUserRequests(Long userId) {
@@ -88,6 +90,8 @@ public class UserRequestServiceImpl implements UserRequestService {
             event.setConfirmedRequests(Optional.ofNullable(event.getConfirmedRequests()).orElse(0) + 1);
 
             eventRepository.save(event);
+            eventSearchCache.invalidateAvailability(
+                    event.getCategory() == null ? null : event.getCategory().getId(), event.getEventDate());
         } else {
             log.info("The event with id={} requires moderation", eventId);
             newRequest.setStatus(Status.PENDING);
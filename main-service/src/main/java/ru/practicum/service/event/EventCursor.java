@@ -0,0 +1,54 @@
+package ru.practicum.service.event;
+
+import ru.practicum.error.exception.ValidationException;
+import ru.practicum.dtos.event.EventShortDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Курсор публичного списка событий: сортировка, ключ сортировки последнего отданного события и его id.
+// Для клиента непрозрачен — base64url от "sort|key|id", где key — eventDate для EVENT_DATE, views для VIEWS
+// и пусто для списка без сортировки. Курсор от другой сортировки или испорченный отклоняется с 400:
+// продолжать по нему значило бы молча пропустить или повторить события.
+record EventCursor(String sort, LocalDateTime eventDate, Long views, long id) {
+    private static final String BY_ID = "ID";
+
+    // views в last — ещё синхронизированные events.views, по которым шла сортировка
+    static EventCursor after(String sort, EventShortDto last) {
+        return new EventCursor(key(sort),
+                "EVENT_DATE".equals(sort) ? last.getEventDate() : null,
+                "VIEWS".equals(sort) ? last.getViews() : null,
+                last.getId());
+    }
+
+    static EventCursor decode(String value, String sort) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3 || !parts[0].equals(key(sort))) {
+                throw new ValidationException("Cursor does not match sort " + sort);
+            }
+            LocalDateTime eventDate = null;
+            Long views = null;
+            if ("EVENT_DATE".equals(sort)) {
+                eventDate = LocalDateTime.parse(parts[1]);
+            } else if ("VIEWS".equals(sort)) {
+                views = Long.parseLong(parts[1]);
+            }
+            return new EventCursor(parts[0], eventDate, views, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Malformed cursor");
+        }
+    }
+
+    String encode() {
+        Object key = eventDate != null ? eventDate : views;
+        String value = sort + "|" + (key == null ? "" : key) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String key(String sort) {
+        return sort == null ? BY_ID : sort;
+    }
+}
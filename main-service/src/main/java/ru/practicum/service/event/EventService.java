@@ -1,5 +1,6 @@
 package ru.practicum.service.event;
 
+import ru.practicum.dto.SeriesInterval;
 import ru.practicum.dtos.event.*;
 import ru.practicum.dtos.request.ParticipationRequestDto;
 import ru.practicum.enums.State;
@@ -17,6 +18,9 @@ public interface EventService {
 
     EventFullDto updateEventOfUser(Long userId, Long eventId, UpdateEventUserRequest eventUserRequest);
 
+    EventViewSeriesDto getEventViewSeries(Long userId, Long eventId, LocalDateTime start, LocalDateTime end,
+                                          SeriesInterval interval);
+
     List<ParticipationRequestDto> getRequestsOfUserEvent(Long userId, Long eventId);
 
     EventRequestStatusUpdateResult updateRequestsStatusOfUserEvent(Long userId, Long eventId,
@@ -37,7 +41,19 @@ public interface EventService {
                                                     int from,
                                                     int size);
 
+    EventShortPage getShortEventPublicByCursor(String text,
+                                               List<Long> categories,
+                                               Boolean paid,
+                                               LocalDateTime rangeStart,
+                                               LocalDateTime rangeEnd,
+                                               boolean onlyAvailable,
+                                               String sort,
+                                               String cursor,
+                                               int size);
+
     EventFullDto getPublicEventById(Long id);
 
+    List<EventShortDto> getPopularEvents(int hours, int size);
+
     void validateUserAndEvent(Long eventId, Long userId);
 }
@@ -1,15 +1,18 @@
 package ru.practicum.service.event;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.Expressions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatClient;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
+import ru.practicum.dto.ViewSeriesPoint;
 import ru.practicum.dto.ViewStats;
 import ru.practicum.dtos.event.*;
 import ru.practicum.dtos.request.ParticipationRequestDto;
@@ -21,13 +24,21 @@ import ru.practicum.mapper.EventMapper;
 import ru.practicum.mapper.RequestMapper;
 import ru.practicum.model.*;
 import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventListRepository;
 import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.EventTextSearch;
 import ru.practicum.repository.RequestRepository;
 import ru.practicum.repository.UserRepository;
+import ru.practicum.service.search.EventSearchCache;
+import ru.practicum.service.search.EventSearchKey;
 import ru.practicum.service.user.UserService;
+import ru.practicum.service.views.ViewCountService;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,24 +49,31 @@ import static ru.practicum.model.QEvent.event;
 @Transactional
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
+    private static final Pattern EVENT_URI = Pattern.compile("/events/(\\d+)");
+
     private final EventRepository eventRepository;
+    private final EventListRepository eventListRepository;
     private final RequestRepository requestRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
     private final StatClient statClient;
     private final UserService userService;
+    private final ViewCountService viewCountService;
+    private final EventSearchCache eventSearchCache;
+
+    // тот же предел, что у stat-server: больший ряд он отклоняет с 400
+    @Value("${stats.series.max-buckets:10000}")
+    private long maxSeriesBuckets;
 
 
     @Override
     public List<EventFullDto> getAllEventsByUserId(Long userId, Integer from, Integer size) {
         log.info("Getting all events of user {}", userId);
         checkUserExists(userId);
-        PageRequest pageRequest = PageRequest.of(from / size, size);
-        Page<Event> eventPage = eventRepository.findAllByInitiatorId(userId, pageRequest);
-        List<EventFullDto> events = eventPage.getContent().stream()
-                .map(EventMapper::toEventFullDto)
-                .toList();
-        return events.isEmpty() ? Collections.emptyList() : events;
+        List<EventFullDto> result = eventListRepository.findFull(event.initiator.id.eq(userId),
+                List.of(event.id.asc()), from, size);
+        setFullViews(result);
+        return result;
     }
 
     @Override
@@ -69,7 +87,9 @@ public class EventServiceImpl implements EventService {
 
         User user = userService.findUserById(userId);
         Category category = findCategoryById(newEventDto.getCategory());
-        return EventMapper.toEventFullDto(eventRepository.save(EventMapper.mapToEvent(newEventDto, category, user)));
+        Event savedEvent = eventRepository.save(EventMapper.mapToEvent(newEventDto, category, user));
+        invalidateSearch(savedEvent);
+        return EventMapper.toEventFullDto(savedEvent);
     }
 
     @Override
@@ -84,6 +104,48 @@ public class EventServiceImpl implements EventService {
         return EventMapper.toEventFullDto(event);
     }
 
+    // По умолчанию — с момента публикации (или создания) до текущего момента, но не больше
+    // stats.series.max-buckets последних интервалов; явно заданный слишком длинный период — 400
+    @Override
+    public EventViewSeriesDto getEventViewSeries(Long userId, Long eventId, LocalDateTime start, LocalDateTime end,
+                                                 SeriesInterval interval) {
+        log.info("Getting view series of event {} of user {}", eventId, userId);
+        checkUserExists(userId);
+        Event event = findEventById(eventId);
+        if (!event.getInitiator().getId().equals(userId)) {
+            log.warn("User with id {} is not initiator of event with id {}", userId, eventId);
+            throw new ValidationException("User is not initiator of event");
+        }
+        LocalDateTime from = start != null ? start
+                : Optional.ofNullable(event.getPublishedOn()).orElse(event.getCreatedOn());
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        if (from.isAfter(to)) {
+            throw new ValidationException("Start date is after end date");
+        }
+        Duration step = interval.getDuration();
+        LocalDateTime earliest = to.plusSeconds(1).minus(step.multipliedBy(maxSeriesBuckets - 1));
+        if (start == null && from.isBefore(earliest)) {
+            from = earliest;
+        }
+        long buckets = Duration.between(from, to.plusSeconds(1)).toSeconds() / step.toSeconds() + 1;
+        if (buckets > maxSeriesBuckets) {
+            throw new ValidationException("Range holds " + buckets + " " + interval + " buckets, at most "
+                    + maxSeriesBuckets + " allowed");
+        }
+        Map<LocalDateTime, ViewSeriesPoint> points = new TreeMap<>();
+        for (ViewSeriesDto series : statClient.getViewSeries(from, to, List.of("/events/" + eventId), interval)) {
+            for (ViewSeriesPoint point : series.getPoints()) {
+                points.merge(point.getBucket(), point, (left, right) -> new ViewSeriesPoint(left.getBucket(),
+                        left.getHits() + right.getHits(), left.getUnique() + right.getUnique()));
+            }
+        }
+        return EventViewSeriesDto.builder()
+                .eventId(eventId)
+                .interval(interval)
+                .points(new ArrayList<>(points.values()))
+                .build();
+    }
+
     @Override
     @Transactional
     public EventFullDto updateEventOfUser(Long userId, Long eventId, UpdateEventUserRequest eventUserRequest) {
@@ -98,6 +160,7 @@ public class EventServiceImpl implements EventService {
             log.error("Event with id {} is already published", eventId);
             throw new InvalidStateException("You can't edit a published event");
         }
+        invalidateSearch(event);
         Optional.ofNullable(eventUserRequest.getAnnotation()).ifPresent(event::setAnnotation);
         Optional.ofNullable(eventUserRequest.getDescription()).ifPresent(event::setDescription);
         if (eventUserRequest.getEventDate() != null) {
@@ -128,6 +191,7 @@ public class EventServiceImpl implements EventService {
             event.setCategory(category);
         }
         Event savedEvent = eventRepository.save(event);
+        invalidateSearch(savedEvent);
         log.debug("Saved event: {}", savedEvent);
         return EventMapper.toEventFullDto(savedEvent);
     }
@@ -211,6 +275,9 @@ public class EventServiceImpl implements EventService {
         }
         requestRepository.saveAll(Stream.concat(confirmedRequests.stream(), rejectedRequests.stream()).toList());
         eventRepository.save(event);
+        if (!confirmedRequests.isEmpty()) {
+            eventSearchCache.invalidateAvailability(categoryId(event), event.getEventDate());
+        }
         return new EventRequestStatusUpdateResult(
                 confirmedRequests.stream()
                         .map(RequestMapper::toParticipationRequestDto)
@@ -227,8 +294,6 @@ public class EventServiceImpl implements EventService {
                                              Integer from, Integer size) {
         log.info("Getting admin events with users {}, states {}, categories {}, range start {}, range end {}",
                 userIds, states, categories, rangeStart, rangeEnd);
-        Page<Event> eventPage;
-        Pageable pageable = createPageable(from, size, Sort.by(Sort.Direction.ASC, "createdOn"));
         BooleanBuilder queryBuilder = new BooleanBuilder();
         applyDateRangeFilter(rangeStart, rangeEnd, queryBuilder);
 
@@ -242,16 +307,10 @@ public class EventServiceImpl implements EventService {
             queryBuilder.and(event.state.in(states));
         }
 
-        if (queryBuilder.getValue() != null) {
-            eventPage = eventRepository.findAll(queryBuilder, pageable);
-        } else {
-            eventPage = eventRepository.findAll(pageable);
-        }
-        List<Event> result = eventPage.getContent();
-        setViews(result);
-        return result.stream()
-                .map(EventMapper::toEventFullDto)
-                .toList();
+        List<EventFullDto> result = eventListRepository.findFull(queryBuilder, List.of(event.createdOn.asc()),
+                from, size);
+        setFullViews(result);
+        return result;
     }
 
     @Override
@@ -264,6 +323,8 @@ public class EventServiceImpl implements EventService {
             log.warn("Event with id {} is not state pending. Cannot perform this operation.", event.getId());
             throw new InvalidStateException("Event has already been published");
         }
+        // до изменения: событие могло уйти из результатов фильтров по прежним категории и дате
+        invalidateSearch(event);
 
         // Проверка даты события только если событие уже опубликовано
         if (adminDto.getEventDate() != null) {
@@ -292,6 +353,7 @@ public class EventServiceImpl implements EventService {
         Event savedEvent = updateEvent(event, adminDto.getCategoryId(), adminDto.getLocation(), adminDto.getAnnotation(),
                 adminDto.getDescription(), adminDto.getEventDate(), adminDto.getPaid(), adminDto.getParticipantLimit(),
                 adminDto.getRequestModeration(), adminDto.getTitle());
+        invalidateSearch(savedEvent);
 
         setViews(List.of(savedEvent));
         log.info("Event {} updated from admin", savedEvent);
@@ -313,49 +375,104 @@ public class EventServiceImpl implements EventService {
         log.info("Getting event list by filter: text={}, categories={}, paid={}, rangeStart={}, rangeEnd={}, " +
                         "onlyAvailable={}, sort={}, from={}, size={}",
                 text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort, from, size);
-        Page<Event> events;
-        Pageable pageable;
+        List<OrderSpecifier<?>> order;
+        boolean searching = text != null && !text.isBlank();
         switch (sort) {
-            case "EVENT_DATE" -> pageable = createPageable(from, size, Sort.by(Sort.Direction.ASC, "eventDate"));
-            case "VIEWS" -> pageable = createPageable(from, size, Sort.by(Sort.Direction.ASC, "id"));
-            case null -> pageable = createPageable(from, size, Sort.unsorted());
+            case "EVENT_DATE" -> order = List.of(event.eventDate.asc());
+            case "VIEWS" -> order = List.of(event.syncedViews.desc(), event.id.desc());
+            case "RELEVANCE" -> {
+                if (!searching) {
+                    log.warn("Sort RELEVANCE without text");
+                    throw new ValidationException("Sort RELEVANCE requires text");
+                }
+                order = List.of(EventTextSearch.rank(text).desc(), event.id.asc());
+            }
+            case null -> order = List.of();
             default -> {
                 log.warn("Unsupported sort type");
                 throw new InvalidStateException("Unsupported sort type");
             }
         }
-        BooleanBuilder queryBuilder = new BooleanBuilder();
-        applyDateRangeFilter(rangeStart, rangeEnd, queryBuilder);
-        if (text != null && !text.isBlank()) {
-            queryBuilder.and(event.title.containsIgnoreCase(text).or(event.annotation.containsIgnoreCase(text)));
-        }
-        if (categories != null && !categories.isEmpty()) {
-            queryBuilder.and(event.category.id.in(categories));
-        }
-        if (paid != null) {
-            queryBuilder.and(event.paid.eq(paid));
-        }
-        if (onlyAvailable) {
-            queryBuilder.and(event.confirmedRequests.gt(0)
-                    .and(event.participantLimit.gt(event.confirmedRequests)));
-        }
-        if (queryBuilder.getValue() != null) {
-            events = eventRepository.findAll(queryBuilder, pageable);
+        EventSearchKey key = EventSearchKey.of(text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort,
+                from, size);
+        Optional<List<Long>> cached = eventSearchCache.get(key);
+        List<EventShortDto> result;
+        if (cached.isPresent()) {
+            result = eventListRepository.findShortByIds(cached.get());
         } else {
-            events = eventRepository.findAll(pageable);
+            long generation = eventSearchCache.generation();
+            BooleanBuilder queryBuilder = buildPublicFilter(text, categories, paid, rangeStart, rangeEnd,
+                    onlyAvailable);
+            result = eventListRepository.findShort(queryBuilder, order, from, size);
+            eventSearchCache.put(key, result.stream().map(EventShortDto::getId).toList(), generation);
+        }
+        setShortViews(result);
+        return result;
+    }
+
+    // Постраничный вывод по курсору: вместо OFFSET — условие "после ключа последнего события" по индексу
+    // (event_date, event_id) или (views, event_id), без подсчёта общего числа строк; стоимость страницы
+    // не растёт с глубиной. Просмотры между страницами может обновить синхронизация — тогда событие,
+    // сменившее место, может выпасть или повториться.
+    // Берётся size + 1 строка: лишняя показывает, что следующая страница есть.
+    @Override
+    @Transactional(readOnly = true)
+    public EventShortPage getShortEventPublicByCursor(String text,
+                                                      List<Long> categories,
+                                                      Boolean paid,
+                                                      LocalDateTime rangeStart,
+                                                      LocalDateTime rangeEnd,
+                                                      boolean onlyAvailable,
+                                                      String sort,
+                                                      String cursor,
+                                                      int size) {
+        log.info("Getting event list by filter and cursor: text={}, categories={}, paid={}, rangeStart={}, " +
+                        "rangeEnd={}, onlyAvailable={}, sort={}, cursor={}, size={}",
+                text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort, cursor, size);
+        BooleanBuilder queryBuilder = buildPublicFilter(text, categories, paid, rangeStart, rangeEnd, onlyAvailable);
+        EventCursor after = cursor.isEmpty() ? null : EventCursor.decode(cursor, sort);
+        List<OrderSpecifier<?>> order;
+        switch (sort) {
+            case "EVENT_DATE" -> {
+                order = List.of(event.eventDate.asc(), event.id.asc());
+                if (after != null) {
+                    queryBuilder.and(Expressions.booleanTemplate("({0}, {1}) > ({2}, {3})",
+                            event.eventDate, event.id, after.eventDate(), after.id()));
+                }
+            }
+            case "VIEWS" -> {
+                order = List.of(event.syncedViews.desc(), event.id.desc());
+                if (after != null) {
+                    queryBuilder.and(Expressions.booleanTemplate("({0}, {1}) < ({2}, {3})",
+                            event.syncedViews, event.id, after.views(), after.id()));
+                }
+            }
+            case "RELEVANCE" -> {
+                log.warn("Cursor paging with sort RELEVANCE");
+                throw new ValidationException("Cursor paging is not supported for sort RELEVANCE");
+            }
+            case null -> {
+                order = List.of(event.id.asc());
+                if (after != null) {
+                    queryBuilder.and(event.id.gt(after.id()));
+                }
+            }
+            default -> {
+                log.warn("Unsupported sort type");
+                throw new InvalidStateException("Unsupported sort type");
+            }
         }
-        List<Event> result = events.getContent();
-        setViews(result);
-        if (sort != null && sort.equals("VIEWS")) {
-            result = result.stream()
-                    .sorted(Comparator.comparing(Event::getViews))
-                    .toList();
+        List<EventShortDto> result = eventListRepository.findShort(queryBuilder, order, 0, size + 1);
+        String nextCursor = null;
+        if (result.size() > size) {
+            result = result.subList(0, size);
+            nextCursor = EventCursor.after(sort, result.getLast()).encode();
         }
-        return result.stream()
-                .map(EventMapper::mapToShortDto)
-                .toList();
+        setShortViews(result);
+        return new EventShortPage(result, nextCursor);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public EventFullDto getPublicEventById(Long eventId) {
         log.info("Getting full event by id: {}", eventId);
@@ -368,32 +485,77 @@ public class EventServiceImpl implements EventService {
         return EventMapper.toEventFullDto(event);
     }
 
-    private List<ViewStats> getViews(List<Event> events) {
-        List<String> uris = events.stream()
-                .map(event -> "/events/" + event.getId())
+    // Топ uri берётся с запасом: среди них есть и не-событийные (/events), и неопубликованные события
+    @Transactional(readOnly = true)
+    @Override
+    public List<EventShortDto> getPopularEvents(int hours, int size) {
+        log.info("Getting {} popular events for last {} hours", size, hours);
+        LocalDateTime now = LocalDateTime.now();
+        TopViewStatsDto top = statClient.getTopViewStats(now.minusHours(hours), now, size * 2 + 1, true);
+        Map<Long, Long> viewsById = new LinkedHashMap<>();
+        for (ViewStats stats : top.getStats()) {
+            Matcher matcher = EVENT_URI.matcher(stats.getUri());
+            if (matcher.matches()) {
+                viewsById.merge(Long.parseLong(matcher.group(1)), stats.getHits(), Long::sum);
+            }
+        }
+        Map<Long, Event> published = eventRepository.findAllByIdIn(viewsById.keySet()).stream()
+                .filter(event -> event.getState() == State.PUBLISHED)
+                .collect(Collectors.toMap(Event::getId, event -> event));
+        return viewsById.entrySet().stream()
+                .filter(entry -> published.containsKey(entry.getKey()))
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(size)
+                .map(entry -> {
+                    Event event = published.get(entry.getKey());
+                    event.setViews(entry.getValue());
+                    return EventMapper.mapToShortDto(event);
+                })
                 .toList();
+    }
 
-        List<ViewStats> viewStats = statClient.getViewStats(LocalDateTime.now().minusHours(1),
-                LocalDateTime.now(), uris, true);
-        log.info("Получены данные статистики: {}", viewStats);
-        if (viewStats == null) {
-            return Collections.emptyList();
+    // Порядок sort=VIEWS задан БД по синхронизированному events.views, а в ответе — просмотры из ViewCountService:
+    // они свежее на интервал синхронизации, поэтому соседние события могут идти не строго по убыванию views
+    private void setShortViews(List<EventShortDto> events) {
+        if (events.isEmpty()) {
+            return;
         }
-        return viewStats;
+        Map<Long, Long> views = viewCountService.getViews(events.stream()
+                .map(EventShortDto::getId)
+                .toList());
+        events.forEach(dto -> dto.setViews(views.getOrDefault(dto.getId(), 0L)));
     }
 
-    private void setViews(List<Event> events) {
+    private void setFullViews(List<EventFullDto> events) {
         if (events.isEmpty()) {
             return;
         }
-        Map<String, Long> mapUriAndHits = getViews(events).stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        Map<Long, Long> views = viewCountService.getViews(events.stream()
+                .map(EventFullDto::getId)
+                .toList());
+        events.forEach(dto -> dto.setViews(views.getOrDefault(dto.getId(), 0L)));
+    }
 
+    private void setViews(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> views = viewCountService.getViews(events.stream()
+                .map(Event::getId)
+                .toList());
         for (Event event : events) {
-            event.setViews(mapUriAndHits.getOrDefault("/events/" + event.getId(), 0L));
+            event.setViews(views.getOrDefault(event.getId(), 0L));
         }
     }
 
+    private void invalidateSearch(Event event) {
+        eventSearchCache.invalidate(categoryId(event), event.getEventDate());
+    }
+
+    private Long categoryId(Event event) {
+        return event.getCategory() == null ? null : event.getCategory().getId();
+    }
+
     private Event updateEvent(Event event, Long categoryId, Location location, String annotation, String description,
                               LocalDateTime eventDate, Boolean paid, Integer participantLimit,
                               Boolean requestModeration, String title) {
@@ -418,9 +580,25 @@ public class EventServiceImpl implements EventService {
         return eventRepository.save(event);
     }
 
-    private Pageable createPageable(int from, int size, Sort sort) {
-        log.debug("Create Pageable with offset from {}, size {}", from, size);
-        return PageRequest.of(from / size, size, sort);
+    private BooleanBuilder buildPublicFilter(String text, List<Long> categories, Boolean paid,
+                                             LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                             boolean onlyAvailable) {
+        BooleanBuilder queryBuilder = new BooleanBuilder();
+        applyDateRangeFilter(rangeStart, rangeEnd, queryBuilder);
+        if (text != null && !text.isBlank()) {
+            queryBuilder.and(EventTextSearch.matches(text));
+        }
+        if (categories != null && !categories.isEmpty()) {
+            queryBuilder.and(event.category.id.in(categories));
+        }
+        if (paid != null) {
+            queryBuilder.and(event.paid.eq(paid));
+        }
+        if (onlyAvailable) {
+            queryBuilder.and(event.confirmedRequests.gt(0)
+                    .and(event.participantLimit.gt(event.confirmedRequests)));
+        }
+        return queryBuilder;
     }
 
     private void applyDateRangeFilter(LocalDateTime rangeStart, LocalDateTime rangeEnd, BooleanBuilder queryBuilder) {
@@ -0,0 +1,27 @@
+package ru.practicum.service.search;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface EventSearchCache {
+
+    // Поколение кэша: берётся до запроса к БД и передаётся в put, чтобы не сохранить результат,
+    // прочитанный до изменения, которое кэш уже сбросил
+    long generation();
+
+    // id событий страницы для фильтра, если они есть в кэше и не устарели
+    Optional<List<Long>> get(EventSearchKey key);
+
+    void put(EventSearchKey key, List<Long> ids, long generation);
+
+    // Изменилось событие с такой категорией и датой: сбрасываются фильтры, в результат которых оно может входить.
+    // Если идёт транзакция — после её коммита
+    void invalidate(Long categoryId, LocalDateTime eventDate);
+
+    // Изменилось число подтверждённых заявок события: сбрасываются подходящие ему фильтры с onlyAvailable
+    void invalidateAvailability(Long categoryId, LocalDateTime eventDate);
+
+    // Изменился порядок сортировки, например sort=VIEWS после синхронизации просмотров
+    void invalidateSort(String sort);
+}
@@ -0,0 +1,218 @@
+package ru.practicum.service.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Кэш id результатов публичного поиска событий по подписи фильтра. Ограничен и числом записей, и суммарным
+// числом id в них; при переполнении вытесняются давно не читанные записи (LRU), устаревшие старше ttl
+// отбрасываются при чтении. Изменения событий сбрасывают только те фильтры, которым событие подходит по
+// категории и дате, — после коммита, чтобы следующий промах прочитал уже новые данные. Результат, прочитанный
+// до сброса, который задевает его фильтр, не сохраняется: put проверяет ключ по сбросам после своего поколения.
+// Помнятся последние INVALIDATION_HISTORY сбросов; put старше них отбрасывается, а отброшенные put считаются
+// в events.search.cache.puts{result=outdated}.
+// Записей немного и сбросы редки по сравнению с чтениями, поэтому сброс просто проходит по всем записям.
+@Slf4j
+@Service
+public class EventSearchCacheImpl implements EventSearchCache {
+    private static final int INVALIDATION_HISTORY = 1024;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long maxIds;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+    private final Counter outdatedPuts;
+
+    private final LinkedHashMap<EventSearchKey, CachedIds> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long generation;
+    private final ArrayDeque<Invalidation> history = new ArrayDeque<>();
+
+    private record CachedIds(List<Long> ids, long loadedAt) {
+    }
+
+    private record Invalidation(long generation, Predicate<EventSearchKey> affected) {
+    }
+
+    public EventSearchCacheImpl(MeterRegistry meterRegistry,
+                                @Value("${events.search.cache.enabled:true}") boolean enabled,
+                                @Value("${events.search.cache.ttl-ms:30000}") long ttlMs,
+                                @Value("${events.search.cache.max-entries:10000}") int maxEntries,
+                                @Value("${events.search.cache.max-ids:200000}") long maxIds) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxEntries = maxEntries;
+        this.maxIds = maxIds;
+        this.hits = Counter.builder("events.search.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("events.search.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.sizeEvictions = Counter.builder("events.search.cache.evictions").tag("cause", "size")
+                .register(meterRegistry);
+        this.expiredEvictions = Counter.builder("events.search.cache.evictions").tag("cause", "expired")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("events.search.cache.evictions").tag("cause", "invalidated")
+                .register(meterRegistry);
+        this.outdatedPuts = Counter.builder("events.search.cache.puts").tag("result", "outdated")
+                .register(meterRegistry);
+        Gauge.builder("events.search.cache.size", this, service -> service.size())
+                .description("Cached filter results")
+                .register(meterRegistry);
+        Gauge.builder("events.search.cache.ids", this, service -> service.weight())
+                .description("Event ids held by cached filter results")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized long generation() {
+        return generation;
+    }
+
+    @Override
+    public Optional<List<Long>> get(EventSearchKey key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            CachedIds cached = cache.get(key);
+            if (cached != null && System.nanoTime() - cached.loadedAt() >= ttlNanos) {
+                remove(key, cached);
+                expiredEvictions.increment();
+                cached = null;
+            }
+            if (cached == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(cached.ids());
+        }
+    }
+
+    @Override
+    public void put(EventSearchKey key, List<Long> ids, long generation) {
+        if (!enabled || ids.size() + 1 > maxIds) {
+            return;
+        }
+        synchronized (this) {
+            if (isInvalidatedSince(key, generation)) {
+                log.debug("Search result for {} is outdated by invalidation and not cached", key);
+                outdatedPuts.increment();
+                return;
+            }
+            CachedIds previous = cache.put(key, new CachedIds(List.copyOf(ids), System.nanoTime()));
+            if (previous != null) {
+                weight -= previous.ids().size() + 1;
+            }
+            weight += ids.size() + 1;
+            Iterator<Map.Entry<EventSearchKey, CachedIds>> eldest = cache.entrySet().iterator();
+            while ((cache.size() > maxEntries || weight > maxIds) && eldest.hasNext()) {
+                CachedIds evicted = eldest.next().getValue();
+                eldest.remove();
+                weight -= evicted.ids().size() + 1;
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(Long categoryId, LocalDateTime eventDate) {
+        afterCommit(key -> key.matches(categoryId, eventDate));
+    }
+
+    @Override
+    public void invalidateAvailability(Long categoryId, LocalDateTime eventDate) {
+        afterCommit(key -> key.onlyAvailable() && key.matches(categoryId, eventDate));
+    }
+
+    @Override
+    public void invalidateSort(String sort) {
+        afterCommit(key -> sort.equals(key.sort()));
+    }
+
+    private void afterCommit(Predicate<EventSearchKey> affected) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(affected);
+                }
+            });
+        } else {
+            evict(affected);
+        }
+    }
+
+    private synchronized void evict(Predicate<EventSearchKey> affected) {
+        generation++;
+        history.addLast(new Invalidation(generation, affected));
+        if (history.size() > INVALIDATION_HISTORY) {
+            history.removeFirst();
+        }
+        Iterator<Map.Entry<EventSearchKey, CachedIds>> entries = cache.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<EventSearchKey, CachedIds> entry = entries.next();
+            if (affected.test(entry.getKey())) {
+                entries.remove();
+                weight -= entry.getValue().ids().size() + 1;
+                invalidations.increment();
+            }
+        }
+    }
+
+    // Задевает ли ключ сброс после поколения generation; если часть таких сбросов уже забыта — считаем, что да
+    private boolean isInvalidatedSince(EventSearchKey key, long generation) {
+        if (generation == this.generation) {
+            return false;
+        }
+        Invalidation oldest = history.peekFirst();
+        if (oldest == null || oldest.generation() > generation + 1) {
+            return true;
+        }
+        Iterator<Invalidation> newest = history.descendingIterator();
+        while (newest.hasNext()) {
+            Invalidation invalidation = newest.next();
+            if (invalidation.generation() <= generation) {
+                return false;
+            }
+            if (invalidation.affected().test(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(EventSearchKey key, CachedIds cached) {
+        cache.remove(key);
+        weight -= cached.ids().size() + 1;
+    }
+
+    private synchronized int size() {
+        return cache.size();
+    }
+
+    private synchronized long weight() {
+        return weight;
+    }
+}
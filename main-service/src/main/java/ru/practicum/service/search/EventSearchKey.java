@@ -0,0 +1,39 @@
+package ru.practicum.service.search;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+// Нормализованная подпись фильтра публичного поиска: одинаковые по смыслу запросы дают один ключ —
+// текст без регистра и лишних пробелов, категории без повторов и по возрастанию.
+// Смещение и размер страницы входят в ключ: в кэше лежат id именно этой страницы.
+public record EventSearchKey(String text, List<Long> categories, Boolean paid,
+                             LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                             boolean onlyAvailable, String sort, long offset, int size) {
+
+    public static EventSearchKey of(String text, List<Long> categories, Boolean paid,
+                                    LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                    boolean onlyAvailable, String sort, long offset, int size) {
+        String normalizedText = text == null || text.isBlank()
+                ? null
+                : text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        List<Long> normalizedCategories = categories == null
+                ? List.of()
+                : categories.stream().distinct().sorted().toList();
+        return new EventSearchKey(normalizedText, normalizedCategories, paid, rangeStart, rangeEnd,
+                onlyAvailable, sort, offset, size);
+    }
+
+    // Может ли событие с такой категорией и датой входить в результат. Текст и paid не проверяются:
+    // лишний сброс безопасен, пропущенный — нет
+    boolean matches(Long categoryId, LocalDateTime eventDate) {
+        if (!categories.isEmpty() && !categories.contains(categoryId)) {
+            return false;
+        }
+        if (eventDate == null) {
+            return true;
+        }
+        return (rangeStart == null || !eventDate.isBefore(rangeStart))
+                && (rangeEnd == null || !eventDate.isAfter(rangeEnd));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.service.views;
+
+public interface EventViewSyncService {
+
+    // Пересчитывает events.views у событий, чьи просмотры могли измениться; возвращает число пересчитанных
+    int sync();
+}
@@ -0,0 +1,163 @@
+package ru.practicum.service.views;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.StatClient;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.repository.EventViewsRepository;
+import ru.practicum.service.search.EventSearchCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ru.practicum.service.views.ViewCountService.WINDOW;
+
+// Синхронизация events.views с stat-server, чтобы sort=VIEWS сортировал и листал в БД.
+// В столбце то же число, что отдаёт ViewCountService: уникальные IP за последние WINDOW.
+// Уникальные просмотры не складываются по интервалам, поэтому синхронизация инкрементальна по событиям, а не
+// по счётчикам: пересчитываются только события с хитами после прошлой синхронизации (один запрос неуникальных
+// хитов по всем uri) и события с ненулевым счётчиком — их просмотры уходят из окна и без новых хитов.
+// Уникальные просмотры запрашиваются пачками по batch-size uri. Пока stat-server недоступен, отметка прошлой
+// синхронизации не сдвигается, и те же события будут пересчитаны в следующий раз.
+// Хиты доходят до stat-server с опозданием (асинхронные пачки клиента, журнал сервера) и с временем до отметки,
+// поэтому хиты после прошлой синхронизации ищутся с запасом lag-margin-ms до неё.
+@Slf4j
+@Service
+public class EventViewSyncServiceImpl implements EventViewSyncService {
+    private static final Pattern EVENT_URI = Pattern.compile("/events/(\\d+)");
+
+    private final StatClient statClient;
+    private final EventViewsRepository eventViewsRepository;
+    private final EventSearchCache eventSearchCache;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration lagMargin;
+    private final MeterRegistry meterRegistry;
+    private final Counter refreshed;
+    private final Counter updated;
+    private volatile LocalDateTime syncedUntil;
+
+    public EventViewSyncServiceImpl(StatClient statClient,
+                                    EventViewsRepository eventViewsRepository,
+                                    EventSearchCache eventSearchCache,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${events.views.sync.enabled:true}") boolean enabled,
+                                    @Value("${events.views.sync.batch-size:200}") int batchSize,
+                                    @Value("${events.views.sync.lag-margin-ms:120000}") long lagMarginMs) {
+        this.statClient = statClient;
+        this.eventViewsRepository = eventViewsRepository;
+        this.eventSearchCache = eventSearchCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lagMargin = Duration.ofMillis(lagMarginMs);
+        this.meterRegistry = meterRegistry;
+        this.refreshed = Counter.builder("events.views.sync.events")
+                .description("Events whose view count was recomputed")
+                .register(meterRegistry);
+        this.updated = Counter.builder("events.views.sync.updated")
+                .description("Events whose stored view count changed")
+                .register(meterRegistry);
+        Gauge.builder("events.views.sync.lag", this, service -> service.lagSeconds())
+                .description("Time since the moment the stored view counts are synchronized up to")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${events.views.sync.interval-ms:30000}")
+    public void scheduledSync() {
+        if (enabled) {
+            sync();
+        }
+    }
+
+    @Override
+    public synchronized int sync() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        LocalDateTime from = syncedUntil != null ? syncedUntil.minus(lagMargin) : now.minus(WINDOW);
+        boolean success = false;
+        int count = 0;
+        int changed = 0;
+        try {
+            Optional<List<ViewStats>> touched = statClient.findViewStats(from, now, null, false, false);
+            if (touched.isEmpty()) {
+                log.warn("View sync skipped: stat-server is unavailable");
+                return count;
+            }
+            Set<Long> ids = new LinkedHashSet<>();
+            for (ViewStats stats : touched.get()) {
+                Matcher matcher = EVENT_URI.matcher(stats.getUri());
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+            ids.addAll(eventViewsRepository.findViewedIds());
+            List<Long> pending = List.copyOf(ids);
+            for (int i = 0; i < pending.size(); i += batchSize) {
+                List<Long> batch = pending.subList(i, Math.min(i + batchSize, pending.size()));
+                Optional<Map<Long, Long>> views = request(batch, now);
+                if (views.isEmpty()) {
+                    log.warn("View sync stopped after {} of {} events: stat-server is unavailable",
+                            count, pending.size());
+                    return count;
+                }
+                Map<Long, Long> values = new HashMap<>();
+                batch.forEach(id -> values.put(id, views.get().getOrDefault(id, 0L)));
+                int batchChanged = eventViewsRepository.updateViews(values);
+                updated.increment(batchChanged);
+                changed += batchChanged;
+                refreshed.increment(batch.size());
+                count += batch.size();
+            }
+            syncedUntil = now;
+            success = true;
+            log.debug("View sync: {} events recomputed up to {}", count, now);
+            return count;
+        } finally {
+            // порядок sort=VIEWS в кэше поиска устарел, даже если синхронизация прервалась
+            if (changed > 0) {
+                eventSearchCache.invalidateSort("VIEWS");
+            }
+            Timer.builder("events.views.sync")
+                    .tag("outcome", success ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Optional<Map<Long, Long>> request(List<Long> ids, LocalDateTime now) {
+        Map<String, Long> idsByUri = new HashMap<>();
+        ids.forEach(id -> idsByUri.put("/events/" + id, id));
+        return statClient.findViewStats(now.minus(WINDOW), now, List.copyOf(idsByUri.keySet()), true, false)
+                .map(stats -> {
+                    Map<Long, Long> views = new HashMap<>();
+                    for (ViewStats stat : stats) {
+                        Long id = idsByUri.get(stat.getUri());
+                        if (id != null) {
+                            views.merge(id, stat.getHits(), Long::sum);
+                        }
+                    }
+                    return views;
+                });
+    }
+
+    private double lagSeconds() {
+        LocalDateTime until = syncedUntil;
+        return until == null ? Double.NaN : Duration.between(until, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+}
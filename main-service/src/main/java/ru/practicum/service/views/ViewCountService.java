@@ -0,0 +1,14 @@
+package ru.practicum.service.views;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+public interface ViewCountService {
+
+    // Просмотры события — уникальные IP за это окно до текущего момента
+    Duration WINDOW = Duration.ofHours(1);
+
+    // Просмотры событий по id; для событий без просмотров — 0
+    Map<Long, Long> getViews(Collection<Long> eventIds);
+}
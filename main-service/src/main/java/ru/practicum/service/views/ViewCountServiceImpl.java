@@ -0,0 +1,240 @@
+package ru.practicum.service.views;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.StatClient;
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Кэш просмотров событий перед stat-server. Свежее ttl значение отдаётся сразу; устаревшее (но не старше max-stale)
+// тоже отдаётся, а обновляется фоном — не больше одного обновления на ключ. Промахи грузятся синхронно, причём
+// одновременные промахи по одним и тем же событиям ждут одну загрузку: каждый ключ грузит только тот запрос,
+// который первым его занял, и все свои ключи он запрашивает одним вызовом /stats.
+// Если stat-server недоступен, в кэше остаются прежние значения, а не нули.
+@Slf4j
+@Service
+public class ViewCountServiceImpl implements ViewCountService {
+    private final StatClient statClient;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final int maxEntries;
+    private final ExecutorService refresher;
+    private final MeterRegistry meterRegistry;
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final DistributionSummary staleness;
+
+    private final Map<Long, CachedViews> cache = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+
+    private record CachedViews(long views, long loadedAt) {
+    }
+
+    public ViewCountServiceImpl(StatClient statClient,
+                                MeterRegistry meterRegistry,
+                                @Value("${events.views.cache.enabled:true}") boolean enabled,
+                                @Value("${events.views.cache.ttl-ms:5000}") long ttlMs,
+                                @Value("${events.views.cache.max-stale-ms:60000}") long maxStaleMs,
+                                @Value("${events.views.cache.max-entries:100000}") int maxEntries,
+                                @Value("${events.views.cache.refresh-threads:2}") int refreshThreads) {
+        this.statClient = statClient;
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxStaleMs, ttlMs));
+        this.maxEntries = maxEntries;
+        this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256), runnable -> {
+            Thread thread = new Thread(runnable, "views-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.meterRegistry = meterRegistry;
+        this.hits = Counter.builder("events.views.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.staleHits = Counter.builder("events.views.cache.requests").tag("result", "stale").register(meterRegistry);
+        this.misses = Counter.builder("events.views.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.staleness = DistributionSummary.builder("events.views.cache.staleness")
+                .description("Age of stale view counts served while they are refreshed")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("events.views.cache.size", cache, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public Map<Long, Long> getViews(Collection<Long> eventIds) {
+        Map<Long, Long> views = new HashMap<>();
+        if (eventIds.isEmpty()) {
+            return views;
+        }
+        if (!enabled) {
+            List<Long> ids = List.copyOf(new LinkedHashSet<>(eventIds));
+            Map<Long, Long> loaded = request(ids).orElse(Map.of());
+            ids.forEach(id -> views.put(id, loaded.getOrDefault(id, 0L)));
+            return views;
+        }
+        long now = System.nanoTime();
+        List<Long> missing = new ArrayList<>();
+        List<Long> stale = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(eventIds)) {
+            CachedViews cached = cache.get(id);
+            long age = cached != null ? now - cached.loadedAt() : Long.MAX_VALUE;
+            if (age >= maxStaleNanos) {
+                missing.add(id);
+                misses.increment();
+                continue;
+            }
+            views.put(id, cached.views());
+            if (age >= ttlNanos) {
+                stale.add(id);
+                staleHits.increment();
+                staleness.record(TimeUnit.NANOSECONDS.toMillis(age));
+            } else {
+                hits.increment();
+            }
+        }
+        if (!stale.isEmpty()) {
+            refreshInBackground(stale);
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, CompletableFuture<Long>> futures = new HashMap<>();
+            Map<Long, CompletableFuture<Long>> owned = claim(missing, futures);
+            if (!owned.isEmpty()) {
+                load(owned, "sync");
+            }
+            futures.forEach((id, future) -> views.put(id, future.join()));
+        }
+        return views;
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    // Занимает свободные ключи (их загрузит вызывающий) и собирает ожидания по всем ключам в futures
+    private Map<Long, CompletableFuture<Long>> claim(Collection<Long> ids, Map<Long, CompletableFuture<Long>> futures) {
+        Map<Long, CompletableFuture<Long>> owned = new HashMap<>();
+        for (Long id : ids) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            CompletableFuture<Long> running = inFlight.putIfAbsent(id, future);
+            if (running == null) {
+                owned.put(id, future);
+                futures.put(id, future);
+            } else {
+                futures.put(id, running);
+            }
+        }
+        return owned;
+    }
+
+    private void load(Map<Long, CompletableFuture<Long>> owned, String mode) {
+        long start = System.nanoTime();
+        Optional<Map<Long, Long>> loaded = Optional.empty();
+        try {
+            loaded = request(List.copyOf(owned.keySet()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to load views of {} events: {}", owned.size(), e.getMessage());
+        } finally {
+            long loadedAt = System.nanoTime();
+            for (Map.Entry<Long, CompletableFuture<Long>> entry : owned.entrySet()) {
+                Long id = entry.getKey();
+                long value;
+                if (loaded.isPresent()) {
+                    value = loaded.get().getOrDefault(id, 0L);
+                    cache.put(id, new CachedViews(value, loadedAt));
+                } else {
+                    CachedViews cached = cache.get(id);
+                    value = cached != null ? cached.views() : 0L;
+                }
+                inFlight.remove(id, entry.getValue());
+                entry.getValue().complete(value);
+            }
+            Timer.builder("events.views.cache.refresh")
+                    .tag("mode", mode)
+                    .tag("outcome", loaded.isPresent() ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(loadedAt - start, TimeUnit.NANOSECONDS);
+            evictIfFull();
+        }
+    }
+
+    private void refreshInBackground(List<Long> ids) {
+        List<Long> queued = ids.stream()
+                .filter(refreshing::add)
+                .toList();
+        if (queued.isEmpty()) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    Map<Long, CompletableFuture<Long>> owned = claim(queued, new HashMap<>());
+                    if (!owned.isEmpty()) {
+                        load(owned, "background");
+                    }
+                } finally {
+                    queued.forEach(refreshing::remove);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.forEach(refreshing::remove);
+            log.debug("Refresh queue is full, {} stale view counts are kept", queued.size());
+        }
+    }
+
+    private Optional<Map<Long, Long>> request(List<Long> ids) {
+        Map<String, Long> idsByUri = new HashMap<>();
+        ids.forEach(id -> idsByUri.put("/events/" + id, id));
+        LocalDateTime now = LocalDateTime.now();
+        return statClient.findViewStats(now.minus(WINDOW), now, List.copyOf(idsByUri.keySet()), true, false)
+                .map(stats -> {
+                    Map<Long, Long> views = new HashMap<>();
+                    for (ViewStats stat : stats) {
+                        Long id = idsByUri.get(stat.getUri());
+                        if (id != null) {
+                            views.merge(id, stat.getHits(), Long::sum);
+                        }
+                    }
+                    return views;
+                });
+    }
+
+    private void evictIfFull() {
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        cache.values().removeIf(cached -> now - cached.loadedAt() >= maxStaleNanos);
+        Iterator<Long> keys = cache.keySet().iterator();
+        while (cache.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+-- Полнотекстовый поиск по событиям. Вектор взвешен: title — A, annotation — B, description — C.
+-- Конфигурация russian стемит кириллицу русским стеммером, а слова латиницей — английским.
+-- Столбец генерируемый: PostgreSQL пересчитывает его сам при вставке и изменении строки.
+-- На существующей таблице ADD COLUMN один раз переписывает её; запускать вне пиковой нагрузки.
+ALTER TABLE events ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('russian', coalesce(annotation, '')), 'B') ||
+    setweight(to_tsvector('russian', coalesce(description, '')), 'C')
+) STORED;
+
+CREATE INDEX IF NOT EXISTS events_search_vector_idx ON events USING GIN (search_vector);
@@ -26,9 +26,19 @@ CREATE TABLE IF NOT EXISTS events(
     request_moderation BOOLEAN,
     title varchar(120),
     lat FLOAT NOT NULL,
-    lon FLOAT NOT NULL
+    lon FLOAT NOT NULL,
+    views BIGINT NOT NULL DEFAULT 0
 );
 
+-- Синхронизируемые из stat-server просмотры (EventViewSyncService); в существующую таблицу столбец
+-- добавляется без переписывания строк
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+
+-- Ключ постраничного вывода по курсору (sort=EVENT_DATE): дата события, при равенстве — id
+CREATE INDEX IF NOT EXISTS events_event_date_id_idx ON events (event_date, event_id);
+-- sort=VIEWS (обратным проходом) и выборка событий с ненулевыми просмотрами для синхронизации
+CREATE INDEX IF NOT EXISTS events_views_id_idx ON events (views, event_id);
+
 CREATE TABLE IF NOT EXISTS participation_requests(
     request_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     event_id BIGINT NOT NULL references events(event_id),
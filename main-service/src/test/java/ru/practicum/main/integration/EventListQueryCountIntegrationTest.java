@@ -0,0 +1,138 @@
+package ru.practicum.main.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.enums.State;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Списки событий читаются проекцией: один select с join категории и инициатора и ни одной загруженной сущности
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_list_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "events.views.cache.enabled=false"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventListQueryCountIntegrationTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0).plusDays(10);
+    private static final int EVENTS = 4;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private StatClient statClient;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = new User();
+        user.setName("Initiator");
+        user.setEmail("initiator@example.com");
+        userId = userRepository.save(user).getId();
+        // у каждого события своя категория: загрузка сущностей дала бы по select на каждую
+        for (int i = 0; i < EVENTS; i++) {
+            Category category = categoryRepository.save(Category.builder().name("Category " + i).build());
+            eventRepository.save(Event.builder()
+                    .title("Event " + i)
+                    .annotation("Annotation")
+                    .description("Description")
+                    .category(category)
+                    .initiator(user)
+                    .createdOn(BASE.minusDays(20).plusHours(i))
+                    .eventDate(BASE.plusDays(i))
+                    .state(State.PUBLISHED)
+                    .paid(false)
+                    .confirmedRequests(0)
+                    .participantLimit(0)
+                    .requestModeration(true)
+                    .lat(55.75f)
+                    .lon(37.62f)
+                    .build());
+        }
+    }
+
+    @Test
+    public void testPublicListByOffsetUsesSingleQuery() {
+        JsonNode events = get("/events?sort=EVENT_DATE&from=0&size=10", 1);
+        assertEquals(EVENTS, events.size());
+        assertEquals("Category 0", events.get(0).get("category").get("name").asText());
+        assertEquals("Initiator", events.get(0).get("initiator").get("name").asText());
+    }
+
+    // from — число пропущенных событий, а не номер страницы: некратное size смещение не округляется
+    @Test
+    public void testPublicListSkipsExactlyFromEvents() {
+        JsonNode events = get("/events?sort=EVENT_DATE&from=1&size=2", 1);
+        assertEquals(2, events.size());
+        assertEquals("Event 1", events.get(0).get("title").asText());
+        assertEquals("Event 2", events.get(1).get("title").asText());
+    }
+
+    @Test
+    public void testPublicListByCursorUsesSingleQuery() {
+        JsonNode events = get("/events?sort=VIEWS&size=2&cursor=", 1);
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void testAdminListUsesSingleQuery() {
+        JsonNode events = get("/admin/events?from=0&size=10", 1);
+        assertEquals(EVENTS, events.size());
+        assertEquals("Description", events.get(0).get("description").asText());
+        assertEquals(55.75, events.get(0).get("location").get("lat").asDouble(), 0.001);
+    }
+
+    // второй запрос — проверка существования пользователя
+    @Test
+    public void testInitiatorListUsesQueryAndUserCheck() {
+        JsonNode events = get("/users/" + userId + "/events?from=0&size=10", 2);
+        assertEquals(EVENTS, events.size());
+        assertEquals("Category 3", events.get(EVENTS - 1).get("category").get("name").asText());
+    }
+
+    private JsonNode get(String url, long expectedStatements) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(expectedStatements, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        return response.getBody();
+    }
+}
@@ -0,0 +1,238 @@
+package ru.practicum.main.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.dtos.event.UpdateEventAdminRequest;
+import ru.practicum.enums.State;
+import ru.practicum.enums.StateAction;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.RequestRepository;
+import ru.practicum.repository.UserRepository;
+import ru.practicum.service.UserRequest.UserRequestService;
+import ru.practicum.service.event.EventService;
+import ru.practicum.service.search.EventSearchCache;
+import ru.practicum.service.search.EventSearchKey;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_search_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "events.search.cache.enabled=true",
+        "events.search.cache.max-entries=3",
+        "events.views.cache.enabled=false"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventSearchCacheIntegrationTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0).plusDays(10);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UserRequestService userRequestService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EventSearchCache eventSearchCache;
+
+    @MockBean
+    private StatClient statClient;
+
+    private User initiator;
+    private Category concerts;
+    private Category lectures;
+
+    @BeforeEach
+    public void setUp() {
+        requestRepository.deleteAll();
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        initiator = new User();
+        initiator.setName("Initiator");
+        initiator.setEmail("initiator@example.com");
+        userRepository.save(initiator);
+        // категории новые в каждом тесте, поэтому и ключи фильтров по ним не пересекаются с прошлыми тестами
+        concerts = categoryRepository.save(Category.builder().name("Concerts").build());
+        lectures = categoryRepository.save(Category.builder().name("Lectures").build());
+    }
+
+    @Test
+    public void testRepeatedFilterIsServedFromCacheWithFreshEventData() {
+        Event event = save(concerts, State.PUBLISHED, 1);
+        String url = "/events?categories=" + concerts.getId() + "&sort=EVENT_DATE";
+        double hits = requests("hit");
+        double misses = requests("miss");
+
+        assertEquals(List.of(event.getId()), ids(url));
+        assertEquals(misses + 1, requests("miss"));
+
+        // кэшируются только id: изменённые поля события видны и при попадании в кэш
+        event.setTitle("Renamed");
+        eventRepository.save(event);
+        JsonNode events = get(url);
+        assertEquals("Renamed", events.get(0).get("title").asText());
+        assertEquals(hits + 1, requests("hit"));
+    }
+
+    @Test
+    public void testAdminPublishInvalidatesOnlyFiltersOfItsCategory() {
+        Event pending = save(concerts, State.PENDING, 2);
+        save(lectures, State.PUBLISHED, 3);
+        String byConcerts = "/events?categories=" + concerts.getId() + "&sort=EVENT_DATE";
+        String byLectures = "/events?categories=" + lectures.getId() + "&sort=EVENT_DATE";
+        ids(byConcerts);
+        ids(byLectures);
+        double invalidated = evictions("invalidated");
+
+        UpdateEventAdminRequest publish = new UpdateEventAdminRequest();
+        publish.setStateAction(StateAction.PUBLISH_EVENT);
+        eventService.updateEventOfAdmin(pending.getId(), publish);
+        assertEquals(invalidated + 1, evictions("invalidated"));
+
+        double misses = requests("miss");
+        double hits = requests("hit");
+        ids(byLectures);
+        assertEquals(hits + 1, requests("hit"));
+        ids(byConcerts);
+        assertEquals(misses + 1, requests("miss"));
+    }
+
+    @Test
+    public void testConfirmedRequestInvalidatesOnlyAvailabilityFilters() {
+        Event event = save(concerts, State.PUBLISHED, 4);
+        event.setConfirmedRequests(1);
+        event.setParticipantLimit(10);
+        event.setRequestModeration(false);
+        eventRepository.save(event);
+        User participant = new User();
+        participant.setName("Participant");
+        participant.setEmail("participant@example.com");
+        userRepository.save(participant);
+        String all = "/events?categories=" + concerts.getId() + "&sort=EVENT_DATE";
+        String available = all + "&onlyAvailable=true";
+        ids(all);
+        ids(available);
+
+        userRequestService.createUserRequest(participant.getId(), event.getId());
+
+        double misses = requests("miss");
+        double hits = requests("hit");
+        ids(all);
+        assertEquals(hits + 1, requests("hit"));
+        ids(available);
+        assertEquals(misses + 1, requests("miss"));
+    }
+
+    @Test
+    public void testLeastRecentlyReadFilterIsEvictedWhenFull() {
+        save(concerts, State.PUBLISHED, 5);
+        List<String> urls = new ArrayList<>();
+        for (int size = 1; size <= 4; size++) {
+            urls.add("/events?categories=" + concerts.getId() + "&size=" + size);
+        }
+        ids(urls.get(0));
+        ids(urls.get(1));
+        ids(urls.get(2));
+        // в кэше ровно три записи этого теста; чтение делает первую самой свежей
+        double evicted = evictions("size");
+        ids(urls.get(0));
+        ids(urls.get(3));
+        assertEquals(evicted + 1, evictions("size"));
+
+        double misses = requests("miss");
+        ids(urls.get(0));
+        assertEquals(misses, requests("miss"));
+        ids(urls.get(1));
+        assertEquals(misses + 1, requests("miss"));
+    }
+
+    @Test
+    public void testResultReadBeforeUnrelatedInvalidationIsCached() {
+        EventSearchKey byConcerts = EventSearchKey.of(null, List.of(concerts.getId()), null, null, null,
+                false, "EVENT_DATE", 0, 10);
+        EventSearchKey byLectures = EventSearchKey.of(null, List.of(lectures.getId()), null, null, null,
+                false, "EVENT_DATE", 0, 10);
+        long generation = eventSearchCache.generation();
+        double outdated = meterRegistry.get("events.search.cache.puts").tag("result", "outdated").counter().count();
+
+        // пока шли запросы к БД, изменилось событие в концертах
+        eventSearchCache.invalidate(concerts.getId(), BASE.plusDays(6));
+        eventSearchCache.put(byLectures, List.of(1L), generation);
+        eventSearchCache.put(byConcerts, List.of(2L), generation);
+
+        assertEquals(List.of(1L), eventSearchCache.get(byLectures).orElseThrow());
+        assertTrue(eventSearchCache.get(byConcerts).isEmpty());
+        assertEquals(outdated + 1, meterRegistry.get("events.search.cache.puts").tag("result", "outdated")
+                .counter().count());
+    }
+
+    private Event save(Category category, State state, int days) {
+        return eventRepository.save(Event.builder()
+                .title("Event in " + days + " days")
+                .annotation("Annotation")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(BASE.minusDays(20))
+                .eventDate(BASE.plusDays(days))
+                .state(state)
+                .paid(false)
+                .confirmedRequests(0)
+                .participantLimit(0)
+                .requestModeration(true)
+                .lat(0f)
+                .lon(0f)
+                .build());
+    }
+
+    private List<Long> ids(String url) {
+        List<Long> ids = new ArrayList<>();
+        get(url).forEach(event -> ids.add(event.get("id").asLong()));
+        return ids;
+    }
+
+    private JsonNode get(String url) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        return response.getBody();
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("events.search.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double evictions(String cause) {
+        return meterRegistry.get("events.search.cache.evictions").tag("cause", cause).counter().count();
+    }
+}
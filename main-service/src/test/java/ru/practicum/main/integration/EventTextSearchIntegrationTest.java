@@ -0,0 +1,154 @@
+package ru.practicum.main.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.enums.State;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// В H2 text ищется подстрокой без учёта регистра в title, annotation и description — как и в PostgreSQL,
+// где description входит в search_vector с весом C; RELEVANCE ставит совпадение в title выше annotation,
+// а annotation — выше description
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_text_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventTextSearchIntegrationTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0).plusDays(10);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @MockBean
+    private StatClient statClient;
+
+    private User initiator;
+    private Category concerts;
+    private Category lectures;
+    private Event inTitle;
+    private Event inAnnotation;
+    private Event inDescription;
+    private Event inTitleFull;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        initiator = new User();
+        initiator.setName("Initiator");
+        initiator.setEmail("initiator@example.com");
+        userRepository.save(initiator);
+        concerts = categoryRepository.save(Category.builder().name("Concerts").build());
+        lectures = categoryRepository.save(Category.builder().name("Lectures").build());
+
+        inTitle = save("Jazz night", "Live music", "Saxophone quartet", concerts, false, 1, 10, 1);
+        inAnnotation = save("Rock fest", "Jazz and rock", "Three stages", concerts, true, 1, 10, 2);
+        inDescription = save("Evening lecture", "History of music", "From blues to JAZZ", lectures, false, 1, 10, 3);
+        inTitleFull = save("Jazz workshop", "Improvisation", "Bring an instrument", concerts, false, 5, 5, 4);
+        save("Poetry", "Reading", "Verses", concerts, false, 0, 0, 5);
+    }
+
+    @Test
+    public void testTextMatchesTitleAnnotationAndDescriptionIgnoringCase() {
+        assertEquals(ids(inTitle, inAnnotation, inDescription, inTitleFull), ids("/events?text=jAzZ&sort=EVENT_DATE"));
+        assertEquals(List.of(), ids("/events?text=opera&sort=EVENT_DATE"));
+    }
+
+    @Test
+    public void testTextIsCombinedWithCategoryPaidAndAvailabilityFilters() {
+        assertEquals(ids(inTitle, inAnnotation, inTitleFull),
+                ids("/events?text=jazz&categories=" + concerts.getId() + "&sort=EVENT_DATE"));
+        assertEquals(ids(inDescription), ids("/events?text=jazz&categories=" + lectures.getId()));
+        assertEquals(ids(inAnnotation), ids("/events?text=jazz&paid=true"));
+        assertEquals(ids(inTitle, inDescription, inTitleFull), ids("/events?text=jazz&paid=false&sort=EVENT_DATE"));
+        // у inTitleFull все места заняты
+        assertEquals(ids(inTitle), ids("/events?text=jazz&categories=" + concerts.getId()
+                + "&paid=false&onlyAvailable=true"));
+    }
+
+    @Test
+    public void testRelevanceRanksTitleAboveAnnotationAboveDescription() {
+        // внутри одинаковой релевантности — по id
+        assertEquals(ids(inTitle, inTitleFull, inAnnotation, inDescription), ids("/events?text=jazz&sort=RELEVANCE"));
+        assertEquals(ids(inTitle, inTitleFull), ids("/events?text=jazz&sort=RELEVANCE&size=2"));
+        assertEquals(ids(inAnnotation, inDescription), ids("/events?text=jazz&sort=RELEVANCE&from=2&size=2"));
+        assertEquals(ids(inTitle, inAnnotation), ids("/events?text=jazz&sort=RELEVANCE&onlyAvailable=true"
+                + "&categories=" + concerts.getId()));
+    }
+
+    @Test
+    public void testRelevanceWithoutTextIsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, status("/events?sort=RELEVANCE"));
+        assertEquals(HttpStatus.BAD_REQUEST, status("/events?text={text}&sort=RELEVANCE", " "));
+        assertEquals(HttpStatus.BAD_REQUEST, status("/events?text=jazz&sort=RELEVANCE&cursor="));
+    }
+
+    private Event save(String title, String annotation, String description, Category category, boolean paid,
+                       int confirmed, int limit, int days) {
+        return eventRepository.save(Event.builder()
+                .title(title)
+                .annotation(annotation)
+                .description(description)
+                .category(category)
+                .initiator(initiator)
+                .createdOn(BASE.minusDays(20))
+                .eventDate(BASE.plusDays(days))
+                .state(State.PUBLISHED)
+                .paid(paid)
+                .confirmedRequests(confirmed)
+                .participantLimit(limit)
+                .requestModeration(true)
+                .lat(0f)
+                .lon(0f)
+                .build());
+    }
+
+    private List<Long> ids(Event... events) {
+        List<Long> ids = new ArrayList<>();
+        for (Event event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    private List<Long> ids(String url) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        List<Long> ids = new ArrayList<>();
+        response.getBody().forEach(event -> ids.add(event.get("id").asLong()));
+        return ids;
+    }
+
+    private HttpStatus status(String url, Object... uriVariables) {
+        return HttpStatus.valueOf(restTemplate.getForEntity(url, String.class, uriVariables).getStatusCode().value());
+    }
+}
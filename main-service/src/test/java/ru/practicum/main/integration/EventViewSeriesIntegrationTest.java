@@ -0,0 +1,135 @@
+package ru.practicum.main.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dtos.event.EventViewSeriesDto;
+import ru.practicum.enums.State;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+import ru.practicum.transport.DependencyUnavailableException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Предел рядов совпадает с stat-server: период по умолчанию укорачивается, явный слишком длинный — 400
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_series_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.series.max-buckets=24"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventViewSeriesIntegrationTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @MockBean
+    private StatClient statClient;
+
+    private User initiator;
+    private Event event;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        initiator = new User();
+        initiator.setName("Initiator");
+        initiator.setEmail("initiator@example.com");
+        userRepository.save(initiator);
+        Category category = categoryRepository.save(Category.builder().name("Series").build());
+        LocalDateTime published = LocalDateTime.now().withNano(0).minusDays(30);
+        event = eventRepository.save(Event.builder()
+                .title("Published month ago")
+                .annotation("Annotation")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(published.minusDays(1))
+                .publishedOn(published)
+                .eventDate(published.plusDays(60))
+                .state(State.PUBLISHED)
+                .paid(false)
+                .confirmedRequests(0)
+                .participantLimit(0)
+                .requestModeration(true)
+                .lat(0f)
+                .lon(0f)
+                .build());
+        clearInvocations(statClient);
+    }
+
+    @Test
+    public void testDefaultRangeIsClampedToMaxBuckets() {
+        when(statClient.getViewSeries(any(), any(), anyList(), eq(SeriesInterval.HOUR))).thenReturn(List.of());
+
+        ResponseEntity<EventViewSeriesDto> response = restTemplate.getForEntity(
+                "/users/{userId}/events/{eventId}/views?interval=HOUR", EventViewSeriesDto.class,
+                initiator.getId(), event.getId());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> to = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(statClient).getViewSeries(from.capture(), to.capture(), eq(List.of("/events/" + event.getId())),
+                eq(SeriesInterval.HOUR));
+        // 24 часовых интервала, как их считает stat-server
+        assertEquals(to.getValue().plusSeconds(1).minusHours(23), from.getValue());
+    }
+
+    @Test
+    public void testExplicitRangeOverMaxBucketsIsRejected() {
+        LocalDateTime end = LocalDateTime.now().withNano(0);
+
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "/users/{userId}/events/{eventId}/views?start={start}&end={end}&interval=HOUR", String.class,
+                initiator.getId(), event.getId(), end.minusDays(2).format(FORMATTER), end.format(FORMATTER));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(statClient, never()).getViewSeries(any(), any(), anyList(), any());
+    }
+
+    @Test
+    public void testStatServerFailureIsNotReturnedAsEmptySeries() {
+        when(statClient.getViewSeries(any(), any(), anyList(), any()))
+                .thenThrow(new DependencyUnavailableException("stat-server series failed: 503"));
+
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "/users/{userId}/events/{eventId}/views?interval=DAY", String.class,
+                initiator.getId(), event.getId());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertFalse(response.getBody().contains("\"points\""));
+    }
+}
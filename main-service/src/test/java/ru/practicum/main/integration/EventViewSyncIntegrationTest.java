@@ -0,0 +1,211 @@
+package ru.practicum.main.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.controller.publics.EventsPublicController;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.State;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+import ru.practicum.service.views.EventViewSyncService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_views_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "events.views.sync.batch-size=2",
+        "events.views.cache.enabled=false"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventViewSyncIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0).plusDays(10);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private EventViewSyncService eventViewSyncService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private StatClient statClient;
+
+    private final Map<String, Long> views = new ConcurrentHashMap<>();
+    private List<Long> ids;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        user = new User();
+        user.setName("Initiator");
+        user.setEmail("initiator@example.com");
+        userRepository.save(user);
+        Category category = categoryRepository.save(Category.builder().name("Concerts").build());
+        ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(eventRepository.save(Event.builder()
+                    .title("Event " + i)
+                    .annotation("Annotation")
+                    .category(category)
+                    .initiator(user)
+                    .createdOn(BASE.minusDays(20))
+                    .eventDate(BASE.plusDays(i))
+                    .state(State.PUBLISHED)
+                    .paid(false)
+                    .confirmedRequests(0)
+                    .participantLimit(0)
+                    .lat(0f)
+                    .lon(0f)
+                    .build()).getId());
+        }
+
+        views.clear();
+        when(statClient.findViewStats(any(), any(), isNull(), eq(false), anyBoolean())).thenAnswer(invocation -> {
+            List<ViewStats> touched = new ArrayList<>();
+            touched.add(new ViewStats(APP, "/events", 100L));
+            views.forEach((uri, hits) -> touched.add(new ViewStats(APP, uri, hits)));
+            return Optional.of(touched);
+        });
+        when(statClient.findViewStats(any(), any(), anyList(), eq(true), anyBoolean())).thenAnswer(invocation -> {
+            List<String> uris = invocation.getArgument(2);
+            return Optional.of(uris.stream()
+                    .filter(views::containsKey)
+                    .map(uri -> new ViewStats(APP, uri, views.get(uri)))
+                    .toList());
+        });
+    }
+
+    @Test
+    public void testSortByViewsPagesThroughStoredCountsInDatabase() {
+        setViews(0, 5);
+        setViews(1, 30);
+        setViews(3, 12);
+        setViews(4, 30);
+        assertEquals(4, eventViewSyncService.sync());
+        assertEquals(30L, eventRepository.findById(ids.get(1)).orElseThrow().getSyncedViews());
+        assertEquals(0L, eventRepository.findById(ids.get(2)).orElseThrow().getSyncedViews());
+
+        // при равных просмотрах впереди больший id
+        List<Long> expected = List.of(ids.get(4), ids.get(1), ids.get(3), ids.get(0), ids.get(2));
+        List<Long> byOffset = new ArrayList<>();
+        for (int from = 0; from < 6; from += 2) {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+                    "/events?sort=VIEWS&from={from}&size=2", JsonNode.class, from);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertNotNull(response.getBody());
+            response.getBody().forEach(event -> byOffset.add(event.get("id").asLong()));
+        }
+        assertEquals(expected, byOffset);
+
+        List<Long> byCursor = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+                    "/events?sort=VIEWS&size=2&cursor={cursor}", JsonNode.class, cursor);
+            assertNotNull(response.getBody());
+            response.getBody().forEach(event -> byCursor.add(event.get("id").asLong()));
+            cursor = response.getHeaders().getFirst(EventsPublicController.NEXT_CURSOR_HEADER);
+        }
+        assertEquals(expected, byCursor);
+    }
+
+    @Test
+    public void testViewsLeavingWindowAreResetWithoutNewHits() {
+        setViews(1, 7);
+        eventViewSyncService.sync();
+        assertEquals(7L, eventRepository.findById(ids.get(1)).orElseThrow().getSyncedViews());
+        double refreshed = meterRegistry.get("events.views.sync.events").counter().count();
+
+        views.clear();
+        assertEquals(1, eventViewSyncService.sync());
+        assertEquals(0L, eventRepository.findById(ids.get(1)).orElseThrow().getSyncedViews());
+        assertEquals(refreshed + 1, meterRegistry.get("events.views.sync.events").counter().count());
+    }
+
+    @Test
+    public void testNextSyncLooksForHitsLagMarginBeforePreviousOne() {
+        eventViewSyncService.sync();
+        LocalDateTime synced = LocalDateTime.now();
+        clearInvocations(statClient);
+
+        // хит с временем до прошлой синхронизации, дошедший до stat-server после неё
+        setViews(2, 1);
+        eventViewSyncService.sync();
+
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(statClient).findViewStats(from.capture(), any(), isNull(), eq(false), anyBoolean());
+        assertTrue(!from.getValue().isAfter(synced.minusMinutes(2)), from.getValue().toString());
+        assertEquals(1L, eventRepository.findById(ids.get(2)).orElseThrow().getSyncedViews());
+    }
+
+    @Test
+    public void testAllEventListsShowViewsOfOneSource() {
+        setViews(0, 5);
+        eventViewSyncService.sync();
+        // просмотры после синхронизации: в events.views их ещё нет
+        setViews(0, 9);
+
+        assertEquals(9L, views("/users/" + user.getId() + "/events?from=0&size=10"));
+        assertEquals(9L, views("/admin/events?from=0&size=10"));
+        assertEquals(9L, views("/events?sort=EVENT_DATE&size=10"));
+    }
+
+    private long views(String url) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        for (JsonNode event : response.getBody()) {
+            if (event.get("id").asLong() == ids.get(0)) {
+                return event.get("views").asLong();
+            }
+        }
+        throw new AssertionError("Event " + ids.get(0) + " is missing in " + url);
+    }
+
+    private void setViews(int index, long hits) {
+        views.put("/events/" + ids.get(index), hits);
+    }
+}
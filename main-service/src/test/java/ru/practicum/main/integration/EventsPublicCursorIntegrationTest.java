@@ -0,0 +1,131 @@
+package ru.practicum.main.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.controller.publics.EventsPublicController;
+import ru.practicum.enums.State;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm_cursor_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@ContextConfiguration(classes = MainService.class)
+public class EventsPublicCursorIntegrationTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0).plusDays(10);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @MockBean
+    private StatClient statClient;
+
+    private List<Event> events;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = new User();
+        user.setName("Initiator");
+        user.setEmail("initiator@example.com");
+        userRepository.save(user);
+        Category category = categoryRepository.save(Category.builder().name("Concerts").build());
+
+        events = new ArrayList<>();
+        // два события на одну дату: порядок внутри неё задаёт id
+        for (int days : new int[]{3, 1, 2, 1, 5}) {
+            events.add(eventRepository.save(Event.builder()
+                    .title("Event in " + days + " days")
+                    .annotation("Annotation")
+                    .category(category)
+                    .initiator(user)
+                    .createdOn(BASE.minusDays(20))
+                    .eventDate(BASE.plusDays(days))
+                    .state(State.PUBLISHED)
+                    .paid(false)
+                    .confirmedRequests(0)
+                    .participantLimit(0)
+                    .lat(0f)
+                    .lon(0f)
+                    .build()));
+        }
+    }
+
+    @Test
+    public void testCursorWalksEventDateOrderWithoutGapsOrRepeats() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        while (cursor != null) {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+                    "/events?sort=EVENT_DATE&size=2&cursor={cursor}", JsonNode.class, cursor);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertNotNull(response.getBody());
+            response.getBody().forEach(event -> seen.add(event.get("id").asLong()));
+            cursor = response.getHeaders().getFirst(EventsPublicController.NEXT_CURSOR_HEADER);
+            pages++;
+        }
+
+        List<Long> expected = events.stream()
+                .sorted(Comparator.comparing(Event::getEventDate).thenComparing(Event::getId))
+                .map(Event::getId)
+                .toList();
+        assertEquals(3, pages);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void testCursorOfAnotherSortIsRejected() {
+        ResponseEntity<JsonNode> first = restTemplate.getForEntity(
+                "/events?sort=EVENT_DATE&size=2&cursor=", JsonNode.class);
+        String cursor = first.getHeaders().getFirst(EventsPublicController.NEXT_CURSOR_HEADER);
+        assertNotNull(cursor);
+
+        ResponseEntity<String> mismatched = restTemplate.getForEntity(
+                "/events?size=2&cursor={cursor}", String.class, cursor);
+        assertEquals(HttpStatus.BAD_REQUEST, mismatched.getStatusCode());
+        ResponseEntity<String> malformed = restTemplate.getForEntity(
+                "/events?sort=EVENT_DATE&size=2&cursor={cursor}", String.class, "not-a-cursor");
+        assertEquals(HttpStatus.BAD_REQUEST, malformed.getStatusCode());
+    }
+
+    @Test
+    public void testNonPositiveSizeIsRejected() {
+        ResponseEntity<String> cursorMode = restTemplate.getForEntity(
+                "/events?sort=EVENT_DATE&size=0&cursor=", String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, cursorMode.getStatusCode());
+        ResponseEntity<String> offsetMode = restTemplate.getForEntity(
+                "/events?sort=EVENT_DATE&size=-1", String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, offsetMode.getStatusCode());
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.main.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import ru.practicum.MainService;
+import ru.practicum.StatClient;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.service.views.ViewCountService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "events.views.cache.ttl-ms=200",
+        "events.views.cache.max-stale-ms=60000"
+})
+@ContextConfiguration(classes = MainService.class)
+public class ViewCountServiceIntegrationTest {
+    private static final String APP = "ewm-main-service";
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @MockBean
+    private StatClient statClient;
+
+    @Test
+    public void testConcurrentMissesAreCoalescedIntoOneStatsCall() throws Exception {
+        when(statClient.findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return Optional.of(List.of(new ViewStats(APP, "/events/101", 3L), new ViewStats(APP, "/events/102", 4L)));
+        });
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<Long, Long>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return viewCountService.getViews(List.of(101L, 102L, 103L));
+                }));
+            }
+            for (Future<Map<Long, Long>> result : results) {
+                assertEquals(Map.of(101L, 3L, 102L, 4L, 103L, 0L), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(statClient, times(1)).findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testStaleCountIsServedWhileRefreshedAndKeptOnFailure() throws InterruptedException {
+        when(statClient.findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean()))
+                .thenReturn(Optional.of(List.of(new ViewStats(APP, "/events/201", 5L))));
+        assertEquals(5L, viewCountService.getViews(List.of(201L)).get(201L));
+
+        when(statClient.findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean()))
+                .thenReturn(Optional.of(List.of(new ViewStats(APP, "/events/201", 7L))));
+        Thread.sleep(300);
+        assertEquals(5L, viewCountService.getViews(List.of(201L)).get(201L));
+        verify(statClient, timeout(2000).times(2)).findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean());
+        Thread.sleep(50);
+        assertEquals(7L, viewCountService.getViews(List.of(201L)).get(201L));
+
+        // stat-server недоступен: фоновое обновление не затирает известное значение нулём
+        when(statClient.findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean()))
+                .thenReturn(Optional.empty());
+        Thread.sleep(300);
+        assertEquals(7L, viewCountService.getViews(List.of(201L)).get(201L));
+        verify(statClient, timeout(2000).times(3)).findViewStats(any(), any(), anyList(), anyBoolean(), anyBoolean());
+        Thread.sleep(50);
+        assertEquals(7L, viewCountService.getViews(List.of(201L)).get(201L));
+    }
+}
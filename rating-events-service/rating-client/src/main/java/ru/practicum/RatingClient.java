@@ -1,66 +1,80 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClient;
+import ru.practicum.transport.ResilientTransport;
+import ru.practicum.transport.TransportSettings;
 
+// Оценки при недоступном rating-service не принимаются (DependencyUnavailableException),
+// а рейтинг отдаётся как null — страница события от этого не ломается
 @Component
 @Slf4j
 public class RatingClient {
 
-    private final RestClient client;
+    private final ResilientTransport transport;
 
-    public RatingClient(@Value("${rating.service.url}") String serverUrl) {
-        this.client = RestClient.create(serverUrl);
+    public RatingClient(@Value("${rating.service.url}") String serverUrl,
+                        MeterRegistry meterRegistry,
+                        Environment environment) {
+        this.transport = new ResilientTransport("rating-service", serverUrl,
+                TransportSettings.from(environment, "rating.service.transport"), meterRegistry);
         log.info("Rating-service run URL: {}", serverUrl);
     }
 
     public void likeEvent(Long eventId, Long userId) {
         LikeRequestDto request = new LikeRequestDto(eventId, userId);
-        client.post()
+        transport.execute("like", client -> client.post()
                 .uri("/events/{eventId}/like", eventId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(request)
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
     }
 
     public void unlikeEvent(Long eventId, Long userId) {
-        client.delete()
+        transport.execute("unlike", client -> client.delete()
                 .uri(uriBuilder -> uriBuilder
                         .path("/events/{eventId}/like")
                         .queryParam("userId", userId)
                         .build(eventId))
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
     }
 
     public void dislikeEvent(Long eventId, Long userId) {
         DislikeRequestDto request = new DislikeRequestDto(eventId, userId);
-        client.post()
+        transport.execute("dislike", client -> client.post()
                 .uri("/events/{eventId}/dislike", eventId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(request)
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
     }
 
     public void undislikeEvent(Long eventId, Long userId) {
-        client.delete()
+        transport.execute("undislike", client -> client.delete()
                 .uri(uriBuilder -> uriBuilder
                         .path("/events/{eventId}/dislike")
                         .queryParam("userId", userId)
                         .build(eventId))
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
     }
 
     public RatingResponseDto totalRating(Long eventId) {
-        return client.get()
+        return transport.call("rating", client -> client.get()
                 .uri("/events/{eventId}/rating", eventId)
                 .retrieve()
-                .body(RatingResponseDto.class);
+                .body(RatingResponseDto.class), () -> null);
     }
-}
\ No newline at end of file
+
+    @PreDestroy
+    public void close() {
+        transport.close();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Те же аргументы, что у org.openjdk.jmh.Main, но результат по умолчанию пишется в JSON (jmh-result.json),
+// чтобы прогоны можно было сравнивать с сохранённым baseline
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .resultFormat(options.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(options.getResult().orElse("jmh-result.json"))
+                .build())
+                .run();
+    }
+}
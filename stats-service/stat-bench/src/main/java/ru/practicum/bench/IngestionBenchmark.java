@@ -0,0 +1,49 @@
+package ru.practicum.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Запись через EndpointHitService: сырая строка, роллапы, скетчи и окно в памяти — всё, что делает /hit и /hits.
+// База растёт по ходу замера, поэтому сравнивать стоит прогоны с одинаковыми настройками итераций.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestionBenchmark {
+    private final Random random = new Random();
+
+    @Param({"500"})
+    public int batchSize;
+
+    @Benchmark
+    public void saveStat(StatsDatabase database) {
+        database.endpointHitService.saveStat(database.hit(random, LocalDateTime.now()));
+    }
+
+    @Benchmark
+    public void saveStats(StatsDatabase database) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(database.hit(random, now));
+        }
+        database.endpointHitService.saveStats(batch);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitFrame;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.EndpointHitMapper;
+import ru.practicum.model.mapper.HitFrameReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Пачка /hits в JSON против той же пачки в HitFrame. decode* — только разбор тела до сущностей (то, что отличает
+// форматы), save* — разбор и запись через EndpointHitService. Одна операция — пачка из batchSize хитов.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestionProtocolBenchmark {
+    private static final TypeReference<List<EndpointHitDto>> HITS = new TypeReference<>() {
+    };
+
+    @Param({"500"})
+    public int batchSize;
+
+    private byte[] json;
+    private byte[] frame;
+
+    @Setup(Level.Trial)
+    public void encode(StatsDatabase database) throws IOException {
+        Random random = new Random(7);
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(database.hit(random, now));
+        }
+        json = database.objectMapper.writeValueAsBytes(batch);
+        frame = HitFrame.encode(batch);
+    }
+
+    @Benchmark
+    public List<EndpointHit> decodeJson(StatsDatabase database) throws IOException {
+        return toEntities(database, readJson(database));
+    }
+
+    @Benchmark
+    public List<EndpointHit> decodeFrame(StatsDatabase database) {
+        return HitFrameReader.read(ByteBuffer.wrap(frame), database.dictionaryService);
+    }
+
+    @Benchmark
+    public void saveJson(StatsDatabase database) throws IOException {
+        database.endpointHitService.saveStats(readJson(database));
+    }
+
+    @Benchmark
+    public void saveFrame(StatsDatabase database) {
+        database.endpointHitService.saveFrames(ByteBuffer.wrap(frame));
+    }
+
+    // Как в контроллере /hits: Jackson и Bean Validation каждого элемента
+    private List<EndpointHitDto> readJson(StatsDatabase database) throws IOException {
+        List<EndpointHitDto> hits = database.objectMapper.readValue(json, HITS);
+        for (EndpointHitDto hit : hits) {
+            if (!database.validator.validate(hit).isEmpty()) {
+                throw new IllegalStateException("Invalid hit in benchmark batch");
+            }
+        }
+        return hits;
+    }
+
+    private List<EndpointHit> toEntities(StatsDatabase database, List<EndpointHitDto> hits) {
+        List<EndpointHit> entities = new ArrayList<>(hits.size());
+        for (EndpointHitDto hit : hits) {
+            entities.add(EndpointHitMapper.toEntity(hit, database.dictionaryService.getApp(hit.getApp()),
+                    database.dictionaryService.getUri(hit.getUri())));
+        }
+        return entities;
+    }
+}
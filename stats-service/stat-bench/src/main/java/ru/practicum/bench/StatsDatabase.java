@@ -0,0 +1,144 @@
+package ru.practicum.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.StatServer;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.EndpointHitMapper;
+import ru.practicum.repository.EndpointHitRepository;
+import ru.practicum.service.DictionaryService;
+import ru.practicum.service.EndpointHitService;
+import ru.practicum.service.RollupService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Контекст stat-server на встроенной H2, засеянный синтетическими хитами за последние DAYS дней.
+// Сырые строки пишутся пачками напрямую, роллапы и скетчи затем строятся тем же rebuild, что и в эксплуатации:
+// запись через сервис держала бы в памяти HLL-скетч на каждый (час, uri) за весь период.
+@State(Scope.Benchmark)
+public class StatsDatabase {
+    static final String APP = "ewm-main-service";
+    static final int DAYS = 30;
+    private static final int SEED_BATCH = 10_000;
+
+    @Param({"100000"})
+    public int hits;
+
+    @Param({"1000"})
+    public int uris;
+
+    @Param({"10000"})
+    public int ips;
+
+    // -p journal=true: saveStat пишет в журнал на диске, а не в H2
+    @Param({"false"})
+    public boolean journal;
+
+    EndpointHitService endpointHitService;
+    DictionaryService dictionaryService;
+    ObjectMapper objectMapper;
+    Validator validator;
+    LocalDateTime now;
+    private ConfigurableApplicationContext context;
+    private Path journalDirectory;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        journalDirectory = Files.createTempDirectory("stat-bench-journal");
+        context = new SpringApplicationBuilder(StatServer.class)
+                .web(WebApplicationType.NONE)
+                // без OPTIMIZE_REUSE_RESULTS H2 не отдаёт повторный запрос из кэша результатов
+                .run("--spring.datasource.url=jdbc:h2:mem:stat_bench;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.sql.init.platform=h2",
+                        "--stats.journal.enabled=" + journal,
+                        "--stats.journal.directory=" + journalDirectory,
+                        "--logging.level.root=WARN");
+        endpointHitService = context.getBean(EndpointHitService.class);
+        dictionaryService = context.getBean(DictionaryService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        validator = context.getBean(Validator.class);
+        now = LocalDateTime.now().withNano(0);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(journalDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    EndpointHitDto hit(Random random, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri(skewed(random, uris)))
+                .ip(ip(random.nextInt(ips)))
+                .timestamp(timestamp)
+                .build();
+    }
+
+    String uri(int index) {
+        return "/events/" + index;
+    }
+
+    private void seed() {
+        // схему H2 строит Hibernate, а покрывающий индекс по uri описан только в schema-postgresql.sql
+        context.getBean(JdbcTemplate.class).execute("CREATE INDEX IF NOT EXISTS stats_uri_timestamp_idx"
+                + " ON stats (uri_id, timestamp, app_id, ip)");
+        EndpointHitRepository repository = context.getBean(EndpointHitRepository.class);
+        TransactionTemplate transactionTemplate =
+                new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        Random random = new Random(42);
+        long spanSeconds = DAYS * 24L * 3600;
+        for (int seeded = 0; seeded < hits; seeded += SEED_BATCH) {
+            List<EndpointHit> batch = new ArrayList<>(SEED_BATCH);
+            for (int i = 0; i < Math.min(SEED_BATCH, hits - seeded); i++) {
+                EndpointHitDto dto = hit(random, now.minusSeconds(1 + (long) (random.nextDouble() * spanSeconds)));
+                batch.add(EndpointHitMapper.toEntity(dto, dictionaryService.getApp(dto.getApp()),
+                        dictionaryService.getUri(dto.getUri())));
+            }
+            transactionTemplate.executeWithoutResult(status -> repository.insertAll(batch));
+        }
+        context.getBean(RollupService.class).rebuild(null, null);
+    }
+
+    // Квадрат равномерной величины: младшие uri заметно популярнее, как у реальных событий
+    private int skewed(Random random, int bound) {
+        double value = random.nextDouble();
+        return (int) (value * value * bound);
+    }
+
+    private String ip(int index) {
+        return "10." + (index >> 16 & 0xff) + "." + (index >> 8 & 0xff) + "." + (index & 0xff);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.ViewStats;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+// Запросы /stats за неделю. Границы диапазона не выровнены по часу и минуте, чтобы план включал
+// часовые и минутные роллапы и сырые края, как у обычных запросов из main-service.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ViewStatsBenchmark {
+    @Param({"false", "true"})
+    public boolean unique;
+
+    @Param({"10"})
+    public int selectedUris;
+
+    private String start;
+    private String end;
+    private List<String> uris;
+
+    @Setup
+    public void prepare(StatsDatabase database) {
+        start = database.now.minusDays(7).plusMinutes(13).plusSeconds(17).format(FORMATTER);
+        end = database.now.minusSeconds(29).format(FORMATTER);
+        Random random = new Random(7);
+        uris = IntStream.range(0, selectedUris)
+                .mapToObj(i -> database.uri(random.nextInt(database.uris)))
+                .toList();
+    }
+
+    @Benchmark
+    public List<ViewStats> allUris(StatsDatabase database) {
+        return database.endpointHitService.getViewStats(start, end, null, unique, false);
+    }
+
+    @Benchmark
+    public List<ViewStats> selectedUris(StatsDatabase database) {
+        return database.endpointHitService.getViewStats(start, end, uris, unique, false);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Очередь хитов с фоновой отправкой пачками, чтобы не держать поток запроса на round trip до stat-server
+@Slf4j
+public class HitBatcher implements AutoCloseable {
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long blockTimeoutMs;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<EndpointHitDto>> sender;
+    private final Counter queueFullDrops;
+    private final Counter sendFailedDrops;
+    private final Counter shipped;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public HitBatcher(int capacity, int batchSize, long lingerMs, long blockTimeoutMs,
+                      OverflowPolicy overflowPolicy, Consumer<List<EndpointHitDto>> sender,
+                      MeterRegistry meterRegistry) {
+        // при нулевом linger ожидание пустой очереди сразу возвращается, и флашер крутится вхолостую
+        if (capacity <= 0 || batchSize <= 0 || lingerMs <= 0) {
+            throw new IllegalArgumentException("Queue capacity, batch size and linger must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.overflowPolicy = overflowPolicy;
+        this.sender = sender;
+        Gauge.builder("stats.client.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be shipped to stat-server")
+                .register(meterRegistry);
+        this.queueFullDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.sendFailedDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "send_failed")
+                .register(meterRegistry);
+        this.shipped = Counter.builder("stats.client.hits.shipped")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::runFlusher, "stat-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void offer(EndpointHitDto hit) {
+        boolean accepted = switch (overflowPolicy) {
+            case DROP_NEWEST -> queue.offer(hit);
+            case DROP_OLDEST -> offerEvictingOldest(hit);
+            case BLOCK -> offerBlocking(hit);
+        };
+        if (!accepted) {
+            queueFullDrops.increment();
+            log.warn("Hit queue is full, dropping hit for uri {}", hit.getUri());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(lingerNanos) + 5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EndpointHitDto> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            ship(rest.subList(i, Math.min(i + batchSize, rest.size())));
+        }
+    }
+
+    private boolean offerEvictingOldest(EndpointHitDto hit) {
+        while (!queue.offer(hit)) {
+            if (queue.poll() != null) {
+                queueFullDrops.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerBlocking(EndpointHitDto hit) {
+        try {
+            return queue.offer(hit, blockTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runFlusher() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHitDto first = queue.poll(lingerNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    EndpointHitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                ship(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // недособранная пачка уже вынута из очереди: отправляется до выхода, иначе пропадёт без учёта
+                ship(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void ship(List<EndpointHitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sender.accept(batch);
+            shipped.increment(batch.size());
+        } catch (Exception e) {
+            sendFailedDrops.increment(batch.size());
+            log.error("Failed to ship {} hits to stat-server: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    public enum OverflowPolicy {
+        DROP_NEWEST, DROP_OLDEST, BLOCK
+    }
+}
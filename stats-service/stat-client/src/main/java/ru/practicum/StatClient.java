@@ -1,66 +1,272 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClient;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.UriBuilder;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitFrame;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsWindowDto;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.transport.DependencyUnavailableException;
+import ru.practicum.transport.ResilientTransport;
+import ru.practicum.transport.TransportSettings;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static ru.practicum.dto.TimeFormat.FORMATTER;
 
 @Slf4j
 @Component
 public class StatClient {
-    private final RestClient client;
+    private static final MediaType HIT_FRAME = MediaType.parseMediaType(HitFrame.CONTENT_TYPE);
 
-    public StatClient(@Value("${stats-service.url}") String serverUrl) {
-        this.client = RestClient.create(serverUrl);
-        log.info("Stat-server run URL: {}", serverUrl);
+    private final ResilientTransport transport;
+    private final HitBatcher batcher;
+    private final ObjectReader viewStatsReader;
+    private final Counter invalidDrops;
+    // сбрасывается, если stat-server не принимает бинарные пачки (старая версия) — дальше пачки идут в JSON
+    private volatile boolean binaryBatches;
+
+    public StatClient(@Value("${stats-service.url}") String serverUrl,
+                      @Value("${stats-service.async.enabled:false}") boolean asyncEnabled,
+                      @Value("${stats-service.async.queue-capacity:10000}") int queueCapacity,
+                      @Value("${stats-service.async.batch-size:500}") int batchSize,
+                      @Value("${stats-service.async.linger-ms:200}") long lingerMs,
+                      @Value("${stats-service.async.block-timeout-ms:50}") long blockTimeoutMs,
+                      @Value("${stats-service.async.overflow-policy:DROP_NEWEST}")
+                      HitBatcher.OverflowPolicy overflowPolicy,
+                      @Value("${stats-service.async.binary:true}") boolean binaryBatches,
+                      MeterRegistry meterRegistry,
+                      ObjectMapper objectMapper,
+                      Environment environment) {
+        this.transport = new ResilientTransport("stat-server", serverUrl,
+                TransportSettings.from(environment, "stats-service.transport"), meterRegistry);
+        this.viewStatsReader = objectMapper.readerFor(ViewStats.class);
+        this.binaryBatches = binaryBatches;
+        this.invalidDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "invalid")
+                .register(meterRegistry);
+        this.batcher = asyncEnabled
+                ? new HitBatcher(queueCapacity, batchSize, lingerMs, blockTimeoutMs, overflowPolicy,
+                this::saveBatch, meterRegistry)
+                : null;
+        log.info("Stat-server run URL: {}, async hits: {}", serverUrl, asyncEnabled);
     }
 
     public void save(String app, HttpServletRequest request) {
         log.info("Saving hit for app: {} , uri {}", app, request.getRequestURI());
         EndpointHitDto dto = getDto(app, request);
+        if (batcher != null) {
+            batcher.offer(dto);
+            return;
+        }
         log.info("Start create request for stat-service");
-        ResponseEntity<Void> response = client.post()
+        // недоступный stat-server не должен ронять запрос пользователя: хит теряется с записью в лог
+        ResponseEntity<Void> response = transport.call("hit", client -> client.post()
                 .uri("/hit")
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(dto)
-                .retrieve().toBodilessEntity();
-        log.info("Saving hit for app: {} with successful code {}", app, response.getStatusCode());
+                .retrieve().toBodilessEntity(), () -> null);
+        if (response != null) {
+            log.info("Saving hit for app: {} with successful code {}", app, response.getStatusCode());
+        }
+    }
+
+    public void saveBatch(List<EndpointHitDto> hits) {
+        log.debug("Shipping batch of {} hits to stat-service", hits.size());
+        if (binaryBatches) {
+            try {
+                transport.execute("hits_binary", client -> client.post()
+                        .uri("/hits")
+                        .contentType(HIT_FRAME)
+                        .body(HitFrame.encode(hits, this::dropInvalid))
+                        .retrieve().toBodilessEntity());
+                return;
+            } catch (HttpClientErrorException.UnsupportedMediaType e) {
+                log.warn("Stat-server does not accept binary hit batches, falling back to JSON");
+                binaryBatches = false;
+            }
+        }
+        transport.execute("hits", client -> client.post()
+                .uri("/hits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(hits)
+                .retrieve().toBodilessEntity());
+    }
+
+    // хит, который нельзя закодировать (пустые поля или IP не литерал), не попадает в бинарную пачку
+    private void dropInvalid(EndpointHitDto hit) {
+        log.warn("Dropping hit for uri {} with invalid ip {}", hit.getUri(), hit.getIp());
+        invalidDrops.increment();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        transport.close();
     }
 
     public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end,
                                         List<String> uris, boolean unique) {
+        return getViewStats(start, end, uris, unique, false);
+    }
+
+    // approximate=true для unique-запросов отдаёт оценку по HLL-скетчам stat-server (ошибка ~1.6%)
+    public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime end,
+                                        List<String> uris, boolean unique, boolean approximate) {
+        return findViewStats(start, end, uris, unique, approximate).orElse(Collections.emptyList());
+    }
+
+    // В отличие от getViewStats отличает ошибку (Optional.empty()) от отсутствия просмотров —
+    // нужно тем, кто кэширует ответ и не должен затереть известные значения нулями
+    public Optional<List<ViewStats>> findViewStats(LocalDateTime start, LocalDateTime end,
+                                                   List<String> uris, boolean unique, boolean approximate) {
         log.info("Getting view stats for uri: {}", uris);
+        List<ViewStats> stats = transport.call("stats", client -> client.get()
+                .uri(uriBuilder -> statsUri(uriBuilder, start, end, uris, unique)
+                        .queryParam("approximate", approximate)
+                        .build())
+                .retrieve()
+                .onStatus(HttpStatusCode::is2xxSuccessful,
+                        ((request, response) -> log.info("Getting stats for {} with successful code {}", uris,
+                                response.getStatusCode())))
+                .body(new ParameterizedTypeReference<List<ViewStats>>() {
+                }), () -> null);
+        return Optional.ofNullable(stats);
+    }
+
+    // Несколько окон по одному списку uri за один запрос (например, сегодня, 7 и 30 дней); ответ — по ключам окон.
+    // При ошибке — пустые списки для всех окон
+    public Map<String, List<ViewStats>> queryViewStats(Map<String, StatsWindowDto> windows, List<String> uris) {
+        log.info("Querying view stats for windows {} and uri: {}", windows.keySet(), uris);
+        StatsQueryDto query = StatsQueryDto.builder()
+                .windows(new LinkedHashMap<>(windows))
+                .uris(uris)
+                .build();
+        Map<String, List<ViewStats>> stats = transport.call("stats_query", client -> client.post()
+                .uri("/stats/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(query)
+                .retrieve()
+                .body(new ParameterizedTypeReference<Map<String, List<ViewStats>>>() {
+                }), () -> null);
+        Map<String, List<ViewStats>> result = new LinkedHashMap<>();
+        windows.keySet().forEach(key -> result.put(key, stats != null
+                ? stats.getOrDefault(key, Collections.emptyList())
+                : Collections.emptyList()));
+        return result;
+    }
+
+    // Топ-k uri за период. При ошибке — пустой ответ с exact=false, чтобы вызывающий не принял его за точный
+    public TopViewStatsDto getTopViewStats(LocalDateTime start, LocalDateTime end, int k, boolean unique) {
+        log.info("Getting top {} view stats, unique={}", k, unique);
+        TopViewStatsDto top = transport.call("stats_top", client -> client.get()
+                .uri(uriBuilder -> uriBuilder.path("/stats/top")
+                        .queryParam("start", start.format(FORMATTER))
+                        .queryParam("end", end.format(FORMATTER))
+                        .queryParam("k", k)
+                        .queryParam("unique", unique)
+                        .build())
+                .retrieve()
+                .body(TopViewStatsDto.class), TopViewStatsDto::new);
+        return top != null ? top : new TopViewStatsDto();
+    }
+
+    // Ряды hits/unique по интервалам для каждого uri; пустые интервалы сервер не возвращает.
+    // Без запасного ответа: пустой ряд неотличим от события без просмотров, поэтому ошибка
+    // stat-server приходит вызывающему как DependencyUnavailableException
+    public List<ViewSeriesDto> getViewSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             SeriesInterval interval) {
+        log.info("Getting view series for uri: {}, interval={}", uris, interval);
+        List<ViewSeriesDto> series;
         try {
-            return client.get()
-                    .uri(uriBuilder -> uriBuilder.path("/stats")
+            series = transport.execute("stats_series", client -> client.get()
+                    .uri(uriBuilder -> uriBuilder.path("/stats/series")
                             .queryParam("start", start.format(FORMATTER))
                             .queryParam("end", end.format(FORMATTER))
                             .queryParam("uris", uris)
-                            .queryParam("unique", unique)
+                            .queryParam("interval", interval)
                             .build())
                     .retrieve()
-                    .onStatus(HttpStatusCode::is2xxSuccessful,
-                            ((request, response) -> log.info("Getting stats for {} with successful code {}", uris,
-                                    response.getStatusCode())))
-                    .body(new ParameterizedTypeReference<>() {
-                    });
-        } catch (Exception e) {
-            log.error("Getting stats for {} with error {}", uris, e.getMessage());
-            return Collections.emptyList();
+                    .body(new ParameterizedTypeReference<List<ViewSeriesDto>>() {
+                    }));
+        } catch (RestClientException e) {
+            throw new DependencyUnavailableException("stat-server series failed: " + e.getMessage());
+        }
+        return series != null ? series : Collections.emptyList();
+    }
+
+    // Потоковый вариант для больших выборок (обычно без uris): stat-server отдаёт NDJSON,
+    // строки передаются в consumer по мере чтения ответа. Возвращает число полученных строк.
+    // Оборванный или зависший дольше stats-service.transport.stream-idle-timeout-ms поток —
+    // DependencyUnavailableException: consumer к этому моменту получил только часть строк,
+    // и выдать её за полный ответ нельзя.
+    public long streamViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                boolean approximate, Consumer<ViewStats> consumer) {
+        log.info("Streaming view stats for uri: {}", uris);
+        long[] rows = {0};
+        try {
+            transport.execute("stats_stream", client -> client.get()
+                    .uri(uriBuilder -> statsUri(uriBuilder, start, end, uris, unique)
+                            .queryParam("approximate", approximate)
+                            .build())
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .exchange((request, response) -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new DependencyUnavailableException("stat-server stats stream failed: "
+                                    + response.getStatusCode());
+                        }
+                        try (MappingIterator<ViewStats> iterator = viewStatsReader.readValues(
+                                transport.streamBody(response.getBody()))) {
+                            while (iterator.hasNextValue()) {
+                                consumer.accept(iterator.nextValue());
+                                rows[0]++;
+                            }
+                        }
+                        return null;
+                    }));
+        } catch (RestClientException e) {
+            log.error("Streaming stats for {} interrupted after {} rows: {}", uris, rows[0], e.getMessage());
+            throw new DependencyUnavailableException("stat-server stats stream interrupted after " + rows[0]
+                    + " rows: " + e.getMessage());
         }
+        return rows[0];
+    }
+
+    private UriBuilder statsUri(UriBuilder uriBuilder, LocalDateTime start, LocalDateTime end, List<String> uris,
+                                boolean unique) {
+        return uriBuilder.path("/stats")
+                .queryParam("start", start.format(FORMATTER))
+                .queryParam("end", end.format(FORMATTER))
+                .queryParam("uris", uris)
+                .queryParam("unique", unique);
     }
 
     private EndpointHitDto getDto(String app, HttpServletRequest request) {
@@ -0,0 +1,127 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HitBatcherTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Первая пачка задерживается в отправителе, пока тест не отпустит release: флашер занят,
+    // и очередь заполняется предсказуемо
+    private final Consumer<List<EndpointHitDto>> heldSender = batch -> {
+        sending.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batches.add(batch.stream().map(EndpointHitDto::getUri).toList());
+    };
+
+    @Test
+    public void testDropNewestRejectsHitWhenQueueIsFull() throws InterruptedException {
+        List<String> shipped = fillAndOverflow(HitBatcher.OverflowPolicy.DROP_NEWEST);
+
+        assertEquals(List.of("/events/1", "/events/2", "/events/3"), shipped);
+    }
+
+    @Test
+    public void testDropOldestEvictsQueuedHit() throws InterruptedException {
+        List<String> shipped = fillAndOverflow(HitBatcher.OverflowPolicy.DROP_OLDEST);
+
+        assertEquals(List.of("/events/1", "/events/3", "/events/4"), shipped);
+    }
+
+    @Test
+    public void testBlockDropsHitAfterTimeout() throws InterruptedException {
+        long start = System.nanoTime();
+        List<String> shipped = fillAndOverflow(HitBatcher.OverflowPolicy.BLOCK);
+
+        assertEquals(List.of("/events/1", "/events/2", "/events/3"), shipped);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testPartialBatchIsShippedAfterLinger() throws InterruptedException {
+        CountDownLatch shipped = new CountDownLatch(1);
+        try (HitBatcher batcher = new HitBatcher(10, 10, 100, 50, HitBatcher.OverflowPolicy.DROP_NEWEST,
+                batch -> {
+                    batches.add(batch.stream().map(EndpointHitDto::getUri).toList());
+                    shipped.countDown();
+                }, meterRegistry)) {
+            batcher.offer(hit(1));
+            batcher.offer(hit(2));
+            batcher.offer(hit(3));
+
+            // пачка не набрала batchSize, но уходит по истечении linger, без close
+            assertTrue(shipped.await(2, TimeUnit.SECONDS));
+            assertEquals(List.of(List.of("/events/1", "/events/2", "/events/3")), batches);
+        }
+        assertEquals(3.0, meterRegistry.get("stats.client.hits.shipped").counter().count());
+    }
+
+    @Test
+    public void testFailedBatchIsCountedAsDropped() {
+        HitBatcher batcher = new HitBatcher(10, 10, 50, 50, HitBatcher.OverflowPolicy.DROP_NEWEST,
+                batch -> {
+                    throw new IllegalStateException("stat-server is down");
+                }, meterRegistry);
+        batcher.offer(hit(1));
+        batcher.offer(hit(2));
+        batcher.close();
+
+        assertEquals(2.0, meterRegistry.get("stats.client.hits.dropped").tag("reason", "send_failed")
+                .counter().count());
+    }
+
+    @Test
+    public void testNonPositiveLingerIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HitBatcher(10, 10, 0, 50,
+                HitBatcher.OverflowPolicy.DROP_NEWEST, batch -> {
+        }, meterRegistry));
+    }
+
+    // Очередь на 2 хита, пачка из одного: первый хит задерживается в отправителе, второй и третий занимают
+    // очередь, четвёртый в неё не помещается
+    private List<String> fillAndOverflow(HitBatcher.OverflowPolicy policy) throws InterruptedException {
+        HitBatcher batcher = new HitBatcher(2, 1, 50, 50, policy, heldSender, meterRegistry);
+        batcher.offer(hit(1));
+        assertTrue(sending.await(2, TimeUnit.SECONDS));
+        batcher.offer(hit(2));
+        batcher.offer(hit(3));
+        batcher.offer(hit(4));
+
+        assertEquals(2.0, meterRegistry.get("stats.client.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("stats.client.hits.dropped").tag("reason", "queue_full")
+                .counter().count());
+
+        release.countDown();
+        batcher.close();
+        assertEquals(0.0, meterRegistry.get("stats.client.queue.depth").gauge().value());
+        return batches.stream().flatMap(List::stream).toList();
+    }
+
+    private EndpointHitDto hit(int eventId) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri("/events/" + eventId)
+                .ip("10.0.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitFrame;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.transport.DependencyUnavailableException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatClientTest {
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile boolean acceptsFrames = true;
+    private HttpServer server;
+    private StatClient statClient;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/hits", exchange -> {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            contentTypes.add(contentType);
+            exchange.getRequestBody().readAllBytes();
+            boolean frame = contentType.startsWith(HitFrame.CONTENT_TYPE);
+            exchange.sendResponseHeaders(frame && !acceptsFrames ? 415 : 201, -1);
+            exchange.close();
+        });
+        server.start();
+        statClient = new StatClient("http://localhost:" + server.getAddress().getPort(), false, 10, 10, 200, 50,
+                HitBatcher.OverflowPolicy.DROP_NEWEST, true, meterRegistry, new ObjectMapper(),
+                new MockEnvironment());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        statClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testUnsupportedMediaTypeSwitchesBatchesToJson() {
+        acceptsFrames = false;
+
+        statClient.saveBatch(List.of(hit("10.0.0.1")));
+        statClient.saveBatch(List.of(hit("10.0.0.2")));
+
+        // первая пачка отклонена в бинарном виде и повторена в JSON, вторая сразу идёт в JSON
+        assertEquals(3, contentTypes.size());
+        assertTrue(contentTypes.get(0).startsWith(HitFrame.CONTENT_TYPE));
+        assertTrue(contentTypes.get(1).startsWith("application/json"));
+        assertTrue(contentTypes.get(2).startsWith("application/json"));
+    }
+
+    @Test
+    public void testInvalidHitsAreCountedAndBatchIsShipped() {
+        statClient.saveBatch(List.of(hit("10.0.0.1"), hit("not-an-ip"), hit("10.0.0.2")));
+
+        assertEquals(1, contentTypes.size());
+        assertTrue(contentTypes.get(0).startsWith(HitFrame.CONTENT_TYPE));
+        assertEquals(1.0, meterRegistry.get("stats.client.hits.dropped").tag("reason", "invalid")
+                .counter().count());
+    }
+
+    @Test
+    public void testStreamCutOffHalfWayIsNotReturnedAsComplete() throws IOException {
+        try (ServerSocket rawServer = ndjsonServer(true)) {
+            List<ViewStats> received = streamUntilFailure(rawServer);
+
+            assertEquals(List.of("/events/1", "/events/2"), received.stream().map(ViewStats::getUri).toList());
+        }
+    }
+
+    @Test
+    public void testStalledStreamFailsAfterIdleTimeout() throws IOException {
+        try (ServerSocket rawServer = ndjsonServer(false)) {
+            List<ViewStats> received = streamUntilFailure(rawServer);
+
+            assertEquals(2, received.size());
+        }
+    }
+
+    private List<ViewStats> streamUntilFailure(ServerSocket rawServer) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("stats-service.transport.stream-idle-timeout-ms", "300");
+        StatClient streamClient = new StatClient("http://localhost:" + rawServer.getLocalPort(), false, 10, 10,
+                200, 50, HitBatcher.OverflowPolicy.DROP_NEWEST, true, meterRegistry, new ObjectMapper(), environment);
+        List<ViewStats> received = new CopyOnWriteArrayList<>();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(DependencyUnavailableException.class,
+                    () -> streamClient.streamViewStats(LocalDateTime.now().minusDays(1), LocalDateTime.now(),
+                            List.of(), false, false, received::add)));
+        } finally {
+            streamClient.close();
+        }
+        return received;
+    }
+
+    // Отдаёт две целые строки NDJSON при Content-Length вдвое больше отданного, затем закрывает сокет
+    // (close=true) или держит его открытым без данных
+    private ServerSocket ndjsonServer(boolean close) throws IOException {
+        ServerSocket rawServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            try (Socket socket = rawServer.accept()) {
+                BufferedReader request = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                String line;
+                do {
+                    line = request.readLine();
+                } while (line != null && !line.isEmpty());
+                byte[] rows = ("{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":3}\n"
+                        + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/2\",\"hits\":2}\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/x-ndjson\r\nContent-Length: "
+                        + rows.length * 2 + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(rows);
+                out.flush();
+                if (!close) {
+                    // сокет закроется вместе с сервером после теста
+                    socket.getInputStream().read();
+                }
+            } catch (IOException e) {
+                // сервер закрыт после теста
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return rawServer;
+    }
+
+    private EndpointHitDto hit(String ip) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package ru.practicum.dto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Бинарная пачка хитов для POST /hits с Content-Type CONTENT_TYPE. Тело — последовательность кадров (big-endian):
+//   int length — длина кадра без этого поля
+//   int MAGIC, byte VERSION
+//   unsigned short n, n имён: unsigned short длина + UTF-8 (app и uri кадра, каждое имя один раз)
+//   int count, count хитов: unsigned short app, unsigned short uri (индексы имён), byte 4|16, IP, long время
+// Время — миллисекунды LocalDateTime, отсчитанные как UTC: значение переносится без учёта часовых поясов сторон.
+public final class HitFrame {
+    public static final String CONTENT_TYPE = "application/x-ewm-hit-frame";
+    public static final int MAGIC = 0x48495446;
+    public static final byte VERSION = 1;
+    static final int MAX_NAMES = 0xffff;
+
+    // Получатель разобранных хитов: имена кадра приходят один раз, хиты — индексами в них,
+    // IP — срезом буфера, без промежуточных объектов на каждое поле
+    public interface Sink {
+        void names(String[] names);
+
+        void hit(int app, int uri, ByteBuffer buffer, int ipOffset, int ipLength, long epochMillis);
+    }
+
+    private HitFrame() {
+    }
+
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                (int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Пачка, в которой есть хит без app, uri, времени или с IP, который не разбирается как литерал,
+    // отклоняется целиком (IllegalArgumentException)
+    public static byte[] encode(List<EndpointHitDto> hits) {
+        return encode(hits, hit -> {
+            throw new IllegalArgumentException("Hit for uri " + hit.getUri() + " with ip " + hit.getIp()
+                    + " can't be encoded");
+        });
+    }
+
+    // Такие хиты не кодируются, а передаются в skipped: сервер отклонил бы из-за них весь кадр
+    public static byte[] encode(List<EndpointHitDto> hits, Consumer<EndpointHitDto> skipped) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(hits.size() * 24 + 64);
+        int from = 0;
+        while (from < hits.size()) {
+            from = encodeFrame(hits, from, body, skipped);
+        }
+        return body.toByteArray();
+    }
+
+    public static void decode(ByteBuffer body, Sink sink) {
+        try {
+            while (body.hasRemaining()) {
+                int length = body.getInt();
+                if (length < 0 || length > body.remaining()) {
+                    throw new IllegalArgumentException("Frame length " + length + " exceeds body");
+                }
+                int end = body.position() + length;
+                decodeFrame(body, end, sink);
+                if (body.position() != end) {
+                    throw new IllegalArgumentException("Frame has " + (end - body.position()) + " trailing bytes");
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame is truncated");
+        }
+    }
+
+    private static void decodeFrame(ByteBuffer body, int end, Sink sink) {
+        if (body.getInt() != MAGIC || body.get() != VERSION) {
+            throw new IllegalArgumentException("Unsupported frame format");
+        }
+        String[] names = new String[Short.toUnsignedInt(body.getShort())];
+        for (int i = 0; i < names.length; i++) {
+            int length = Short.toUnsignedInt(body.getShort());
+            if (length > end - body.position()) {
+                throw new IllegalArgumentException("Name " + i + " exceeds frame");
+            }
+            byte[] name = new byte[length];
+            body.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        sink.names(names);
+        int count = body.getInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative hit count");
+        }
+        for (int i = 0; i < count; i++) {
+            int app = Short.toUnsignedInt(body.getShort());
+            int uri = Short.toUnsignedInt(body.getShort());
+            int ipLength = body.get();
+            if (app >= names.length || uri >= names.length) {
+                throw new IllegalArgumentException("Hit " + i + " refers to unknown name");
+            }
+            if (ipLength != 4 && ipLength != 16 || ipLength + Long.BYTES > end - body.position()) {
+                throw new IllegalArgumentException("Hit " + i + " has invalid ip");
+            }
+            int ipOffset = body.position();
+            body.position(ipOffset + ipLength);
+            sink.hit(app, uri, body, ipOffset, ipLength, body.getLong());
+        }
+    }
+
+    private static int encodeFrame(List<EndpointHitDto> hits, int from, ByteArrayOutputStream body,
+                                   Consumer<EndpointHitDto> skipped) {
+        Map<String, Integer> index = new HashMap<>();
+        ByteArrayOutputStream namesBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream hitsBytes = new ByteArrayOutputStream((hits.size() - from) * 24);
+        DataOutputStream names = new DataOutputStream(namesBytes);
+        DataOutputStream records = new DataOutputStream(hitsBytes);
+        int count = 0;
+        int next = from;
+        try {
+            for (; next < hits.size(); next++) {
+                EndpointHitDto hit = hits.get(next);
+                byte[] ip = IpAddresses.parse(hit.getIp());
+                if (ip == null || hit.getApp() == null || hit.getUri() == null || hit.getTimestamp() == null) {
+                    skipped.accept(hit);
+                    continue;
+                }
+                // в кадре не больше MAX_NAMES имён: остальное уйдёт следующим кадром
+                int newNames = (index.containsKey(hit.getApp()) ? 0 : 1) + (index.containsKey(hit.getUri()) ? 0 : 1);
+                if (index.size() + newNames > MAX_NAMES) {
+                    break;
+                }
+                int app = intern(hit.getApp(), index, names);
+                int uri = intern(hit.getUri(), index, names);
+                records.writeShort(app);
+                records.writeShort(uri);
+                records.writeByte(ip.length);
+                records.write(ip);
+                records.writeLong(toEpochMillis(hit.getTimestamp()));
+                count++;
+            }
+            DataOutputStream frame = new DataOutputStream(body);
+            frame.writeInt(Integer.BYTES + 1 + Short.BYTES + namesBytes.size() + Integer.BYTES + hitsBytes.size());
+            frame.writeInt(MAGIC);
+            frame.writeByte(VERSION);
+            frame.writeShort(index.size());
+            namesBytes.writeTo(frame);
+            frame.writeInt(count);
+            hitsBytes.writeTo(frame);
+            frame.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return next;
+    }
+
+    private static int intern(String name, Map<String, Integer> index, DataOutputStream names) throws IOException {
+        Integer id = index.get(name);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("Name is too long: " + bytes.length + " bytes");
+        }
+        names.writeShort(bytes.length);
+        names.write(bytes);
+        index.put(name, index.size());
+        return index.size() - 1;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.dto;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Разбор IP-литералов в 4 (IPv4) или 16 (IPv6) байт — общий для stat-server и бинарного кодировщика stat-client.
+// InetAddress не используем: на не-литералах он идёт в DNS.
+// IPv4-mapped адреса (::ffff:a.b.c.d) сводятся к IPv4, чтобы один клиент не считался дважды.
+public final class IpAddresses {
+
+    private IpAddresses() {
+    }
+
+    // null, если строка не IP-литерал
+    public static byte[] parse(String ip) {
+        if (ip == null || ip.isBlank()) {
+            return null;
+        }
+        String value = ip.strip();
+        byte[] bytes = value.indexOf(':') >= 0 ? parseIpv6(value) : parseIpv4(value);
+        return bytes == null ? null : normalize(bytes);
+    }
+
+    public static byte[] normalize(byte[] bytes) {
+        return bytes.length == 16 && isIpv4Mapped(bytes) ? Arrays.copyOfRange(bytes, 12, 16) : bytes;
+    }
+
+    private static byte[] parseIpv4(String value) {
+        String[] parts = value.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                return null;
+            }
+            int octet = Integer.parseInt(part);
+            if (octet > 255) {
+                return null;
+            }
+            bytes[i] = (byte) octet;
+        }
+        return bytes;
+    }
+
+    private static byte[] parseIpv6(String value) {
+        int zone = value.indexOf('%');
+        if (zone >= 0) {
+            value = value.substring(0, zone);
+        }
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        int compression = value.indexOf("::");
+        if (compression >= 0 && value.indexOf("::", compression + 1) >= 0) {
+            return null;
+        }
+        String head = compression >= 0 ? value.substring(0, compression) : value;
+        String tail = compression >= 0 ? value.substring(compression + 2) : "";
+        ByteBuffer headBytes = ByteBuffer.allocate(16);
+        ByteBuffer tailBytes = ByteBuffer.allocate(16);
+        if (!parseGroups(head, headBytes, compression < 0) || !parseGroups(tail, tailBytes, true)) {
+            return null;
+        }
+        int length = headBytes.position() + tailBytes.position();
+        if (compression < 0 ? length != 16 : length > 14) {
+            return null;
+        }
+        byte[] bytes = new byte[16];
+        System.arraycopy(headBytes.array(), 0, bytes, 0, headBytes.position());
+        System.arraycopy(tailBytes.array(), 0, bytes, 16 - tailBytes.position(), tailBytes.position());
+        return bytes;
+    }
+
+    // IPv4 в хвосте допустим только последней группой: ::ffff:10.0.0.1
+    private static boolean parseGroups(String groups, ByteBuffer target, boolean allowIpv4Tail) {
+        if (groups.isEmpty()) {
+            return true;
+        }
+        String[] parts = groups.split(":", -1);
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (i == parts.length - 1 && allowIpv4Tail && part.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(part);
+                if (ipv4 == null || target.remaining() < 4) {
+                    return false;
+                }
+                target.put(ipv4);
+                continue;
+            }
+            if (part.isEmpty() || part.length() > 4 || target.remaining() < 2) {
+                return false;
+            }
+            int group = 0;
+            for (char c : part.toCharArray()) {
+                int digit = Character.digit(c, 16);
+                if (digit < 0) {
+                    return false;
+                }
+                group = group * 16 + digit;
+            }
+            target.putShort((short) group);
+        }
+        return true;
+    }
+
+    private static boolean isIpv4Mapped(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff;
+    }
+}
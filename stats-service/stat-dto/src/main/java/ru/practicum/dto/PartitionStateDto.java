@@ -0,0 +1,38 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PartitionStateDto {
+
+    private boolean enabled;
+    private boolean supported;
+    private boolean partitioned;
+    private String interval;
+    private int premake;
+    private int retentionDays;
+    private String retentionMode;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastRunAt;
+
+    private String lastError;
+
+    @Builder.Default
+    private List<String> lastCreated = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> lastRemoved = new ArrayList<>();
+
+    @Builder.Default
+    private List<PartitionDto> partitions = new ArrayList<>();
+}
@@ -0,0 +1,27 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RollupRebuildDto {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    private int minuteBuckets;
+    private int hourBuckets;
+    private int sketchBuckets;
+    // Скетчи сэмплируемых uri, собранные без сохранённой версии: уникальные IP в них занижены
+    private int undercountedSketchBuckets;
+    private int topBuckets;
+}
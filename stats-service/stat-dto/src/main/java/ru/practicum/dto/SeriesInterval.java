@@ -0,0 +1,19 @@
+package ru.practicum.dto;
+
+import java.time.Duration;
+
+public enum SeriesInterval {
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1));
+
+    private final Duration duration;
+
+    SeriesInterval(Duration duration) {
+        this.duration = duration;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Несколько окон по одному списку uri; ответ /stats/query — ViewStats по тем же ключам окон
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatsQueryDto {
+
+    @NotEmpty
+    @Builder.Default
+    private Map<String, @NotNull @Valid StatsWindowDto> windows = new LinkedHashMap<>();
+
+    private List<String> uris;
+}
@@ -0,0 +1,20 @@
+package ru.practicum.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TopViewStatsDto {
+
+    // false — в топ мог не попасть uri, вытесненный из скетча; сами hits у найденных uri всегда точные
+    private boolean exact;
+
+    @Builder.Default
+    private List<ViewStats> stats = new ArrayList<>();
+}
@@ -0,0 +1,20 @@
+package ru.practicum.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ViewSeriesDto {
+
+    private String app;
+    private String uri;
+
+    @Builder.Default
+    private List<ViewSeriesPoint> points = new ArrayList<>();
+}
@@ -0,0 +1,137 @@
+package ru.practicum.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HitFrameTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 250_000_000);
+
+    @Test
+    public void testEncodedHitsAreDecodedUnchanged() {
+        List<EndpointHitDto> hits = List.of(
+                hit("ewm-main-service", "/events/1", "192.168.0.1", TIME),
+                hit("ewm-main-service", "/events/2", "2001:db8::1", TIME.plusSeconds(1)),
+                hit("rating-service", "/events/1", "::ffff:10.0.0.7", TIME.minusDays(400)),
+                hit("ewm-main-service", "/events/1", "192.168.0.1", TIME.plusNanos(999_000_000)));
+
+        Decoded decoded = decode(HitFrame.encode(hits));
+
+        assertEquals(1, decoded.frames);
+        assertEquals(hits.size(), decoded.hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            EndpointHitDto expected = hits.get(i);
+            EndpointHitDto actual = decoded.hits.get(i);
+            assertEquals(expected.getApp(), actual.getApp());
+            assertEquals(expected.getUri(), actual.getUri());
+            assertArrayEquals(IpAddresses.parse(expected.getIp()), IpAddresses.parse(actual.getIp()));
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        }
+        // IPv4-mapped адрес передаётся четырьмя байтами
+        assertEquals(4, IpAddresses.parse(decoded.hits.get(2).getIp()).length);
+    }
+
+    @Test
+    public void testFrameIsSplitWhenNamesExceedLimit() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        // app и MAX_NAMES uri — на одно имя больше, чем помещается в кадр
+        for (int i = 0; i < HitFrame.MAX_NAMES; i++) {
+            hits.add(hit("ewm-main-service", "/events/" + i, "10.0.0.1", TIME));
+        }
+
+        Decoded decoded = decode(HitFrame.encode(hits));
+
+        assertEquals(2, decoded.frames);
+        assertEquals(hits.size(), decoded.hits.size());
+        assertEquals("/events/" + (HitFrame.MAX_NAMES - 1), decoded.hits.getLast().getUri());
+        assertEquals("ewm-main-service", decoded.hits.getLast().getApp());
+    }
+
+    @Test
+    public void testInvalidHitsAreReportedOrRejectTheBatch() {
+        List<EndpointHitDto> hits = List.of(
+                hit("ewm-main-service", "/events/1", "10.0.0.1", TIME),
+                hit("ewm-main-service", "/events/2", "not-an-ip", TIME),
+                hit("ewm-main-service", null, "10.0.0.2", TIME),
+                hit("ewm-main-service", "/events/3", "10.0.0.3", null),
+                hit("ewm-main-service", "/events/4", "10.0.0.4", TIME));
+        List<EndpointHitDto> skipped = new ArrayList<>();
+
+        Decoded decoded = decode(HitFrame.encode(hits, skipped::add));
+
+        assertEquals(List.of(hits.get(1), hits.get(2), hits.get(3)), skipped);
+        assertEquals(List.of("/events/1", "/events/4"), decoded.hits.stream().map(EndpointHitDto::getUri).toList());
+        assertThrows(IllegalArgumentException.class, () -> HitFrame.encode(hits));
+    }
+
+    @Test
+    public void testTruncatedBodyIsRejected() {
+        byte[] body = HitFrame.encode(List.of(hit("ewm-main-service", "/events/1", "10.0.0.1", TIME)));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> decode(Arrays.copyOf(body, body.length - 1)));
+        assertTrue(e.getMessage().contains("exceeds body"), e.getMessage());
+    }
+
+    private EndpointHitDto hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private Decoded decode(byte[] body) {
+        Decoded decoded = new Decoded();
+        HitFrame.decode(ByteBuffer.wrap(body), decoded);
+        return decoded;
+    }
+
+    private static class Decoded implements HitFrame.Sink {
+        private final List<EndpointHitDto> hits = new ArrayList<>();
+        private String[] names;
+        private int frames;
+
+        @Override
+        public void names(String[] names) {
+            this.names = names;
+            frames++;
+        }
+
+        @Override
+        public void hit(int app, int uri, ByteBuffer buffer, int ipOffset, int ipLength, long epochMillis) {
+            byte[] ip = new byte[ipLength];
+            buffer.get(ipOffset, ip);
+            hits.add(EndpointHitDto.builder()
+                    .app(names[app])
+                    .uri(names[uri])
+                    .ip(format(ip))
+                    .timestamp(HitFrame.fromEpochMillis(epochMillis))
+                    .build());
+        }
+
+        private static String format(byte[] ip) {
+            if (ip.length == 4) {
+                return (ip[0] & 0xff) + "." + (ip[1] & 0xff) + "." + (ip[2] & 0xff) + "." + (ip[3] & 0xff);
+            }
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < ip.length; i += 2) {
+                if (i > 0) {
+                    value.append(':');
+                }
+                value.append(Integer.toHexString((ip[i] & 0xff) << 8 | ip[i + 1] & 0xff));
+            }
+            return value.toString();
+        }
+    }
+}
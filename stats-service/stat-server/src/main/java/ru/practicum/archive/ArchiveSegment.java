@@ -0,0 +1,538 @@
+package ru.practicum.archive;
+
+import ru.practicum.model.AppUri;
+import ru.practicum.sketch.BloomFilter;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Колоночный файл с хитами одного закрытого диапазона, строки по возрастанию timestamp.
+// Строки лежат блоками по BLOCK_ROWS, каждый блок сжат Deflate отдельно: номер (app, uri) в словаре,
+// дельты секунд timestamp и наносекунды (varint), вес строки (varint, см. EndpointHit.weight),
+// битовая маска IPv6 и упакованные подряд байты IP. После блоков — несжатое оглавление: границы диапазона,
+// min/max timestamp, словарь (app, uri), Bloom-фильтр по uri и по каждому блоку смещение и min/max timestamp;
+// в конце файла — смещение оглавления. Сегмент, не подходящий под запрос по времени или uri, не читается,
+// а из подходящего распаковываются только блоки, пересекающие диапазон запроса.
+// Сегменты версий 1 и 2 — заголовок в начале и все колонки одним сжатым телом, которое читается целиком;
+// в версии 1 нет колонки весов и суммы весов в заголовке — каждая строка в них весит 1.
+public class ArchiveSegment {
+    private static final int MAGIC = 0x48534547;
+    private static final byte VERSION = 3;
+    private static final byte VERSION_WITHOUT_BLOCKS = 2;
+    private static final byte VERSION_WITHOUT_WEIGHTS = 1;
+    private static final int BLOCK_ROWS = 65_536;
+    // смещение оглавления и MAGIC
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final Path file;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final LocalDateTime minTimestamp;
+    private final LocalDateTime maxTimestamp;
+    private final byte version;
+    private final int rows;
+    private final long hits;
+    private final List<AppUri> dictionary;
+    private final BloomFilter uriFilter;
+    // null — сегмент старой версии без блоков
+    private final List<Block> blocks;
+
+    // Время блока — наносекунды эпохи UTC, как и в scan
+    private record Block(long offset, int length, int rows, long minTime, long maxTime) {
+    }
+
+    private ArchiveSegment(Path file, byte version, LocalDateTime from, LocalDateTime to, LocalDateTime minTimestamp,
+                           LocalDateTime maxTimestamp, int rows, long hits, List<AppUri> dictionary,
+                           BloomFilter uriFilter, List<Block> blocks) {
+        this.file = file;
+        this.version = version;
+        this.from = from;
+        this.to = to;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.rows = rows;
+        this.hits = hits;
+        this.dictionary = dictionary;
+        this.uriFilter = uriFilter;
+        this.blocks = blocks;
+    }
+
+    // Читает только заголовок (оглавление), без строк
+    public static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            byte version = in.readByte();
+            if (version == VERSION_WITHOUT_BLOCKS || version == VERSION_WITHOUT_WEIGHTS) {
+                return readHeader(file, version, in, null);
+            }
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive segment version " + version + ": " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            readFully(channel, trailer, channel.size() - TRAILER_BYTES);
+            long footer = trailer.getLong(0);
+            if (trailer.getInt(Long.BYTES) != MAGIC) {
+                throw new IOException("Archive segment is truncated: " + file);
+            }
+            channel.position(footer);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            return readHeader(file, version, in, new ArrayList<>());
+        }
+    }
+
+    // Сегмент может содержать подходящие строки: диапазоны пересекаются и хотя бы один uri проходит фильтр
+    public boolean mayMatch(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris) {
+        if (maxTimestamp.isBefore(start) || !minTimestamp.isBefore(endExclusive)) {
+            return false;
+        }
+        return uris == null || uris.isEmpty()
+                || uris.stream().anyMatch(uri -> uriFilter.mightContain(HyperLogLog.hash(uri)));
+    }
+
+    public Map<AppUri, Long> countHits(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris) {
+        Map<AppUri, Long> hits = new LinkedHashMap<>();
+        scan(start, endExclusive, uris, (key, time, weight, ips, ipOffset, ipLength) ->
+                hits.merge(dictionary.get(key), weight, Long::sum));
+        return hits;
+    }
+
+    // Добавляет в target различные IP по (app, uri) и возвращает, сколько из них новых. Если новых больше limit,
+    // чтение прерывается и возвращается -1. IP копируются: срез держал бы в памяти весь распакованный сегмент
+    public long collectIps(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris,
+                           Map<AppUri, Set<ByteBuffer>> target, long limit) {
+        long[] added = {0};
+        try {
+            scan(start, endExclusive, uris, (key, time, weight, ips, ipOffset, ipLength) -> {
+                ByteBuffer ip = ByteBuffer.wrap(Arrays.copyOfRange(ips, ipOffset, ipOffset + ipLength));
+                if (target.computeIfAbsent(dictionary.get(key), appUri -> new HashSet<>()).add(ip)
+                        && ++added[0] > limit) {
+                    throw LimitReached.INSTANCE;
+                }
+            });
+        } catch (LimitReached e) {
+            return -1;
+        }
+        return added[0];
+    }
+
+    // Хиты и IP по интервалам длины unit, начиная с усечённого timestamp
+    public void collectSeries(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris, ChronoUnit unit,
+                              Map<AppUri, Map<LocalDateTime, SeriesBucket>> target) {
+        scan(start, endExclusive, uris, (key, time, weight, ips, ipOffset, ipLength) -> {
+            LocalDateTime bucket = LocalDateTime.ofEpochSecond(Math.floorDiv(time, 1_000_000_000L),
+                    (int) Math.floorMod(time, 1_000_000_000L), ZoneOffset.UTC).truncatedTo(unit);
+            SeriesBucket series = target.computeIfAbsent(dictionary.get(key), appUri -> new LinkedHashMap<>())
+                    .computeIfAbsent(bucket, value -> new SeriesBucket());
+            series.hits += weight;
+            series.ips.add(ByteBuffer.wrap(Arrays.copyOfRange(ips, ipOffset, ipOffset + ipLength)));
+        });
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Сколько хитов представляют строки сегмента — сумма весов
+    public long getHits() {
+        return hits;
+    }
+
+    public int getUris() {
+        return dictionary.size();
+    }
+
+    private void scan(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris, RowVisitor visitor) {
+        Set<String> filter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        boolean[] selected = new boolean[dictionary.size()];
+        boolean any = false;
+        for (int i = 0; i < dictionary.size(); i++) {
+            selected[i] = filter == null || filter.contains(dictionary.get(i).uri());
+            any |= selected[i];
+        }
+        if (!any) {
+            return;
+        }
+        long startNanos = epochNanos(start);
+        long endNanos = epochNanos(endExclusive);
+        try {
+            if (blocks == null) {
+                scanRows(readWholeBody(), rows, version != VERSION_WITHOUT_WEIGHTS, selected, startNanos, endNanos,
+                        visitor);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, READ)) {
+                for (Block block : blocks) {
+                    if (block.minTime() >= endNanos) {
+                        break;
+                    }
+                    if (block.maxTime() >= startNanos) {
+                        scanRows(readBlock(channel, block), block.rows(), true, selected, startNanos, endNanos,
+                                visitor);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] readWholeBody() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            in.readInt();
+            readHeader(file, in.readByte(), in, null);
+            try (InflaterInputStream inflater = new InflaterInputStream(in)) {
+                return inflater.readAllBytes();
+            }
+        }
+    }
+
+    private static byte[] readBlock(FileChannel channel, Block block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.length());
+        readFully(channel, compressed, block.offset());
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed.array()))) {
+            return inflater.readAllBytes();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Archive segment ends before " + (position + target.limit()));
+            }
+        }
+    }
+
+    private static void scanRows(byte[] body, int rows, boolean weighted, boolean[] selected, long startNanos,
+                                 long endNanos, RowVisitor visitor) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        ByteBuffer keys = column(buffer);
+        ByteBuffer seconds = column(buffer);
+        ByteBuffer nanos = column(buffer);
+        ByteBuffer weights = weighted ? column(buffer) : null;
+        BitSet ipv6 = BitSet.valueOf(column(buffer));
+        int ipOffset = buffer.position() + 4;
+        long second = 0;
+        for (int row = 0; row < rows; row++) {
+            int key = (int) readVarLong(keys);
+            second += readVarLong(seconds);
+            long time = second * 1_000_000_000L + readVarLong(nanos);
+            long weight = weights == null ? 1 : readVarLong(weights);
+            int ipLength = ipv6.get(row) ? 16 : 4;
+            if (time >= endNanos) {
+                break;
+            }
+            if (time >= startNanos && selected[key]) {
+                visitor.visit(key, time, weight, body, ipOffset, ipLength);
+            }
+            ipOffset += ipLength;
+        }
+    }
+
+    private static ByteBuffer column(ByteBuffer body) {
+        int length = body.getInt();
+        ByteBuffer column = body.slice(body.position(), length);
+        body.position(body.position() + length);
+        return column;
+    }
+
+    // MAGIC и версия уже прочитаны; blocks == null — версия без блоков
+    private static ArchiveSegment readHeader(Path file, byte version, DataInputStream in, List<Block> blocks)
+            throws IOException {
+        LocalDateTime from = readTime(in);
+        LocalDateTime to = readTime(in);
+        LocalDateTime minTimestamp = readTime(in);
+        LocalDateTime maxTimestamp = readTime(in);
+        int rows = in.readInt();
+        long hits = version == VERSION_WITHOUT_WEIGHTS ? rows : in.readLong();
+        int size = in.readInt();
+        List<AppUri> dictionary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dictionary.add(new AppUri(in.readUTF(), in.readUTF()));
+        }
+        int hashes = in.readInt();
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        if (blocks != null) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                blocks.add(new Block(in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong()));
+            }
+        }
+        return new ArchiveSegment(file, version, from, to, minTimestamp, maxTimestamp, rows, hits, dictionary,
+                new BloomFilter(words, hashes), blocks == null ? null : List.copyOf(blocks));
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static long epochNanos(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private interface RowVisitor {
+        void visit(int key, long time, long weight, byte[] ips, int ipOffset, int ipLength);
+    }
+
+    private static final class LimitReached extends RuntimeException {
+        private static final LimitReached INSTANCE = new LimitReached();
+
+        private LimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    public static class SeriesBucket {
+        private long hits;
+        private final Set<ByteBuffer> ips = new HashSet<>();
+
+        public long getHits() {
+            return hits;
+        }
+
+        public Set<ByteBuffer> getIps() {
+            return ips;
+        }
+    }
+
+    // Пишет строки во временный файл по мере поступления: в памяти только колонки текущего блока, словарь
+    // и оглавление блоков. Строки должны идти по возрастанию timestamp. write дописывает оглавление и переименовывает
+    // файл — на месте file не бывает недописанного сегмента; close без write удаляет временный файл
+    public static class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temporary;
+        private final int blockRows;
+        private final OutputStream stream;
+        private final Map<AppUri, Integer> dictionary = new LinkedHashMap<>();
+        private final List<Block> blocks = new ArrayList<>();
+        private final ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream seconds = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream nanos = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream weights = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream ips = new ByteArrayOutputStream();
+        private final BitSet ipv6 = new BitSet();
+        private long position;
+        private int blockRowCount;
+        private long blockMinTime;
+        private long lastSecond;
+        private LocalDateTime minTimestamp;
+        private LocalDateTime maxTimestamp;
+        private int rows;
+        private long hits;
+        private boolean written;
+
+        public Writer(Path file) throws IOException {
+            this(file, BLOCK_ROWS);
+        }
+
+        Writer(Path file, int blockRows) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            this.blockRows = blockRows;
+            this.stream = new BufferedOutputStream(Files.newOutputStream(temporary));
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = out.size();
+        }
+
+        public void add(String app, String uri, byte[] ip, LocalDateTime timestamp, int weight) {
+            if (maxTimestamp != null && timestamp.isBefore(maxTimestamp)) {
+                throw new IllegalArgumentException("Hits must be added in timestamp order");
+            }
+            if (minTimestamp == null) {
+                minTimestamp = timestamp;
+            }
+            maxTimestamp = timestamp;
+            if (blockRowCount == 0) {
+                blockMinTime = epochNanos(timestamp);
+                lastSecond = 0;
+            }
+            long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+            writeVarLong(keys, dictionary.computeIfAbsent(new AppUri(app, uri), key -> dictionary.size()));
+            writeVarLong(seconds, second - lastSecond);
+            writeVarLong(nanos, timestamp.getNano());
+            writeVarLong(weights, weight);
+            lastSecond = second;
+            ipv6.set(blockRowCount, ip.length == 16);
+            ips.writeBytes(ip);
+            blockRowCount++;
+            rows++;
+            hits += weight;
+            if (blockRowCount == blockRows) {
+                try {
+                    flushBlock();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        public boolean isEmpty() {
+            return rows == 0;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public ArchiveSegment write(LocalDateTime from, LocalDateTime to) throws IOException {
+            if (rows == 0) {
+                throw new IllegalStateException("Archive segment must not be empty");
+            }
+            if (blockRowCount > 0) {
+                flushBlock();
+            }
+            BloomFilter uriFilter = BloomFilter.create(dictionary.size(), BLOOM_FALSE_POSITIVE_RATE);
+            dictionary.keySet().forEach(key -> uriFilter.add(HyperLogLog.hash(key.uri())));
+            DataOutputStream out = new DataOutputStream(stream);
+            writeTime(out, from);
+            writeTime(out, to);
+            writeTime(out, minTimestamp);
+            writeTime(out, maxTimestamp);
+            out.writeInt(rows);
+            out.writeLong(hits);
+            out.writeInt(dictionary.size());
+            for (AppUri key : dictionary.keySet()) {
+                out.writeUTF(key.app());
+                out.writeUTF(key.uri());
+            }
+            out.writeInt(uriFilter.getHashes());
+            out.writeInt(uriFilter.getWords().length);
+            for (long word : uriFilter.getWords()) {
+                out.writeLong(word);
+            }
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeLong(block.offset());
+                out.writeInt(block.length());
+                out.writeInt(block.rows());
+                out.writeLong(block.minTime());
+                out.writeLong(block.maxTime());
+            }
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+            stream.close();
+            try (FileChannel channel = FileChannel.open(temporary, READ, WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+            try (FileChannel directory = FileChannel.open(file.getParent(), READ)) {
+                directory.force(true);
+            }
+            return open(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater);
+                DataOutputStream body = new DataOutputStream(deflating);
+                for (byte[] column : List.of(keys.toByteArray(), seconds.toByteArray(), nanos.toByteArray(),
+                        weights.toByteArray(), ipv6.toByteArray(), ips.toByteArray())) {
+                    body.writeInt(column.length);
+                    body.write(column);
+                }
+                body.flush();
+                deflating.finish();
+            } finally {
+                deflater.end();
+            }
+            compressed.writeTo(stream);
+            blocks.add(new Block(position, compressed.size(), blockRowCount, blockMinTime, epochNanos(maxTimestamp)));
+            position += compressed.size();
+            keys.reset();
+            seconds.reset();
+            nanos.reset();
+            weights.reset();
+            ips.reset();
+            ipv6.clear();
+            blockRowCount = 0;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.practicum.routing.ReplicaRoutingDataSource;
+import ru.practicum.routing.ReplicaSettings;
+
+// С репликой (db.replica.enabled=true) запросы статистики в read-only транзакциях читают её, а запись хитов,
+// свёртки, скетчи и журнал остаются на основной БД. Основной пул строится из spring.datasource.*
+// и spring.datasource.hikari.*. Пулы отдают метрики hikaricp.* с тегом pool: stats-primary и stats-replica.
+@Configuration
+@ConditionalOnProperty(name = "db.replica.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig primaryPoolConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties, HikariConfig primaryPoolConfig,
+                                               Environment environment, MeterRegistry meterRegistry) {
+        return ReplicaRoutingDataSource.create("stats", properties, primaryPoolConfig,
+                ReplicaSettings.from(environment, "db.replica"), meterRegistry);
+    }
+}
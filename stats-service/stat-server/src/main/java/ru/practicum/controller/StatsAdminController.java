@@ -0,0 +1,58 @@
+package ru.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.PartitionStateDto;
+import ru.practicum.dto.RollupRebuildDto;
+import ru.practicum.service.ArchiveService;
+import ru.practicum.service.PartitionService;
+import ru.practicum.service.RollupService;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin")
+public class StatsAdminController {
+    private final RollupService rollupService;
+    private final PartitionService partitionService;
+    private final ArchiveService archiveService;
+
+    @PostMapping("/rollups/rebuild")
+    @ResponseStatus(HttpStatus.OK)
+    public RollupRebuildDto rebuildRollups(@RequestParam(required = false) String start,
+                                           @RequestParam(required = false) String end) {
+        log.info("POST /admin/rollups/rebuild start={}, end={}", start, end);
+        return rollupService.rebuild(start, end);
+    }
+
+    @GetMapping("/partitions")
+    public PartitionStateDto getPartitions() {
+        log.info("GET /admin/partitions");
+        return partitionService.getState();
+    }
+
+    @PostMapping("/partitions/maintain")
+    @ResponseStatus(HttpStatus.OK)
+    public PartitionStateDto maintainPartitions() {
+        log.info("POST /admin/partitions/maintain");
+        return partitionService.maintain();
+    }
+
+    @GetMapping("/archive")
+    public List<ArchiveSegmentDto> getArchive() {
+        log.info("GET /admin/archive");
+        return archiveService.getSegments();
+    }
+
+    @PostMapping("/archive")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ArchiveSegmentDto> archive(@RequestParam(required = false) String until) {
+        log.info("POST /admin/archive until={}", until);
+        return archiveService.archive(until);
+    }
+}
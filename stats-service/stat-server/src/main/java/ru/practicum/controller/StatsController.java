@@ -1,19 +1,43 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
 import ru.practicum.dto.ViewStats;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitFrame;
 import ru.practicum.service.EndpointHitService;
+import ru.practicum.service.ViewStatsStream;
+import ru.practicum.sketch.HyperLogLog;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
 public class StatsController {
+    public static final String RELATIVE_ERROR_HEADER = "X-Stats-Relative-Error";
+    // true — в ответе участвуют сэмплируемые uri, и числа восстановлены по весам строк или HLL
+    public static final String ESTIMATED_HEADER = "X-Stats-Estimated";
+
     private final EndpointHitService endpointHitService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -21,12 +45,107 @@ public class StatsController {
         endpointHitService.saveStat(endpointHitDto);
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveAll(@RequestBody List<@Valid EndpointHitDto> endpointHitDtos) {
+        endpointHitService.saveStats(endpointHitDtos);
+    }
+
+    // Та же пачка в бинарном виде (HitFrame): клиент выбирает формат заголовком Content-Type
+    @PostMapping(value = "/hits", consumes = HitFrame.CONTENT_TYPE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveFrames(@RequestBody byte[] body) {
+        endpointHitService.saveFrames(ByteBuffer.wrap(body));
+    }
+
     @GetMapping("/stats")
     @ResponseStatus(HttpStatus.OK)
     public List<ViewStats> getViewStats(@RequestParam String start,
                                                  @RequestParam String end,
                                                  @RequestParam(required = false) List<String> uris,
-                                                 @RequestParam(required = false) boolean unique) {
-        return endpointHitService.getViewStats(start, end, uris, unique);
+                                                 @RequestParam(required = false) boolean unique,
+                                                 @RequestParam(required = false) boolean approximate,
+                                                 HttpServletResponse response) {
+        if (unique && approximate) {
+            response.setHeader(RELATIVE_ERROR_HEADER,
+                    String.valueOf(HyperLogLog.relativeError(HyperLogLog.DEFAULT_PRECISION)));
+        }
+        if (endpointHitService.isEstimated(start, end, uris, unique)) {
+            response.setHeader(ESTIMATED_HEADER, "true");
+        }
+        return endpointHitService.getViewStats(start, end, uris, unique, approximate);
+    }
+
+    // Несколько окон {start, end, unique} по одному списку uri за один запрос, ответ — по ключам окон
+    @PostMapping("/stats/query")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<String, List<ViewStats>> queryViewStats(@Valid @RequestBody StatsQueryDto query,
+                                                       HttpServletResponse response) {
+        if (endpointHitService.isEstimated(query)) {
+            response.setHeader(ESTIMATED_HEADER, "true");
+        }
+        return endpointHitService.queryViewStats(query);
+    }
+
+    @GetMapping("/stats/top")
+    @ResponseStatus(HttpStatus.OK)
+    public TopViewStatsDto getTopViewStats(@RequestParam String start,
+                                           @RequestParam String end,
+                                           @RequestParam(defaultValue = "10") int k,
+                                           @RequestParam(required = false) boolean unique) {
+        return endpointHitService.getTopViewStats(start, end, k, unique);
+    }
+
+    @GetMapping("/stats/series")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ViewSeriesDto> getViewSeries(@RequestParam String start,
+                                             @RequestParam String end,
+                                             @RequestParam(required = false) List<String> uris,
+                                             @RequestParam(defaultValue = "HOUR") SeriesInterval interval,
+                                             HttpServletResponse response) {
+        if (endpointHitService.isSeriesEstimated(uris)) {
+            response.setHeader(ESTIMATED_HEADER, "true");
+        }
+        return endpointHitService.getViewSeries(start, end, uris, interval);
+    }
+
+    // Accept: application/x-ndjson — по одному ViewStats в строке, без сборки всего ответа в памяти
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamViewStats(@RequestParam String start,
+                                                                 @RequestParam String end,
+                                                                 @RequestParam(required = false) List<String> uris,
+                                                                 @RequestParam(required = false) boolean unique,
+                                                                 @RequestParam(required = false)
+                                                                 boolean approximate) {
+        ViewStatsStream stream = endpointHitService.streamViewStats(start, end, uris, unique, approximate);
+        StreamingResponseBody body = output -> {
+            // без flush на каждую строку — иначе каждая строка уходит отдельным чанком
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.setRootValueSeparator(null);
+            try {
+                stream.forEach(stats -> {
+                    try {
+                        writer.writeValue(generator, stats);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.flush();
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON);
+        if (unique && approximate) {
+            response.header(RELATIVE_ERROR_HEADER,
+                    String.valueOf(HyperLogLog.relativeError(HyperLogLog.DEFAULT_PRECISION)));
+        }
+        if (endpointHitService.isEstimated(start, end, uris, unique)) {
+            response.header(ESTIMATED_HEADER, "true");
+        }
+        return response.body(body);
     }
 }
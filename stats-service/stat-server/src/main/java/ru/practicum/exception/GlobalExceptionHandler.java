@@ -2,11 +2,14 @@ package ru.practicum.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -18,9 +21,10 @@ import java.util.Map;
 public class GlobalExceptionHandler {
     @ExceptionHandler({ValidationException.class,
             MissingServletRequestParameterException.class,
-            MethodArgumentNotValidException.class})
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ApiError handleBadRequestsException(Exception e) {
+            MethodArgumentNotValidException.class,
+            HandlerMethodValidationException.class,
+            MethodArgumentTypeMismatchException.class})
+    public ResponseEntity<ApiError> handleBadRequestsException(Exception e) {
         log.warn(e.getMessage(), e);
 
         String errorMessage = "";
@@ -34,12 +38,21 @@ public class GlobalExceptionHandler {
                             fieldError.getDefaultMessage()))
                     .toList();
 
+            context = Map.of("invalidFieldsCount", errors.size());
+        } else if (e instanceof HandlerMethodValidationException ex) {
+            errors = ex.getAllErrors().stream()
+                    .map(error -> String.valueOf(error.getDefaultMessage()))
+                    .toList();
+
             context = Map.of("invalidFieldsCount", errors.size());
         } else if (e instanceof MissingServletRequestParameterException ex) {
             errorMessage = String.format("Required parameter '%s' is missing", ex.getParameterName());
             reason = "MissingServletRequestParameterException";
 
             context = Map.of("missingParameter", ex.getParameterName());
+        } else if (e instanceof MethodArgumentTypeMismatchException ex) {
+            errorMessage = String.format("Invalid value '%s' for parameter '%s'", ex.getValue(), ex.getName());
+            reason = "MethodArgumentTypeMismatchException";
         } else if (e instanceof ValidationException ex) {
             errorMessage = ex.getMessage();
             reason = "ValidationException";
@@ -53,13 +66,16 @@ public class GlobalExceptionHandler {
 
             }
         }
-        return ApiError.builder()
-                .errors(errors)
-                .message(errorMessage)
-                .reason(reason)
-                .status(HttpStatus.BAD_REQUEST.name())
-                .localDateTime(LocalDateTime.now())
-                .context(context)
-                .build();
+        // тип ответа задан явно: ошибка отдаётся JSON-ом и клиенту, который просил application/x-ndjson
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ApiError.builder()
+                        .errors(errors)
+                        .message(errorMessage)
+                        .reason(reason)
+                        .status(HttpStatus.BAD_REQUEST.name())
+                        .localDateTime(LocalDateTime.now())
+                        .context(context)
+                        .build());
     }
 }
\ No newline at end of file
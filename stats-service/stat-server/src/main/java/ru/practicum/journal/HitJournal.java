@@ -0,0 +1,295 @@
+package ru.practicum.journal;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Журнал хитов из сегментов фиксированного размера, отображённых в память. Запись: [длина][crc32][данные].
+// Дописывается только последний сегмент; sync() одним force() сбрасывает на диск всё, что записано к этому моменту,
+// поэтому параллельные запросы делят один fsync (group commit).
+// Сегмент кончается на первой записи с нулевой длиной или неверной crc — так отсекается и запись, оборванная сбоем.
+// После открытия журнал всегда пишет в новый сегмент, хвосты старых не трогаются.
+public class HitJournal implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private final AtomicLong durableSequence = new AtomicLong();
+
+    private volatile Segment current;
+    private long appendedSequence;
+
+    public HitJournal(Path directory, int segmentSize, JournalPosition applied) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal segment size is too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        this.lockChannel = lock(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(HitJournal::isSegment).toList()) {
+                Segment segment = Segment.open(file, segmentId(file));
+                segments.put(segment.id, segment);
+            }
+        }
+        // номер не меньше применённого: если каталог потеряли, новые записи не окажутся позади контрольной точки
+        long last = segments.isEmpty() ? applied.segment() : Math.max(segments.lastKey(), applied.segment());
+        this.current = createSegment(last + 1);
+    }
+
+    // Возвращает номер записи для sync(); на диске запись гарантированно только после sync()
+    public long append(EndpointHitDto hit) {
+        byte[] payload = encode(hit);
+        if (payload.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Hit does not fit into a journal segment");
+        }
+        int crc = crc(payload);
+        synchronized (appendLock) {
+            if (current.limit + HEADER_SIZE + payload.length > segmentSize) {
+                roll();
+            }
+            Segment segment = current;
+            int offset = segment.limit;
+            segment.buffer.put(offset + HEADER_SIZE, payload);
+            segment.buffer.putInt(offset + 4, crc);
+            segment.buffer.putInt(offset, payload.length);
+            segment.limit = offset + HEADER_SIZE + payload.length;
+            return ++appendedSequence;
+        }
+    }
+
+    public void sync(long sequence) {
+        if (durableSequence.get() >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSequence.get() >= sequence) {
+                return;
+            }
+            Segment segment;
+            int limit;
+            long target;
+            synchronized (appendLock) {
+                segment = current;
+                limit = segment.limit;
+                target = appendedSequence;
+            }
+            segment.force(limit);
+            durableSequence.accumulateAndGet(target, Math::max);
+        }
+    }
+
+    public JournalBatch read(JournalPosition from, int limit) {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        long segmentId = from.segment();
+        int offset = from.offset();
+        while (hits.size() < limit) {
+            Segment segment = segments.get(segmentId);
+            if (segment == null) {
+                Long next = segments.higherKey(segmentId);
+                if (next == null) {
+                    break;
+                }
+                segmentId = next;
+                offset = 0;
+                continue;
+            }
+            // в текущем сегменте читаем только до опубликованной границы: дальше запись может быть недописана
+            boolean active = segment == current;
+            int end = active ? segment.limit : segment.buffer.capacity();
+            int length = offset <= end - HEADER_SIZE ? segment.buffer.getInt(offset) : 0;
+            if (length > 0 && length <= end - offset - HEADER_SIZE) {
+                byte[] payload = new byte[length];
+                segment.buffer.get(offset + HEADER_SIZE, payload);
+                if (crc(payload) == segment.buffer.getInt(offset + 4)) {
+                    hits.add(decode(payload));
+                    offset += HEADER_SIZE + length;
+                    continue;
+                }
+            }
+            Long next = active ? null : segments.higherKey(segmentId);
+            if (next == null) {
+                break;
+            }
+            segmentId = next;
+            offset = 0;
+        }
+        return new JournalBatch(hits, new JournalPosition(segmentId, offset));
+    }
+
+    // Удаляет сегменты, целиком лежащие до позиции applied
+    public int truncate(JournalPosition applied) {
+        int removed = 0;
+        for (Segment segment : segments.headMap(applied.segment()).values()) {
+            if (segment == current) {
+                continue;
+            }
+            segments.remove(segment.id);
+            segment.delete();
+            removed++;
+        }
+        return removed;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            current.force(current.limit);
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        lockChannel.close();
+    }
+
+    private void roll() {
+        Segment full = current;
+        full.force(full.limit);
+        durableSequence.accumulateAndGet(appendedSequence, Math::max);
+        try {
+            current = createSegment(full.id + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%019d%s", id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file, CREATE_NEW, READ, WRITE);
+        Segment segment = new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        // новый файл должен пережить сбой вместе с записью о нём в каталоге
+        try (FileChannel dir = FileChannel.open(directory, READ)) {
+            dir.force(true);
+        }
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve("journal.lock"), CREATE, WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // каталог уже открыт в этом же процессе
+        }
+        channel.close();
+        throw new IllegalStateException("Journal directory " + directory + " is already in use");
+    }
+
+    private static boolean isSegment(Path file) {
+        return file.getFileName().toString().endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(EndpointHitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EndpointHitDto decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return EndpointHitDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // граница записанного; публикуется после того, как запись целиком в буфере
+        private volatile int limit;
+        private int forced;
+
+        private Segment(long id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(Path file, long id) throws IOException {
+            FileChannel channel = FileChannel.open(file, READ);
+            return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+
+        private synchronized void force(int to) {
+            if (to > forced) {
+                buffer.force(forced, to - forced);
+                forced = to;
+            }
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
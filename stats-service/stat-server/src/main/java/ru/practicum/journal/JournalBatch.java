@@ -0,0 +1,8 @@
+package ru.practicum.journal;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.util.List;
+
+public record JournalBatch(List<EndpointHitDto> hits, JournalPosition next) {
+}
@@ -0,0 +1,7 @@
+package ru.practicum.journal;
+
+// Позиция следующей непрочитанной записи журнала
+public record JournalPosition(long segment, int offset) {
+
+    public static final JournalPosition START = new JournalPosition(0, 0);
+}
@@ -0,0 +1,4 @@
+package ru.practicum.model;
+
+public record AppUriIp(String app, String uri, byte[] ip) {
+}
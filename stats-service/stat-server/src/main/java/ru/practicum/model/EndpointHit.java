@@ -6,7 +6,9 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "stats")
+// Индекс здесь — для схемы, которую создаёт Hibernate в тестах; в PostgreSQL индексы stats создают schema.sql
+// и schema-postgresql.sql
+@Table(name = "stats", indexes = @Index(name = "stats_timestamp_idx", columnList = "timestamp"))
 @Getter
 @Setter
 @Builder
@@ -20,10 +22,24 @@ public class EndpointHit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private String app;
-    private String uri;
-    private String ip;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "app_id", nullable = false)
+    private StatsApp app;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "uri_id", nullable = false)
+    private StatsUri uri;
+
+    // 4 байта для IPv4, 16 — для IPv6
+    @ToString.Exclude
+    @Column(nullable = false, length = 16)
+    private byte[] ip;
 
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
+
+    // Сколько хитов представляет строка: больше 1, если хиты этого uri сэмплируются (HitSamplingService)
+    @Builder.Default
+    @Column(nullable = false)
+    private int weight = 1;
 }
@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+// Строка stats в старом формате: app, uri и ip ещё хранятся текстом
+public record LegacyHit(Long id, LocalDateTime timestamp, String app, String uri, String ip) {
+}
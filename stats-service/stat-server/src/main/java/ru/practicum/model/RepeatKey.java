@@ -0,0 +1,15 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RepeatKey(LocalDateTime bucketStart, int appId, int uriId) implements Comparable<RepeatKey> {
+    private static final Comparator<RepeatKey> ORDER = Comparator.comparing(RepeatKey::bucketStart)
+            .thenComparingInt(RepeatKey::appId)
+            .thenComparingInt(RepeatKey::uriId);
+
+    @Override
+    public int compareTo(RepeatKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(LocalDateTime bucketStart, String app, String uri) implements Comparable<RollupKey> {
+    private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::bucketStart)
+            .thenComparing(RollupKey::app)
+            .thenComparing(RollupKey::uri);
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+// Кусок диапазона [from, to), который считается по роллапу указанной гранулярности; granularity == null — по stats
+public record RollupRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
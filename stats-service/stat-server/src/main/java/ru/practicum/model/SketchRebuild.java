@@ -0,0 +1,5 @@
+package ru.practicum.model;
+
+// undercounted — скетчи, собранные только из выборки сэмплируемого uri: сохранённого скетча со всеми IP не было
+public record SketchRebuild(int buckets, int undercounted) {
+}
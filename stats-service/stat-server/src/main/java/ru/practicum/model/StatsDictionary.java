@@ -0,0 +1,13 @@
+package ru.practicum.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum StatsDictionary {
+    APP("stats_apps"),
+    URI("stats_uris");
+
+    private final String table;
+}
@@ -0,0 +1,11 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+// from == null — нижняя граница MINVALUE (бывшая непартиционированная таблица), обе границы null — DEFAULT-секция
+public record StatsPartition(String name, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isDefault() {
+        return from == null && to == null;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+import java.util.Map;
+
+// Оценки сверху по uri из слитых скетчей; у любого uri вне counts хитов не больше floor
+public record TopEstimate(Map<AppUri, Long> counts, long floor) {
+}
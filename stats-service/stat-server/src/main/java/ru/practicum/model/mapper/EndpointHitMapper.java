@@ -3,17 +3,18 @@ package ru.practicum.model.mapper;
 import lombok.experimental.UtilityClass;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsUri;
 
 @UtilityClass
 public class EndpointHitMapper {
 
-    public EndpointHit toEntity(EndpointHitDto dto) {
+    public EndpointHit toEntity(EndpointHitDto dto, StatsApp app, StatsUri uri) {
         return EndpointHit.builder()
-                .app(dto.getApp())
-                .uri(dto.getUri())
-                .ip(dto.getIp())
+                .app(app)
+                .uri(uri)
+                .ip(IpAddressMapper.toBytes(dto.getIp()))
                 .timestamp(dto.getTimestamp())
                 .build();
     }
 }
-
@@ -0,0 +1,72 @@
+package ru.practicum.model.mapper;
+
+import ru.practicum.dto.HitFrame;
+import ru.practicum.dto.IpAddresses;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsUri;
+import ru.practicum.service.DictionaryService;
+
+import java.nio.ByteBuffer;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Собирает EndpointHit прямо из кадров HitFrame: имя кадра разрешается в запись словаря один раз,
+// на хит приходятся только сама сущность, байты IP и время. Время в кадре — в миллисекундах, а хранится,
+// как и у JSON /hits, с точностью до секунды
+public class HitFrameReader implements HitFrame.Sink {
+    private static final int MAX_NAME_LENGTH = 50;
+
+    private final DictionaryService dictionaryService;
+    private final List<EndpointHit> hits = new ArrayList<>();
+    private String[] names;
+    private StatsApp[] apps;
+    private StatsUri[] uris;
+
+    public HitFrameReader(DictionaryService dictionaryService) {
+        this.dictionaryService = dictionaryService;
+    }
+
+    public static List<EndpointHit> read(ByteBuffer body, DictionaryService dictionaryService) {
+        HitFrameReader reader = new HitFrameReader(dictionaryService);
+        try {
+            HitFrame.decode(body, reader);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Malformed hit frame: " + e.getMessage());
+        }
+        return reader.hits;
+    }
+
+    @Override
+    public void names(String[] names) {
+        for (String name : names) {
+            if (name.isBlank() || name.length() > MAX_NAME_LENGTH) {
+                throw new ValidationException("App and uri must be non-blank and at most " + MAX_NAME_LENGTH
+                        + " characters long");
+            }
+        }
+        this.names = names;
+        this.apps = new StatsApp[names.length];
+        this.uris = new StatsUri[names.length];
+    }
+
+    @Override
+    public void hit(int app, int uri, ByteBuffer buffer, int ipOffset, int ipLength, long epochMillis) {
+        if (apps[app] == null) {
+            apps[app] = dictionaryService.getApp(names[app]);
+        }
+        if (uris[uri] == null) {
+            uris[uri] = dictionaryService.getUri(names[uri]);
+        }
+        byte[] ip = new byte[ipLength];
+        buffer.get(ipOffset, ip);
+        hits.add(EndpointHit.builder()
+                .app(apps[app])
+                .uri(uris[uri])
+                .ip(IpAddresses.normalize(ip))
+                .timestamp(HitFrame.fromEpochMillis(epochMillis).truncatedTo(ChronoUnit.SECONDS))
+                .build());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.model.mapper;
+
+import lombok.experimental.UtilityClass;
+import ru.practicum.dto.IpAddresses;
+import ru.practicum.exception.ValidationException;
+
+import java.nio.ByteBuffer;
+
+// IP хранятся в stats как 4 (IPv4) или 16 (IPv6) байт; разбор литералов — в IpAddresses (stat-dto),
+// его же использует бинарный кодировщик stat-client.
+@UtilityClass
+public class IpAddressMapper {
+
+    public byte[] toBytes(String ip) {
+        if (ip == null || ip.isBlank()) {
+            throw new ValidationException("Ip address must not be blank");
+        }
+        byte[] bytes = IpAddresses.parse(ip);
+        if (bytes == null) {
+            throw new ValidationException("Invalid ip address: " + ip);
+        }
+        return bytes;
+    }
+
+    public String toString(byte[] bytes) {
+        if (bytes.length == 4) {
+            return (bytes[0] & 0xff) + "." + (bytes[1] & 0xff) + "." + (bytes[2] & 0xff) + "." + (bytes[3] & 0xff);
+        }
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Ip address must be 4 or 16 bytes long");
+        }
+        int[] groups = new int[8];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = Short.toUnsignedInt(buffer.getShort());
+        }
+        // RFC 5952: сжимаем самую длинную серию нулевых групп (не короче двух)
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < groups.length; ) {
+            int j = i;
+            while (j < groups.length && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j == i ? i + 1 : j;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < groups.length; i++) {
+            if (i == bestStart) {
+                result.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (!result.isEmpty() && result.charAt(result.length() - 1) != ':') {
+                result.append(':');
+            }
+            result.append(Integer.toHexString(groups[i]));
+        }
+        return result.toString();
+    }
+}
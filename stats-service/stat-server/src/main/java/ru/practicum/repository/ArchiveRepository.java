@@ -0,0 +1,177 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.AppUriIp;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsUri;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+public class ArchiveRepository {
+    private static final int FETCH_SIZE = 10_000;
+    private static final int MOVE_CHUNK = 50_000;
+    // Удаляются и отдаются ровно одни и те же строки: хит, вставленный параллельно, не пропадёт мимо архива.
+    // RETURNING и OLD TABLE материализуют всё удалённое, поэтому сутки удаляются кусками по времени
+    private static final String POSTGRES_MOVE = """
+            WITH moved AS (
+                DELETE FROM stats WHERE timestamp >= ? AND timestamp < ?
+                RETURNING app_id, uri_id, ip, timestamp, weight
+            )
+            SELECT a.name AS app, u.name AS uri, m.ip, m.timestamp, m.weight
+            FROM moved m
+            JOIN stats_apps a ON a.id = m.app_id
+            JOIN stats_uris u ON u.id = m.uri_id
+            ORDER BY m.timestamp
+            """;
+    private static final String H2_MOVE = """
+            SELECT a.name AS app, u.name AS uri, m.ip, m.timestamp, m.weight
+            FROM OLD TABLE (DELETE FROM stats WHERE timestamp >= ? AND timestamp < ?) m
+            JOIN stats_apps a ON a.id = m.app_id
+            JOIN stats_uris u ON u.id = m.uri_id
+            ORDER BY m.timestamp
+            """;
+    // Граница куска — timestamp строки номер MOVE_CHUNK по индексу stats_timestamp_idx
+    private static final String CHUNK_END = """
+            SELECT timestamp FROM stats WHERE timestamp >= ? AND timestamp < ?
+            ORDER BY timestamp OFFSET ? ROWS FETCH FIRST 1 ROWS ONLY
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streaming;
+    private final NamedParameterJdbcTemplate namedStreaming;
+    private final SqlDialect dialect;
+
+    public ArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streaming.setFetchSize(FETCH_SIZE);
+        this.namedStreaming = new NamedParameterJdbcTemplate(streaming);
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public List<String> findFiles() {
+        return jdbcTemplate.queryForList("SELECT file FROM stats_archive ORDER BY range_start, id", String.class);
+    }
+
+    public Optional<LocalDateTime> findMinTimestampFrom(LocalDateTime from) {
+        Timestamp min = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM stats WHERE timestamp >= ?",
+                Timestamp.class, Timestamp.valueOf(from));
+        return Optional.ofNullable(min).map(Timestamp::toLocalDateTime);
+    }
+
+    // Нужна транзакция: строки удаляются по-настоящему только вместе с записью о сегменте.
+    // Куски идут подряд по времени, внутри куска строки отсортированы, так что порядок timestamp сохраняется
+    public void moveHits(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        LocalDateTime chunkStart = from;
+        while (chunkStart.isBefore(to)) {
+            LocalDateTime chunkEnd = findChunkEnd(chunkStart, to);
+            streaming.query(dialect == SqlDialect.POSTGRESQL ? POSTGRES_MOVE : H2_MOVE,
+                    rs -> {
+                        consumer.accept(EndpointHit.builder()
+                                .app(new StatsApp(null, rs.getString("app")))
+                                .uri(new StatsUri(null, rs.getString("uri")))
+                                .ip(rs.getBytes("ip"))
+                                .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                                .weight(rs.getInt("weight"))
+                                .build());
+                    },
+                    Timestamp.valueOf(chunkStart), Timestamp.valueOf(chunkEnd));
+            chunkStart = chunkEnd;
+        }
+    }
+
+    // Кусок — не меньше одного значения timestamp: строки с одинаковым временем не делятся между кусками
+    private LocalDateTime findChunkEnd(LocalDateTime from, LocalDateTime to) {
+        List<Timestamp> end = jdbcTemplate.queryForList(CHUNK_END, Timestamp.class,
+                Timestamp.valueOf(from), Timestamp.valueOf(to), MOVE_CHUNK);
+        if (end.isEmpty()) {
+            return to;
+        }
+        LocalDateTime chunkEnd = end.get(0).toLocalDateTime();
+        if (chunkEnd.isAfter(from)) {
+            return chunkEnd;
+        }
+        Timestamp next = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM stats WHERE timestamp > ?"
+                + " AND timestamp < ?", Timestamp.class, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return next == null ? to : next.toLocalDateTime();
+    }
+
+    // Строки секции stats целиком, без DELETE: секция потом отцепляется и удаляется, мёртвых строк не остаётся.
+    // SHARE-блокировка до конца транзакции не даёт вставить в секцию хит, который не попадёт в сегмент
+    public void streamPartition(String partition, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+        streaming.query("SELECT a.name AS app, u.name AS uri, m.ip, m.timestamp, m.weight FROM " + partition + " m"
+                        + " JOIN stats_apps a ON a.id = m.app_id JOIN stats_uris u ON u.id = m.uri_id"
+                        + " ORDER BY m.timestamp",
+                rs -> {
+                    consumer.accept(EndpointHit.builder()
+                            .app(new StatsApp(null, rs.getString("app")))
+                            .uri(new StatsUri(null, rs.getString("uri")))
+                            .ip(rs.getBytes("ip"))
+                            .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                            .weight(rs.getInt("weight"))
+                            .build());
+                });
+    }
+
+    // Различные (app, uri, ip) живых строк курсором — для объединения с IP из сегментов без списка в памяти
+    @Transactional(readOnly = true)
+    public void streamDistinctIps(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                                  Consumer<AppUriIp> consumer) {
+        MapSqlParameterSource params = range(start, endExclusive, uris);
+        namedStreaming.query("SELECT DISTINCT a.name AS app, u.name AS uri, s.ip FROM stats s"
+                        + " JOIN stats_apps a ON a.id = s.app_id JOIN stats_uris u ON u.id = s.uri_id"
+                        + " WHERE s.timestamp >= :start AND s.timestamp < :end" + uriFilter(uris),
+                params, rs -> {
+                    consumer.accept(new AppUriIp(rs.getString("app"), rs.getString("uri"), rs.getBytes("ip")));
+                });
+    }
+
+    // Живые строки диапазона курсором; для заархивированных суток это только поздние хиты
+    @Transactional(readOnly = true)
+    public void streamHits(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                           Consumer<EndpointHit> consumer) {
+        MapSqlParameterSource params = range(start, endExclusive, uris);
+        namedStreaming.query("SELECT a.name AS app, u.name AS uri, s.ip, s.timestamp, s.weight FROM stats s"
+                        + " JOIN stats_apps a ON a.id = s.app_id JOIN stats_uris u ON u.id = s.uri_id"
+                        + " WHERE s.timestamp >= :start AND s.timestamp < :end" + uriFilter(uris),
+                params, rs -> {
+                    consumer.accept(EndpointHit.builder()
+                            .app(new StatsApp(null, rs.getString("app")))
+                            .uri(new StatsUri(null, rs.getString("uri")))
+                            .ip(rs.getBytes("ip"))
+                            .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                            .weight(rs.getInt("weight"))
+                            .build());
+                });
+    }
+
+    public void save(LocalDateTime from, LocalDateTime to, String file, long hits) {
+        jdbcTemplate.update("INSERT INTO stats_archive (range_start, range_end, file, hits) VALUES (?, ?, ?, ?)",
+                Timestamp.valueOf(from), Timestamp.valueOf(to), file, hits);
+    }
+
+    private MapSqlParameterSource range(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(endExclusive));
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+        }
+        return params;
+    }
+
+    private String uriFilter(List<String> uris) {
+        return uris == null || uris.isEmpty() ? "" : " AND u.name IN (:uris)";
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.StatsDictionary;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class DictionaryRepository {
+    private static final String POSTGRES_INSERT = "INSERT INTO %s (name) VALUES (?) ON CONFLICT (name) DO NOTHING"
+            + " RETURNING id";
+    private static final String MERGE_INSERT = "MERGE INTO %s (name) KEY (name) VALUES (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect dialect;
+
+    public DictionaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public Optional<Integer> findId(StatsDictionary dictionary, String name) {
+        return jdbcTemplate.query("SELECT id FROM " + dictionary.getTable() + " WHERE name = ?",
+                        (rs, rowNum) -> rs.getInt("id"), name)
+                .stream()
+                .findFirst();
+    }
+
+    public Map<String, Integer> findIds(StatsDictionary dictionary, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, name FROM " + dictionary.getTable() + " WHERE name IN (:names)",
+                Map.of("names", names), rs -> {
+                    ids.put(rs.getString("name"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    // PostgreSQL сразу возвращает id вставленной строки; пусто — строка уже была (в H2 — всегда, id ищется отдельно)
+    public Optional<Integer> insertIfAbsent(StatsDictionary dictionary, String name) {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            return jdbcTemplate.query(String.format(POSTGRES_INSERT, dictionary.getTable()),
+                            (rs, rowNum) -> rs.getInt("id"), name)
+                    .stream()
+                    .findFirst();
+        }
+        jdbcTemplate.update(String.format(MERGE_INSERT, dictionary.getTable()), name);
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.LegacyHit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Перевод stats со строковых app/uri/ip на словари и байты. Старые столбцы переименовываются и остаются
+// nullable до конца миграции, чтобы новые хиты писались в новом формате параллельно с конвертацией.
+@Repository
+public class EncodingMigrationRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+
+    public EncodingMigrationRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public boolean isSupported() {
+        return dialect == SqlDialect.POSTGRESQL;
+    }
+
+    public Set<String> findStatsColumns() {
+        return new HashSet<>(jdbcTemplate.queryForList("""
+                SELECT column_name FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = 'stats'
+                """, String.class));
+    }
+
+    public void prepare() {
+        jdbcTemplate.execute("ALTER TABLE stats RENAME COLUMN app TO app_name");
+        jdbcTemplate.execute("ALTER TABLE stats RENAME COLUMN uri TO uri_name");
+        jdbcTemplate.execute("ALTER TABLE stats RENAME COLUMN ip TO ip_text");
+        jdbcTemplate.execute("ALTER TABLE stats ALTER COLUMN app_name DROP NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE stats ALTER COLUMN uri_name DROP NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE stats ALTER COLUMN ip_text DROP NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE stats ADD COLUMN app_id INTEGER");
+        jdbcTemplate.execute("ALTER TABLE stats ADD COLUMN uri_id INTEGER");
+        jdbcTemplate.execute("ALTER TABLE stats ADD COLUMN ip BYTEA");
+    }
+
+    // Курсор по timestamp идёт по индексу, так что уже сконвертированные строки не перечитываются
+    public List<LegacyHit> findBatch(LocalDateTime from, int limit) {
+        RowMapper<LegacyHit> mapper = (rs, rowNum) -> new LegacyHit(rs.getLong("id"),
+                rs.getTimestamp("timestamp").toLocalDateTime(), rs.getString("app_name"), rs.getString("uri_name"),
+                rs.getString("ip_text"));
+        String select = "SELECT id, timestamp, app_name, uri_name, ip_text FROM stats WHERE app_id IS NULL";
+        if (from == null) {
+            return jdbcTemplate.query(select + " ORDER BY timestamp LIMIT ?", mapper, limit);
+        }
+        return jdbcTemplate.query(select + " AND timestamp >= ? ORDER BY timestamp LIMIT ?", mapper,
+                Timestamp.valueOf(from), limit);
+    }
+
+    // id не уникален между секциями, timestamp в условии отсекает лишние секции
+    public void updateBatch(List<EndpointHit> hits) {
+        jdbcTemplate.batchUpdate("UPDATE stats SET app_id = ?, uri_id = ?, ip = ? WHERE id = ? AND timestamp = ?",
+                hits, hits.size(), (ps, hit) -> {
+                    ps.setInt(1, hit.getApp().getId());
+                    ps.setInt(2, hit.getUri().getId());
+                    ps.setBytes(3, hit.getIp());
+                    ps.setLong(4, hit.getId());
+                    ps.setTimestamp(5, Timestamp.valueOf(hit.getTimestamp()));
+                });
+    }
+
+    // На старой таблице schema-postgresql.sql пропустил индекс по uri_id — теперь столбец заполнен
+    public void applySchema() {
+        PostgresqlSchema.apply(jdbcTemplate);
+    }
+
+    public void finish() {
+        jdbcTemplate.execute("ALTER TABLE stats DROP COLUMN app_name, DROP COLUMN uri_name, DROP COLUMN ip_text");
+        jdbcTemplate.execute("ALTER TABLE stats ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,"
+                + " ALTER COLUMN ip SET NOT NULL");
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.repository;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+public interface EndpointHitBatchRepository {
+
+    void insertAll(List<EndpointHit> hits);
+}
@@ -0,0 +1,28 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+// IDENTITY-ключ отключает JDBC batching в Hibernate, поэтому пачку пишем напрямую через JdbcTemplate
+@RequiredArgsConstructor
+public class EndpointHitBatchRepositoryImpl implements EndpointHitBatchRepository {
+    private static final String INSERT_SQL = "INSERT INTO stats (app_id, uri_id, ip, timestamp, weight)"
+            + " VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<EndpointHit> hits) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, hit.getApp().getId());
+            ps.setInt(2, hit.getUri().getId());
+            ps.setBytes(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getWeight());
+        });
+    }
+}
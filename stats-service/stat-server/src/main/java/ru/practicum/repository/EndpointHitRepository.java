@@ -3,57 +3,47 @@ package ru.practicum.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.AppUriIp;
 import ru.practicum.model.EndpointHit;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
-public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long> {
+public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long>, EndpointHitBatchRepository {
 
-    //  уникальные IP для всех URI
     @Query("""
-            SELECT new ru.practicum.dto.ViewStats(e.app, e.uri, COUNT(DISTINCT e.ip))
-            FROM EndpointHit e
-            WHERE e.timestamp BETWEEN :start AND :end
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(DISTINCT e.ip) DESC
+            SELECT DISTINCT new ru.practicum.model.AppUriIp(a.name, u.name, e.ip)
+            FROM EndpointHit e JOIN e.app a JOIN e.uri u
+            WHERE e.timestamp >= :start AND e.timestamp < :end
             """)
-    List<ViewStats> findAllByTimestampBetweenStartAndEndWithUniqueIp(@Param("start") LocalDateTime start,
-                                                                     @Param("end") LocalDateTime end);
+    List<AppUriIp> findDistinctIpsInRange(@Param("start") LocalDateTime start,
+                                          @Param("end") LocalDateTime end);
 
-    //  все посещения для всех URI.
     @Query("""
-            SELECT new ru.practicum.dto.ViewStats(e.app, e.uri, COUNT(e.ip))
-            FROM EndpointHit e
-            WHERE e.timestamp BETWEEN :start AND :end
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(e.ip) DESC
+            SELECT DISTINCT new ru.practicum.model.AppUriIp(a.name, u.name, e.ip)
+            FROM EndpointHit e JOIN e.app a JOIN e.uri u
+            WHERE e.timestamp >= :start AND e.timestamp < :end AND u.name IN :uris
             """)
-    List<ViewStats> findAllByTimestampBetweenStartAndEndWhereIpNotUnique(@Param("start") LocalDateTime start,
-                                                                         @Param("end") LocalDateTime end);
+    List<AppUriIp> findDistinctIpsInRangeAndUri(@Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end,
+                                                @Param("uris") List<String> uris);
 
-    //  уникальные IP для указанных URI
+    // Пары, у которых в диапазоне есть пропущенные сэмплированием хиты: их строки в stats — лишь выборка IP
     @Query("""
-            SELECT new ru.practicum.dto.ViewStats(e.app, e.uri, COUNT(DISTINCT e.ip))
-            FROM EndpointHit e
-            WHERE e.timestamp BETWEEN :start AND :end AND e.uri IN :uris
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(DISTINCT e.ip) DESC
+            SELECT new ru.practicum.model.AppUri(a.name, u.name)
+            FROM EndpointHit e JOIN e.app a JOIN e.uri u
+            WHERE e.timestamp >= :start AND e.timestamp < :end
+            GROUP BY a.name, u.name
+            HAVING SUM(e.weight) > COUNT(e)
             """)
-    List<ViewStats> findAllByTimestampBetweenStartAndEndAndUriUniqueIp(@Param("start") LocalDateTime start,
-                                                                       @Param("end") LocalDateTime end,
-                                                                       @Param("uris") List<String> uris);
+    List<AppUri> findSampledInRange(@Param("start") LocalDateTime start,
+                                    @Param("end") LocalDateTime end);
 
-    //  все посещения для указанных URI
-    @Query("""
-            SELECT new ru.practicum.dto.ViewStats(e.app, e.uri, COUNT(e.ip))
-            FROM EndpointHit e
-            WHERE e.timestamp BETWEEN :start AND :end AND e.uri IN :uris
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(e.ip) DESC
-            """)
-    List<ViewStats> findAllByTimestampBetweenStartAndEndAndUriWhereIpNotUnique(@Param("start") LocalDateTime start,
-                                                                               @Param("end") LocalDateTime end,
-                                                                               @Param("uris") List<String> uris);
-}
\ No newline at end of file
+    @Query("SELECT MIN(e.timestamp) FROM EndpointHit e")
+    Optional<LocalDateTime> findMinTimestamp();
+
+    @Query("SELECT MAX(e.timestamp) FROM EndpointHit e")
+    Optional<LocalDateTime> findMaxTimestamp();
+}
@@ -0,0 +1,71 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class HllSketchRepository {
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO stats_uri_hll (bucket_start, app, uri, sketch) VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_start, app, uri) DO UPDATE SET sketch = EXCLUDED.sketch
+            """;
+    private static final String MERGE_UPSERT = """
+            MERGE INTO stats_uri_hll KEY (bucket_start, app, uri) VALUES (?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect dialect;
+
+    public HllSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public Optional<byte[]> findSketch(RollupKey key) {
+        List<byte[]> sketches = jdbcTemplate.query(
+                "SELECT sketch FROM stats_uri_hll WHERE bucket_start = ? AND app = ? AND uri = ?",
+                (rs, rowNum) -> rs.getBytes("sketch"),
+                Timestamp.valueOf(key.bucketStart()), key.app(), key.uri());
+        return sketches.stream().findFirst();
+    }
+
+    public Map<RollupKey, byte[]> findSketches(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, app, uri, sketch FROM stats_uri_hll"
+                + " WHERE bucket_start >= :from AND bucket_start < :to");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        Map<RollupKey, byte[]> result = new HashMap<>();
+        namedJdbcTemplate.query(sql.toString(), params, rs -> {
+            result.put(new RollupKey(rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getString("app"),
+                    rs.getString("uri")), rs.getBytes("sketch"));
+        });
+        return result;
+    }
+
+    public void save(RollupKey key, byte[] sketch) {
+        jdbcTemplate.update(dialect == SqlDialect.POSTGRESQL ? POSTGRES_UPSERT : MERGE_UPSERT,
+                Timestamp.valueOf(key.bucketStart()), key.app(), key.uri(), sketch);
+    }
+
+    public int deleteBuckets(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM stats_uri_hll WHERE bucket_start >= ? AND bucket_start < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
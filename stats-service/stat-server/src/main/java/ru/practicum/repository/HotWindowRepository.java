@@ -0,0 +1,68 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsUri;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class HotWindowRepository {
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // По индексу timestamp: читаются только строки окна, а не вся stats
+    public long findMaxIdSince(LocalDateTime from) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM stats WHERE timestamp >= ?", Long.class,
+                Timestamp.valueOf(from));
+        return maxId == null ? 0 : maxId;
+    }
+
+    public void forEachHitSince(LocalDateTime from, long maxId, Consumer<EndpointHit> consumer) {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(FETCH_SIZE);
+        streaming.query("""
+                        SELECT a.name AS app, u.name AS uri, s.ip, s.timestamp, s.weight
+                        FROM stats s
+                        JOIN stats_apps a ON a.id = s.app_id
+                        JOIN stats_uris u ON u.id = s.uri_id
+                        WHERE s.timestamp >= ? AND s.id <= ?
+                        """,
+                rs -> {
+                    consumer.accept(EndpointHit.builder()
+                            .app(new StatsApp(null, rs.getString("app")))
+                            .uri(new StatsUri(null, rs.getString("uri")))
+                            .ip(rs.getBytes("ip"))
+                            .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                            .weight(rs.getInt("weight"))
+                            .build());
+                },
+                Timestamp.valueOf(from), maxId);
+    }
+
+    // Счётчики повторов (stats_repeat) как хиты без IP: их вес идёт в hits, уникальные IP уже есть в строках stats
+    public List<EndpointHit> findRepeatsSince(LocalDateTime from) {
+        return jdbcTemplate.query("""
+                        SELECT a.name AS app, u.name AS uri, r.bucket_start, r.hits
+                        FROM stats_repeat r
+                        JOIN stats_apps a ON a.id = r.app_id
+                        JOIN stats_uris u ON u.id = r.uri_id
+                        WHERE r.bucket_start >= ?
+                        """,
+                (rs, rowNum) -> EndpointHit.builder()
+                        .app(new StatsApp(null, rs.getString("app")))
+                        .uri(new StatsUri(null, rs.getString("uri")))
+                        .timestamp(rs.getTimestamp("bucket_start").toLocalDateTime())
+                        .weight((int) Math.min(rs.getLong("hits"), Integer.MAX_VALUE))
+                        .build(),
+                Timestamp.valueOf(from));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.journal.JournalPosition;
+
+import java.util.List;
+import java.util.Optional;
+
+// Позиция журнала, до которой хиты уже в stats; пишется в той же транзакции, что и сами хиты
+@Repository
+public class JournalCheckpointRepository {
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO stats_journal_checkpoint (journal, segment, segment_offset) VALUES (?, ?, ?)
+            ON CONFLICT (journal) DO UPDATE SET segment = EXCLUDED.segment, segment_offset = EXCLUDED.segment_offset
+            """;
+    private static final String MERGE_UPSERT = """
+            MERGE INTO stats_journal_checkpoint KEY (journal) VALUES (?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+
+    public JournalCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public Optional<JournalPosition> find(String journal) {
+        List<JournalPosition> positions = jdbcTemplate.query(
+                "SELECT segment, segment_offset FROM stats_journal_checkpoint WHERE journal = ?",
+                (rs, rowNum) -> new JournalPosition(rs.getLong("segment"), rs.getInt("segment_offset")),
+                journal);
+        return positions.stream().findFirst();
+    }
+
+    public void save(String journal, JournalPosition position) {
+        jdbcTemplate.update(dialect == SqlDialect.POSTGRESQL ? POSTGRES_UPSERT : MERGE_UPSERT,
+                journal, position.segment(), position.offset());
+    }
+}
@@ -0,0 +1,131 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.StatsPartition;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// DDL секций stats. Имена секций генерирует сам сервис, поэтому подставляются в SQL напрямую
+@Slf4j
+@Repository
+public class PartitionRepository {
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+
+    public PartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public boolean isSupported() {
+        return dialect == SqlDialect.POSTGRESQL;
+    }
+
+    public boolean isPartitioned() {
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass('stats')", String.class);
+        return "p".equals(kind);
+    }
+
+    // Старая heap-таблица становится секцией [MINVALUE, upperBound) новой партиционированной stats
+    public void migrateToPartitioned(LocalDateTime upperBound) {
+        jdbcTemplate.execute("ALTER TABLE stats RENAME TO stats_legacy");
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS stats_timestamp_idx RENAME TO stats_legacy_timestamp_idx");
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS stats_uri_timestamp_idx"
+                + " RENAME TO stats_legacy_uri_timestamp_idx");
+        jdbcTemplate.execute("ALTER TABLE stats_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS");
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS stats_id_seq");
+        jdbcTemplate.execute("CREATE TABLE stats (LIKE stats_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)"
+                + " PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER TABLE stats ALTER COLUMN id SET DEFAULT nextval('stats_id_seq')");
+        jdbcTemplate.execute("ALTER SEQUENCE stats_id_seq OWNED BY stats.id");
+        jdbcTemplate.execute("SELECT setval('stats_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM stats_legacy), false)");
+        jdbcTemplate.execute("ALTER TABLE stats ATTACH PARTITION stats_legacy FOR VALUES FROM (MINVALUE) TO ("
+                + literal(upperBound) + ")");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS stats_timestamp_idx ON stats (timestamp)");
+        // индекс по uri на новой родительской таблице; в stats_legacy его подхватывает переименованный индекс
+        PostgresqlSchema.apply(jdbcTemplate);
+    }
+
+    public Optional<LocalDateTime> findMaxTimestamp() {
+        Timestamp max = jdbcTemplate.queryForObject("SELECT MAX(timestamp) FROM stats", Timestamp.class);
+        return Optional.ofNullable(max).map(Timestamp::toLocalDateTime);
+    }
+
+    public void ensureDefaultPartition() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS stats_default PARTITION OF stats DEFAULT");
+    }
+
+    public List<StatsPartition> findPartitions() {
+        return jdbcTemplate.query("""
+                SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'stats'::regclass
+                ORDER BY c.relname
+                """, (rs, rowNum) -> toPartition(rs.getString("name"), rs.getString("bound")));
+    }
+
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF stats FOR VALUES FROM ("
+                + literal(from) + ") TO (" + literal(to) + ")");
+    }
+
+    public boolean hasDefaultRows(LocalDateTime from, LocalDateTime to) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM stats_default WHERE timestamp >= ? AND timestamp < ?)",
+                Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+    }
+
+    // Секцию поверх строк, уже лежащих в DEFAULT, PostgreSQL не создаёт: строки диапазона копируются в отдельную
+    // таблицу, удаляются из DEFAULT, и таблица подключается секцией. Нужна транзакция
+    public void createPartitionFromDefault(String name, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE stats INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("INSERT INTO " + name
+                        + " SELECT * FROM stats_default WHERE timestamp >= ? AND timestamp < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.update("DELETE FROM stats_default WHERE timestamp >= ? AND timestamp < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE stats ATTACH PARTITION " + name + " FOR VALUES FROM ("
+                + literal(from) + ") TO (" + literal(to) + ")");
+        log.info("Moved {} rows of [{}, {}) from stats_default into {}", moved, from, to, name);
+    }
+
+    public void detachPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE stats DETACH PARTITION " + name);
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+
+    private StatsPartition toPartition(String name, String bound) {
+        Matcher matcher = RANGE_BOUND.matcher(bound);
+        if (!matcher.find()) {
+            return new StatsPartition(name, null, null);
+        }
+        return new StatsPartition(name, parseBound(matcher.group(1)), parseBound(matcher.group(2)));
+    }
+
+    private LocalDateTime parseBound(String value) {
+        if (value.equalsIgnoreCase("MINVALUE") || value.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        return LocalDateTime.parse(value.replace("'", ""), BOUND_FORMAT);
+    }
+
+    private String literal(LocalDateTime time) {
+        return "'" + time.format(BOUND_FORMAT) + "'";
+    }
+}
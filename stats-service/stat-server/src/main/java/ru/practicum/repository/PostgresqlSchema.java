@@ -0,0 +1,23 @@
+package ru.practicum.repository;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.Objects;
+
+// Повторное применение schema-postgresql.sql после миграций, меняющих структуру stats: скрипт идемпотентен,
+// а часть его объектов (индекс по uri_id) на старой структуре пропускается. Соединение берётся из текущей
+// транзакции, если она есть
+final class PostgresqlSchema {
+    private static final String SCRIPT = "schema-postgresql.sql";
+
+    private PostgresqlSchema() {
+    }
+
+    static void apply(JdbcTemplate jdbcTemplate) {
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)),
+                Objects.requireNonNull(jdbcTemplate.getDataSource()));
+    }
+}
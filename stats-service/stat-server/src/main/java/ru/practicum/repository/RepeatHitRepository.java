@@ -0,0 +1,52 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.RepeatKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Счётчики повторных хитов (тот же uri и IP в пределах окна), не записанных в stats отдельными строками
+@Repository
+public class RepeatHitRepository {
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO stats_repeat (bucket_start, app_id, uri_id, hits) VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_start, app_id, uri_id) DO UPDATE SET hits = stats_repeat.hits + EXCLUDED.hits
+            """;
+    private static final String MERGE_UPSERT = """
+            MERGE INTO stats_repeat t
+            USING (VALUES (CAST(? AS TIMESTAMP), CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BIGINT)))
+                s (bucket_start, app_id, uri_id, hits)
+            ON t.bucket_start = s.bucket_start AND t.app_id = s.app_id AND t.uri_id = s.uri_id
+            WHEN MATCHED THEN UPDATE SET hits = t.hits + s.hits
+            WHEN NOT MATCHED THEN INSERT (bucket_start, app_id, uri_id, hits) VALUES (s.bucket_start, s.app_id, s.uri_id, s.hits)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+
+    public RepeatHitRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    // Ключи приходят отсортированными, чтобы параллельные пачки блокировали строки в одном порядке
+    public void increment(Map<RepeatKey, Long> increments) {
+        List<Map.Entry<RepeatKey, Long>> entries = new ArrayList<>(increments.entrySet());
+        jdbcTemplate.batchUpdate(dialect == SqlDialect.POSTGRESQL ? POSTGRES_UPSERT : MERGE_UPSERT, entries,
+                entries.size(), (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().bucketStart()));
+                    ps.setInt(2, entry.getKey().appId());
+                    ps.setInt(3, entry.getKey().uriId());
+                    ps.setLong(4, entry.getValue());
+                });
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM stats_repeat WHERE bucket_start < ?", Timestamp.valueOf(cutoff));
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.RollupRange;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class RollupRepository {
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO %1$s (bucket_start, app, uri, hits) VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_start, app, uri) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits
+            """;
+    private static final String MERGE_UPSERT = """
+            MERGE INTO %s t
+            USING (VALUES (CAST(? AS TIMESTAMP), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(50)), CAST(? AS BIGINT)))
+                s (bucket_start, app, uri, hits)
+            ON t.bucket_start = s.bucket_start AND t.app = s.app AND t.uri = s.uri
+            WHEN MATCHED THEN UPDATE SET hits = t.hits + s.hits
+            WHEN NOT MATCHED THEN INSERT (bucket_start, app, uri, hits) VALUES (s.bucket_start, s.app, s.uri, s.hits)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SqlDialect dialect;
+
+    public RollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    // Ключи приходят отсортированными, чтобы параллельные пачки блокировали строки в одном порядке
+    public void increment(RollupGranularity granularity, Map<RollupKey, Long> increments) {
+        String sql = String.format(dialect == SqlDialect.POSTGRESQL ? POSTGRES_UPSERT : MERGE_UPSERT,
+                granularity.getTable());
+        List<Map.Entry<RollupKey, Long>> entries = new ArrayList<>(increments.entrySet());
+        jdbcTemplate.batchUpdate(sql, entries, entries.size(), (ps, entry) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().bucketStart()));
+            ps.setString(2, entry.getKey().app());
+            ps.setString(3, entry.getKey().uri());
+            ps.setLong(4, entry.getValue());
+        });
+    }
+
+    public List<ViewStats> sumHits(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                   List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM ")
+                .append(granularity.getTable())
+                .append(" WHERE bucket_start >= :from AND bucket_start < :to");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        sql.append(" GROUP BY app, uri");
+        return namedJdbcTemplate.query(sql.toString(), params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    // Суммы по (app, uri) сразу для нескольких окон, заданных кусками роллапов: один GROUP BY по объединению
+    // stats_hour и stats_minute, на каждое окно — свой SUM(CASE ...) по его кускам. Результат — по списку на окно
+    public List<List<ViewStats>> sumHitsInWindows(List<List<RollupRange>> windows, List<String> uris) {
+        List<List<ViewStats>> result = new ArrayList<>();
+        windows.forEach(window -> result.add(new ArrayList<>()));
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        Map<RollupGranularity, RollupRange> bounds = new EnumMap<>(RollupGranularity.class);
+        StringBuilder sql = new StringBuilder("SELECT app, uri");
+        for (int i = 0; i < windows.size(); i++) {
+            List<String> conditions = new ArrayList<>();
+            for (int j = 0; j < windows.get(i).size(); j++) {
+                RollupRange range = windows.get(i).get(j);
+                String name = i + "_" + j;
+                params.addValue("from" + name, Timestamp.valueOf(range.from()))
+                        .addValue("to" + name, Timestamp.valueOf(range.to()));
+                conditions.add("g = " + range.granularity().ordinal() + " AND bucket_start >= :from" + name
+                        + " AND bucket_start < :to" + name);
+                bounds.merge(range.granularity(), range, (left, right) -> new RollupRange(left.granularity(),
+                        left.from().isBefore(right.from()) ? left.from() : right.from(),
+                        left.to().isAfter(right.to()) ? left.to() : right.to()));
+            }
+            sql.append(conditions.isEmpty() ? ", 0"
+                    : ", SUM(CASE WHEN (" + String.join(") OR (", conditions) + ") THEN hits ELSE 0 END)")
+                    .append(" AS w").append(i);
+        }
+        if (bounds.isEmpty()) {
+            return result;
+        }
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+        }
+        List<String> tables = new ArrayList<>();
+        bounds.forEach((granularity, range) -> {
+            String name = granularity.name().toLowerCase();
+            params.addValue(name + "From", Timestamp.valueOf(range.from()))
+                    .addValue(name + "To", Timestamp.valueOf(range.to()));
+            tables.add("SELECT " + granularity.ordinal() + " AS g, bucket_start, app, uri, hits FROM "
+                    + granularity.getTable() + " WHERE bucket_start >= :" + name + "From AND bucket_start < :"
+                    + name + "To" + (params.hasValue("uris") ? " AND uri IN (:uris)" : ""));
+        });
+        sql.append(" FROM (").append(String.join(" UNION ALL ", tables)).append(") r GROUP BY app, uri");
+        namedJdbcTemplate.query(sql.toString(), params, rs -> {
+            for (int i = 0; i < result.size(); i++) {
+                long hits = rs.getLong("w" + i);
+                if (hits > 0) {
+                    result.get(i).add(new ViewStats(rs.getString("app"), rs.getString("uri"), hits));
+                }
+            }
+        });
+        return result;
+    }
+
+    public Optional<LocalDateTime> findFirstBucket(RollupGranularity granularity) {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(bucket_start) FROM " + granularity.getTable(),
+                Timestamp.class);
+        return Optional.ofNullable(first).map(Timestamp::toLocalDateTime);
+    }
+
+    // Ближайшее время не раньше from, на которое есть сырые строки, счётчики повторов, агрегаты или скетчи:
+    // в часах без всего этого пересборке нечего менять
+    public Optional<LocalDateTime> findNextRebuildTime(LocalDateTime from) {
+        Timestamp at = Timestamp.valueOf(from);
+        Timestamp next = jdbcTemplate.queryForObject("SELECT MIN(t) FROM ("
+                        + "SELECT MIN(timestamp) AS t FROM stats WHERE timestamp >= ? "
+                        + "UNION ALL SELECT MIN(bucket_start) FROM stats_repeat WHERE bucket_start >= ? "
+                        + "UNION ALL SELECT MIN(bucket_start) FROM stats_minute WHERE bucket_start >= ? "
+                        + "UNION ALL SELECT MIN(bucket_start) FROM stats_hour WHERE bucket_start >= ? "
+                        + "UNION ALL SELECT MIN(bucket_start) FROM stats_uri_hll WHERE bucket_start >= ? "
+                        + "UNION ALL SELECT MIN(bucket_start) FROM stats_top_hour WHERE bucket_start >= ?) n",
+                Timestamp.class, at, at, at, at, at, at);
+        return Optional.ofNullable(next).map(Timestamp::toLocalDateTime);
+    }
+
+    public int deleteBuckets(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM " + granularity.getTable()
+                        + " WHERE bucket_start >= ? AND bucket_start < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public int rebuildFromRaw(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        String bucket = "DATE_TRUNC('" + granularity.getTruncField() + "', timestamp)";
+        // строки stats и счётчики повторов stats_repeat (RepeatHitService) складываются в одном проходе
+        return jdbcTemplate.update("INSERT INTO " + granularity.getTable() + " (bucket_start, app, uri, hits) "
+                        + "SELECT " + bucket + ", a.name, u.name, SUM(s.hits) FROM ("
+                        + "SELECT app_id, uri_id, timestamp, weight AS hits FROM stats "
+                        + "WHERE timestamp >= ? AND timestamp < ? "
+                        + "UNION ALL SELECT app_id, uri_id, bucket_start, hits FROM stats_repeat "
+                        + "WHERE bucket_start >= ? AND bucket_start < ?) s "
+                        + "JOIN stats_apps a ON a.id = s.app_id JOIN stats_uris u ON u.id = s.uri_id "
+                        + "GROUP BY " + bucket + ", a.name, u.name",
+                Timestamp.valueOf(from), Timestamp.valueOf(to), Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Прод работает на PostgreSQL, тесты на H2 — для upsert и DDL нужен разный SQL
+public enum SqlDialect {
+    POSTGRESQL, H2;
+
+    public static SqlDialect detect(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product) ? POSTGRESQL : H2;
+    }
+}
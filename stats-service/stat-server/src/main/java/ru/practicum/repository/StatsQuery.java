@@ -0,0 +1,65 @@
+package ru.practicum.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Агрегат по сырым строкам stats за [start, endExclusive): хиты или уникальные IP по (app, uri),
+// опционально по списку id uri, с сортировкой по убыванию и лимитом.
+// Группировка идёт по id, имена подтягиваются уже к результату — фильтр по uri_id и диапазону
+// закрывается индексом stats_uri_timestamp_idx без обращения к таблице.
+@Getter
+@Builder
+public class StatsQuery {
+    private final LocalDateTime start;
+    private final LocalDateTime endExclusive;
+    // null — все uri, пустой список — ни один из запрошенных uri не встречался
+    private final List<Integer> uriIds;
+    private final boolean unique;
+    private final boolean orderByHits;
+    private final Integer limit;
+
+    public boolean matchesNothing() {
+        return uriIds != null && uriIds.isEmpty();
+    }
+
+    public String toSql(MapSqlParameterSource params) {
+        params.addValue("start", Timestamp.valueOf(start));
+        params.addValue("end", Timestamp.valueOf(endExclusive));
+        String uriFilter = "";
+        if (uriIds != null) {
+            uriFilter = " AND s.uri_id IN (:uriIds)";
+            params.addValue("uriIds", uriIds);
+        }
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.name AS uri, t.hits FROM (");
+        if (unique) {
+            sql.append("SELECT s.app_id, s.uri_id, COUNT(DISTINCT s.ip) AS hits")
+                    .append(" FROM stats s WHERE s.timestamp >= :start AND s.timestamp < :end")
+                    .append(uriFilter);
+        } else {
+            // повторные хиты, не записанные строками (RepeatHitService), лежат счётчиками в stats_repeat
+            sql.append("SELECT s.app_id, s.uri_id, SUM(s.hits) AS hits FROM (")
+                    .append("SELECT s.app_id, s.uri_id, s.weight AS hits")
+                    .append(" FROM stats s WHERE s.timestamp >= :start AND s.timestamp < :end").append(uriFilter)
+                    .append(" UNION ALL SELECT s.app_id, s.uri_id, s.hits")
+                    .append(" FROM stats_repeat s WHERE s.bucket_start >= :start AND s.bucket_start < :end")
+                    .append(uriFilter)
+                    .append(") s");
+        }
+        sql.append(" GROUP BY s.app_id, s.uri_id");
+        // лимит внутри подзапроса: отбор top-N идёт до соединения со словарями и без полной сортировки
+        if (limit != null) {
+            sql.append(" ORDER BY hits DESC LIMIT :limit");
+            params.addValue("limit", limit);
+        }
+        sql.append(") t JOIN stats_apps a ON a.id = t.app_id JOIN stats_uris u ON u.id = t.uri_id");
+        if (orderByHits || limit != null) {
+            sql.append(" ORDER BY t.hits DESC");
+        }
+        return sql.toString();
+    }
+}
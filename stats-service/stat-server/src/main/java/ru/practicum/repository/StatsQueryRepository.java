@@ -0,0 +1,49 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Repository
+public class StatsQueryRepository {
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public StatsQueryRepository(JdbcTemplate jdbcTemplate) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public List<ViewStats> find(StatsQuery query) {
+        if (query.matchesNothing()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return namedJdbcTemplate.query(query.toSql(params), params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    // Списки ViewStats по окнам в порядке query.getWindows(), каждый по убыванию hits
+    public List<List<ViewStats>> findWindows(WindowedStatsQuery query) {
+        List<List<ViewStats>> result = new ArrayList<>();
+        query.getWindows().forEach(window -> result.add(new ArrayList<>()));
+        if (query.matchesNothing()) {
+            return result;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        namedJdbcTemplate.query(query.toSql(params), params, rs -> {
+            for (int i = 0; i < result.size(); i++) {
+                long hits = rs.getLong("w" + i);
+                if (hits > 0) {
+                    result.get(i).add(new ViewStats(rs.getString("app"), rs.getString("uri"), hits));
+                }
+            }
+        });
+        result.forEach(stats -> stats.sort(Comparator.comparing(ViewStats::getHits).reversed()));
+        return result;
+    }
+}
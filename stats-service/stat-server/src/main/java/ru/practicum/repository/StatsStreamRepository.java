@@ -0,0 +1,78 @@
+package ru.practicum.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.RollupRange;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Агрегация целиком в SQL и чтение курсором: строки уходят потребителю по мере прихода из БД,
+// в памяти держится одна пачка fetch-size. Для курсора PostgreSQL нужна транзакция, отсюда @Transactional.
+@Repository
+@Transactional(readOnly = true)
+public class StatsStreamRepository {
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public StatsStreamRepository(JdbcTemplate jdbcTemplate,
+                                 @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(fetchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    // Роллапы и сырые края диапазона склеиваются через UNION ALL и досуммируются в одном запросе
+    public void streamHits(List<RollupRange> ranges, List<String> uris, Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        boolean filterUris = uris != null && !uris.isEmpty();
+        if (filterUris) {
+            params.addValue("uris", uris);
+        }
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            RollupRange range = ranges.get(i);
+            params.addValue("from" + i, Timestamp.valueOf(range.from()));
+            params.addValue("to" + i, Timestamp.valueOf(range.to()));
+            if (range.isRaw()) {
+                parts.add("SELECT a.name AS app, u.name AS uri, SUM(s.weight) AS hits FROM stats s"
+                        + " JOIN stats_apps a ON a.id = s.app_id JOIN stats_uris u ON u.id = s.uri_id"
+                        + " WHERE s.timestamp >= :from" + i + " AND s.timestamp < :to" + i
+                        + (filterUris ? " AND u.name IN (:uris)" : "")
+                        + " GROUP BY a.name, u.name");
+                parts.add("SELECT a.name AS app, u.name AS uri, SUM(r.hits) AS hits FROM stats_repeat r"
+                        + " JOIN stats_apps a ON a.id = r.app_id JOIN stats_uris u ON u.id = r.uri_id"
+                        + " WHERE r.bucket_start >= :from" + i + " AND r.bucket_start < :to" + i
+                        + (filterUris ? " AND u.name IN (:uris)" : "")
+                        + " GROUP BY a.name, u.name");
+            } else {
+                parts.add("SELECT app, uri, hits FROM " + range.granularity().getTable()
+                        + " WHERE bucket_start >= :from" + i + " AND bucket_start < :to" + i
+                        + (filterUris ? " AND uri IN (:uris)" : ""));
+            }
+        }
+        String sql = "SELECT app, uri, SUM(hits) AS hits FROM (" + String.join(" UNION ALL ", parts) + ") t"
+                + " GROUP BY app, uri ORDER BY hits DESC";
+        query(sql, params, consumer);
+    }
+
+    public void stream(StatsQuery query, Consumer<ViewStats> consumer) {
+        if (query.matchesNothing()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        query(query.toSql(params), params, consumer);
+    }
+
+    private void query(String sql, MapSqlParameterSource params, Consumer<ViewStats> consumer) {
+        namedJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class TopSketchRepository {
+    private static final String POSTGRES_UPSERT = """
+            INSERT INTO stats_top_hour (bucket_start, sketch) VALUES (?, ?)
+            ON CONFLICT (bucket_start) DO UPDATE SET sketch = EXCLUDED.sketch
+            """;
+    private static final String MERGE_UPSERT = "MERGE INTO stats_top_hour KEY (bucket_start) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+
+    public TopSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = SqlDialect.detect(jdbcTemplate);
+    }
+
+    public Optional<byte[]> findSketch(LocalDateTime bucketStart) {
+        List<byte[]> sketches = jdbcTemplate.query("SELECT sketch FROM stats_top_hour WHERE bucket_start = ?",
+                (rs, rowNum) -> rs.getBytes("sketch"), Timestamp.valueOf(bucketStart));
+        return sketches.stream().findFirst();
+    }
+
+    public Map<LocalDateTime, byte[]> findSketches(LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, byte[]> result = new HashMap<>();
+        jdbcTemplate.query("SELECT bucket_start, sketch FROM stats_top_hour"
+                        + " WHERE bucket_start >= ? AND bucket_start < ?",
+                rs -> {
+                    result.put(rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getBytes("sketch"));
+                },
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return result;
+    }
+
+    public void save(LocalDateTime bucketStart, byte[] sketch) {
+        jdbcTemplate.update(dialect == SqlDialect.POSTGRESQL ? POSTGRES_UPSERT : MERGE_UPSERT,
+                Timestamp.valueOf(bucketStart), sketch);
+    }
+
+    public int deleteBuckets(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM stats_top_hour WHERE bucket_start >= ? AND bucket_start < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
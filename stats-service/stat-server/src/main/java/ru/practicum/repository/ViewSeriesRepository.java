@@ -0,0 +1,71 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.ViewSeriesDto;
+import ru.practicum.dto.ViewSeriesPoint;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Хиты и уникальные IP по интервалам считаются одним GROUP BY по сырым строкам: уникальные из роллапов не собрать
+@Repository
+public class ViewSeriesRepository {
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public ViewSeriesRepository(JdbcTemplate jdbcTemplate) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public List<ViewSeriesDto> findSeries(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                                          SeriesInterval interval) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(endExclusive));
+        // единица усечения берётся из enum, поэтому подставляется в SQL напрямую
+        String unit = interval.name().toLowerCase();
+        String bucket = "DATE_TRUNC('" + unit + "', s.timestamp)";
+        String repeatBucket = "DATE_TRUNC('" + unit + "', r.bucket_start)";
+        String uriFilter = "";
+        if (uris != null && !uris.isEmpty()) {
+            uriFilter = " AND u.name IN (:uris)";
+            params.addValue("uris", uris);
+        }
+        // повторные хиты из stats_repeat (RepeatHitService) добавляют только hits: их IP уже есть в stats
+        String sql = "SELECT app, uri, bucket, SUM(hits) AS hits, SUM(uniq) AS uniq FROM ("
+                + "SELECT a.name AS app, u.name AS uri, " + bucket + " AS bucket,"
+                + " SUM(s.weight) AS hits, COUNT(DISTINCT s.ip) AS uniq"
+                + " FROM stats s"
+                + " JOIN stats_apps a ON a.id = s.app_id"
+                + " JOIN stats_uris u ON u.id = s.uri_id"
+                + " WHERE s.timestamp >= :start AND s.timestamp < :end" + uriFilter
+                + " GROUP BY a.name, u.name, " + bucket
+                + " UNION ALL SELECT a.name, u.name, " + repeatBucket + ","
+                + " SUM(r.hits), 0"
+                + " FROM stats_repeat r"
+                + " JOIN stats_apps a ON a.id = r.app_id"
+                + " JOIN stats_uris u ON u.id = r.uri_id"
+                + " WHERE r.bucket_start >= :start AND r.bucket_start < :end" + uriFilter
+                + " GROUP BY a.name, u.name, " + repeatBucket
+                + ") t GROUP BY app, uri, bucket ORDER BY app, uri, bucket";
+
+        List<ViewSeriesDto> series = new ArrayList<>();
+        namedJdbcTemplate.query(sql, params, rs -> {
+            String app = rs.getString("app");
+            String uri = rs.getString("uri");
+            ViewSeriesDto current = series.isEmpty() ? null : series.get(series.size() - 1);
+            if (current == null || !current.getApp().equals(app) || !current.getUri().equals(uri)) {
+                current = ViewSeriesDto.builder().app(app).uri(uri).build();
+                series.add(current);
+            }
+            current.getPoints().add(new ViewSeriesPoint(rs.getTimestamp("bucket").toLocalDateTime(),
+                    rs.getLong("hits"), rs.getLong("uniq")));
+        });
+        return series;
+    }
+}
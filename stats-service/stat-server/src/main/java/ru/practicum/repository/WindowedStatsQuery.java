@@ -0,0 +1,57 @@
+package ru.practicum.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+// Уникальные IP по (app, uri) сразу для нескольких окон: один проход по stats за объединение окон,
+// на каждое окно — свой COUNT(DISTINCT CASE ...). Пары, не попавшие ни в одно окно (промежутки между ними),
+// дают нули и отбрасываются при чтении.
+@Getter
+@Builder
+public class WindowedStatsQuery {
+    private final List<Window> windows;
+    // null — все uri, пустой список — ни один из запрошенных uri не встречался
+    private final List<Integer> uriIds;
+
+    public record Window(LocalDateTime start, LocalDateTime endExclusive) {
+    }
+
+    public boolean matchesNothing() {
+        return windows.isEmpty() || uriIds != null && uriIds.isEmpty();
+    }
+
+    public String toSql(MapSqlParameterSource params) {
+        params.addValue("start", Timestamp.valueOf(windows.stream()
+                .map(Window::start)
+                .min(Comparator.naturalOrder())
+                .orElseThrow()));
+        params.addValue("end", Timestamp.valueOf(windows.stream()
+                .map(Window::endExclusive)
+                .max(Comparator.naturalOrder())
+                .orElseThrow()));
+        StringBuilder outer = new StringBuilder("SELECT a.name AS app, u.name AS uri");
+        StringBuilder inner = new StringBuilder("SELECT s.app_id, s.uri_id");
+        for (int i = 0; i < windows.size(); i++) {
+            params.addValue("start" + i, Timestamp.valueOf(windows.get(i).start()));
+            params.addValue("end" + i, Timestamp.valueOf(windows.get(i).endExclusive()));
+            inner.append(", COUNT(DISTINCT CASE WHEN s.timestamp >= :start").append(i)
+                    .append(" AND s.timestamp < :end").append(i).append(" THEN s.ip END) AS w").append(i);
+            outer.append(", t.w").append(i);
+        }
+        inner.append(" FROM stats s WHERE s.timestamp >= :start AND s.timestamp < :end");
+        if (uriIds != null) {
+            inner.append(" AND s.uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+        inner.append(" GROUP BY s.app_id, s.uri_id");
+        return outer.append(" FROM (").append(inner)
+                .append(") t JOIN stats_apps a ON a.id = t.app_id JOIN stats_uris u ON u.id = t.uri_id")
+                .toString();
+    }
+}
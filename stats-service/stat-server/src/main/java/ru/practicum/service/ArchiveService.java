@@ -0,0 +1,31 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.ViewSeriesDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ArchiveService {
+
+    List<ArchiveSegmentDto> archive(String until);
+
+    List<ArchiveSegmentDto> getSegments();
+
+    Optional<LocalDateTime> getArchivedUntil();
+
+    boolean overlaps(LocalDateTime start, LocalDateTime endExclusive, List<String> uris);
+
+    Map<AppUri, Long> countHits(LocalDateTime start, LocalDateTime endExclusive, List<String> uris);
+
+    List<ViewStats> countUnique(LocalDateTime start, LocalDateTime endExclusive, List<String> uris);
+
+    // Дополняет ряд, посчитанный по живым строкам, хитами и уникальными IP из сегментов
+    List<ViewSeriesDto> mergeSeries(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                                    SeriesInterval interval, List<ViewSeriesDto> live);
+}
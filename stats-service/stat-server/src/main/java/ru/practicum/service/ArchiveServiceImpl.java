@@ -0,0 +1,366 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.archive.ArchiveSegment;
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.ViewSeriesDto;
+import ru.practicum.dto.ViewSeriesPoint;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsPartition;
+import ru.practicum.repository.ArchiveRepository;
+import ru.practicum.repository.EndpointHitRepository;
+import ru.practicum.repository.PartitionRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+// Закрытые сутки старше stats.archive.after-days выгружаются из stats в колоночные файлы (ArchiveSegment);
+// роллапы и скетчи остаются в БД, так что неуникальные счётчики и HLL-оценки архив не затрагивает.
+// Сегмент становится частью данных в той же транзакции, где его строки удаляются из stats (запись в stats_archive):
+// после сбоя хит не окажется ни в двух местах, ни нигде. Файлы на локальном диске — рассчитано на один stat-server.
+// Секция партиционированной stats, целиком лежащая до границы архивации, выгружается одним сегментом и удаляется
+// DROP, остальные строки (старая heap-секция, DEFAULT, поздние хиты) — посуточно через DELETE.
+@Slf4j
+@Service
+public class ArchiveServiceImpl implements ArchiveService {
+    private static final String SEGMENT_SUFFIX = ".hseg";
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final ArchiveRepository archiveRepository;
+    private final EndpointHitRepository endpointHitRepository;
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Path directory;
+    private final int afterDays;
+    private final long maxUniqueIps;
+
+    private volatile List<ArchiveSegment> segments = List.of();
+
+    private record SeriesIp(AppUri key, LocalDateTime bucket, ByteBuffer ip) {
+    }
+
+    public ArchiveServiceImpl(ArchiveRepository archiveRepository,
+                              EndpointHitRepository endpointHitRepository,
+                              PartitionRepository partitionRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${stats.archive.enabled:false}") boolean enabled,
+                              @Value("${stats.archive.directory:stats-archive}") String directory,
+                              @Value("${stats.archive.after-days:90}") int afterDays,
+                              @Value("${stats.archive.max-unique-ips:500000}") long maxUniqueIps) {
+        this.archiveRepository = archiveRepository;
+        this.endpointHitRepository = endpointHitRepository;
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.afterDays = afterDays;
+        this.maxUniqueIps = maxUniqueIps;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        Files.createDirectories(directory);
+        List<String> catalog = archiveRepository.findFiles();
+        List<ArchiveSegment> loaded = new ArrayList<>();
+        for (String file : catalog) {
+            Path path = directory.resolve(file);
+            if (Files.exists(path)) {
+                loaded.add(ArchiveSegment.open(path));
+            } else {
+                log.error("Archive segment {} is missing, its hits are excluded from unique stats", path);
+            }
+        }
+        // файл без записи в stats_archive остался от архивации, не дошедшей до коммита: его строки всё ещё в stats
+        Set<String> known = new HashSet<>(catalog);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(SEGMENT_SUFFIX) || name.endsWith(".tmp")) && !known.contains(name)) {
+                    log.warn("Removing uncommitted archive file {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+        segments = List.copyOf(loaded);
+        log.info("Loaded {} archive segments from {}", loaded.size(), directory.toAbsolutePath());
+    }
+
+    @Scheduled(cron = "${stats.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive(null);
+        } catch (RuntimeException e) {
+            log.error("Archiving failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized List<ArchiveSegmentDto> archive(String until) {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        LocalDateTime limit = until != null
+                ? LocalDateTime.parse(until, FORMATTER).toLocalDate().atStartOfDay()
+                : today.minusDays(afterDays);
+        if (limit.isAfter(today)) {
+            throw new ValidationException("Only closed days can be archived, until must not be after "
+                    + today.format(FORMATTER));
+        }
+        log.info("Archiving hits before {}", limit);
+        List<ArchiveSegmentDto> archived = new ArrayList<>();
+        List<StatsPartition> partitions = closedPartitions(limit);
+        Optional<LocalDateTime> oldest = endpointHitRepository.findMinTimestamp();
+        while (oldest.isPresent() && oldest.get().isBefore(limit)) {
+            LocalDateTime time = oldest.get();
+            Optional<StatsPartition> partition = partitions.stream()
+                    .filter(candidate -> !candidate.from().isAfter(time) && candidate.to().isAfter(time))
+                    .findFirst();
+            LocalDateTime next;
+            if (partition.isPresent()) {
+                StatsPartition closed = partition.get();
+                archivePartition(closed).ifPresent(segment -> archived.add(toDto(segment)));
+                next = closed.to();
+            } else {
+                LocalDateTime day = time.toLocalDate().atStartOfDay();
+                next = day.plusDays(1);
+                archiveRange(day, next, consumer -> archiveRepository.moveHits(day, next, consumer), null)
+                        .ifPresent(segment -> archived.add(toDto(segment)));
+            }
+            oldest = archiveRepository.findMinTimestampFrom(next);
+        }
+        return archived;
+    }
+
+    @Override
+    public List<ArchiveSegmentDto> getSegments() {
+        return segments.stream()
+                .map(this::toDto)
+                .toList();
+    }
+
+    @Override
+    public Optional<LocalDateTime> getArchivedUntil() {
+        return segments.stream()
+                .map(ArchiveSegment::getTo)
+                .max(Comparator.naturalOrder());
+    }
+
+    @Override
+    public boolean overlaps(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        return segments.stream().anyMatch(segment -> segment.mayMatch(start, endExclusive, uris));
+    }
+
+    @Override
+    public Map<AppUri, Long> countHits(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            if (segment.mayMatch(start, endExclusive, uris)) {
+                segment.countHits(start, endExclusive, uris)
+                        .forEach((key, count) -> hits.merge(key, count, Long::sum));
+            }
+        }
+        return hits;
+    }
+
+    // Уникальные IP нельзя сложить по частям. В памяти — только IP из сегментов, не больше max-unique-ips
+    // (по умолчанию 500 000, порядка десятков МБ на запрос); шире — только approximate=true по HLL.
+    // Различные живые (app, uri, ip) идут курсором, и каждый, которого нет в архивном множестве, добавляет
+    // к счётчику единицу
+    @Override
+    public List<ViewStats> countUnique(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        Map<AppUri, Set<ByteBuffer>> archived = new HashMap<>();
+        long remaining = maxUniqueIps;
+        for (ArchiveSegment segment : segments) {
+            if (segment.mayMatch(start, endExclusive, uris)) {
+                long added = segment.collectIps(start, endExclusive, uris, archived, remaining);
+                if (added < 0) {
+                    throw new ValidationException("Exact unique count over archived days needs more than "
+                            + maxUniqueIps + " distinct ips: narrow the range or uris, or use approximate=true");
+                }
+                remaining -= added;
+            }
+        }
+        Map<AppUri, Long> counts = new HashMap<>();
+        archived.forEach((key, ips) -> counts.put(key, (long) ips.size()));
+        archiveRepository.streamDistinctIps(start, endExclusive, uris, hit -> {
+            AppUri key = new AppUri(hit.app(), hit.uri());
+            Set<ByteBuffer> ips = archived.get(key);
+            if (ips == null || !ips.contains(ByteBuffer.wrap(hit.ip()))) {
+                counts.merge(key, 1L, Long::sum);
+            }
+        });
+        return counts.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    // Живые строки в заархивированных сутках — только поздние хиты, поэтому пересечение IP по интервалам
+    // ищется по ним одним, а интервал не длиннее суток не выходит за границы сегмента
+    @Override
+    public List<ViewSeriesDto> mergeSeries(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                                           SeriesInterval interval, List<ViewSeriesDto> live) {
+        ChronoUnit unit = switch (interval) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+        Map<AppUri, Map<LocalDateTime, ArchiveSegment.SeriesBucket>> archived = new HashMap<>();
+        Map<AppUri, Map<LocalDateTime, Long>> counted = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            if (!segment.mayMatch(start, endExclusive, uris)) {
+                continue;
+            }
+            segment.collectSeries(start, endExclusive, uris, unit, archived);
+            LocalDateTime from = segment.getFrom().isAfter(start) ? segment.getFrom() : start;
+            LocalDateTime to = segment.getTo().isBefore(endExclusive) ? segment.getTo() : endExclusive;
+            Set<SeriesIp> seen = new HashSet<>();
+            archiveRepository.streamHits(from, to, uris, hit -> {
+                AppUri key = new AppUri(hit.getApp().getName(), hit.getUri().getName());
+                LocalDateTime bucket = hit.getTimestamp().truncatedTo(unit);
+                ByteBuffer ip = ByteBuffer.wrap(hit.getIp());
+                ArchiveSegment.SeriesBucket series = archived.getOrDefault(key, Map.of()).get(bucket);
+                if (series != null && series.getIps().contains(ip) && seen.add(new SeriesIp(key, bucket, ip))) {
+                    counted.computeIfAbsent(key, value -> new HashMap<>()).merge(bucket, 1L, Long::sum);
+                }
+            });
+        }
+        Map<AppUri, Map<LocalDateTime, ViewSeriesPoint>> merged = new TreeMap<>(
+                Comparator.comparing(AppUri::app).thenComparing(AppUri::uri));
+        for (ViewSeriesDto series : live) {
+            Map<LocalDateTime, ViewSeriesPoint> points = merged.computeIfAbsent(
+                    new AppUri(series.getApp(), series.getUri()), key -> new TreeMap<>());
+            series.getPoints().forEach(point -> points.put(point.getBucket(), point));
+        }
+        archived.forEach((key, buckets) -> buckets.forEach((bucket, series) -> {
+            ViewSeriesPoint point = merged.computeIfAbsent(key, value -> new TreeMap<>())
+                    .computeIfAbsent(bucket, value -> new ViewSeriesPoint(bucket, 0, 0));
+            long overlap = counted.getOrDefault(key, Map.of()).getOrDefault(bucket, 0L);
+            point.setHits(point.getHits() + series.getHits());
+            point.setUnique(point.getUnique() + series.getIps().size() - overlap);
+        }));
+        return merged.entrySet().stream()
+                .map(entry -> ViewSeriesDto.builder()
+                        .app(entry.getKey().app())
+                        .uri(entry.getKey().uri())
+                        .points(new ArrayList<>(entry.getValue().values()))
+                        .build())
+                .toList();
+    }
+
+    // Секции с обеими границами, целиком лежащие до limit; без партиционирования (и в H2) — никаких
+    private List<StatsPartition> closedPartitions(LocalDateTime limit) {
+        if (!partitionRepository.isSupported() || !partitionRepository.isPartitioned()) {
+            return List.of();
+        }
+        return partitionRepository.findPartitions().stream()
+                .filter(partition -> partition.from() != null && partition.to() != null)
+                .filter(partition -> !partition.to().isAfter(limit))
+                .toList();
+    }
+
+    private Optional<ArchiveSegment> archivePartition(StatsPartition partition) {
+        return archiveRange(partition.from(), partition.to(),
+                consumer -> archiveRepository.streamPartition(partition.name(), consumer), () -> {
+                    partitionRepository.detachPartition(partition.name());
+                    partitionRepository.dropPartition(partition.name());
+                });
+    }
+
+    // source отдаёт строки диапазона по порядку timestamp; release (если есть) освобождает их хранилище
+    // в той же транзакции, что и запись о сегменте
+    private Optional<ArchiveSegment> archiveRange(LocalDateTime from, LocalDateTime to,
+                                                  Consumer<Consumer<EndpointHit>> source, Runnable release) {
+        String name = from.format(FILE_DATE) + "-" + System.currentTimeMillis() + SEGMENT_SUFFIX;
+        Path file = directory.resolve(name);
+        ArchiveSegment segment;
+        try {
+            segment = transactionTemplate.execute(status -> {
+                try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file)) {
+                    source.accept(hit -> writer.add(hit.getApp().getName(), hit.getUri().getName(), hit.getIp(),
+                            hit.getTimestamp(), hit.getWeight()));
+                    if (release != null) {
+                        release.run();
+                    }
+                    if (writer.isEmpty()) {
+                        return null;
+                    }
+                    ArchiveSegment written = writer.write(from, to);
+                    archiveRepository.save(from, to, name, written.getHits());
+                    return written;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        if (segment == null) {
+            return Optional.empty();
+        }
+        List<ArchiveSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+        log.info("Archived {} rows ({} hits) of [{}, {}) into {}", segment.getRows(), segment.getHits(), from, to,
+                file);
+        return Optional.of(segment);
+    }
+
+    private ArchiveSegmentDto toDto(ArchiveSegment segment) {
+        long size;
+        try {
+            size = Files.size(segment.getFile());
+        } catch (IOException e) {
+            size = -1;
+        }
+        return ArchiveSegmentDto.builder()
+                .file(segment.getFile().getFileName().toString())
+                .from(segment.getFrom())
+                .to(segment.getTo())
+                .hits(segment.getHits())
+                .uris(segment.getUris())
+                .sizeBytes(size)
+                .build();
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to remove archive file {}: {}", file, e.getMessage());
+        }
+    }
+}
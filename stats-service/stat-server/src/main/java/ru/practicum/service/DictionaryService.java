@@ -0,0 +1,17 @@
+package ru.practicum.service;
+
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsUri;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DictionaryService {
+
+    StatsApp getApp(String name);
+
+    StatsUri getUri(String name);
+
+    // Только поиск, без вставки: неизвестных uri в результате нет
+    List<Integer> findUriIds(Collection<String> names);
+}
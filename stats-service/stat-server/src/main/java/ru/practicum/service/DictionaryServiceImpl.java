@@ -0,0 +1,104 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.model.StatsApp;
+import ru.practicum.model.StatsDictionary;
+import ru.practicum.model.StatsUri;
+import ru.practicum.repository.DictionaryRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словари app/uri только растут, поэтому id можно кэшировать без инвалидации; кэш — LRU на cache-size имён.
+// Id разрешаются до транзакции сохранения хита: новое значение вставляется отдельным коротким запросом и сразу
+// кэшируется. Если вызывающий всё же держит транзакцию, id попадает в кэш только после её коммита:
+// откат не должен оставить в кэше id несуществующей строки.
+@Slf4j
+@Service
+public class DictionaryServiceImpl implements DictionaryService {
+    private final DictionaryRepository dictionaryRepository;
+    private final Map<StatsDictionary, Map<String, Integer>> caches;
+
+    public DictionaryServiceImpl(DictionaryRepository dictionaryRepository,
+                                 @Value("${stats.dictionary.cache-size:100000}") int cacheSize) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.caches = Map.of(
+                StatsDictionary.APP, lruCache(cacheSize),
+                StatsDictionary.URI, lruCache(cacheSize));
+    }
+
+    @Override
+    public StatsApp getApp(String name) {
+        return new StatsApp(resolve(StatsDictionary.APP, name), name);
+    }
+
+    @Override
+    public StatsUri getUri(String name) {
+        return new StatsUri(resolve(StatsDictionary.URI, name), name);
+    }
+
+    @Override
+    public List<Integer> findUriIds(Collection<String> names) {
+        Map<String, Integer> cache = caches.get(StatsDictionary.URI);
+        List<Integer> ids = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Integer id = cache.get(name);
+            if (id != null) {
+                ids.add(id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            dictionaryRepository.findIds(StatsDictionary.URI, missing).forEach((name, id) -> {
+                ids.add(id);
+                cache.put(name, id);
+            });
+        }
+        return ids;
+    }
+
+    private int resolve(StatsDictionary dictionary, String name) {
+        Map<String, Integer> cache = caches.get(dictionary);
+        Integer id = cache.get(name);
+        if (id != null) {
+            return id;
+        }
+        int resolved = dictionaryRepository.findId(dictionary, name)
+                .or(() -> {
+                    log.debug("Adding {} '{}' to dictionary", dictionary, name);
+                    return dictionaryRepository.insertIfAbsent(dictionary, name);
+                })
+                .or(() -> dictionaryRepository.findId(dictionary, name))
+                .orElseThrow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(name, resolved);
+                }
+            });
+        } else {
+            cache.put(name, resolved);
+        }
+        return resolved;
+    }
+
+    private static Map<String, Integer> lruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
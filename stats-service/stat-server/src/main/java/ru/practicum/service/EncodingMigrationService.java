@@ -0,0 +1,6 @@
+package ru.practicum.service;
+
+public interface EncodingMigrationService {
+
+    void migrate();
+}
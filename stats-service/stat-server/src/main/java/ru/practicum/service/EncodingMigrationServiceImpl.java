@@ -0,0 +1,100 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.LegacyHit;
+import ru.practicum.model.mapper.IpAddressMapper;
+import ru.practicum.repository.EncodingMigrationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+// Конвертирует stats из старого строкового формата пачками: каждая пачка — отдельная транзакция,
+// поэтому прерванная миграция продолжается со следующего старта с того же места.
+// Выполняется до старта веб-сервера: несконвертированные строки (app_id IS NULL) выпадают из всех запросов
+// с JOIN по словарям, и отвечать на /stats до конца миграции нельзя.
+@Slf4j
+@Service
+public class EncodingMigrationServiceImpl implements EncodingMigrationService, SmartInitializingSingleton {
+    // Невалидные IP из старого VARCHAR сводим к "::", чтобы не терять сами хиты
+    private static final byte[] UNKNOWN_IP = new byte[16];
+
+    private final EncodingMigrationRepository migrationRepository;
+    private final DictionaryService dictionaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.encoding-migration.batch-size:5000}")
+    private int batchSize;
+
+    public EncodingMigrationServiceImpl(EncodingMigrationRepository migrationRepository,
+                                        DictionaryService dictionaryService,
+                                        PlatformTransactionManager transactionManager) {
+        this.migrationRepository = migrationRepository;
+        this.dictionaryService = dictionaryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Все бины созданы, веб-сервер ещё не принимает запросы. Заодно раньше секционирования (ApplicationReadyEvent):
+    // оно копирует структуру таблицы, и лучше копировать уже новую
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    @Override
+    public synchronized void migrate() {
+        if (!migrationRepository.isSupported()) {
+            return;
+        }
+        Set<String> columns = migrationRepository.findStatsColumns();
+        if (columns.contains("app") && !columns.contains("app_id")) {
+            log.info("Converting stats app/uri/ip columns to dictionary ids and binary ip");
+            transactionTemplate.executeWithoutResult(status -> migrationRepository.prepare());
+        } else if (!columns.contains("app_name")) {
+            return;
+        }
+        LocalDateTime cursor = null;
+        long converted = 0;
+        while (true) {
+            LocalDateTime from = cursor;
+            // новые app/uri вставляются до транзакции пачки; повтор после сбоя найдёт их в словаре
+            List<EndpointHit> hits = migrationRepository.findBatch(from, batchSize).stream()
+                    .map(this::encode)
+                    .toList();
+            if (hits.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> migrationRepository.updateBatch(hits));
+            converted += hits.size();
+            cursor = hits.get(hits.size() - 1).getTimestamp();
+            log.info("Converted {} legacy hits, cursor at {}", converted, cursor);
+        }
+        transactionTemplate.executeWithoutResult(status -> migrationRepository.finish());
+        migrationRepository.applySchema();
+        log.info("Stats encoding migration finished, {} hits converted", converted);
+    }
+
+    private EndpointHit encode(LegacyHit legacy) {
+        byte[] ip;
+        try {
+            ip = IpAddressMapper.toBytes(legacy.ip());
+        } catch (ValidationException e) {
+            log.warn("Legacy hit {} has invalid ip '{}', stored as unknown", legacy.id(), legacy.ip());
+            ip = UNKNOWN_IP;
+        }
+        return EndpointHit.builder()
+                .id(legacy.id())
+                .timestamp(legacy.timestamp())
+                .app(dictionaryService.getApp(legacy.app()))
+                .uri(dictionaryService.getUri(legacy.uri()))
+                .ip(ip)
+                .build();
+    }
+}
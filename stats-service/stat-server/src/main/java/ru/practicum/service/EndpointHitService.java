@@ -1,13 +1,38 @@
 package ru.practicum.service;
 
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
 import ru.practicum.dto.ViewStats;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
 
 public interface EndpointHitService {
 
     void saveStat(EndpointHitDto statDto);
 
-    List<ViewStats> getViewStats(String start, String end, List<String> uris, boolean unique);
+    void saveStats(List<EndpointHitDto> statDtos);
+
+    int saveFrames(ByteBuffer body);
+
+    List<ViewStats> getViewStats(String start, String end, List<String> uris, boolean unique, boolean approximate);
+
+    Map<String, List<ViewStats>> queryViewStats(StatsQueryDto query);
+
+    TopViewStatsDto getTopViewStats(String start, String end, int k, boolean unique);
+
+    List<ViewSeriesDto> getViewSeries(String start, String end, List<String> uris, SeriesInterval interval);
+
+    ViewStatsStream streamViewStats(String start, String end, List<String> uris, boolean unique,
+                                    boolean approximate);
+
+    boolean isEstimated(String start, String end, List<String> uris, boolean unique);
+
+    boolean isEstimated(StatsQueryDto query);
+
+    boolean isSeriesEstimated(List<String> uris);
 }
@@ -2,66 +2,407 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.SeriesInterval;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsWindowDto;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
 import ru.practicum.dto.ViewStats;
 import ru.practicum.exception.ValidationException;
-import ru.practicum.model.mapper.EndpointHitMapper;
-import ru.practicum.repository.EndpointHitRepository;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupRange;
+import ru.practicum.model.TopEstimate;
+import ru.practicum.model.mapper.HitFrameReader;
+import ru.practicum.repository.StatsQuery;
+import ru.practicum.repository.StatsQueryRepository;
+import ru.practicum.repository.StatsStreamRepository;
+import ru.practicum.repository.ViewSeriesRepository;
+import ru.practicum.repository.WindowedStatsQuery;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+import static ru.practicum.model.RollupGranularity.HOUR;
 
 @Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
 public class EndpointHitServiceImpl implements EndpointHitService {
-    private final EndpointHitRepository endpointHitRepository;
+    private final HitIngester hitIngester;
+    private final RollupService rollupService;
+    private final HllSketchService hllSketchService;
+    private final TopSketchService topSketchService;
+    private final DictionaryService dictionaryService;
+    private final HotWindowService hotWindowService;
+    private final StatsStreamRepository statsStreamRepository;
+    private final StatsQueryRepository statsQueryRepository;
+    private final ViewSeriesRepository viewSeriesRepository;
+    private final HitJournalService hitJournalService;
+    private final ArchiveService archiveService;
+    private final HitSamplingService hitSamplingService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.series.max-buckets:10000}")
+    private long maxSeriesBuckets;
+
+    @Value("${stats.query.max-windows:16}")
+    private int maxQueryWindows;
 
-    @Transactional
+    // С журналом запрос не берёт соединение с БД: транзакция открывается только для прямой записи.
+    // Id словарей везде получаются до транзакции записи (см. HitIngester.toEntity)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
     public void saveStat(EndpointHitDto statDto) {
         log.info("Try to save stat: {}", statDto);
-        endpointHitRepository.save(EndpointHitMapper.toEntity(statDto));
+        if (hitJournalService.isEnabled()) {
+            hitJournalService.append(statDto);
+            log.info("journaled stat: {}", statDto);
+            return;
+        }
+        List<EndpointHit> hits = List.of(hitIngester.toEntity(statDto));
+        transactionTemplate.executeWithoutResult(status -> hitIngester.store(hits));
         log.info("save stat: {}", statDto);
     }
 
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
-    public List<ViewStats> getViewStats(String start, String end, List<String> uris, boolean unique) {
-        log.info("get statistics on visits: start={}, end={}, uris={}, unique={}", start, end, uris, unique);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        LocalDateTime startDateTime = LocalDateTime.parse(start, formatter);
-        LocalDateTime endDateTime = LocalDateTime.parse(end, formatter);
+    public void saveStats(List<EndpointHitDto> statDtos) {
+        log.info("Try to save batch of {} stats", statDtos.size());
+        List<EndpointHit> hits = statDtos.stream()
+                .map(hitIngester::toEntity)
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> hitIngester.store(hits));
+        log.info("saved batch of {} stats", statDtos.size());
+    }
 
-        if (startDateTime.isAfter(endDateTime)) {
-            log.error("Start date is after end date");
-            throw new ValidationException("Start date is after end date");
+    // Бинарные пачки (HitFrame): без JSON, DTO и разбора строк IP и времени на каждый хит
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public int saveFrames(ByteBuffer body) {
+        List<EndpointHit> hits = HitFrameReader.read(body, dictionaryService);
+        log.info("Try to save binary batch of {} stats", hits.size());
+        if (!hits.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> hitIngester.store(hits));
+        }
+        return hits.size();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStats> getViewStats(String start, String end, List<String> uris, boolean unique,
+                                        boolean approximate) {
+        log.info("get statistics on visits: start={}, end={}, uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+        LocalDateTime startDateTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endDateTime = LocalDateTime.parse(end, FORMATTER);
+        checkRange(startDateTime, endDateTime);
+
+        LocalDateTime endExclusive = endDateTime.plusSeconds(1);
+        if (hotWindowService.covers(startDateTime, endExclusive)) {
+            log.info("get statistics on visits from hot window: unique={}", unique);
+            return hotWindowService.getViewStats(startDateTime, endExclusive, uris, unique);
+        }
+        if (!unique) {
+            log.info("get statistics on visits from rollups: ip is not unique");
+            return rollupService.countHits(startDateTime, endExclusive, uris).stream()
+                    .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                    .toList();
         }
+        // у сэмплируемых uri в stats лишь часть строк, поэтому их уникальные IP считаются по HLL,
+        // если в диапазоне есть хотя бы один полный час; иначе — по сырым строкам с заголовком оценки
+        if (hllSketchService.coversWholeBucket(startDateTime, endExclusive)
+                && (approximate || hitSamplingService.isSampled(uris))) {
+            log.info("get statistics on visits from HLL sketches: ip unique, approximate or sampled");
+            return hllSketchService.estimateUnique(startDateTime, endExclusive, uris).stream()
+                    .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                    .toList();
+        }
+        if (archiveService.overlaps(startDateTime, endExclusive, uris)) {
+            log.info("get statistics on visits from archive segments and raw hits: ip unique");
+            return archiveService.countUnique(startDateTime, endExclusive, uris);
+        }
+        log.info("get statistics on visits from raw hits: ip unique");
+        return statsQueryRepository.find(query(startDateTime, endExclusive, uris)
+                .unique(true)
+                .orderByHits(true)
+                .build());
+    }
 
-        if (uris == null || uris.isEmpty()) {
-            if (unique) {
-                log.info("get statistics on visits without uris: ip unique");
-                return endpointHitRepository
-                        .findAllByTimestampBetweenStartAndEndWithUniqueIp(startDateTime, endDateTime);
+    // Окна выбираются тем же путём, что и /stats; уникальные окна, которые пришлось бы считать по сырым строкам,
+    // считаются вместе — одним проходом по stats с условной агрегацией вместо отдельного сканирования на окно
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, List<ViewStats>> queryViewStats(StatsQueryDto query) {
+        log.info("get statistics on visits for windows {}, uris={}", query.getWindows().keySet(), query.getUris());
+        if (query.getWindows().size() > maxQueryWindows) {
+            throw new ValidationException("At most " + maxQueryWindows + " windows are allowed per query");
+        }
+        List<String> uris = query.getUris();
+        Map<String, List<ViewStats>> result = new LinkedHashMap<>();
+        List<String> rawKeys = new ArrayList<>();
+        List<WindowedStatsQuery.Window> rawWindows = new ArrayList<>();
+        List<String> hitKeys = new ArrayList<>();
+        List<WindowedStatsQuery.Window> hitWindows = new ArrayList<>();
+        for (Map.Entry<String, StatsWindowDto> entry : query.getWindows().entrySet()) {
+            StatsWindowDto window = entry.getValue();
+            checkRange(window.getStart(), window.getEnd());
+            LocalDateTime start = window.getStart();
+            LocalDateTime endExclusive = window.getEnd().plusSeconds(1);
+            List<ViewStats> stats;
+            if (hotWindowService.covers(start, endExclusive)) {
+                stats = hotWindowService.getViewStats(start, endExclusive, uris, window.isUnique());
+            } else if (!window.isUnique()) {
+                hitKeys.add(entry.getKey());
+                hitWindows.add(new WindowedStatsQuery.Window(start, endExclusive));
+                result.put(entry.getKey(), List.of());
+                continue;
+            } else if (hitSamplingService.isSampled(uris)
+                    && hllSketchService.coversWholeBucket(start, endExclusive)) {
+                stats = hllSketchService.estimateUnique(start, endExclusive, uris);
+            } else if (archiveService.overlaps(start, endExclusive, uris)) {
+                stats = archiveService.countUnique(start, endExclusive, uris);
             } else {
-                log.info("get statistics on visits without uris: ip is not unique");
-                return endpointHitRepository
-                        .findAllByTimestampBetweenStartAndEndWhereIpNotUnique(startDateTime, endDateTime);
+                rawKeys.add(entry.getKey());
+                rawWindows.add(new WindowedStatsQuery.Window(start, endExclusive));
+                result.put(entry.getKey(), List.of());
+                continue;
+            }
+            result.put(entry.getKey(), stats.stream()
+                    .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                    .toList());
+        }
+        if (!hitWindows.isEmpty()) {
+            log.info("get statistics on visits from rollups for {} windows in one pass", hitWindows.size());
+            List<List<ViewStats>> counted = rollupService.countHits(hitWindows, uris);
+            for (int i = 0; i < hitKeys.size(); i++) {
+                result.put(hitKeys.get(i), counted.get(i).stream()
+                        .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                        .toList());
+            }
+        }
+        if (!rawWindows.isEmpty()) {
+            log.info("get unique statistics on visits from raw hits for {} windows in one pass", rawWindows.size());
+            List<List<ViewStats>> counted = statsQueryRepository.findWindows(WindowedStatsQuery.builder()
+                    .windows(rawWindows)
+                    .uriIds(uris == null || uris.isEmpty() ? null : dictionaryService.findUriIds(uris))
+                    .build());
+            for (int i = 0; i < rawKeys.size(); i++) {
+                result.put(rawKeys.get(i), counted.get(i));
             }
-        } else {
-            if (unique) {
-                log.info("get statistics on visits with uris: ip unique");
-                return endpointHitRepository
-                        .findAllByTimestampBetweenStartAndEndAndUriUniqueIp(startDateTime, endDateTime, uris);
+        }
+        return result;
+    }
+
+    // Кандидаты — из слитых часовых скетчей плюс точные края диапазона, их hits затем пересчитываются точно.
+    // Результат точен, если k-й uri набрал не меньше, чем может быть у любого uri за пределами кандидатов.
+    @Transactional(readOnly = true)
+    @Override
+    public TopViewStatsDto getTopViewStats(String start, String end, int k, boolean unique) {
+        log.info("get top {} of visits: start={}, end={}, unique={}", k, start, end, unique);
+        LocalDateTime startDateTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endDateTime = LocalDateTime.parse(end, FORMATTER);
+        checkRange(startDateTime, endDateTime);
+        if (k <= 0) {
+            throw new ValidationException("Parameter k must be positive");
+        }
+
+        LocalDateTime endExclusive = endDateTime.plusSeconds(1);
+        LocalDateTime hoursFrom = HOUR.ceil(startDateTime);
+        LocalDateTime hoursTo = HOUR.floor(endExclusive);
+        if (hotWindowService.covers(startDateTime, endExclusive) || !hoursFrom.isBefore(hoursTo)) {
+            log.info("get top of visits without sketches: no whole hour in range or range is in hot window");
+            List<ViewStats> stats = unique && !hotWindowService.covers(startDateTime, endExclusive)
+                    ? topUnique(startDateTime, endExclusive, k)
+                    : top(getViewStats(start, end, null, unique, false), k);
+            return TopViewStatsDto.builder()
+                    .exact(!unique || hotWindowService.covers(startDateTime, endExclusive)
+                            || !hitSamplingService.isEnabled())
+                    .stats(stats)
+                    .build();
+        }
+
+        TopEstimate estimate = topSketchService.estimate(hoursFrom, hoursTo);
+        Map<AppUri, Long> edges = new HashMap<>();
+        addEdge(edges, startDateTime, hoursFrom);
+        addEdge(edges, hoursTo, endExclusive);
+        // у ключа, которого нет в скетче, за полные часы может быть до floor хитов
+        Map<AppUri, Long> upperBounds = new HashMap<>(estimate.counts());
+        edges.forEach((key, hits) -> upperBounds.merge(key,
+                estimate.counts().containsKey(key) ? hits : hits + estimate.floor(), Long::sum));
+        List<Map.Entry<AppUri, Long>> ranked = upperBounds.entrySet().stream()
+                .sorted(Map.Entry.<AppUri, Long>comparingByValue().reversed())
+                .toList();
+        int candidates = Math.min(ranked.size(), Math.max(k * 4, k + 50));
+        long bound = estimate.floor();
+        if (candidates < ranked.size()) {
+            bound = Math.max(bound, ranked.get(candidates).getValue());
+        }
+        List<String> uris = ranked.subList(0, candidates).stream()
+                .map(entry -> entry.getKey().uri())
+                .distinct()
+                .toList();
+        if (uris.isEmpty()) {
+            return TopViewStatsDto.builder().exact(bound == 0).build();
+        }
+
+        List<ViewStats> exactCounts = unique
+                ? archiveService.overlaps(startDateTime, endExclusive, uris)
+                        ? archiveService.countUnique(startDateTime, endExclusive, uris)
+                        : statsQueryRepository.find(query(startDateTime, endExclusive, uris).unique(true).build())
+                : rollupService.countHits(startDateTime, endExclusive, uris);
+        List<ViewStats> stats = top(exactCounts, k);
+        long kth = stats.size() == k ? stats.get(k - 1).getHits() : 0;
+        log.info("get top of visits from sketches: {} candidates, bound={}, kth={}", uris.size(), bound, kth);
+        return TopViewStatsDto.builder()
+                .exact(kth >= bound && (!unique || !hitSamplingService.isSampled(uris)))
+                .stats(stats)
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewSeriesDto> getViewSeries(String start, String end, List<String> uris, SeriesInterval interval) {
+        log.info("get series of visits: start={}, end={}, uris={}, interval={}", start, end, uris, interval);
+        LocalDateTime startDateTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endDateTime = LocalDateTime.parse(end, FORMATTER);
+        checkRange(startDateTime, endDateTime);
+        LocalDateTime endExclusive = endDateTime.plusSeconds(1);
+        long buckets = Duration.between(startDateTime, endExclusive).toSeconds()
+                / interval.getDuration().toSeconds() + 1;
+        if (buckets > maxSeriesBuckets) {
+            throw new ValidationException("Range holds " + buckets + " " + interval + " buckets, at most "
+                    + maxSeriesBuckets + " allowed");
+        }
+        List<ViewSeriesDto> series = viewSeriesRepository.findSeries(startDateTime, endExclusive, uris, interval);
+        if (archiveService.overlaps(startDateTime, endExclusive, uris)) {
+            log.info("get series of visits from archive segments and raw hits");
+            return archiveService.mergeSeries(startDateTime, endExclusive, uris, interval, series);
+        }
+        return series;
+    }
+
+    // Без материализации списка: строки идут из курсора БД прямо в ответ. HLL-оценки здесь не используются —
+    // они собираются в памяти по всем uri сразу.
+    @Override
+    public ViewStatsStream streamViewStats(String start, String end, List<String> uris, boolean unique,
+                                           boolean approximate) {
+        log.info("stream statistics on visits: start={}, end={}, uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+        LocalDateTime startDateTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endDateTime = LocalDateTime.parse(end, FORMATTER);
+        checkRange(startDateTime, endDateTime);
+        LocalDateTime endExclusive = endDateTime.plusSeconds(1);
+        return action -> {
+            if (hotWindowService.covers(startDateTime, endExclusive)) {
+                hotWindowService.streamViewStats(startDateTime, endExclusive, uris, unique, action);
+            } else if (unique && hllSketchService.coversWholeBucket(startDateTime, endExclusive)
+                    && (approximate || hitSamplingService.isSampled(uris))) {
+                hllSketchService.estimateUnique(startDateTime, endExclusive, uris).stream()
+                        .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                        .forEach(action);
+            } else if (archiveService.overlaps(startDateTime, endExclusive, uris)) {
+                // архив курсором не читается: такой диапазон считается целиком и отдаётся списком
+                List<ViewStats> stats = unique
+                        ? archiveService.countUnique(startDateTime, endExclusive, uris)
+                        : rollupService.countHits(startDateTime, endExclusive, uris);
+                stats.stream()
+                        .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                        .forEach(action);
+            } else if (unique) {
+                statsStreamRepository.stream(query(startDateTime, endExclusive, uris)
+                        .unique(true)
+                        .orderByHits(true)
+                        .build(), action);
             } else {
-                log.info("get statistics on visits with uris: ip is not unique");
-                return endpointHitRepository
-                        .findAllByTimestampBetweenStartAndEndAndUriWhereIpNotUnique(startDateTime, endDateTime, uris);
+                statsStreamRepository.streamHits(rollupService.plan(startDateTime, endExclusive), uris, action);
+            }
+        };
+    }
+
+    @Override
+    public boolean isEstimated(String start, String end, List<String> uris, boolean unique) {
+        return isEstimated(LocalDateTime.parse(start, FORMATTER), LocalDateTime.parse(end, FORMATTER).plusSeconds(1),
+                uris, unique);
+    }
+
+    @Override
+    public boolean isEstimated(StatsQueryDto query) {
+        return query.getWindows().values().stream()
+                .anyMatch(window -> isEstimated(window.getStart(), window.getEnd().plusSeconds(1), query.getUris(),
+                        window.isUnique()));
+    }
+
+    // Ряды всегда считаются по сырым строкам: уникальные IP сэмплируемых uri в них занижены
+    @Override
+    public boolean isSeriesEstimated(List<String> uris) {
+        return involvesSampled(uris);
+    }
+
+    // Горячее окно и роллапы получают все хиты; оценкой ответ становится, когда в нём участвуют
+    // уникальные IP или сырые края диапазона сэмплируемых uri
+    private boolean isEstimated(LocalDateTime start, LocalDateTime endExclusive, List<String> uris, boolean unique) {
+        if (!involvesSampled(uris) || hotWindowService.covers(start, endExclusive)) {
+            return false;
+        }
+        return unique || rollupService.plan(start, endExclusive).stream().anyMatch(RollupRange::isRaw);
+    }
+
+    // Запрос без списка uri захватывает и сэмплируемые, если сэмплирование включено
+    private boolean involvesSampled(List<String> uris) {
+        return uris == null || uris.isEmpty() ? hitSamplingService.isEnabled() : hitSamplingService.isSampled(uris);
+    }
+
+    // Заархивированные сутки читаются из сегментов; без них top k отбирает сам SQL
+    private List<ViewStats> topUnique(LocalDateTime start, LocalDateTime endExclusive, int k) {
+        if (archiveService.overlaps(start, endExclusive, null)) {
+            return top(archiveService.countUnique(start, endExclusive, null), k);
+        }
+        return statsQueryRepository.find(query(start, endExclusive, null).unique(true).limit(k).build());
+    }
+
+    private StatsQuery.StatsQueryBuilder query(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        return StatsQuery.builder()
+                .start(start)
+                .endExclusive(endExclusive)
+                .uriIds(uris == null || uris.isEmpty() ? null : dictionaryService.findUriIds(uris));
+    }
+
+    private void addEdge(Map<AppUri, Long> edges, LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            for (ViewStats stats : rollupService.countHits(from, to, null)) {
+                edges.merge(new AppUri(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
             }
         }
     }
-}
\ No newline at end of file
+
+    private List<ViewStats> top(List<ViewStats> stats, int k) {
+        return stats.stream()
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            log.error("Start date is after end date");
+            throw new ValidationException("Start date is after end date");
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.EndpointHitMapper;
+import ru.practicum.repository.EndpointHitRepository;
+
+import java.util.List;
+
+// Общий путь хита в stats для /hit, пачек и дренажа журнала: сэмплирование и подавление повторов решают,
+// какие строки попадут в stats, а роллапы, скетчи и горячее окно получают все хиты.
+// Транзакцию открывает вызывающий — журнал пишет в ней ещё и позицию применённого
+@Component
+@RequiredArgsConstructor
+class HitIngester {
+    private final EndpointHitRepository endpointHitRepository;
+    private final DictionaryService dictionaryService;
+    private final RollupService rollupService;
+    private final HllSketchService hllSketchService;
+    private final TopSketchService topSketchService;
+    private final HotWindowService hotWindowService;
+    private final HitSamplingService hitSamplingService;
+    private final RepeatHitService repeatHitService;
+
+    // Id словарей получаются до транзакции записи: промах кэша вставляет app/uri отдельным коротким
+    // запросом и не держит блокировку новой строки словаря до конца пачки
+    EndpointHit toEntity(EndpointHitDto dto) {
+        return EndpointHitMapper.toEntity(dto, dictionaryService.getApp(dto.getApp()),
+                dictionaryService.getUri(dto.getUri()));
+    }
+
+    void store(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        endpointHitRepository.insertAll(repeatHitService.suppress(hitSamplingService.sample(hits)));
+        rollupService.record(hits);
+        hllSketchService.record(hits);
+        topSketchService.record(hits);
+        hotWindowService.record(hits);
+    }
+}
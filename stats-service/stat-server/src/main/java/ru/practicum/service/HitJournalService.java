@@ -0,0 +1,12 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.EndpointHitDto;
+
+public interface HitJournalService {
+
+    boolean isEnabled();
+
+    void append(EndpointHitDto hit);
+
+    int drain();
+}
@@ -0,0 +1,166 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.journal.HitJournal;
+import ru.practicum.journal.JournalBatch;
+import ru.practicum.journal.JournalPosition;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.IpAddressMapper;
+import ru.practicum.repository.JournalCheckpointRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// При stats.journal.enabled /hit подтверждается, как только хит сброшен в локальный журнал, а в stats его переносит
+// фоновый drain() большими пачками. Позиция применённого пишется в БД в одной транзакции с хитами, поэтому после
+// сбоя журнал дочитывается ровно с неё — без потерь и повторов. В /stats такие хиты видны с задержкой до
+// stats.journal.drain-interval-ms — в том числе в чтении сразу после своего /hit, как в GET /events/{id}
+// main-service, поэтому по умолчанию журнал выключен. Скетчи и горячее окно получают хиты пачки только
+// после коммита её транзакции.
+@Slf4j
+@Service
+public class HitJournalServiceImpl implements HitJournalService {
+    private static final int MAX_NAME_LENGTH = 50;
+
+    private final HitIngester hitIngester;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final String name;
+    private final int batchSize;
+
+    private volatile boolean ready;
+    private HitJournal journal;
+    private JournalPosition applied;
+
+    public HitJournalServiceImpl(HitIngester hitIngester,
+                                 JournalCheckpointRepository checkpointRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${stats.journal.enabled:false}") boolean enabled,
+                                 @Value("${stats.journal.directory:stats-journal}") String directory,
+                                 @Value("${stats.journal.segment-size-mb:64}") int segmentSizeMb,
+                                 @Value("${stats.journal.name:stat-server}") String name,
+                                 @Value("${stats.journal.drain-batch-size:5000}") int batchSize) {
+        this.hitIngester = hitIngester;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.name = name;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        applied = checkpointRepository.find(name).orElse(JournalPosition.START);
+        journal = new HitJournal(directory, segmentSize, applied);
+        log.info("Hit journal opened in {}, applied up to {}", directory.toAbsolutePath(), applied);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void append(EndpointHitDto hit) {
+        // всё, на чём может упасть вставка в stats, проверяем до журнала — иначе хит застрянет в нём навсегда
+        IpAddressMapper.toBytes(hit.getIp());
+        if (hit.getApp().length() > MAX_NAME_LENGTH || hit.getUri().length() > MAX_NAME_LENGTH) {
+            throw new ValidationException("App and uri must be at most " + MAX_NAME_LENGTH + " characters long");
+        }
+        journal.sync(journal.append(hit));
+    }
+
+    // После перекодирования stats и сборки горячего окна: дочитанные хиты попадут в окно через record()
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    @EventListener(ApplicationReadyEvent.class)
+    public void replay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log.info("Replayed {} journaled hits", drain());
+        } catch (RuntimeException e) {
+            log.error("Failed to replay hit journal, will retry in background: {}", e.getMessage(), e);
+        }
+        ready = true;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.journal.drain-interval-ms:200}")
+    public void scheduledDrain() {
+        if (!ready) {
+            return;
+        }
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.error("Failed to drain hit journal, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized int drain() {
+        if (!enabled) {
+            return 0;
+        }
+        int drained = 0;
+        while (true) {
+            JournalBatch batch = journal.read(applied, batchSize);
+            if (batch.next().equals(applied)) {
+                break;
+            }
+            // id словарей — до транзакции, как и при прямой записи
+            List<EndpointHit> hits = batch.hits().stream()
+                    .map(hitIngester::toEntity)
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                hitIngester.store(hits);
+                checkpointRepository.save(name, batch.next());
+            });
+            applied = batch.next();
+            drained += batch.hits().size();
+            int removed = journal.truncate(applied);
+            if (removed > 0) {
+                log.info("Removed {} applied journal segments", removed);
+            }
+        }
+        if (drained > 0) {
+            log.info("Drained {} journaled hits into stats", drained);
+        }
+        return drained;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("Hit journal is not drained on shutdown, it will be replayed on start: {}", e.getMessage());
+        }
+        journal.close();
+    }
+}
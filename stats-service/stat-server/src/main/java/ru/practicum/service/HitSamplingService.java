@@ -0,0 +1,18 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+public interface HitSamplingService {
+
+    List<EndpointHit> sample(List<EndpointHit> hits);
+
+    boolean isEnabled();
+
+    // Есть ли среди перечисленных uri сэмплируемые; без списка — нет
+    boolean isSampled(List<String> uris);
+
+    // Записывает накопленный, но ещё не вошедший в строки вес отдельными строками; возвращает их число
+    int flushPending();
+}
@@ -0,0 +1,247 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.EndpointHitRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static ru.practicum.model.RollupGranularity.MINUTE;
+
+// Для (app, uri) из stats.sampling.rules в stats пишется только часть хитов: доля подстраивается под текущий поток
+// так, чтобы по каждому uri шло около target-rows-per-second строк в секунду. Записанная строка несёт вес —
+// себя и пропущенные перед ней хиты, так что SUM(weight) сходится с числом хитов.
+// Роллапы, скетчи и горячее окно получают все хиты: неуникальные счётчики по ним точны, а уникальные
+// для сэмплируемых uri берутся из HLL, если в диапазоне есть полный час, иначе — по сырым строкам с оценкой
+// (такие ответы несут X-Stats-Estimated: true, а /stats/top с unique=true — exact=false).
+// Пересборка роллапов не заменяет HLL часов с пропущенными хитами скетчем из выборки, а домерживает его
+// в сохранённый; без сохранённого скетча час занижен и попадает в undercountedSketchBuckets.
+// Вес хитов, пропущенных после последней записанной строки, пишется отдельной строкой с последним пропущенным
+// хитом, когда uri затихает (evictIdle) и при остановке, так что SUM(weight) равна числу хитов.
+// Вес не переносится через границу минуты: хит из другой минуты сначала сбрасывает накопленный вес
+// отдельной строкой, поэтому SUM(weight) по минуте и часу в stats сходится с роллапами.
+@Slf4j
+@Service
+public class HitSamplingServiceImpl implements HitSamplingService {
+    private static final double RATE_SMOOTHING = 0.5;
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final EndpointHitRepository endpointHitRepository;
+    private final boolean enabled;
+    private final List<Rule> rules;
+    private final double targetRowsPerSecond;
+    private final Map<AppUri, UriSampler> samplers = new ConcurrentHashMap<>();
+
+    public HitSamplingServiceImpl(EndpointHitRepository endpointHitRepository,
+                                  @Value("${stats.sampling.enabled:false}") boolean enabled,
+                                  @Value("${stats.sampling.rules:}") List<String> rules,
+                                  @Value("${stats.sampling.target-rows-per-second:50}") double targetRowsPerSecond) {
+        this.endpointHitRepository = endpointHitRepository;
+        this.rules = rules.stream()
+                .filter(rule -> !rule.isBlank())
+                .map(Rule::parse)
+                .toList();
+        this.enabled = enabled && !this.rules.isEmpty();
+        this.targetRowsPerSecond = targetRowsPerSecond;
+        if (this.enabled) {
+            log.info("Sampling stats rows for {} at about {} rows per second per uri", rules, targetRowsPerSecond);
+        }
+    }
+
+    // Возвращает строки для stats: несэмплируемые хиты как есть, из сэмплируемых — отобранные копии с весом
+    @Override
+    public List<EndpointHit> sample(List<EndpointHit> hits) {
+        if (!enabled) {
+            return hits;
+        }
+        long now = System.nanoTime();
+        List<EndpointHit> stored = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            String app = hit.getApp().getName();
+            String uri = hit.getUri().getName();
+            if (rules.stream().noneMatch(rule -> rule.matches(app, uri))) {
+                stored.add(hit);
+                continue;
+            }
+            samplers.computeIfAbsent(new AppUri(app, uri), key -> new UriSampler())
+                    .offer(hit, now, targetRowsPerSecond, stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // По запросу app неизвестен, поэтому сэмплируемым считается uri, подходящий под шаблон любого правила.
+    // Запрос без списка uri сэмплируемым не считается: он идёт по сырым строкам, где уникальные IP
+    // сэмплируемых uri занижены (см. EndpointHitServiceImpl.isEstimated)
+    @Override
+    public boolean isSampled(List<String> uris) {
+        if (!enabled || uris == null || uris.isEmpty()) {
+            return false;
+        }
+        return uris.stream().anyMatch(uri -> rules.stream().anyMatch(rule -> rule.uri.matcher(uri).matches()));
+    }
+
+    @Override
+    public int flushPending() {
+        return flush(false);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        flush(true);
+    }
+
+    @PreDestroy
+    public void close() {
+        flushPending();
+    }
+
+    private int flush(boolean idleOnly) {
+        long now = System.nanoTime();
+        List<EndpointHit> rows = new ArrayList<>();
+        List<UriSampler> drained = new ArrayList<>();
+        Iterator<UriSampler> iterator = samplers.values().iterator();
+        while (iterator.hasNext()) {
+            UriSampler sampler = iterator.next();
+            if (idleOnly && !sampler.isIdle(now)) {
+                continue;
+            }
+            EndpointHit row = sampler.drainPending();
+            if (row != null) {
+                rows.add(row);
+                drained.add(sampler);
+            }
+            if (idleOnly) {
+                iterator.remove();
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            endpointHitRepository.insertAll(rows);
+            log.debug("Flushed pending sampling weight of {} uris", rows.size());
+            return rows.size();
+        } catch (DataAccessException e) {
+            // вес возвращается в сэмплер (если он ещё жив) и уйдёт со следующей строкой или сбросом
+            log.warn("Failed to flush pending sampling weight of {} uris: {}", rows.size(), e.getMessage());
+            for (int i = 0; i < rows.size(); i++) {
+                UriSampler sampler = drained.get(i);
+                EndpointHit row = rows.get(i);
+                samplers.computeIfAbsent(new AppUri(row.getApp().getName(), row.getUri().getName()),
+                        key -> sampler).restore(row);
+            }
+            return 0;
+        }
+    }
+
+    // "app:шаблон uri" или просто "шаблон uri" для любого app; * в шаблонах — любая подстрока
+    private record Rule(Pattern app, Pattern uri) {
+
+        private static Rule parse(String value) {
+            String rule = value.strip();
+            int separator = rule.startsWith("/") ? -1 : rule.indexOf(':');
+            return separator < 0
+                    ? new Rule(glob("*"), glob(rule))
+                    : new Rule(glob(rule.substring(0, separator)), glob(rule.substring(separator + 1)));
+        }
+
+        private static Pattern glob(String glob) {
+            String[] parts = glob.split("\\*", -1);
+            StringBuilder regex = new StringBuilder(Pattern.quote(parts[0]));
+            for (int i = 1; i < parts.length; i++) {
+                regex.append(".*").append(Pattern.quote(parts[i]));
+            }
+            return Pattern.compile(regex.toString());
+        }
+
+        private boolean matches(String appName, String uriName) {
+            return app.matcher(appName).matches() && uri.matcher(uriName).matches();
+        }
+    }
+
+    // Поток по uri — экспоненциальное среднее хитов в секунду; пока идёт всплеск, берётся хотя бы счёт текущей секунды
+    private static final class UriSampler {
+        private long second;
+        private long inSecond;
+        private double rate;
+        private long pending;
+        private EndpointHit lastSkipped;
+        private long lastSeen;
+
+        // Отобранный хит уходит в stored с весом пропущенных перед ним; вес из прошлой минуты — отдельной строкой
+        private synchronized void offer(EndpointHit hit, long nowNanos, double target, List<EndpointHit> stored) {
+            if (lastSkipped != null
+                    && !MINUTE.floor(lastSkipped.getTimestamp()).equals(MINUTE.floor(hit.getTimestamp()))) {
+                stored.add(drainPending());
+            }
+            long current = TimeUnit.NANOSECONDS.toSeconds(nowNanos);
+            if (current != second) {
+                rate = RATE_SMOOTHING * inSecond + (1 - RATE_SMOOTHING) * rate;
+                rate *= Math.pow(1 - RATE_SMOOTHING, Math.max(0, current - second - 1));
+                second = current;
+                inSecond = 0;
+            }
+            inSecond++;
+            lastSeen = nowNanos;
+            pending++;
+            double observed = Math.max(rate, inSecond);
+            if (observed > target && ThreadLocalRandom.current().nextDouble() * observed >= target) {
+                lastSkipped = hit;
+                return;
+            }
+            stored.add(copy(hit, pending));
+            pending = 0;
+            lastSkipped = null;
+        }
+
+        // Строка с весом пропущенных хитов — копия последнего из них; null, если ждать нечего
+        private synchronized EndpointHit drainPending() {
+            if (pending == 0 || lastSkipped == null) {
+                return null;
+            }
+            EndpointHit row = copy(lastSkipped, pending);
+            pending = 0;
+            lastSkipped = null;
+            return row;
+        }
+
+        private static EndpointHit copy(EndpointHit hit, long weight) {
+            return EndpointHit.builder()
+                    .app(hit.getApp())
+                    .uri(hit.getUri())
+                    .ip(hit.getIp())
+                    .timestamp(hit.getTimestamp())
+                    .weight((int) Math.min(weight, Integer.MAX_VALUE))
+                    .build();
+        }
+
+        private synchronized void restore(EndpointHit row) {
+            pending += row.getWeight();
+            if (lastSkipped == null) {
+                lastSkipped = row;
+            }
+        }
+
+        private synchronized boolean isIdle(long nowNanos) {
+            return nowNanos - lastSeen > IDLE_NANOS;
+        }
+    }
+}
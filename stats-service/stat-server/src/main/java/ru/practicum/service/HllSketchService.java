@@ -0,0 +1,24 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.SketchRebuild;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface HllSketchService {
+
+    void record(List<EndpointHit> hits);
+
+    boolean coversWholeBucket(LocalDateTime start, LocalDateTime endExclusive);
+
+    List<ViewStats> estimateUnique(LocalDateTime start, LocalDateTime endExclusive, List<String> uris);
+
+    SketchRebuild rebuild(LocalDateTime from, LocalDateTime to);
+
+    void flush();
+
+    // Забыть скетчи в памяти без записи — вместе с очисткой таблицы скетчей (тесты): иначе их дозапишет flush
+    void clear();
+}
@@ -0,0 +1,258 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.AppUriIp;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.SketchRebuild;
+import ru.practicum.model.mapper.IpAddressMapper;
+import ru.practicum.repository.EndpointHitRepository;
+import ru.practicum.repository.HllSketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static ru.practicum.model.RollupGranularity.HOUR;
+
+// Скетчи уникальных IP по (час, app, uri). Горячие скетчи живут в памяти, в БД сбрасываются периодически;
+// объединение HLL идемпотентно, поэтому при сбросе сохранённая версия просто домерживается.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HllSketchServiceImpl implements HllSketchService {
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final HllSketchRepository sketchRepository;
+    private final EndpointHitRepository endpointHitRepository;
+    private final Map<RollupKey, CachedSketch> cache = new ConcurrentHashMap<>();
+
+    // Как и в горячем окне, в скетч попадают только закоммиченные хиты: откат транзакции не должен оставлять
+    // скетчи впереди stats
+    @Override
+    public void record(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addAll(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addAll(hits);
+            }
+        });
+    }
+
+    private void addAll(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            add(new RollupKey(HOUR.floor(hit.getTimestamp()), hit.getApp().getName(), hit.getUri().getName()),
+                    IpAddressMapper.toString(hit.getIp()));
+        }
+    }
+
+    @Override
+    public boolean coversWholeBucket(LocalDateTime start, LocalDateTime endExclusive) {
+        return HOUR.ceil(start).isBefore(HOUR.floor(endExclusive));
+    }
+
+    // Полные часы — из скетчей, края диапазона досыпаем в скетч из сырых строк
+    @Override
+    public List<ViewStats> estimateUnique(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        Map<AppUri, HyperLogLog> merged = new HashMap<>();
+        LocalDateTime hoursFrom = HOUR.ceil(start);
+        LocalDateTime hoursTo = HOUR.floor(endExclusive);
+        if (hoursFrom.isBefore(hoursTo)) {
+            Map<RollupKey, byte[]> stored = sketchRepository.findSketches(hoursFrom, hoursTo, uris);
+            Set<RollupKey> keys = new HashSet<>(stored.keySet());
+            cache.keySet().stream()
+                    .filter(key -> !key.bucketStart().isBefore(hoursFrom) && key.bucketStart().isBefore(hoursTo))
+                    .filter(key -> uris == null || uris.isEmpty() || uris.contains(key.uri()))
+                    .forEach(keys::add);
+            for (RollupKey key : keys) {
+                HyperLogLog target = merged.computeIfAbsent(new AppUri(key.app(), key.uri()),
+                        appUri -> new HyperLogLog());
+                CachedSketch cached = cache.get(key);
+                if (cached != null) {
+                    cached.mergeInto(target);
+                } else {
+                    target.merge(HyperLogLog.fromBytes(stored.get(key)));
+                }
+            }
+            addRaw(merged, start, hoursFrom, uris);
+            addRaw(merged, hoursTo, endExclusive, uris);
+        } else {
+            addRaw(merged, start, endExclusive, uris);
+        }
+        return merged.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue().estimate()))
+                .toList();
+    }
+
+    // Сэмплер пишет в stats только часть хитов, а в скетч — все. Поэтому скетч часа, в котором у (app, uri) были
+    // пропущенные хиты, из сырых строк не заменяется, а домерживается в сохранённый (в БД и ещё не сброшенный
+    // из памяти); если сохранённого нет, пересобранный скетч занижен — это логируется и попадает в ответ
+    @Override
+    public SketchRebuild rebuild(LocalDateTime from, LocalDateTime to) {
+        int buckets = 0;
+        int undercounted = 0;
+        for (LocalDateTime hour = HOUR.floor(from); hour.isBefore(to); hour = hour.plusHours(1)) {
+            LocalDateTime next = hour.plusHours(1);
+            Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+            for (AppUriIp row : endpointHitRepository.findDistinctIpsInRange(hour, next)) {
+                sketches.computeIfAbsent(new AppUri(row.app(), row.uri()), appUri -> new HyperLogLog())
+                        .add(IpAddressMapper.toString(row.ip()));
+            }
+            List<AppUri> sampled = endpointHitRepository.findSampledInRange(hour, next);
+            Map<RollupKey, byte[]> stored = sampled.isEmpty()
+                    ? Map.of()
+                    : sketchRepository.findSketches(hour, next, sampled.stream().map(AppUri::uri).toList());
+            for (AppUri appUri : sampled) {
+                RollupKey key = new RollupKey(hour, appUri.app(), appUri.uri());
+                HyperLogLog target = sketches.get(appUri);
+                byte[] sketch = stored.get(key);
+                CachedSketch cached = cache.get(key);
+                if (sketch != null) {
+                    target.merge(HyperLogLog.fromBytes(sketch));
+                }
+                if (cached != null) {
+                    cached.mergeInto(target);
+                }
+                if (sketch == null && cached == null) {
+                    undercounted++;
+                    log.warn("No stored HLL sketch for sampled {} {} at {}: rebuilt from sampled rows,"
+                            + " unique IPs will be undercounted", appUri.app(), appUri.uri(), hour);
+                }
+            }
+            sketchRepository.deleteBuckets(hour, next);
+            for (Map.Entry<AppUri, HyperLogLog> entry : sketches.entrySet()) {
+                sketchRepository.save(new RollupKey(hour, entry.getKey().app(), entry.getKey().uri()),
+                        entry.getValue().toBytes());
+            }
+            buckets += sketches.size();
+        }
+        return new SketchRebuild(buckets, undercounted);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.hll.flush-interval-ms:5000}")
+    public void flush() {
+        long now = System.nanoTime();
+        int flushed = 0;
+        for (Map.Entry<RollupKey, CachedSketch> entry : cache.entrySet()) {
+            CachedSketch cached = entry.getValue();
+            HyperLogLog snapshot = cached.takeDirtySnapshot();
+            if (snapshot != null) {
+                try {
+                    sketchRepository.findSketch(entry.getKey())
+                            .map(HyperLogLog::fromBytes)
+                            .ifPresent(snapshot::merge);
+                    sketchRepository.save(entry.getKey(), snapshot.toBytes());
+                    flushed++;
+                } catch (DataAccessException e) {
+                    cached.markDirty();
+                    log.error("Failed to flush HLL sketch {}: {}", entry.getKey(), e.getMessage());
+                }
+            } else if (cached.evictIfIdle(now)) {
+                cache.remove(entry.getKey(), cached);
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed {} HLL sketches, {} cached", flushed, cache.size());
+        }
+    }
+
+    private void add(RollupKey key, String ip) {
+        while (true) {
+            CachedSketch cached = cache.computeIfAbsent(key, this::load);
+            if (cached.add(ip)) {
+                return;
+            }
+        }
+    }
+
+    private CachedSketch load(RollupKey key) {
+        return new CachedSketch(sketchRepository.findSketch(key)
+                .map(HyperLogLog::fromBytes)
+                .orElseGet(HyperLogLog::new));
+    }
+
+    private void addRaw(Map<AppUri, HyperLogLog> merged, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        List<AppUriIp> rows = uris == null || uris.isEmpty()
+                ? endpointHitRepository.findDistinctIpsInRange(from, to)
+                : endpointHitRepository.findDistinctIpsInRangeAndUri(from, to, uris);
+        for (AppUriIp row : rows) {
+            merged.computeIfAbsent(new AppUri(row.app(), row.uri()), appUri -> new HyperLogLog())
+                    .add(IpAddressMapper.toString(row.ip()));
+        }
+    }
+
+    private static final class CachedSketch {
+        private final HyperLogLog sketch;
+        private boolean dirty;
+        private boolean evicted;
+        private long lastAccess = System.nanoTime();
+
+        private CachedSketch(HyperLogLog sketch) {
+            this.sketch = sketch;
+        }
+
+        private synchronized boolean add(String ip) {
+            if (evicted) {
+                return false;
+            }
+            sketch.add(ip);
+            dirty = true;
+            lastAccess = System.nanoTime();
+            return true;
+        }
+
+        private synchronized void mergeInto(HyperLogLog target) {
+            target.merge(sketch);
+        }
+
+        private synchronized HyperLogLog takeDirtySnapshot() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            HyperLogLog snapshot = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+            snapshot.merge(sketch);
+            return snapshot;
+        }
+
+        private synchronized void markDirty() {
+            dirty = true;
+        }
+
+        private synchronized boolean evictIfIdle(long now) {
+            if (!dirty && now - lastAccess > IDLE_EVICTION_NANOS) {
+                evicted = true;
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface HotWindowService {
+
+    void record(List<EndpointHit> hits);
+
+    boolean covers(LocalDateTime start, LocalDateTime endExclusive);
+
+    // Забыть все хиты окна — вместе с очисткой stats (тесты): иначе окно отдаёт хиты, которых в БД уже нет
+    void clear();
+
+    List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime endExclusive, List<String> uris, boolean unique);
+
+    // То же по убыванию hits, но строки отдаются в consumer по одной, без списка ViewStats
+    void streamViewStats(LocalDateTime start, LocalDateTime endExclusive, List<String> uris, boolean unique,
+                         Consumer<ViewStats> consumer);
+}
@@ -0,0 +1,153 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HotWindowRepository;
+import ru.practicum.window.HotWindow;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Последние stats.hot-window.minutes минут хитов в памяти: запросы main-service за последний час
+// обслуживаются без БД. Окно наполняется только хитами этого инстанса, т.е. рассчитано на один stat-server.
+// После рестарта окно дочитывается из БД: хиты с id не больше запомненного при старте берутся из таблицы,
+// более новые уже пришли через record(), так что ни один хит не считается дважды.
+@Slf4j
+@Service
+public class HotWindowServiceImpl implements HotWindowService {
+    private final HotWindowRepository hotWindowRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final boolean enabled;
+    private final int windowMinutes;
+    private final HotWindow window;
+
+    private volatile boolean ready;
+    private LocalDateTime rebuildFrom;
+    private long rebuildMaxId;
+    private List<EndpointHit> rebuildRepeats = List.of();
+
+    public HotWindowServiceImpl(HotWindowRepository hotWindowRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${stats.hot-window.enabled:true}") boolean enabled,
+                                @Value("${stats.hot-window.minutes:65}") int windowMinutes,
+                                @Value("${stats.hot-window.slot-seconds:1}") int slotSeconds) {
+        this.hotWindowRepository = hotWindowRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.windowMinutes = windowMinutes;
+        this.window = new HotWindow(windowMinutes * 60, slotSeconds);
+    }
+
+    @PostConstruct
+    public void rememberRebuildBoundary() {
+        if (!enabled) {
+            return;
+        }
+        rebuildFrom = LocalDateTime.now().minusMinutes(windowMinutes);
+        rebuildMaxId = hotWindowRepository.findMaxIdSince(rebuildFrom);
+        // до старта веб-сервера новых хитов нет, так что счётчики повторов снимаются в той же точке, что и id
+        rebuildRepeats = hotWindowRepository.findRepeatsSince(rebuildFrom);
+    }
+
+    // После перекодирования stats, но до обслуживания секций
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        long[] loaded = {0};
+        try {
+            readOnlyTemplate.executeWithoutResult(status ->
+                    hotWindowRepository.forEachHitSince(rebuildFrom, rebuildMaxId, hit -> {
+                        add(hit, LocalDateTime.now());
+                        loaded[0]++;
+                    }));
+            LocalDateTime now = LocalDateTime.now();
+            rebuildRepeats.forEach(repeat -> add(repeat, now));
+            rebuildRepeats = List.of();
+            ready = true;
+            log.info("Hot window rebuilt from {} hits in {} ms", loaded[0], System.currentTimeMillis() - started);
+        } catch (DataAccessException e) {
+            log.error("Failed to rebuild hot window, recent stats will be read from the database: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    // В окно попадают только закоммиченные хиты
+    @Override
+    public void record(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addAll(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addAll(hits);
+            }
+        });
+    }
+
+    @Override
+    public boolean covers(LocalDateTime start, LocalDateTime endExclusive) {
+        return ready && window.covers(start, endExclusive, LocalDateTime.now());
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+    }
+
+    @Override
+    public List<ViewStats> getViewStats(LocalDateTime start, LocalDateTime endExclusive, List<String> uris,
+                                        boolean unique) {
+        return window.count(start, endExclusive, uris, unique).entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    @Override
+    public void streamViewStats(LocalDateTime start, LocalDateTime endExclusive, List<String> uris, boolean unique,
+                                Consumer<ViewStats> consumer) {
+        window.count(start, endExclusive, uris, unique).entrySet().stream()
+                .sorted(Map.Entry.<AppUri, Long>comparingByValue().reversed())
+                .forEach(entry -> consumer.accept(new ViewStats(entry.getKey().app(), entry.getKey().uri(),
+                        entry.getValue())));
+    }
+
+    private void addAll(List<EndpointHit> hits) {
+        LocalDateTime now = LocalDateTime.now();
+        for (EndpointHit hit : hits) {
+            add(hit, now);
+        }
+    }
+
+    private void add(EndpointHit hit, LocalDateTime now) {
+        window.add(hit.getTimestamp(), hit.getApp().getName(), hit.getUri().getName(), hit.getIp(),
+                hit.getWeight(), now);
+    }
+}
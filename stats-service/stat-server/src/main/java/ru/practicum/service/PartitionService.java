@@ -0,0 +1,10 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.PartitionStateDto;
+
+public interface PartitionService {
+
+    PartitionStateDto maintain();
+
+    PartitionStateDto getState();
+}
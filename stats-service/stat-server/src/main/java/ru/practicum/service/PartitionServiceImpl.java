@@ -0,0 +1,192 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.PartitionDto;
+import ru.practicum.dto.PartitionStateDto;
+import ru.practicum.model.PartitionInterval;
+import ru.practicum.model.StatsPartition;
+import ru.practicum.repository.PartitionRepository;
+import ru.practicum.repository.RepeatHitRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Держит stats партиционированной по timestamp: заранее создаёт будущие секции и отцепляет/удаляет просроченные.
+// Каждая секция создаётся и удаляется в своей транзакции: ошибка на одной попадает в lastError,
+// но не останавливает остальные. Строки, успевшие лечь в DEFAULT, переносятся в создаваемую секцию.
+@Slf4j
+@Service
+public class PartitionServiceImpl implements PartitionService {
+    private final PartitionRepository partitionRepository;
+    private final RepeatHitRepository repeatHitRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.partitions.enabled:true}")
+    private boolean enabled;
+    @Value("${stats.partitions.interval:DAY}")
+    private PartitionInterval interval;
+    @Value("${stats.partitions.premake:7}")
+    private int premake;
+    @Value("${stats.partitions.retention-days:0}")
+    private int retentionDays;
+    @Value("${stats.partitions.retention-mode:DETACH}")
+    private RetentionMode retentionMode;
+
+    private volatile LocalDateTime lastRunAt;
+    private volatile String lastError;
+    private volatile List<String> lastCreated = List.of();
+    private volatile List<String> lastRemoved = List.of();
+
+    public PartitionServiceImpl(PartitionRepository partitionRepository,
+                                RepeatHitRepository repeatHitRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.partitionRepository = partitionRepository;
+        this.repeatHitRepository = repeatHitRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partitions.cron:0 5 * * * *}")
+    public void scheduledMaintain() {
+        maintain();
+    }
+
+    @Override
+    public synchronized PartitionStateDto maintain() {
+        if (!enabled || !partitionRepository.isSupported()) {
+            log.debug("Partition management skipped: enabled={}, supported={}", enabled,
+                    partitionRepository.isSupported());
+            return getState();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<String> created = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> migrateIfNeeded(now));
+            Set<String> existing = partitionRepository.findPartitions().stream()
+                    .map(StatsPartition::name)
+                    .collect(Collectors.toSet());
+            LocalDateTime start = interval.floor(now);
+            for (int i = 0; i <= premake; i++) {
+                String name = interval.partitionName(start);
+                if (!existing.contains(name) && !coveredByExisting(start)) {
+                    LocalDateTime from = start;
+                    if (run(errors, name, () -> create(name, from, interval.next(from)))) {
+                        created.add(name);
+                    }
+                }
+                start = interval.next(start);
+            }
+            if (retentionDays > 0) {
+                LocalDateTime cutoff = interval.floor(now.minusDays(retentionDays));
+                for (StatsPartition partition : partitionRepository.findPartitions()) {
+                    if (partition.isDefault() || partition.to() == null || partition.to().isAfter(cutoff)) {
+                        continue;
+                    }
+                    if (run(errors, partition.name(), () -> remove(partition.name()))) {
+                        removed.add(partition.name());
+                    }
+                }
+                // счётчики повторов живут столько же, сколько сырые строки, к которым они относятся
+                repeatHitRepository.deleteBefore(cutoff);
+            }
+            log.info("Partition maintenance done: created={}, {}={}, failed={}", created, retentionMode, removed,
+                    errors.size());
+        } catch (RuntimeException e) {
+            errors.add(e.getMessage());
+            log.error("Partition maintenance failed: {}", e.getMessage(), e);
+        }
+        lastError = errors.isEmpty() ? null : String.join("; ", errors);
+        lastRunAt = now;
+        lastCreated = created;
+        lastRemoved = removed;
+        return getState();
+    }
+
+    @Override
+    public PartitionStateDto getState() {
+        boolean supported = partitionRepository.isSupported();
+        boolean partitioned = supported && partitionRepository.isPartitioned();
+        return PartitionStateDto.builder()
+                .enabled(enabled)
+                .supported(supported)
+                .partitioned(partitioned)
+                .interval(interval.name())
+                .premake(premake)
+                .retentionDays(retentionDays)
+                .retentionMode(retentionMode.name())
+                .lastRunAt(lastRunAt)
+                .lastError(lastError)
+                .lastCreated(lastCreated)
+                .lastRemoved(lastRemoved)
+                .partitions(partitioned ? partitionRepository.findPartitions().stream()
+                        .map(partition -> new PartitionDto(partition.name(), partition.from(), partition.to()))
+                        .toList() : List.of())
+                .build();
+    }
+
+    private boolean run(List<String> errors, String name, Runnable action) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> action.run());
+            return true;
+        } catch (RuntimeException e) {
+            errors.add(name + ": " + e.getMessage());
+            log.error("Partition maintenance of {} failed: {}", name, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void create(String name, LocalDateTime from, LocalDateTime to) {
+        if (partitionRepository.hasDefaultRows(from, to)) {
+            partitionRepository.createPartitionFromDefault(name, from, to);
+        } else {
+            partitionRepository.createPartition(name, from, to);
+        }
+    }
+
+    private void remove(String name) {
+        if (retentionMode == RetentionMode.DROP) {
+            partitionRepository.dropPartition(name);
+        } else {
+            partitionRepository.detachPartition(name);
+        }
+    }
+
+    private void migrateIfNeeded(LocalDateTime now) {
+        if (!partitionRepository.isPartitioned()) {
+            LocalDateTime upperBound = partitionRepository.findMaxTimestamp()
+                    .map(max -> interval.next(interval.floor(max)))
+                    .filter(bound -> bound.isAfter(interval.floor(now)))
+                    .orElse(interval.floor(now));
+            log.info("Converting stats into a partitioned table, legacy rows stay below {}", upperBound);
+            partitionRepository.migrateToPartitioned(upperBound);
+        }
+        partitionRepository.ensureDefaultPartition();
+    }
+
+    private boolean coveredByExisting(LocalDateTime start) {
+        return partitionRepository.findPartitions().stream()
+                .filter(partition -> !partition.isDefault())
+                .anyMatch(partition -> (partition.from() == null || !partition.from().isAfter(start))
+                        && partition.to() != null && partition.to().isAfter(start));
+    }
+
+    public enum RetentionMode {
+        DROP, DETACH
+    }
+}
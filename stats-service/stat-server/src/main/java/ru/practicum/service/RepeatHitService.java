@@ -0,0 +1,10 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+public interface RepeatHitService {
+
+    List<EndpointHit> suppress(List<EndpointHit> rows);
+}
@@ -0,0 +1,148 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RepeatKey;
+import ru.practicum.repository.RepeatHitRepository;
+import ru.practicum.sketch.BloomFilter;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Повторный хит того же (app, uri, IP) в пределах окна stats.dedup.window-minutes не пишется в stats строкой,
+// а добавляется к посекундному счётчику stats_repeat: выборки хитов по сырым строкам складывают оба источника,
+// так что неуникальные суммы точны, а уникальные IP не меняются — первый хит пары в stats уже есть.
+// Пары помнит Bloom-фильтр своего окна (текущее и предыдущее, для запоздавших хитов). Ложное срабатывание
+// фильтра (stats.dedup.false-positive-rate) теряет IP новой пары для уникальных подсчётов по stats;
+// после рестарта фильтры пустые, и первый повтор каждой пары снова пишется строкой.
+// Новые пары попадают в фильтр только после коммита транзакции, записавшей их строки: после отката и повтора
+// первый хит пары снова пишется строкой, а не теряется как повтор. Повторы внутри одного вызова отслеживаются
+// локально; пока транзакция не закоммичена, параллельная запись той же пары тоже пишется строкой.
+@Slf4j
+@Service
+public class RepeatHitServiceImpl implements RepeatHitService {
+    private final RepeatHitRepository repeatHitRepository;
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final long expectedPairs;
+    private final double falsePositiveRate;
+
+    private long currentWindow = Long.MIN_VALUE;
+    private BloomFilter current;
+    private BloomFilter previous;
+
+    private record Pair(long window, long hash) {
+    }
+
+    public RepeatHitServiceImpl(RepeatHitRepository repeatHitRepository,
+                                @Value("${stats.dedup.enabled:false}") boolean enabled,
+                                @Value("${stats.dedup.window-minutes:60}") int windowMinutes,
+                                @Value("${stats.dedup.expected-pairs:1000000}") long expectedPairs,
+                                @Value("${stats.dedup.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.repeatHitRepository = repeatHitRepository;
+        this.enabled = enabled;
+        this.windowSeconds = windowMinutes * 60L;
+        this.expectedPairs = expectedPairs;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    // Возвращает строки для stats; вес повторов (с учётом сэмплирования) уходит в stats_repeat в той же транзакции
+    @Override
+    public List<EndpointHit> suppress(List<EndpointHit> rows) {
+        if (!enabled || rows.isEmpty()) {
+            return rows;
+        }
+        List<EndpointHit> stored = new ArrayList<>(rows.size());
+        Map<RepeatKey, Long> repeats = new TreeMap<>();
+        Set<Pair> added = new LinkedHashSet<>();
+        synchronized (this) {
+            for (EndpointHit row : rows) {
+                long window = windowOf(row.getTimestamp());
+                BloomFilter filter = filterFor(window);
+                Pair pair = new Pair(window, hash(row));
+                if (filter == null || !filter.mightContain(pair.hash()) && added.add(pair)) {
+                    stored.add(row);
+                    continue;
+                }
+                repeats.merge(new RepeatKey(row.getTimestamp().truncatedTo(ChronoUnit.SECONDS),
+                        row.getApp().getId(), row.getUri().getId()), (long) row.getWeight(), Long::sum);
+            }
+        }
+        afterCommit(added);
+        if (!repeats.isEmpty()) {
+            repeatHitRepository.increment(repeats);
+            log.debug("Suppressed {} repeat rows into {} counters", rows.size() - stored.size(), repeats.size());
+        }
+        return stored;
+    }
+
+    private void afterCommit(Set<Pair> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addAll(added);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addAll(added);
+            }
+        });
+    }
+
+    // Окно могло смениться, пока шла транзакция: пары уже закрытых окон не нужны
+    private synchronized void addAll(Set<Pair> added) {
+        for (Pair pair : added) {
+            BloomFilter filter = pair.window() == currentWindow ? current
+                    : pair.window() == currentWindow - 1 ? previous : null;
+            if (filter != null) {
+                filter.add(pair.hash());
+            }
+        }
+    }
+
+    private long windowOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), windowSeconds);
+    }
+
+    // null — хит старше предыдущего окна или из будущего: такие пишутся строками без проверки,
+    // а хит с убежавшими вперёд часами не сбрасывает фильтры
+    private BloomFilter filterFor(long window) {
+        if (window > Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), windowSeconds) + 1) {
+            return null;
+        }
+        if (window > currentWindow) {
+            previous = window == currentWindow + 1 ? current : null;
+            current = BloomFilter.create(expectedPairs, falsePositiveRate);
+            currentWindow = window;
+        }
+        if (window == currentWindow) {
+            return current;
+        }
+        return window == currentWindow - 1 ? previous : null;
+    }
+
+    private long hash(EndpointHit row) {
+        byte[] ip = row.getIp();
+        return HyperLogLog.hash(ByteBuffer.allocate(2 * Integer.BYTES + ip.length)
+                .putInt(row.getApp().getId())
+                .putInt(row.getUri().getId())
+                .put(ip)
+                .array());
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.RollupRebuildDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupRange;
+import ru.practicum.repository.WindowedStatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RollupService {
+
+    void record(List<EndpointHit> hits);
+
+    List<ViewStats> countHits(LocalDateTime start, LocalDateTime endExclusive, List<String> uris);
+
+    List<List<ViewStats>> countHits(List<WindowedStatsQuery.Window> windows, List<String> uris);
+
+    List<RollupRange> plan(LocalDateTime start, LocalDateTime endExclusive);
+
+    RollupRebuildDto rebuild(String start, String end);
+
+    RollupRebuildDto backfill();
+}
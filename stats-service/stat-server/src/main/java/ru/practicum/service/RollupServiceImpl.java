@@ -0,0 +1,328 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.RollupRebuildDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.RollupRange;
+import ru.practicum.model.SketchRebuild;
+import ru.practicum.repository.EndpointHitRepository;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.StatsQuery;
+import ru.practicum.repository.StatsQueryRepository;
+import ru.practicum.repository.WindowedStatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+import static ru.practicum.model.RollupGranularity.HOUR;
+import static ru.practicum.model.RollupGranularity.MINUTE;
+
+// Пересборка удаляет агрегаты часа и считает их заново из stats, а запись хитов прибавляет к ним же.
+// Чтобы прибавка не потерялась и не задвоилась, час пересобирается в своей транзакции под блокировкой
+// на запись, а запись хитов держит блокировку на чтение до конца своей транзакции: пересборка видит либо
+// закоммиченные хиты вместе с их прибавкой, либо ни то ни другое. Блокировка в памяти — рассчитано
+// на один stat-server, как и архив.
+@Slf4j
+@Service
+@Transactional
+public class RollupServiceImpl implements RollupService, SmartInitializingSingleton {
+    private final RollupRepository rollupRepository;
+    private final EndpointHitRepository endpointHitRepository;
+    private final StatsQueryRepository statsQueryRepository;
+    private final DictionaryService dictionaryService;
+    private final HllSketchService hllSketchService;
+    private final TopSketchService topSketchService;
+    private final ArchiveService archiveService;
+    private final EncodingMigrationService encodingMigrationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    public RollupServiceImpl(RollupRepository rollupRepository,
+                             EndpointHitRepository endpointHitRepository,
+                             StatsQueryRepository statsQueryRepository,
+                             DictionaryService dictionaryService,
+                             HllSketchService hllSketchService,
+                             TopSketchService topSketchService,
+                             ArchiveService archiveService,
+                             EncodingMigrationService encodingMigrationService,
+                             PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.endpointHitRepository = endpointHitRepository;
+        this.statsQueryRepository = statsQueryRepository;
+        this.dictionaryService = dictionaryService;
+        this.hllSketchService = hllSketchService;
+        this.topSketchService = topSketchService;
+        this.archiveService = archiveService;
+        this.encodingMigrationService = encodingMigrationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Веб-сервер ещё не принимает запросы: неуникальные /stats читаются только из роллапов, и история без них
+    // читалась бы нулями. Строки старого формата без словарей в пересборку не попадут, поэтому сначала
+    // конвертация (повторный migrate после неё только проверяет столбцы)
+    @Override
+    public void afterSingletonsInstantiated() {
+        encodingMigrationService.migrate();
+        backfill();
+    }
+
+    @Override
+    public void record(List<EndpointHit> hits) {
+        Lock lock = rebuildLock.readLock();
+        lock.lock();
+        boolean untilCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (untilCompletion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        }
+        try {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                Map<RollupKey, Long> increments = new TreeMap<>();
+                for (EndpointHit hit : hits) {
+                    increments.merge(new RollupKey(granularity.floor(hit.getTimestamp()), hit.getApp().getName(),
+                            hit.getUri().getName()), 1L, Long::sum);
+                }
+                rollupRepository.increment(granularity, increments);
+            }
+        } finally {
+            if (!untilCompletion) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStats> countHits(LocalDateTime start, LocalDateTime endExclusive, List<String> uris) {
+        Map<AppUri, Long> totals = new LinkedHashMap<>();
+        List<Integer> uriIds = null;
+        for (RollupRange range : plan(start, endExclusive)) {
+            if (range.isRaw()) {
+                if (uris != null && !uris.isEmpty() && uriIds == null) {
+                    uriIds = dictionaryService.findUriIds(uris);
+                }
+                addRaw(totals, range, uris, uriIds);
+            } else {
+                log.debug("Using {} rollups for [{}, {})", range.granularity(), range.from(), range.to());
+                add(totals, rollupRepository.sumHits(range.granularity(), range.from(), range.to(), uris));
+            }
+        }
+        return toStats(totals);
+    }
+
+    // Роллапные куски всех окон считаются одним запросом; сырые края окон (меньше минуты с каждой стороны) —
+    // как в countHits для одного окна
+    @Transactional(readOnly = true)
+    @Override
+    public List<List<ViewStats>> countHits(List<WindowedStatsQuery.Window> windows, List<String> uris) {
+        List<Map<AppUri, Long>> totals = new ArrayList<>();
+        List<List<RollupRange>> rollups = new ArrayList<>();
+        List<Integer> uriIds = null;
+        for (WindowedStatsQuery.Window window : windows) {
+            Map<AppUri, Long> windowTotals = new LinkedHashMap<>();
+            List<RollupRange> windowRollups = new ArrayList<>();
+            for (RollupRange range : plan(window.start(), window.endExclusive())) {
+                if (!range.isRaw()) {
+                    windowRollups.add(range);
+                    continue;
+                }
+                if (uris != null && !uris.isEmpty() && uriIds == null) {
+                    uriIds = dictionaryService.findUriIds(uris);
+                }
+                addRaw(windowTotals, range, uris, uriIds);
+            }
+            totals.add(windowTotals);
+            rollups.add(windowRollups);
+        }
+        List<List<ViewStats>> summed = rollupRepository.sumHitsInWindows(rollups, uris);
+        List<List<ViewStats>> result = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            add(totals.get(i), summed.get(i));
+            result.add(toStats(totals.get(i)));
+        }
+        return result;
+    }
+
+    // Полные часы берём из stats_hour, полные минуты по краям — из stats_minute, остаток — из сырых строк
+    @Override
+    public List<RollupRange> plan(LocalDateTime start, LocalDateTime endExclusive) {
+        List<RollupRange> ranges = new ArrayList<>();
+        LocalDateTime hoursFrom = HOUR.ceil(start);
+        LocalDateTime hoursTo = HOUR.floor(endExclusive);
+        if (hoursFrom.isBefore(hoursTo)) {
+            ranges.add(new RollupRange(HOUR, hoursFrom, hoursTo));
+            planMinutes(ranges, start, hoursFrom);
+            planMinutes(ranges, hoursTo, endExclusive);
+        } else {
+            planMinutes(ranges, start, endExclusive);
+        }
+        return ranges;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public RollupRebuildDto rebuild(String start, String end) {
+        LocalDateTime from = start != null
+                ? LocalDateTime.parse(start, FORMATTER)
+                : endpointHitRepository.findMinTimestamp().orElse(null);
+        LocalDateTime to = end != null
+                ? LocalDateTime.parse(end, FORMATTER)
+                : endpointHitRepository.findMaxTimestamp().map(time -> time.plusSeconds(1)).orElse(null);
+        if (from == null || to == null) {
+            log.info("No raw hits found, nothing to rebuild");
+            return RollupRebuildDto.builder().build();
+        }
+        if (from.isAfter(to)) {
+            throw new ValidationException("Start date is after end date");
+        }
+        return rebuildHours(HOUR.floor(from), HOUR.ceil(to));
+    }
+
+    // Роллапы пишутся с первого хита после их появления, а хиты, сохранённые раньше, в них не попали.
+    // Если самый ранний хит stats старше первой минуты в stats_minute, всё до неё (с её часом) пересобирается
+    // из сырых строк; после этого stats_minute начинается не позже stats, и повторный вызов ничего не делает.
+    // Отцепленные и заархивированные хиты из stats ушли, а их роллапы остались — это не пропуск
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public RollupRebuildDto backfill() {
+        LocalDateTime firstHit = endpointHitRepository.findMinTimestamp().orElse(null);
+        if (firstHit == null) {
+            return RollupRebuildDto.builder().build();
+        }
+        LocalDateTime firstBucket = rollupRepository.findFirstBucket(MINUTE).orElse(null);
+        if (firstBucket != null && !firstBucket.isAfter(MINUTE.floor(firstHit))) {
+            return RollupRebuildDto.builder().build();
+        }
+        LocalDateTime to = firstBucket != null
+                ? firstBucket.plusMinutes(1)
+                : endpointHitRepository.findMaxTimestamp().orElse(firstHit).plusSeconds(1);
+        log.info("Raw hits since {} have no rollups, backfilling", firstHit);
+        return rebuildHours(HOUR.floor(firstHit), HOUR.ceil(to));
+    }
+
+    private RollupRebuildDto rebuildHours(LocalDateTime from, LocalDateTime to) {
+        // роллапы заархивированных суток пересчитать не из чего — их строк в stats больше нет
+        LocalDateTime archivedUntil = archiveService.getArchivedUntil().orElse(null);
+        if (archivedUntil != null && from.isBefore(archivedUntil)) {
+            log.info("Rollups before {} are kept: their hits are archived", archivedUntil);
+            from = archivedUntil;
+        }
+        // как и часов до самого раннего хита в stats: секции старше срока хранения отцеплены или удалены,
+        // а пустая stats не даёт пересчитать ничего
+        LocalDateTime retainedFrom = endpointHitRepository.findMinTimestamp().map(HOUR::floor).orElse(to);
+        if (from.isBefore(retainedFrom)) {
+            log.info("Rollups before {} are kept: their hits are no longer in stats", retainedFrom);
+            from = retainedFrom;
+        }
+        if (!from.isBefore(to)) {
+            return RollupRebuildDto.builder().start(from).end(from).build();
+        }
+        log.info("Rebuilding rollups for [{}, {})", from, to);
+        RollupRebuildDto result = RollupRebuildDto.builder().start(from).end(to).build();
+        LocalDateTime hour = from;
+        while (hour.isBefore(to)) {
+            // пустые часы пропускаются: диапазон от первого хита может тянуться на годы
+            LocalDateTime bucket = rollupRepository.findNextRebuildTime(hour).map(HOUR::floor).orElse(to);
+            if (!bucket.isBefore(to)) {
+                break;
+            }
+            hour = bucket.plusHours(1);
+            rebuildLock.writeLock().lock();
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebuildHour(bucket, result));
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+        }
+        log.info("Rebuilt {} minute and {} hour buckets, {} HLL sketch buckets ({} undercounted), {} top sketch"
+                        + " buckets", result.getMinuteBuckets(), result.getHourBuckets(), result.getSketchBuckets(),
+                result.getUndercountedSketchBuckets(), result.getTopBuckets());
+        return result;
+    }
+
+    // Скетчи top-k пересобираются из stats_hour, поэтому после агрегатов
+    private void rebuildHour(LocalDateTime hour, RollupRebuildDto result) {
+        LocalDateTime next = hour.plusHours(1);
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            rollupRepository.deleteBuckets(granularity, hour, next);
+            int buckets = rollupRepository.rebuildFromRaw(granularity, hour, next);
+            if (granularity == MINUTE) {
+                result.setMinuteBuckets(result.getMinuteBuckets() + buckets);
+            } else {
+                result.setHourBuckets(result.getHourBuckets() + buckets);
+            }
+        }
+        SketchRebuild sketches = hllSketchService.rebuild(hour, next);
+        result.setSketchBuckets(result.getSketchBuckets() + sketches.buckets());
+        result.setUndercountedSketchBuckets(result.getUndercountedSketchBuckets() + sketches.undercounted());
+        result.setTopBuckets(result.getTopBuckets() + topSketchService.rebuild(hour, next));
+    }
+
+    private void planMinutes(List<RollupRange> ranges, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        LocalDateTime minutesFrom = MINUTE.ceil(from);
+        LocalDateTime minutesTo = MINUTE.floor(to);
+        if (minutesFrom.isBefore(minutesTo)) {
+            ranges.add(new RollupRange(MINUTE, minutesFrom, minutesTo));
+            planRaw(ranges, from, minutesFrom);
+            planRaw(ranges, minutesTo, to);
+        } else {
+            planRaw(ranges, from, to);
+        }
+    }
+
+    private void planRaw(List<RollupRange> ranges, LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            ranges.add(new RollupRange(null, from, to));
+        }
+    }
+
+    private void addRaw(Map<AppUri, Long> totals, RollupRange range, List<String> uris, List<Integer> uriIds) {
+        add(totals, statsQueryRepository.find(StatsQuery.builder()
+                .start(range.from())
+                .endExclusive(range.to())
+                .uriIds(uriIds)
+                .build()));
+        // сырые строки заархивированных суток лежат уже не в stats, а в сегментах
+        archiveService.countHits(range.from(), range.to(), uris)
+                .forEach((key, hits) -> totals.merge(key, hits, Long::sum));
+    }
+
+    private List<ViewStats> toStats(Map<AppUri, Long> totals) {
+        return totals.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    private void add(Map<AppUri, Long> totals, List<ViewStats> stats) {
+        for (ViewStats stat : stats) {
+            totals.merge(new AppUri(stat.getApp(), stat.getUri()), stat.getHits(), Long::sum);
+        }
+    }
+}
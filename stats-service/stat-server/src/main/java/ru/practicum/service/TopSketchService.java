@@ -0,0 +1,21 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.TopEstimate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TopSketchService {
+
+    void record(List<EndpointHit> hits);
+
+    TopEstimate estimate(LocalDateTime hoursFrom, LocalDateTime hoursTo);
+
+    int rebuild(LocalDateTime from, LocalDateTime to);
+
+    void flush();
+
+    // Забыть скетчи в памяти без записи — вместе с очисткой таблицы скетчей (тесты): иначе их дозапишет flush
+    void clear();
+}
@@ -0,0 +1,212 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.TopEstimate;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.TopSketchRepository;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static ru.practicum.model.RollupGranularity.HOUR;
+
+// Один Space-Saving скетч на час по всем (app, uri). Горячие часы живут в памяти и при сбросе перезаписывают
+// сохранённую версию: скетч в кэше загружен из БД и содержит всё, что в ней было.
+@Slf4j
+@Service
+public class TopSketchServiceImpl implements TopSketchService {
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final String KEY_SEPARATOR = "\n";
+
+    private final TopSketchRepository sketchRepository;
+    private final RollupRepository rollupRepository;
+    private final int capacity;
+    private final Map<LocalDateTime, CachedSketch> cache = new ConcurrentHashMap<>();
+
+    public TopSketchServiceImpl(TopSketchRepository sketchRepository,
+                                RollupRepository rollupRepository,
+                                @Value("${stats.top.capacity:1000}") int capacity) {
+        this.sketchRepository = sketchRepository;
+        this.rollupRepository = rollupRepository;
+        this.capacity = capacity;
+    }
+
+    // Только закоммиченные хиты, как в HllSketchServiceImpl
+    @Override
+    public void record(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addAll(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addAll(hits);
+            }
+        });
+    }
+
+    private void addAll(List<EndpointHit> hits) {
+        Map<LocalDateTime, Map<String, Long>> increments = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            increments.computeIfAbsent(HOUR.floor(hit.getTimestamp()), hour -> new HashMap<>())
+                    .merge(key(hit.getApp().getName(), hit.getUri().getName()), 1L, Long::sum);
+        }
+        increments.forEach(this::add);
+    }
+
+    @Override
+    public TopEstimate estimate(LocalDateTime hoursFrom, LocalDateTime hoursTo) {
+        SpaceSaving merged = new SpaceSaving(capacity);
+        Map<LocalDateTime, byte[]> stored = sketchRepository.findSketches(hoursFrom, hoursTo);
+        for (LocalDateTime hour = hoursFrom; hour.isBefore(hoursTo); hour = hour.plusHours(1)) {
+            CachedSketch cached = cache.get(hour);
+            if (cached != null) {
+                cached.mergeInto(merged);
+            } else if (stored.containsKey(hour)) {
+                merged.merge(SpaceSaving.fromBytes(stored.get(hour)));
+            }
+        }
+        Map<AppUri, Long> counts = new HashMap<>();
+        for (Map.Entry<String, Long> entry : merged.top(capacity)) {
+            counts.put(appUri(entry.getKey()), entry.getValue());
+        }
+        return new TopEstimate(counts, merged.getFloor());
+    }
+
+    // Скетчи пересобираются из stats_hour, поэтому вызывать после пересборки часовых агрегатов
+    @Override
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        sketchRepository.deleteBuckets(from, to);
+        cache.keySet().removeIf(hour -> !hour.isBefore(from) && hour.isBefore(to));
+        int buckets = 0;
+        for (LocalDateTime hour = HOUR.floor(from); hour.isBefore(to); hour = hour.plusHours(1)) {
+            List<ViewStats> rows = rollupRepository.sumHits(HOUR, hour, hour.plusHours(1), null);
+            if (rows.isEmpty()) {
+                continue;
+            }
+            SpaceSaving sketch = new SpaceSaving(capacity);
+            for (ViewStats row : rows) {
+                sketch.offer(key(row.getApp(), row.getUri()), row.getHits());
+            }
+            sketchRepository.save(hour, sketch.toBytes());
+            buckets++;
+        }
+        return buckets;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.top.flush-interval-ms:5000}")
+    public void flush() {
+        long now = System.nanoTime();
+        int flushed = 0;
+        for (Map.Entry<LocalDateTime, CachedSketch> entry : cache.entrySet()) {
+            CachedSketch cached = entry.getValue();
+            byte[] snapshot = cached.takeDirtySnapshot();
+            if (snapshot != null) {
+                try {
+                    sketchRepository.save(entry.getKey(), snapshot);
+                    flushed++;
+                } catch (DataAccessException e) {
+                    cached.markDirty();
+                    log.error("Failed to flush top sketch {}: {}", entry.getKey(), e.getMessage());
+                }
+            } else if (cached.evictIfIdle(now)) {
+                cache.remove(entry.getKey(), cached);
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed {} top sketches, {} cached", flushed, cache.size());
+        }
+    }
+
+    private void add(LocalDateTime hour, Map<String, Long> counts) {
+        while (true) {
+            CachedSketch cached = cache.computeIfAbsent(hour, this::load);
+            if (cached.add(counts)) {
+                return;
+            }
+        }
+    }
+
+    private CachedSketch load(LocalDateTime hour) {
+        return new CachedSketch(sketchRepository.findSketch(hour)
+                .map(SpaceSaving::fromBytes)
+                .orElseGet(() -> new SpaceSaving(capacity)));
+    }
+
+    private static String key(String app, String uri) {
+        return app + KEY_SEPARATOR + uri;
+    }
+
+    private static AppUri appUri(String key) {
+        int separator = key.indexOf(KEY_SEPARATOR);
+        return new AppUri(key.substring(0, separator), key.substring(separator + 1));
+    }
+
+    private static final class CachedSketch {
+        private final SpaceSaving sketch;
+        private boolean dirty;
+        private boolean evicted;
+        private long lastAccess = System.nanoTime();
+
+        private CachedSketch(SpaceSaving sketch) {
+            this.sketch = sketch;
+        }
+
+        private synchronized boolean add(Map<String, Long> counts) {
+            if (evicted) {
+                return false;
+            }
+            counts.forEach(sketch::offer);
+            dirty = true;
+            lastAccess = System.nanoTime();
+            return true;
+        }
+
+        private synchronized void mergeInto(SpaceSaving target) {
+            target.merge(sketch);
+        }
+
+        private synchronized byte[] takeDirtySnapshot() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            return sketch.toBytes();
+        }
+
+        private synchronized void markDirty() {
+            dirty = true;
+        }
+
+        private synchronized boolean evictIfIdle(long now) {
+            if (!dirty && now - lastAccess > IDLE_EVICTION_NANOS) {
+                evicted = true;
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.ViewStats;
+
+import java.util.function.Consumer;
+
+// Отложенный запрос статистики: параметры уже проверены, строки читаются только в forEach
+@FunctionalInterface
+public interface ViewStatsStream {
+
+    void forEach(Consumer<ViewStats> action);
+}
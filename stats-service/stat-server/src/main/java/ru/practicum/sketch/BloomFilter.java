@@ -0,0 +1,53 @@
+package ru.practicum.sketch;
+
+// Bloom-фильтр по 64-битным хэшам (HyperLogLog.hash): k позиций из двух половин хэша (Kirsch–Mitzenmacher).
+// Ложное «может быть» случается с заданной вероятностью, ложного «нет» не бывает.
+public class BloomFilter {
+    private final long[] words;
+    private final int hashes;
+    private final long bitCount;
+
+    public BloomFilter(long[] words, int hashes) {
+        if (words.length == 0 || hashes <= 0) {
+            throw new IllegalArgumentException("Bloom filter must have bits and hash functions");
+        }
+        this.words = words;
+        this.hashes = hashes;
+        this.bitCount = (long) words.length * Long.SIZE;
+    }
+
+    public static BloomFilter create(long expected, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-Math.max(expected, 1) * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int words = (int) Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE);
+        int hashes = (int) Math.max(1, Math.round((double) words * Long.SIZE / Math.max(expected, 1) * ln2));
+        return new BloomFilter(new long[words], hashes);
+    }
+
+    public void add(long hash) {
+        long step = hash >>> 32 | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        long step = hash >>> 32 | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bitCount);
+            if ((words[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+
+    public int getHashes() {
+        return hashes;
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.sketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Space-Saving (Metwally et al.): не больше capacity счётчиков, при переполнении вытесняется минимальный,
+// новый ключ наследует его значение как погрешность. Счётчики — оценки сверху.
+// floor — верхняя граница числа хитов у любого ключа, которого в скетче нет; пока вытеснений не было, он равен 0
+// и скетч точен. Слияние — по Agarwal et al. (mergeable summaries).
+// Счётчики дополнительно упорядочены по значению (TreeSet): минимальный для вытеснения находится за O(log capacity),
+// а не проходом по всем. Счётчик меняется только вне дерева — удаляется, увеличивается и вставляется обратно.
+public class SpaceSaving {
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter c) -> c.count)
+            .thenComparing(c -> c.key);
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+    private long floor;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String key, long count) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += count;
+            byCount.add(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            put(new Counter(key, count, 0));
+            return;
+        }
+        Counter min = byCount.pollFirst();
+        counters.remove(min.key);
+        floor = Math.max(floor, min.count);
+        put(new Counter(key, min.count + count, min.count));
+    }
+
+    public void merge(SpaceSaving other) {
+        Map<String, Counter> merged = new HashMap<>();
+        for (Counter counter : counters.values()) {
+            Counter theirs = other.counters.get(counter.key);
+            merged.put(counter.key, theirs != null
+                    ? new Counter(counter.key, counter.count + theirs.count, counter.error + theirs.error)
+                    : new Counter(counter.key, counter.count + other.floor, counter.error + other.floor));
+        }
+        for (Counter theirs : other.counters.values()) {
+            merged.computeIfAbsent(theirs.key,
+                    key -> new Counter(key, theirs.count + floor, theirs.error + floor));
+        }
+        floor += other.floor;
+        counters.clear();
+        byCount.clear();
+        List<Counter> sorted = new ArrayList<>(merged.values());
+        sorted.sort(BY_COUNT.reversed());
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i < capacity) {
+                put(sorted.get(i));
+            } else {
+                floor = Math.max(floor, sorted.get(i).count);
+            }
+        }
+    }
+
+    // Ключи по убыванию оценки сверху
+    public List<Map.Entry<String, Long>> top(int limit) {
+        return byCount.descendingSet().stream()
+                .limit(limit)
+                .map(c -> Map.entry(c.key, c.count))
+                .toList();
+    }
+
+    public long getFloor() {
+        return floor;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(capacity);
+            out.writeLong(floor);
+            out.writeInt(counters.size());
+            for (Counter counter : counters.values()) {
+                out.writeUTF(counter.key);
+                out.writeLong(counter.count);
+                out.writeLong(counter.error);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            SpaceSaving sketch = new SpaceSaving(in.readInt());
+            sketch.floor = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                sketch.put(new Counter(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.key, counter);
+        byCount.add(counter);
+    }
+
+    private static final class Counter {
+        private final String key;
+        private long count;
+        private final long error;
+
+        private Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
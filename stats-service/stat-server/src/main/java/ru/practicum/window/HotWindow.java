@@ -0,0 +1,188 @@
+package ru.practicum.window;
+
+import ru.practicum.model.AppUri;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Скользящее окно последних хитов в кольцевом буфере слотов фиксированной ширины.
+// Слот хранит по каждому (app, uri) счётчик LongAdder и множество IP; запись не берёт блокировок,
+// устаревший слот заменяется через CAS при первом обращении к его ячейке.
+// Хиты с меткой времени дальше чем на слот в будущем в окно не попадают — такие слоты помечаются неполными
+// и запросы по ним уходят в БД.
+public class HotWindow {
+    private final int slotSeconds;
+    private final int slotCount;
+    private final AtomicReferenceArray<Slot> slots;
+    private final Set<String> apps = ConcurrentHashMap.newKeySet();
+    private final Set<Long> incompleteSlots = new ConcurrentSkipListSet<>();
+
+    public HotWindow(int windowSeconds, int slotSeconds) {
+        if (slotSeconds <= 0 || windowSeconds < slotSeconds) {
+            throw new IllegalArgumentException("Window must hold at least one slot");
+        }
+        this.slotSeconds = slotSeconds;
+        // два запасных слота: текущий, в который ещё пишут, и следующий для хитов с небольшим опережением часов
+        this.slotCount = windowSeconds / slotSeconds + 2;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+    }
+
+    public void add(LocalDateTime timestamp, String app, String uri, byte[] ip, int weight, LocalDateTime now) {
+        long slot = slotOf(timestamp);
+        long current = slotOf(now);
+        if (slot <= current - slotCount + 1) {
+            return;
+        }
+        if (slot > current + 1) {
+            incompleteSlots.add(slot);
+            return;
+        }
+        Slot stored = slotFor(slot);
+        if (stored != null) {
+            apps.add(app);
+            stored.counter(new AppUri(app, uri)).add(ip, weight);
+        }
+    }
+
+    // Окно отвечает за [start, endExclusive), только если границы совпадают с границами слотов,
+    // все слоты ещё в буфере и ни один не помечен неполным
+    public boolean covers(LocalDateTime start, LocalDateTime endExclusive, LocalDateTime now) {
+        if (!isAligned(start) || !isAligned(endExclusive) || !start.isBefore(endExclusive)) {
+            return false;
+        }
+        long first = slotOf(start);
+        long last = slotOf(endExclusive) - 1;
+        long current = slotOf(now);
+        if (first <= current - slotCount + 2 || last > current + 1) {
+            return false;
+        }
+        incompleteSlots.removeIf(slot -> slot <= current - slotCount + 1);
+        return incompleteSlots.stream().noneMatch(slot -> slot >= first && slot <= last);
+    }
+
+    public Map<AppUri, Long> count(LocalDateTime start, LocalDateTime endExclusive, Collection<String> uris,
+                                   boolean unique) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        Map<AppUri, Set<IpKey>> ips = new HashMap<>();
+        for (long slot = slotOf(start); slot < slotOf(endExclusive); slot++) {
+            Slot stored = slots.get(index(slot));
+            if (stored == null || stored.epochSlot != slot) {
+                continue;
+            }
+            for (Map.Entry<AppUri, UriCounter> entry : entries(stored, uris)) {
+                if (unique) {
+                    ips.computeIfAbsent(entry.getKey(), key -> new HashSet<>()).addAll(entry.getValue().ips);
+                } else {
+                    hits.merge(entry.getKey(), entry.getValue().hits.sum(), Long::sum);
+                }
+            }
+        }
+        if (unique) {
+            ips.forEach((key, set) -> hits.put(key, (long) set.size()));
+        }
+        return hits;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slotCount; i++) {
+            slots.set(i, null);
+        }
+        incompleteSlots.clear();
+    }
+
+    private Collection<Map.Entry<AppUri, UriCounter>> entries(Slot slot, Collection<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return slot.counters.entrySet();
+        }
+        Map<AppUri, UriCounter> selected = new HashMap<>();
+        for (String app : apps) {
+            for (String uri : uris) {
+                AppUri key = new AppUri(app, uri);
+                UriCounter counter = slot.counters.get(key);
+                if (counter != null) {
+                    selected.put(key, counter);
+                }
+            }
+        }
+        return selected.entrySet();
+    }
+
+    private Slot slotFor(long slot) {
+        int index = index(slot);
+        while (true) {
+            Slot stored = slots.get(index);
+            if (stored != null && stored.epochSlot == slot) {
+                return stored;
+            }
+            // ячейку уже занял более новый слот — хит выпал из окна, пока шёл до записи
+            if (stored != null && stored.epochSlot > slot) {
+                return null;
+            }
+            Slot fresh = new Slot(slot);
+            if (slots.compareAndSet(index, stored, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) slotCount);
+    }
+
+    private long slotOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), slotSeconds);
+    }
+
+    private boolean isAligned(LocalDateTime time) {
+        return time.getNano() == 0 && time.toEpochSecond(ZoneOffset.UTC) % slotSeconds == 0;
+    }
+
+    private static final class Slot {
+        private final long epochSlot;
+        private final Map<AppUri, UriCounter> counters = new ConcurrentHashMap<>();
+
+        private Slot(long epochSlot) {
+            this.epochSlot = epochSlot;
+        }
+
+        private UriCounter counter(AppUri key) {
+            return counters.computeIfAbsent(key, appUri -> new UriCounter());
+        }
+    }
+
+    private static final class UriCounter {
+        private final LongAdder hits = new LongAdder();
+        private final Set<IpKey> ips = ConcurrentHashMap.newKeySet();
+
+        // ip == null — повторные хиты без строки в stats: только счётчик
+        private void add(byte[] ip, int weight) {
+            hits.add(weight);
+            if (ip != null) {
+                ips.add(IpKey.of(ip));
+            }
+        }
+    }
+
+    // IP в двух long; IPv4 раскладывается как IPv4-mapped, поэтому не пересекается с IPv6
+    private record IpKey(long high, long low) {
+        private static final long IPV4_MAPPED_PREFIX = 0xffffL << 32;
+
+        private static IpKey of(byte[] ip) {
+            ByteBuffer buffer = ByteBuffer.wrap(ip);
+            if (ip.length == 4) {
+                return new IpKey(0, IPV4_MAPPED_PREFIX | Integer.toUnsignedLong(buffer.getInt()));
+            }
+            return new IpKey(buffer.getLong(), buffer.getLong());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+-- На чистой базе stats сразу создаётся партиционированной по timestamp; секции по датам создаёт PartitionService,
+-- а DEFAULT — этот скрипт, до старта веб-сервера и независимо от stats.partitions.enabled: без неё любая вставка
+-- в stats падает с "no partition of relation found".
+-- Существующая таблица здесь не трогается: секционирование и перевод app/uri/ip в словари и байты
+-- выполняются сервисом при старте.
+CREATE SEQUENCE IF NOT EXISTS stats_id_seq;
+
+CREATE TABLE IF NOT EXISTS stats (
+    id BIGINT NOT NULL DEFAULT nextval('stats_id_seq'),
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    weight INTEGER NOT NULL DEFAULT 1
+) PARTITION BY RANGE (timestamp);
+
+-- Старая heap-таблица stats секций не имеет: DEFAULT создаётся только у партиционированной
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass(''stats'') AND relkind = ''p'') THEN
+        CREATE TABLE IF NOT EXISTS stats_default PARTITION OF stats DEFAULT;
+    END IF;
+END';
+
+-- Вес строки при сэмплировании; в уже существующей таблице столбец добавляется без переписывания строк
+ALTER TABLE stats ADD COLUMN IF NOT EXISTS weight INTEGER NOT NULL DEFAULT 1;
+
+-- Покрывающий индекс для выборок по uri (StatsQuery): диапазон по timestamp и COUNT(DISTINCT ip) читаются из индекса.
+-- В старой таблице со строковыми app/uri/ip столбца uri_id ещё нет: индекс пропускается, а скрипт применяется
+-- повторно после конвертации и после перевода таблицы в секционированную. Тело DO — в обычных кавычках:
+-- разбор скрипта на операторы не знает $$-строк.
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''stats'' AND column_name = ''uri_id'') THEN
+        CREATE INDEX IF NOT EXISTS stats_uri_timestamp_idx ON stats (uri_id, timestamp, app_id, ip);
+    END IF;
+END';
@@ -1,7 +1,76 @@
+CREATE TABLE IF NOT EXISTS stats_apps (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(50) NOT NULL,
+    CONSTRAINT stats_apps_name_uq UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS stats_uris (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(50) NOT NULL,
+    CONSTRAINT stats_uris_name_uq UNIQUE (name)
+);
+
 CREATE TABLE IF NOT EXISTS stats (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    weight INTEGER NOT NULL DEFAULT 1
+);
+
+CREATE INDEX IF NOT EXISTS stats_timestamp_idx ON stats (timestamp);
+
+CREATE TABLE IF NOT EXISTS stats_minute (
+    bucket_start TIMESTAMP NOT NULL,
     app VARCHAR(50) NOT NULL,
-    ip VARCHAR(15) NOT NULL,
     uri VARCHAR(50) NOT NULL,
-    timestamp TIMESTAMP NOT NULL
-);
\ No newline at end of file
+    hits BIGINT NOT NULL,
+    CONSTRAINT stats_minute_pk PRIMARY KEY (bucket_start, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS stats_hour (
+    bucket_start TIMESTAMP NOT NULL,
+    app VARCHAR(50) NOT NULL,
+    uri VARCHAR(50) NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT stats_hour_pk PRIMARY KEY (bucket_start, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS stats_repeat (
+    bucket_start TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT stats_repeat_pk PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stats_uri_hll (
+    bucket_start TIMESTAMP NOT NULL,
+    app VARCHAR(50) NOT NULL,
+    uri VARCHAR(50) NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT stats_uri_hll_pk PRIMARY KEY (bucket_start, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS stats_top_hour (
+    bucket_start TIMESTAMP NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT stats_top_hour_pk PRIMARY KEY (bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS stats_journal_checkpoint (
+    journal VARCHAR(100) NOT NULL,
+    segment BIGINT NOT NULL,
+    segment_offset INTEGER NOT NULL,
+    CONSTRAINT stats_journal_checkpoint_pk PRIMARY KEY (journal)
+);
+
+CREATE TABLE IF NOT EXISTS stats_archive (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    range_start TIMESTAMP NOT NULL,
+    range_end TIMESTAMP NOT NULL,
+    file VARCHAR(255) NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT stats_archive_file_uq UNIQUE (file)
+);
@@ -0,0 +1,86 @@
+package ru.practicum.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.model.AppUri;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ArchiveSegmentTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2003, 4, 10, 0, 0);
+    private static final byte[] IPV4 = {10, 0, 0, 1};
+    private static final byte[] IPV6 = new byte[16];
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testRowsAreReadBackAcrossBlocks() throws IOException {
+        ArchiveSegment segment = writeHourly(directory.resolve("day.hseg"), 10);
+
+        assertEquals(10, segment.getRows());
+        assertEquals(20, segment.getHits());
+        assertEquals(Map.of(new AppUri("app", "/events/1"), 10L, new AppUri("app", "/events/2"), 10L),
+                segment.countHits(DAY, DAY.plusDays(1), null));
+        // строки 2..6 — конец первого блока, весь второй и начало третьего
+        assertEquals(Map.of(new AppUri("app", "/events/2"), 4L),
+                segment.countHits(DAY.plusHours(2), DAY.plusHours(7), List.of("/events/2")));
+
+        Map<AppUri, Set<ByteBuffer>> ips = new HashMap<>();
+        assertEquals(1, segment.collectIps(DAY, DAY.plusDays(1), List.of("/events/1"), ips, 10));
+        assertEquals(-1, segment.collectIps(DAY, DAY.plusDays(1), null, new HashMap<>(), 1));
+    }
+
+    // Первый блок испорчен: запрос по времени последних блоков его не распаковывает, а запрос по всем суткам — да
+    @Test
+    public void testOnlyBlocksOverlappingQueryAreInflated() throws IOException {
+        Path file = directory.resolve("day.hseg");
+        ArchiveSegment segment = writeHourly(file, 10);
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[8]), 5);
+        }
+
+        assertEquals(Map.of(new AppUri("app", "/events/1"), 2L, new AppUri("app", "/events/2"), 4L),
+                segment.countHits(DAY.plusHours(7), DAY.plusDays(1), null));
+        assertThrows(UncheckedIOException.class, () -> segment.countHits(DAY, DAY.plusDays(1), null));
+    }
+
+    @Test
+    public void testUnfinishedWriterLeavesNoFiles() throws IOException {
+        Path file = directory.resolve("day.hseg");
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file, 4)) {
+            writer.add("app", "/events/1", IPV4, DAY, 1);
+        }
+
+        try (var files = Files.list(directory)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    // Строка в час, блоки по 4 строки; вес 2, IP по очереди IPv4 и IPv6
+    private ArchiveSegment writeHourly(Path file, int rows) throws IOException {
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file, 4)) {
+            for (int i = 0; i < rows; i++) {
+                writer.add("app", "/events/" + (i % 2 + 1), i % 2 == 0 ? IPV4 : IPV6, DAY.plusHours(i), 2);
+            }
+            ArchiveSegment written = writer.write(DAY, DAY.plusDays(1));
+            assertEquals(written.getRows(), ArchiveSegment.open(file).getRows());
+            return written;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// DDL секций на соединении, которое только запоминает SQL: PostgreSQL в тестах нет, а
+// PartitionMaintenanceIntegrationTest подменяет репозиторий целиком
+public class PartitionRepositoryTest {
+    private final List<String> executed = new ArrayList<>();
+
+    @Test
+    public void testLegacyTableBecomesPartitionAndGetsDefault() throws SQLException {
+        PartitionRepository repository = new PartitionRepository(new JdbcTemplate(recordingDataSource()));
+
+        repository.migrateToPartitioned(LocalDateTime.of(2024, 5, 1, 0, 0));
+
+        int renamed = indexOf("ALTER TABLE stats RENAME TO stats_legacy");
+        int created = indexOf("CREATE TABLE stats (LIKE stats_legacy");
+        int attached = indexOf("ATTACH PARTITION stats_legacy FOR VALUES FROM (MINVALUE) TO ('2024-05-01 00:00:00')");
+        int defaultPartition = indexOf("stats_default PARTITION OF stats DEFAULT");
+        int uriIndex = indexOf("stats_uri_timestamp_idx ON stats");
+        assertTrue(renamed < created && created < attached && attached < defaultPartition
+                && attached < uriIndex, executed.toString());
+    }
+
+    private DataSource recordingDataSource() throws SQLException {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        Statement statement = mock(Statement.class);
+        when(statement.execute(anyString())).thenAnswer(invocation -> executed.add(invocation.getArgument(0)));
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private int indexOf(String fragment) {
+        for (int i = 0; i < executed.size(); i++) {
+            if (executed.get(i).contains(fragment)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No statement with '" + fragment + "' in " + executed);
+    }
+}
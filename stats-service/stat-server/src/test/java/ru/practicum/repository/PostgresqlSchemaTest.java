@@ -0,0 +1,53 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// PostgreSQL в тестах нет (H2 не знает секций), поэтому проверяется, какие операторы скрипт отдаёт базе
+// при старте: тот же разбор, что у spring.sql.init, на соединении, которое только запоминает SQL
+public class PostgresqlSchemaTest {
+
+    @Test
+    public void testFreshSchemaGetsDefaultPartitionRightAfterPartitionedStats() throws SQLException {
+        List<String> statements = execute("schema-postgresql.sql");
+
+        int stats = indexOf(statements, "CREATE TABLE IF NOT EXISTS stats (");
+        int defaultPartition = indexOf(statements, "stats_default PARTITION OF stats DEFAULT");
+        assertTrue(statements.get(stats).endsWith("PARTITION BY RANGE (timestamp)"), statements.get(stats));
+        assertEquals(stats + 1, defaultPartition);
+        // старая heap-таблица секций не имеет — DEFAULT создаётся только у партиционированной stats
+        assertTrue(statements.get(defaultPartition).contains("relkind = ''p''"), statements.get(defaultPartition));
+    }
+
+    private List<String> execute(String script) throws SQLException {
+        List<String> executed = new ArrayList<>();
+        Statement statement = mock(Statement.class);
+        when(statement.execute(anyString())).thenAnswer(invocation -> executed.add(invocation.getArgument(0)));
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        new ResourceDatabasePopulator(new ClassPathResource(script)).populate(connection);
+        return executed;
+    }
+
+    private int indexOf(List<String> statements, String fragment) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).contains(fragment)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No statement with '" + fragment + "' in " + statements);
+    }
+}
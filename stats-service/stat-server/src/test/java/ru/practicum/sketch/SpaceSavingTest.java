@@ -0,0 +1,122 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void testSketchIsExactUntilFull() {
+        SpaceSaving sketch = new SpaceSaving(3);
+        sketch.offer("a", 5);
+        sketch.offer("b", 3);
+        sketch.offer("c", 1);
+        sketch.offer("b", 4);
+
+        assertEquals(0, sketch.getFloor());
+        assertEquals(List.of(Map.entry("b", 7L), Map.entry("a", 5L), Map.entry("c", 1L)), sketch.top(3));
+    }
+
+    @Test
+    public void testNewKeyEvictsMinimumAndInheritsItsCount() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.offer("a", 5);
+        sketch.offer("b", 3);
+        sketch.offer("c", 1);
+        assertEquals(3, sketch.getFloor());
+        assertEquals(List.of(Map.entry("a", 5L), Map.entry("c", 4L)), sketch.top(2));
+
+        // после роста c минимальным становится a — порядок счётчиков обновляется вместе с ними
+        sketch.offer("c", 2);
+        sketch.offer("d", 2);
+        assertEquals(5, sketch.getFloor());
+        assertEquals(List.of(Map.entry("d", 7L), Map.entry("c", 6L)), sketch.top(2));
+        assertEquals(2, sketch.size());
+    }
+
+    @Test
+    public void testCountersAreUpperBoundsAndFloorBoundsMissingKeys() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String key = "uri-" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 60);
+            long count = 1 + random.nextInt(3);
+            sketch.offer(key, count);
+            exact.merge(key, count, Long::sum);
+        }
+        assertBounds(sketch, exact);
+    }
+
+    @Test
+    public void testMergedSketchKeepsBounds() {
+        SpaceSaving first = new SpaceSaving(3);
+        first.offer("x", 10);
+        first.offer("y", 5);
+        first.offer("z", 1);
+        first.offer("w", 2);
+        SpaceSaving second = new SpaceSaving(3);
+        second.offer("x", 4);
+        second.offer("v", 7);
+
+        first.merge(second);
+
+        assertEquals(List.of(Map.entry("x", 14L), Map.entry("v", 8L), Map.entry("y", 5L)), first.top(3));
+        assertEquals(3, first.getFloor());
+        assertBounds(first, Map.of("x", 14L, "y", 5L, "z", 1L, "w", 2L, "v", 7L));
+    }
+
+    @Test
+    public void testRandomMergesKeepBounds() {
+        Random random = new Random(7);
+        SpaceSaving merged = new SpaceSaving(8);
+        Map<String, Long> exact = new HashMap<>();
+        for (int part = 0; part < 6; part++) {
+            SpaceSaving sketch = new SpaceSaving(8);
+            for (int i = 0; i < 500; i++) {
+                String key = "uri-" + (int) Math.floor(Math.pow(random.nextDouble(), 2) * 40);
+                sketch.offer(key, 1);
+                exact.merge(key, 1L, Long::sum);
+            }
+            merged.merge(sketch);
+        }
+        assertEquals(8, merged.size());
+        assertBounds(merged, exact);
+    }
+
+    @Test
+    public void testRestoredSketchEvictsItsMinimum() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.offer("a", 9);
+        sketch.offer("b", 2);
+        sketch.offer("c", 1);
+
+        SpaceSaving restored = SpaceSaving.fromBytes(sketch.toBytes());
+        assertEquals(sketch.top(2), restored.top(2));
+        assertEquals(sketch.getFloor(), restored.getFloor());
+
+        restored.offer("d", 1);
+        assertEquals(3, restored.getFloor());
+        assertEquals(List.of(Map.entry("a", 9L), Map.entry("d", 4L)), restored.top(2));
+    }
+
+    private void assertBounds(SpaceSaving sketch, Map<String, Long> exact) {
+        Map<String, Long> estimated = new HashMap<>();
+        sketch.top(sketch.size()).forEach(entry -> estimated.put(entry.getKey(), entry.getValue()));
+        exact.forEach((key, count) -> {
+            if (estimated.containsKey(key)) {
+                assertTrue(estimated.get(key) >= count, key + ": " + estimated.get(key) + " < " + count);
+            } else {
+                assertTrue(sketch.getFloor() >= count, key + " is missing with " + count + " > floor "
+                        + sketch.getFloor());
+            }
+        });
+    }
+}
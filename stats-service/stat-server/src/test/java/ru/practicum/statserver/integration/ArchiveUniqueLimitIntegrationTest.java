@@ -0,0 +1,69 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+// В памяти держится не больше трёх архивных IP: точный уникальный счёт по всем uri их не вмещает
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_archive_limit_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.archive.directory=target/stats-archive-limit",
+        "stats.archive.max-unique-ips=3"
+})
+public class ArchiveUniqueLimitIntegrationTest {
+    private static final String APP = "ewm-main-service";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testExactUniqueOverArchiveIsBoundedByMaxIps() {
+        LocalDateTime day = LocalDateTime.of(2002, 6, 10, 10, 0, 0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(hit("/events/wide", "10.8.0." + i, day.plusSeconds(i)));
+        }
+        batch.add(hit("/events/narrow", "10.8.1.1", day.plusSeconds(5)));
+        batch.add(hit("/events/narrow", "10.8.1.2", day.plusSeconds(6)));
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        ResponseEntity<ArchiveSegmentDto[]> archived = restTemplate.postForEntity(
+                "/admin/archive?until={until}", null, ArchiveSegmentDto[].class, day.plusDays(1).format(FORMATTER));
+        assertEquals(HttpStatus.OK, archived.getStatusCode());
+        assertEquals(1, Objects.requireNonNull(archived.getBody()).length);
+
+        LocalDateTime start = day.minusMinutes(1);
+        LocalDateTime end = day.plusMinutes(1);
+        ResponseEntity<String> all = restTemplate.getForEntity("/stats?start={start}&end={end}&unique=true",
+                String.class, start.format(FORMATTER), end.format(FORMATTER));
+        assertEquals(HttpStatus.BAD_REQUEST, all.getStatusCode());
+
+        ResponseEntity<ViewStats[]> narrow = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&uris={uri}&unique=true", ViewStats[].class,
+                start.format(FORMATTER), end.format(FORMATTER), "/events/narrow");
+        assertEquals(HttpStatus.OK, narrow.getStatusCode());
+        assertEquals(2L, Objects.requireNonNull(narrow.getBody())[0].getHits());
+    }
+
+    private EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.service.DictionaryService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Кэш на два имени: строки удаляются из stats_uris в обход сервиса, чтобы было видно, откуда взят id
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_dictionary_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.dictionary.cache-size=2"
+})
+public class DictionaryIntegrationTest {
+
+    @Autowired
+    private DictionaryService dictionaryService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testIdOfRolledBackInsertIsNotCached() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            dictionaryService.getUri("/dictionary/rollback");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of(), dictionaryService.findUriIds(List.of("/dictionary/rollback")));
+        int id = dictionaryService.getUri("/dictionary/rollback").getId();
+        assertEquals(List.of(id), dictionaryService.findUriIds(List.of("/dictionary/rollback")));
+    }
+
+    @Test
+    public void testFullCacheEvictsLeastRecentlyUsedName() {
+        int first = dictionaryService.getUri("/dictionary/first").getId();
+        dictionaryService.getUri("/dictionary/second");
+        int third = dictionaryService.getUri("/dictionary/third").getId();
+        jdbcTemplate.update("DELETE FROM stats_uris WHERE name IN ('/dictionary/first', '/dictionary/third')");
+
+        // последнее имя попало в кэш и после заполнения, первое вытеснено и вставляется заново
+        assertEquals(third, dictionaryService.getUri("/dictionary/third").getId());
+        assertNotEquals(first, dictionaryService.getUri("/dictionary/first").getId());
+    }
+}
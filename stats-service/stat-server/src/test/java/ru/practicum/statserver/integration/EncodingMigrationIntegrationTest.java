@@ -0,0 +1,143 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.LegacyHit;
+import ru.practicum.repository.EncodingMigrationRepository;
+import ru.practicum.service.DictionaryService;
+import ru.practicum.service.EncodingMigrationService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Старая таблица со строковыми app/uri/ip есть только в PostgreSQL: репозиторий подменён таблицей в памяти,
+// которая отвечает на findBatch так же, как SQL (app_id IS NULL, timestamp >= курсора, по порядку, LIMIT)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_migration_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.encoding-migration.batch-size=2"
+})
+public class EncodingMigrationIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime TIME = LocalDateTime.of(2023, 5, 1, 12, 0, 0);
+
+    @Autowired
+    private EncodingMigrationService migrationService;
+    @Autowired
+    private DictionaryService dictionaryService;
+
+    @MockBean
+    private EncodingMigrationRepository migrationRepository;
+
+    private List<LegacyHit> legacyRows;
+    private Map<Long, EndpointHit> converted;
+
+    @BeforeEach
+    public void setUp() {
+        // третья и четвёртая строки с одним timestamp попадают на границу пачек по 2
+        legacyRows = List.of(
+                new LegacyHit(1L, TIME, APP, "/events/1", "192.168.0.1"),
+                new LegacyHit(2L, TIME.plusSeconds(1), APP, "/events/2", "2001:db8::1"),
+                new LegacyHit(3L, TIME.plusSeconds(2), "rating-service", "/events/1", "::ffff:10.0.0.7"),
+                new LegacyHit(4L, TIME.plusSeconds(2), APP, "/events/1", "not-an-ip"),
+                new LegacyHit(5L, TIME.plusSeconds(3), APP, "/events/3", "10.0.0.5"));
+        converted = new LinkedHashMap<>();
+        when(migrationRepository.isSupported()).thenReturn(true);
+        when(migrationRepository.findBatch(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return legacyRows.stream()
+                    .filter(row -> !converted.containsKey(row.id()))
+                    .filter(row -> from == null || !row.timestamp().isBefore(from))
+                    .sorted(Comparator.comparing(LegacyHit::timestamp))
+                    .limit(limit)
+                    .toList();
+        });
+        doAnswer(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            hits.forEach(hit -> converted.put(hit.getId(), hit));
+            return null;
+        }).when(migrationRepository).updateBatch(anyList());
+    }
+
+    @Test
+    public void testLegacyRowsAreConvertedToDictionaryIdsAndBinaryIp() {
+        when(migrationRepository.findStatsColumns()).thenReturn(Set.of("id", "timestamp", "app", "uri", "ip"));
+
+        migrationService.migrate();
+
+        InOrder order = inOrder(migrationRepository);
+        order.verify(migrationRepository).prepare();
+        order.verify(migrationRepository).findBatch(null, 2);
+        // курсор — timestamp последней строки пачки, строка с тем же timestamp не теряется
+        order.verify(migrationRepository).findBatch(TIME.plusSeconds(1), 2);
+        order.verify(migrationRepository).findBatch(TIME.plusSeconds(2), 2);
+        order.verify(migrationRepository).findBatch(TIME.plusSeconds(3), 2);
+        order.verify(migrationRepository).finish();
+        order.verify(migrationRepository).applySchema();
+
+        assertEquals(legacyRows.size(), converted.size());
+        for (LegacyHit row : legacyRows) {
+            EndpointHit hit = converted.get(row.id());
+            assertEquals(row.timestamp(), hit.getTimestamp());
+            assertEquals(dictionaryService.getApp(row.app()).getId(), hit.getApp().getId());
+            assertEquals(dictionaryService.getUri(row.uri()).getId(), hit.getUri().getId());
+        }
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 0, 1}, converted.get(1L).getIp());
+        assertEquals(16, converted.get(2L).getIp().length);
+        // IPv4-mapped адрес хранится как IPv4, невалидный — как "::"
+        assertArrayEquals(new byte[]{10, 0, 0, 7}, converted.get(3L).getIp());
+        assertArrayEquals(new byte[16], converted.get(4L).getIp());
+        assertArrayEquals(new byte[]{10, 0, 0, 5}, converted.get(5L).getIp());
+    }
+
+    @Test
+    public void testInterruptedMigrationResumesWithoutPrepare() {
+        // прошлый запуск успел добавить новые колонки и сконвертировать первые две строки
+        when(migrationRepository.findStatsColumns()).thenReturn(Set.of("id", "timestamp", "app_name", "uri_name",
+                "ip_text", "app_id", "uri_id", "ip"));
+        converted.put(1L, null);
+        converted.put(2L, null);
+
+        migrationService.migrate();
+
+        verify(migrationRepository, never()).prepare();
+        verify(migrationRepository).finish();
+        List<Long> ids = new ArrayList<>(converted.keySet());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids);
+        assertEquals(dictionaryService.getApp("rating-service").getId(), converted.get(3L).getApp().getId());
+    }
+
+    @Test
+    public void testMigratedTableIsLeftAlone() {
+        when(migrationRepository.findStatsColumns()).thenReturn(Set.of("id", "timestamp", "app_id", "uri_id", "ip"));
+
+        migrationService.migrate();
+
+        // индекс по uri на такой таблице создал schema-postgresql.sql при старте
+        verify(migrationRepository, never()).applySchema();
+        verify(migrationRepository, never()).prepare();
+        verify(migrationRepository, never()).findBatch(any(), anyInt());
+        verify(migrationRepository, never()).finish();
+    }
+}
@@ -0,0 +1,211 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.journal.HitJournal;
+import ru.practicum.journal.JournalBatch;
+import ru.practicum.journal.JournalPosition;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.EndpointHitMapper;
+import ru.practicum.service.DictionaryService;
+import ru.practicum.service.HitJournalService;
+import ru.practicum.service.HllSketchService;
+import ru.practicum.service.HotWindowService;
+import ru.practicum.service.TopSketchService;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_journal_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.journal.enabled=true",
+        "stats.journal.segment-size-mb=1",
+        "stats.journal.drain-interval-ms=3600000"
+})
+public class HitJournalIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @TempDir
+    static Path journalDirectory;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HotWindowService hotWindowService;
+    @Autowired
+    private HitJournalService hitJournalService;
+    @Autowired
+    private HllSketchService hllSketchService;
+    @Autowired
+    private TopSketchService topSketchService;
+    @Autowired
+    private DictionaryService dictionaryService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) {
+        registry.add("stats.journal.directory", () -> journalDirectory.toString());
+    }
+
+    @BeforeEach
+    public void clearDatabase() {
+        hitJournalService.drain();
+        jdbcTemplate.execute("DELETE FROM stats");
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+    }
+
+    @BeforeEach
+    public void clearHotWindow() {
+        hotWindowService.clear();
+    }
+
+    @Test
+    public void testHitIsAcknowledgedFromJournalAndDrainedOnce() {
+        for (int i = 0; i < 3; i++) {
+            ResponseEntity<Void> response = restTemplate.postForEntity("/hit", hit("/events/1", "10.0.0." + i),
+                    Void.class);
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        }
+        assertEquals(0L, countRows());
+
+        assertEquals(3, hitJournalService.drain());
+        assertEquals(0, hitJournalService.drain());
+        assertEquals(3L, countRows());
+        assertEquals(3L, getHits("/events/1"));
+    }
+
+    // Откат транзакции с хитами (например, пачки drain) не оставляет их в скетчах
+    @Test
+    public void testSketchesRecordOnlyCommittedHits() {
+        LocalDateTime hour = NOW.minusDays(3).withMinute(0).withSecond(0);
+        String uri = "/events/rolled-back";
+        EndpointHit hit = EndpointHitMapper.toEntity(hit(uri, "10.0.0.1"), dictionaryService.getApp(APP),
+                dictionaryService.getUri(uri));
+        hit.setTimestamp(hour.plusMinutes(5));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            hllSketchService.record(List.of(hit));
+            topSketchService.record(List.of(hit));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of(), hllSketchService.estimateUnique(hour, hour.plusHours(1), List.of(uri)));
+        assertFalse(topSketchService.estimate(hour, hour.plusHours(1)).counts()
+                .containsKey(new AppUri(APP, uri)));
+    }
+
+    @Test
+    public void testInvalidHitIsRejectedBeforeJournal() {
+        ResponseEntity<String> response = restTemplate.postForEntity("/hit", hit("/events/" + "1".repeat(60),
+                "10.0.0.1"), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, hitJournalService.drain());
+    }
+
+    @Test
+    public void testJournalIsReadBackAfterRestartUpToTornRecord(@TempDir Path directory) throws IOException {
+        int segmentSize = 4096;
+        try (HitJournal journal = new HitJournal(directory, segmentSize, JournalPosition.START)) {
+            for (int i = 0; i < 100; i++) {
+                journal.sync(journal.append(hit("/events/" + i, "10.0.0.1")));
+            }
+        }
+        // запись, оборванная сбоем: заголовок есть, данных и верной crc нет
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.filter(file -> file.toString().endsWith(".seg")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            int offset = 0;
+            while (file.length() > offset + 8) {
+                file.seek(offset);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                offset += 8 + length;
+            }
+            file.seek(offset);
+            file.writeInt(40);
+            file.writeInt(12345);
+        }
+
+        try (HitJournal journal = new HitJournal(directory, segmentSize, JournalPosition.START)) {
+            journal.sync(journal.append(hit("/events/after-restart", "10.0.0.1")));
+            List<String> uris = new ArrayList<>();
+            JournalPosition position = JournalPosition.START;
+            while (true) {
+                JournalBatch batch = journal.read(position, 7);
+                if (batch.next().equals(position)) {
+                    break;
+                }
+                batch.hits().forEach(hit -> uris.add(hit.getUri()));
+                position = batch.next();
+            }
+            assertEquals(101, uris.size());
+            assertEquals("/events/0", uris.get(0));
+            assertEquals("/events/99", uris.get(99));
+            assertEquals("/events/after-restart", uris.get(100));
+
+            int segments = journal.segmentCount();
+            assertEquals(segments - 1, journal.truncate(position));
+            assertEquals(1, journal.segmentCount());
+        }
+    }
+
+    private EndpointHitDto hit(String uri, String ip) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(NOW)
+                .build();
+    }
+
+    private long getHits(String uri) {
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&uris={uri}",
+                ViewStats[].class,
+                NOW.minusHours(1).format(FORMATTER),
+                NOW.plusHours(1).format(FORMATTER),
+                uri);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return List.of(Objects.requireNonNull(response.getBody())).stream()
+                .mapToLong(ViewStats::getHits)
+                .sum();
+    }
+
+    private long countRows() {
+        return Objects.requireNonNull(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stats", Long.class));
+    }
+}
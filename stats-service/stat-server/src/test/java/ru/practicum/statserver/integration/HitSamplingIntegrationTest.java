@@ -0,0 +1,195 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.controller.StatsController;
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.RollupRebuildDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.service.HitSamplingService;
+import ru.practicum.service.HotWindowService;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_sampling_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.sampling.enabled=true",
+        "stats.sampling.rules=ewm-main-service:/events",
+        "stats.sampling.target-rows-per-second=50"
+})
+public class HitSamplingIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HotWindowService hotWindowService;
+    @Autowired
+    private HitSamplingService hitSamplingService;
+
+    @BeforeEach
+    public void clearDatabase() {
+        jdbcTemplate.execute("DELETE FROM stats");
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        jdbcTemplate.execute("DELETE FROM stats_uri_hll");
+    }
+
+    @BeforeEach
+    public void clearHotWindow() {
+        hotWindowService.clear();
+    }
+
+    @Test
+    public void testHotUriIsSampledWithWeightsAndCountedFromRollupsAndSketches() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(hit("/events", "10.0.0." + (i % 10), NOW));
+        }
+        for (int i = 0; i < 20; i++) {
+            batch.add(hit("/events/1", "10.0.1." + i, NOW));
+        }
+        ResponseEntity<Void> saved = restTemplate.postForEntity("/hits", batch, Void.class);
+        assertEquals(HttpStatus.CREATED, saved.getStatusCode());
+
+        // хиты после последней записанной строки пишутся отдельной строкой при сбросе (evictIdle или остановка)
+        hitSamplingService.flushPending();
+        long sampledRows = countRows("/events", "COUNT(*)");
+        assertTrue(sampledRows < 1000, "hot uri rows should be sampled, got " + sampledRows);
+        assertEquals(2000L, countRows("/events", "SUM(s.weight)"));
+        assertEquals(20L, countRows("/events/1", "COUNT(*)"));
+        assertEquals(20L, countRows("/events/1", "SUM(s.weight)"));
+
+        ResponseEntity<ViewStats[]> hits = getStats("/events", false);
+        assertEquals(2000L, hits.getBody()[0].getHits());
+        assertEquals("true", hits.getHeaders().getFirst(StatsController.ESTIMATED_HEADER));
+
+        ResponseEntity<ViewStats[]> unique = getStats("/events", true);
+        assertEquals(10L, unique.getBody()[0].getHits());
+        assertEquals("true", unique.getHeaders().getFirst(StatsController.ESTIMATED_HEADER));
+
+        ResponseEntity<ViewStats[]> notSampled = getStats("/events/1", true);
+        assertEquals(20L, notSampled.getBody()[0].getHits());
+        assertNull(notSampled.getHeaders().getFirst(StatsController.ESTIMATED_HEADER));
+    }
+
+    // вес пропущенных хитов не переезжает в следующую минуту: сырые строки по минутам сходятся с роллапами
+    @Test
+    public void testSkippedWeightStaysInItsMinute() {
+        LocalDateTime minute = NOW.minusDays(1).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(hit("/events", "10.0.3." + (i % 10), minute.plusMinutes(i / 500).plusSeconds(i % 60)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        hitSamplingService.flushPending();
+
+        assertTrue(countRows("/events", "COUNT(*)") < 1000);
+        for (int i = 0; i < 4; i++) {
+            Long weight = jdbcTemplate.queryForObject("SELECT SUM(weight) FROM stats WHERE timestamp >= ?"
+                    + " AND timestamp < ?", Long.class, minute.plusMinutes(i), minute.plusMinutes(i + 1));
+            assertEquals(500L, weight, "weight of minute " + i);
+        }
+    }
+
+    @Test
+    public void testRebuildKeepsUniqueIpsOfSampledUri() {
+        LocalDateTime hour = NOW.minusDays(1).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(hit("/events", "10.3." + (i % 1000 / 250) + "." + (i % 250), hour.plusMinutes(10)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        hitSamplingService.flushPending();
+        assertTrue(countRows("/events", "COUNT(DISTINCT s.ip)") < 1000);
+
+        ResponseEntity<RollupRebuildDto> rebuild = restTemplate.postForEntity(
+                "/admin/rollups/rebuild?start={start}&end={end}", null, RollupRebuildDto.class,
+                hour.format(FORMATTER), hour.plusHours(1).format(FORMATTER));
+        assertEquals(HttpStatus.OK, rebuild.getStatusCode());
+        assertEquals(0, Objects.requireNonNull(rebuild.getBody()).getUndercountedSketchBuckets());
+
+        // скетч часа собран не только из выборки в stats: в нём остались все 1000 IP
+        byte[] sketch = jdbcTemplate.queryForObject("SELECT sketch FROM stats_uri_hll"
+                + " WHERE bucket_start = ? AND uri = ?", byte[].class, Timestamp.valueOf(hour), "/events");
+        long estimate = HyperLogLog.fromBytes(sketch).estimate();
+        assertTrue(Math.abs(estimate - 1000) <= 50, "unique estimate after rebuild: " + estimate);
+    }
+
+    @Test
+    public void testSampledWeightsAreKeptInArchiveSegments() {
+        LocalDateTime day = LocalDateTime.of(2001, 4, 10, 10, 0, 40);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(hit("/events", "10.0.2." + (i % 10), day.plusSeconds(i % 5)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        hitSamplingService.flushPending();
+        assertTrue(countRows("/events", "COUNT(*)") < 1000);
+
+        // диапазон уже минуты: считается по сырым строкам, а после архивации — по сегменту
+        LocalDateTime start = day.minusSeconds(5);
+        LocalDateTime end = day.plusSeconds(10);
+        assertEquals(2000L, getStats("/events", false, start, end).getBody()[0].getHits());
+
+        ResponseEntity<ArchiveSegmentDto[]> archived = restTemplate.postForEntity(
+                "/admin/archive?until={until}", null, ArchiveSegmentDto[].class, day.plusDays(1).format(FORMATTER));
+        assertEquals(HttpStatus.OK, archived.getStatusCode());
+        assertEquals(2000L, List.of(Objects.requireNonNull(archived.getBody())).stream()
+                .mapToLong(ArchiveSegmentDto::getHits)
+                .sum());
+        assertEquals(0L, countRows("/events", "COUNT(*)"));
+        assertEquals(2000L, getStats("/events", false, start, end).getBody()[0].getHits());
+    }
+
+    private EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private ResponseEntity<ViewStats[]> getStats(String uri, boolean unique) {
+        return getStats(uri, unique, NOW.minusHours(1), NOW.plusHours(1));
+    }
+
+    private ResponseEntity<ViewStats[]> getStats(String uri, boolean unique, LocalDateTime start, LocalDateTime end) {
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&uris={uri}&unique={unique}",
+                ViewStats[].class,
+                start.format(FORMATTER),
+                end.format(FORMATTER),
+                uri,
+                unique);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, Objects.requireNonNull(response.getBody()).length);
+        return response;
+    }
+
+    private long countRows(String uri, String aggregate) {
+        return Objects.requireNonNull(jdbcTemplate.queryForObject("SELECT " + aggregate + " FROM stats s"
+                + " JOIN stats_uris u ON u.id = s.uri_id WHERE u.name = ?", Long.class, uri));
+    }
+}
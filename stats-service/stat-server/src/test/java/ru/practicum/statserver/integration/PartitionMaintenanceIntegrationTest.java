@@ -0,0 +1,104 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.practicum.dto.PartitionStateDto;
+import ru.practicum.model.PartitionInterval;
+import ru.practicum.model.StatsPartition;
+import ru.practicum.repository.PartitionRepository;
+import ru.practicum.service.PartitionService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// DDL секций есть только в PostgreSQL, поэтому здесь проверяется порядок действий сервиса над репозиторием
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_partition_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.partitions.interval=DAY",
+        "stats.partitions.premake=3"
+})
+public class PartitionMaintenanceIntegrationTest {
+
+    @Autowired
+    private PartitionService partitionService;
+
+    @MockBean
+    private PartitionRepository partitionRepository;
+
+    private List<LocalDateTime> days;
+
+    @BeforeEach
+    public void setUp() {
+        when(partitionRepository.isSupported()).thenReturn(true);
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findPartitions()).thenReturn(List.of(new StatsPartition("stats_default", null, null)));
+        days = new ArrayList<>();
+        LocalDateTime day = PartitionInterval.DAY.floor(LocalDateTime.now());
+        for (int i = 0; i <= 3; i++) {
+            days.add(day);
+            day = day.plusDays(1);
+        }
+    }
+
+    @Test
+    public void testRowsInDefaultAreMovedIntoCreatedPartition() {
+        LocalDateTime today = days.get(0);
+        when(partitionRepository.hasDefaultRows(today, today.plusDays(1))).thenReturn(true);
+
+        PartitionStateDto state = partitionService.maintain();
+
+        verify(partitionRepository).createPartitionFromDefault(name(today), today, today.plusDays(1));
+        verify(partitionRepository, never()).createPartition(eq(name(today)), any(), any());
+        for (LocalDateTime day : days.subList(1, days.size())) {
+            verify(partitionRepository).createPartition(name(day), day, day.plusDays(1));
+        }
+        assertEquals(days.stream().map(this::name).toList(), state.getLastCreated());
+        assertNull(state.getLastError());
+    }
+
+    @Test
+    public void testFailedPartitionDoesNotStopTheOthers() {
+        LocalDateTime failing = days.get(1);
+        doThrow(new IllegalStateException("updated partition constraint for default partition would be violated"))
+                .when(partitionRepository).createPartition(name(failing), failing, failing.plusDays(1));
+
+        PartitionStateDto state = partitionService.maintain();
+
+        List<String> expected = days.stream()
+                .filter(day -> !day.equals(failing))
+                .map(this::name)
+                .toList();
+        assertEquals(expected, state.getLastCreated());
+        assertTrue(state.getLastError().startsWith(name(failing) + ": "), state.getLastError());
+
+        // следующий запуск без ошибки сбрасывает lastError
+        when(partitionRepository.findPartitions()).thenReturn(List.of(new StatsPartition("stats_default", null, null),
+                new StatsPartition(name(days.get(0)), days.get(0), days.get(0).plusDays(1)),
+                new StatsPartition(name(days.get(2)), days.get(2), days.get(2).plusDays(1)),
+                new StatsPartition(name(days.get(3)), days.get(3), days.get(3).plusDays(1))));
+        doThrow(new IllegalStateException("still failing")).doNothing()
+                .when(partitionRepository).createPartition(name(failing), failing, failing.plusDays(1));
+        assertTrue(partitionService.maintain().getLastError().contains("still failing"));
+        PartitionStateDto retried = partitionService.maintain();
+        assertEquals(List.of(name(failing)), retried.getLastCreated());
+        assertNull(retried.getLastError());
+    }
+
+    private String name(LocalDateTime day) {
+        return PartitionInterval.DAY.partitionName(day);
+    }
+}
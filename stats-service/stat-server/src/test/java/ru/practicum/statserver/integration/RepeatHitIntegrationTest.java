@@ -0,0 +1,148 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.mapper.EndpointHitMapper;
+import ru.practicum.repository.StatsQuery;
+import ru.practicum.repository.StatsQueryRepository;
+import ru.practicum.service.DictionaryService;
+import ru.practicum.service.HotWindowService;
+import ru.practicum.service.RepeatHitService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_dedup_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.dedup.enabled=true",
+        "stats.dedup.window-minutes=60"
+})
+public class RepeatHitIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HotWindowService hotWindowService;
+    @Autowired
+    private StatsQueryRepository statsQueryRepository;
+    @Autowired
+    private RepeatHitService repeatHitService;
+    @Autowired
+    private DictionaryService dictionaryService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void clearDatabase() {
+        jdbcTemplate.execute("DELETE FROM stats");
+        jdbcTemplate.execute("DELETE FROM stats_repeat");
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+    }
+
+    @BeforeEach
+    public void clearHotWindow() {
+        hotWindowService.clear();
+    }
+
+    @Test
+    public void testRepeatHitsAreCountedWithoutRawRows() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            batch.add(hit("/events/1", "10.0.0." + (i % 3)));
+        }
+        for (int i = 0; i < 5; i++) {
+            batch.add(hit("/events/2", "10.0.1." + i));
+        }
+        restTemplate.postForEntity("/hits", batch.subList(0, 20), Void.class);
+        restTemplate.postForEntity("/hit", batch.get(20), Void.class);
+        restTemplate.postForEntity("/hits", batch.subList(21, batch.size()), Void.class);
+
+        assertEquals(8L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stats", Long.class));
+        assertEquals(27L, jdbcTemplate.queryForObject("SELECT SUM(hits) FROM stats_repeat", Long.class));
+
+        assertEquals(30L, getStats(false).get("/events/1"));
+        assertEquals(5L, getStats(false).get("/events/2"));
+        assertEquals(3L, getStats(true).get("/events/1"));
+        List<ViewStats> raw = statsQueryRepository.find(StatsQuery.builder()
+                .start(NOW.minusHours(1))
+                .endExclusive(NOW.plusHours(1))
+                .orderByHits(true)
+                .build());
+        assertEquals(30L, raw.get(0).getHits());
+
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        ResponseEntity<String> rebuild = restTemplate.postForEntity("/admin/rollups/rebuild", null, String.class);
+        assertEquals(HttpStatus.OK, rebuild.getStatusCode());
+        assertEquals(30L, getStats(false).get("/events/1"));
+    }
+
+    // Пара попадает в фильтр только после коммита: повтор откатившейся пачки снова пишет первый хит строкой
+    @Test
+    public void testRolledBackFirstHitIsStoredOnRetry() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        String uri = "/events/rollback";
+
+        List<EndpointHit> rolledBack = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return repeatHitService.suppress(List.of(entity(uri, "10.0.2.1"), entity(uri, "10.0.2.1")));
+        });
+        assertEquals(1, Objects.requireNonNull(rolledBack).size());
+
+        List<EndpointHit> retried = transactionTemplate.execute(status ->
+                repeatHitService.suppress(List.of(entity(uri, "10.0.2.1"), entity(uri, "10.0.2.1"))));
+        assertEquals(1, Objects.requireNonNull(retried).size());
+
+        List<EndpointHit> repeated = transactionTemplate.execute(status ->
+                repeatHitService.suppress(List.of(entity(uri, "10.0.2.1"))));
+        assertEquals(0, Objects.requireNonNull(repeated).size());
+    }
+
+    private EndpointHit entity(String uri, String ip) {
+        return EndpointHitMapper.toEntity(hit(uri, ip), dictionaryService.getApp(APP), dictionaryService.getUri(uri));
+    }
+
+    private EndpointHitDto hit(String uri, String ip) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(NOW)
+                .build();
+    }
+
+    private Map<String, Long> getStats(boolean unique) {
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&unique={unique}",
+                ViewStats[].class,
+                NOW.minusHours(1).format(FORMATTER),
+                NOW.plusHours(1).format(FORMATTER),
+                unique);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return List.of(Objects.requireNonNull(response.getBody())).stream()
+                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits, Long::sum));
+    }
+}
@@ -0,0 +1,647 @@
+package ru.practicum.statserver.integration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.controller.StatsController;
+import ru.practicum.dto.ArchiveSegmentDto;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitFrame;
+import ru.practicum.dto.RollupRebuildDto;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsWindowDto;
+import ru.practicum.dto.TopViewStatsDto;
+import ru.practicum.dto.ViewSeriesDto;
+import ru.practicum.dto.ViewSeriesPoint;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.repository.StatsQuery;
+import ru.practicum.repository.StatsQueryRepository;
+import ru.practicum.service.DictionaryService;
+import ru.practicum.service.HllSketchService;
+import ru.practicum.service.HotWindowService;
+import ru.practicum.service.RollupService;
+import ru.practicum.service.TopSketchService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class StatsControllerIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HotWindowService hotWindowService;
+    @Autowired
+    private HllSketchService hllSketchService;
+    @Autowired
+    private TopSketchService topSketchService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private StatsQueryRepository statsQueryRepository;
+    @Autowired
+    private DictionaryService dictionaryService;
+    @Autowired
+    private RollupService rollupService;
+
+    @BeforeEach
+    public void clearDatabase() {
+        jdbcTemplate.execute("DELETE FROM stats");
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        jdbcTemplate.execute("DELETE FROM stats_uri_hll");
+        jdbcTemplate.execute("DELETE FROM stats_top_hour");
+    }
+
+    // окно и скетчи в памяти живут в контексте Spring, общем для тестов класса,
+    // и без сброса отдают хиты прошлых тестов
+    @BeforeEach
+    public void clearInMemoryState() {
+        hotWindowService.clear();
+        hllSketchService.clear();
+        topSketchService.clear();
+    }
+
+    @Test
+    public void testSaveSingleHit() {
+        ResponseEntity<Void> response = restTemplate.postForEntity("/hit", hit("/events/1", "10.0.0.1"), Void.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1L, countRows());
+    }
+
+    @Test
+    public void testSaveBatchOfHits() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(hit("/events/" + (i % 2 + 1), "10.0.0." + (i % 5)));
+        }
+        ResponseEntity<Void> response = restTemplate.postForEntity("/hits", batch, Void.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(50L, countRows());
+
+        Map<String, Long> hits = getStats(false);
+        assertEquals(25L, hits.get("/events/1"));
+        assertEquals(25L, hits.get("/events/2"));
+
+        Map<String, Long> uniqueHits = getStats(true);
+        assertEquals(5L, uniqueHits.get("/events/1"));
+    }
+
+    @Test
+    public void testSaveBatchWithInvalidHitIsRejected() {
+        List<EndpointHitDto> batch = List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", ""));
+        ResponseEntity<String> response = restTemplate.postForEntity("/hits", batch, String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0L, countRows());
+    }
+
+    @Test
+    public void testBinaryHitFramesAreSavedLikeJson() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            batch.add(hit("/events/" + (i % 2 + 1), i % 3 == 0 ? "::ffff:10.0.0." + (i % 4) : "10.0.0." + (i % 4)));
+        }
+        // миллисекунды кадра отбрасываются, как при разборе времени JSON
+        batch.add(hit("/events/1", "2001:db8::1", NOW.plusNanos(750_000_000)));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(HitFrame.CONTENT_TYPE));
+        ResponseEntity<Void> response = restTemplate.postForEntity("/hits",
+                new HttpEntity<>(HitFrame.encode(batch), headers), Void.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(41L, countRows());
+        assertEquals(21L, getStats(false).get("/events/1"));
+        assertEquals(20L, getStats(false).get("/events/2"));
+        // ::ffff:10.0.0.x совпадает с 10.0.0.x: у /events/1 два IPv4 и один IPv6
+        assertEquals(3L, getStats(true).get("/events/1"));
+        assertEquals(NOW, jdbcTemplate.queryForObject("SELECT MAX(timestamp) FROM stats", LocalDateTime.class));
+
+        byte[] truncated = Arrays.copyOf(HitFrame.encode(batch), 100);
+        ResponseEntity<String> malformed = restTemplate.postForEntity("/hits", new HttpEntity<>(truncated, headers),
+                String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, malformed.getStatusCode());
+        assertEquals(41L, countRows());
+    }
+
+    @Test
+    public void testIpv6AndMappedIpv4HitsAreCountedUnique() {
+        List<EndpointHitDto> batch = List.of(
+                hit("/events/1", "10.0.0.1"),
+                hit("/events/1", "::ffff:10.0.0.1"),
+                hit("/events/1", "2001:db8::1"),
+                hit("/events/1", "2001:0db8:0000:0000:0000:0000:0000:0001"),
+                hit("/events/1", "2001:db8::2"));
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        assertEquals(5L, getStats(false).get("/events/1"));
+        assertEquals(3L, getStats(true).get("/events/1"));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/hit", hit("/events/1", "10.0.0.256"),
+                String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testArchivedDaysAreCountedFromSegments() {
+        LocalDateTime day = LocalDateTime.of(2001, 3, 10, 10, 0, 40);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            batch.add(hit("/events/archived-1", "10.9.0." + (i % 3), day.plusSeconds(i)));
+        }
+        batch.add(hit("/events/archived-2", "2001:db8::9", day.plusSeconds(7)));
+        batch.add(hit("/events/archived-1", "10.9.0.1", day.plusDays(1)));
+        batch.add(hit("/events/archived-1", "10.9.0.7", day.plusDays(1).plusHours(5)));
+        batch.add(hit("/events/live", "10.9.0.1", NOW));
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = day.minusSeconds(10);
+        LocalDateTime end = day.plusDays(2);
+        Map<String, Long> hits = getStats(start, end, false);
+        Map<String, Long> unique = getStats(start, end, true);
+        assertEquals(8L, hits.get("/events/archived-1"));
+        assertEquals(4L, unique.get("/events/archived-1"));
+
+        ResponseEntity<ArchiveSegmentDto[]> archived = restTemplate.postForEntity(
+                "/admin/archive?until={until}", null, ArchiveSegmentDto[].class,
+                day.plusDays(2).format(FORMATTER));
+        assertEquals(HttpStatus.OK, archived.getStatusCode());
+        assertEquals(2, Objects.requireNonNull(archived.getBody()).length);
+        assertEquals(9L, List.of(archived.getBody()).stream().mapToLong(ArchiveSegmentDto::getHits).sum());
+        assertEquals(1L, countRows());
+
+        assertEquals(hits, getStats(start, end, false));
+        assertEquals(unique, getStats(start, end, true));
+        ResponseEntity<ViewStats[]> filtered = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&uris={uri}&unique=true", ViewStats[].class,
+                start.format(FORMATTER), end.format(FORMATTER), "/events/archived-2");
+        assertEquals(1L, Objects.requireNonNull(filtered.getBody())[0].getHits());
+
+        // поздний хит за заархивированные сутки: живые и архивные IP объединяются, а не складываются
+        restTemplate.postForEntity("/hit", hit("/events/archived-1", "10.9.0.2", day.plusHours(1)), Void.class);
+        assertEquals(9L, getStats(start, end, false).get("/events/archived-1"));
+        assertEquals(4L, getStats(start, end, true).get("/events/archived-1"));
+
+        restTemplate.postForEntity("/admin/rollups/rebuild?start={start}", null, String.class,
+                start.format(FORMATTER));
+        assertEquals(9L, getStats(start, end, false).get("/events/archived-1"));
+
+        ResponseEntity<String> open = restTemplate.postForEntity("/admin/archive?until={until}", null, String.class,
+                NOW.plusDays(2).format(FORMATTER));
+        assertEquals(HttpStatus.BAD_REQUEST, open.getStatusCode());
+    }
+
+    @Test
+    public void testArchivedDaysAreIncludedInSeriesAndTop() {
+        LocalDateTime day = LocalDateTime.of(2001, 5, 10, 10, 0, 40);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            batch.add(hit("/events/archived-3", "10.9.1." + (i % 3), day.plusMinutes(i * 30L)));
+        }
+        batch.add(hit("/events/archived-4", "10.9.1.0", day.plusSeconds(5)));
+        batch.add(hit("/events/archived-4", "10.9.1.9", day.plusDays(1)));
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = day.minusSeconds(10);
+        LocalDateTime end = day.plusDays(2);
+        List<String> hourly = getSeries(start, end, "HOUR");
+        List<String> daily = getSeries(start, end, "DAY");
+        List<String> top = getTopUnique(start, end);
+        assertEquals(List.of("/events/archived-3=3", "/events/archived-4=2"), top);
+
+        ResponseEntity<ArchiveSegmentDto[]> archived = restTemplate.postForEntity(
+                "/admin/archive?until={until}", null, ArchiveSegmentDto[].class, end.format(FORMATTER));
+        assertEquals(HttpStatus.OK, archived.getStatusCode());
+        assertEquals(0L, countRows());
+        assertEquals(hourly, getSeries(start, end, "HOUR"));
+        assertEquals(daily, getSeries(start, end, "DAY"));
+        assertEquals(top, getTopUnique(start, end));
+
+        // поздний хит с уже заархивированным IP добавляет хит, но не уникальный IP
+        restTemplate.postForEntity("/hit", hit("/events/archived-3", "10.9.1.1", day.plusMinutes(1)), Void.class);
+        assertEquals(List.of("/events/archived-3 " + day.truncatedTo(ChronoUnit.DAYS) + " 7/3",
+                        "/events/archived-4 " + day.truncatedTo(ChronoUnit.DAYS) + " 1/1",
+                        "/events/archived-4 " + day.plusDays(1).truncatedTo(ChronoUnit.DAYS) + " 1/1"),
+                getSeries(start, end, "DAY"));
+        assertEquals(top, getTopUnique(start, end));
+    }
+
+    @Test
+    public void testNonUniqueStatsFromRollupsMatchRawCounts() {
+        LocalDateTime base = NOW.withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            batch.add(hit("/events/1", "10.0.0." + (i % 7), base.plusSeconds(i * 37L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = base.plusMinutes(17).plusSeconds(13);
+        LocalDateTime end = base.plusHours(5).plusMinutes(3).plusSeconds(42);
+        long expected = batch.stream()
+                .filter(hit -> !hit.getTimestamp().isBefore(start) && !hit.getTimestamp().isAfter(end))
+                .count();
+        assertEquals(expected, getStats(start, end, false).get("/events/1"));
+
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        ResponseEntity<String> rebuild = restTemplate.postForEntity("/admin/rollups/rebuild", null, String.class);
+        assertEquals(HttpStatus.OK, rebuild.getStatusCode());
+        assertEquals(expected, getStats(start, end, false).get("/events/1"));
+    }
+
+    @Test
+    public void testBackfillCountsHitsSavedBeforeRollups() {
+        LocalDateTime base = NOW.minusDays(3).withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            batch.add(hit("/events/1", "10.0.0." + (i % 7), base.plusSeconds(i * 97L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        // история до появления роллапов: строки в stats есть, агрегатов нет, новые хиты уже агрегируются
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        restTemplate.postForEntity("/hit", hit("/events/1", "10.0.0.1", NOW.minusHours(2)), Void.class);
+        assertEquals(1L, getStats(base, NOW, false).get("/events/1"));
+
+        RollupRebuildDto backfilled = rollupService.backfill();
+        assertEquals(base, backfilled.getStart());
+        assertEquals(121L, getStats(base, NOW, false).get("/events/1"));
+        assertEquals(119L, getStats(base.plusMinutes(3).plusSeconds(5), NOW, false).get("/events/1"));
+        assertNull(rollupService.backfill().getStart());
+    }
+
+    @Test
+    public void testRebuildKeepsRollupsOfHoursDroppedFromStats() {
+        LocalDateTime base = NOW.minusDays(3).withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 48; i++) {
+            batch.add(hit("/events/1", "10.0.1." + (i % 5), base.plusMinutes(i * 30L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        // сутки старше срока хранения: строки ушли вместе с секцией, роллапы остались
+        LocalDateTime retained = base.plusDays(1).truncatedTo(ChronoUnit.DAYS);
+        jdbcTemplate.update("DELETE FROM stats WHERE timestamp < ?", retained);
+        assertEquals(48L, getStats(base, NOW, false).get("/events/1"));
+
+        ResponseEntity<RollupRebuildDto> rebuild = restTemplate.postForEntity(
+                "/admin/rollups/rebuild?start={start}", null, RollupRebuildDto.class, base.format(FORMATTER));
+        assertEquals(HttpStatus.OK, rebuild.getStatusCode());
+        assertEquals(retained, Objects.requireNonNull(rebuild.getBody()).getStart());
+        assertEquals(48L, getStats(base, NOW, false).get("/events/1"));
+    }
+
+    @Test
+    public void testRebuildDuringIngestionKeepsRollupsInSyncWithRawRows() {
+        LocalDateTime base = NOW.minusDays(1).withMinute(0).withSecond(0);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 40; i++) {
+                List<EndpointHitDto> batch = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    batch.add(hit("/events/" + (j % 3 + 1), "10.4.0." + j, base.plusMinutes((i * 10L + j) % 180)));
+                }
+                restTemplate.postForEntity("/hits", batch, Void.class);
+            }
+        });
+        while (!writer.isDone()) {
+            ResponseEntity<String> rebuild = restTemplate.postForEntity(
+                    "/admin/rollups/rebuild?start={start}&end={end}", null, String.class, base.format(FORMATTER),
+                    base.plusHours(3).format(FORMATTER));
+            assertEquals(HttpStatus.OK, rebuild.getStatusCode());
+        }
+        writer.join();
+
+        assertEquals(400L, countRows());
+        Map<String, Long> hits = getStats(base, base.plusHours(3), false);
+        assertEquals(400L, hits.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void testMultiWindowQueryMatchesSeparateStatsRequests() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            batch.add(hit("/events/" + (i % 3 + 1), "10.3.0." + (i % 17), NOW.minusHours(1).minusMinutes(i * 144L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime end = NOW.minusDays(1);
+        Map<String, StatsWindowDto> windows = new LinkedHashMap<>();
+        windows.put("day", new StatsWindowDto(end.minusDays(1), end, true));
+        windows.put("week", new StatsWindowDto(end.minusDays(7), end, true));
+        windows.put("month", new StatsWindowDto(end.minusDays(30), end, true));
+        windows.put("weekHits", new StatsWindowDto(end.minusDays(7), end, false));
+        // неуникальные окна с краями не по минутам: роллапы всех окон — одним запросом, края — по сырым строкам
+        windows.put("dayHits", new StatsWindowDto(end.minusDays(1).plusSeconds(17), end.minusSeconds(5), false));
+        windows.put("monthHits", new StatsWindowDto(end.minusDays(30).minusSeconds(42), end, false));
+        StatsQueryDto query = StatsQueryDto.builder()
+                .windows(windows)
+                .uris(List.of("/events/1", "/events/2"))
+                .build();
+        ResponseEntity<Map<String, List<ViewStats>>> response = restTemplate.exchange("/stats/query",
+                HttpMethod.POST, new HttpEntity<>(query), new ParameterizedTypeReference<>() {
+                });
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<String, List<ViewStats>> body = Objects.requireNonNull(response.getBody());
+        assertEquals(List.of("day", "week", "month", "weekHits", "dayHits", "monthHits"),
+                List.copyOf(body.keySet()));
+        for (Map.Entry<String, StatsWindowDto> window : windows.entrySet()) {
+            Map<String, Long> expected = new HashMap<>(getStats(window.getValue().getStart(),
+                    window.getValue().getEnd(), window.getValue().isUnique()));
+            expected.remove("/events/3");
+            Map<String, Long> actual = body.get(window.getKey()).stream()
+                    .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+            assertEquals(expected, actual, window.getKey());
+        }
+
+        StatsQueryDto empty = StatsQueryDto.builder().build();
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity("/stats/query", empty, String.class)
+                .getStatusCode());
+    }
+
+    @Test
+    public void testRecentWindowIsServedFromMemory() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            batch.add(hit("/events/hot", "10.1.0." + (i % 9), NOW.minusSeconds(i * 13L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        // строк в БД больше нет — ответ может прийти только из окна в памяти
+        clearDatabase();
+
+        LocalDateTime start = NOW.minusHours(1);
+        assertEquals(120L, getStats(start, NOW, false).get("/events/hot"));
+        assertEquals(9L, getStats(start, NOW, true).get("/events/hot"));
+        assertEquals(23L, getStats(NOW.minusSeconds(300), NOW.minusSeconds(1), false).get("/events/hot"));
+        assertEquals(Map.of("/events/hot", 9L), ndjson(streamStats(start, NOW, true, false)));
+    }
+
+    @Test
+    public void testNdjsonStreamMatchesJsonResponse() {
+        LocalDateTime base = NOW.withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            batch.add(hit("/events/" + (i % 13), "10.2.0." + (i % 11), base.plusSeconds(i * 41L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = base.plusMinutes(3).plusSeconds(7);
+        LocalDateTime end = base.plusHours(4).plusMinutes(20);
+        for (boolean unique : List.of(false, true)) {
+            ResponseEntity<String> response = streamStats(start, end, unique, false);
+            assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(response.getHeaders().getContentType()));
+            assertEquals(getStats(start, end, unique), ndjson(response));
+        }
+    }
+
+    @Test
+    public void testApproximateUniqueStatsFromSketches() {
+        LocalDateTime base = NOW.withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(hit("/events/1", "10.0." + (i % 2000 / 250) + "." + (i % 250), base.plusSeconds(i * 7L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        hllSketchService.flush();
+
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = base.plusHours(5);
+        long exact = getStats(start, end, true).get("/events/1");
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&unique=true&approximate=true",
+                ViewStats[].class, start.format(FORMATTER), end.format(FORMATTER));
+        double error = Double.parseDouble(response.getHeaders().getFirst(StatsController.RELATIVE_ERROR_HEADER));
+        long estimate = Objects.requireNonNull(response.getBody())[0].getHits();
+        assertTrue(Math.abs(estimate - exact) <= exact * error * 3,
+                "estimate " + estimate + " is too far from exact " + exact);
+
+        // поток с approximate=true отдаёт ту же оценку
+        ResponseEntity<String> streamed = streamStats(start, end, true, true);
+        assertEquals(String.valueOf(error), streamed.getHeaders().getFirst(StatsController.RELATIVE_ERROR_HEADER));
+        assertEquals(Map.of("/events/1", estimate), ndjson(streamed));
+    }
+
+    @Test
+    public void testTopStatsMatchSortedStats() {
+        LocalDateTime base = NOW.minusDays(3).withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < (i + 1) * 3; j++) {
+                LocalDateTime timestamp = base.plusSeconds((j * 7919L + i * 31L) % 21600);
+                batch.add(hit("/events/" + i, "10.3." + i + "." + (j % 17), timestamp));
+            }
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = base.plusMinutes(17).plusSeconds(5);
+        LocalDateTime end = base.plusHours(5).plusMinutes(20);
+        for (boolean unique : List.of(false, true)) {
+            Map<String, Long> all = getStats(start, end, unique);
+            ResponseEntity<TopViewStatsDto> response = restTemplate.getForEntity(
+                    "/stats/top?start={start}&end={end}&k=5&unique={unique}", TopViewStatsDto.class,
+                    start.format(FORMATTER), end.format(FORMATTER), unique);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            TopViewStatsDto top = Objects.requireNonNull(response.getBody());
+            assertTrue(top.isExact());
+            assertEquals(all.values().stream().sorted(Comparator.reverseOrder()).limit(5).toList(),
+                    top.getStats().stream().map(ViewStats::getHits).toList());
+            top.getStats().forEach(stats -> assertEquals(all.get(stats.getUri()), stats.getHits()));
+        }
+    }
+
+    @Test
+    public void testHourlySeriesMatchesPerHourStats() {
+        LocalDateTime base = NOW.minusDays(2).withHour(10).withMinute(0).withSecond(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(hit("/events/" + (i % 3), "10.4.0." + (i % 13), base.plusSeconds(i * 53L)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = base.plusMinutes(20);
+        LocalDateTime end = base.plusHours(6);
+        ResponseEntity<ViewSeriesDto[]> response = restTemplate.getForEntity(
+                "/stats/series?start={start}&end={end}&uris=/events/1&uris=/events/2&interval=HOUR",
+                ViewSeriesDto[].class, start.format(FORMATTER), end.format(FORMATTER));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<ViewSeriesDto> series = List.of(Objects.requireNonNull(response.getBody()));
+        assertEquals(List.of("/events/1", "/events/2"), series.stream().map(ViewSeriesDto::getUri).toList());
+
+        for (ViewSeriesDto uriSeries : series) {
+            for (ViewSeriesPoint point : uriSeries.getPoints()) {
+                LocalDateTime from = point.getBucket().isBefore(start) ? start : point.getBucket();
+                LocalDateTime to = point.getBucket().plusHours(1).minusSeconds(1);
+                assertEquals(getStats(from, to, false).get(uriSeries.getUri()), point.getHits());
+                assertEquals(getStats(from, to, true).get(uriSeries.getUri()), point.getUnique());
+            }
+            assertEquals(getStats(start, end, false).get(uriSeries.getUri()),
+                    uriSeries.getPoints().stream().mapToLong(ViewSeriesPoint::getHits).sum());
+        }
+
+        ResponseEntity<String> tooMany = restTemplate.getForEntity(
+                "/stats/series?start={start}&end={end}&interval=MINUTE", String.class,
+                NOW.minusYears(1).format(FORMATTER), NOW.format(FORMATTER));
+        assertEquals(HttpStatus.BAD_REQUEST, tooMany.getStatusCode());
+    }
+
+    @Test
+    public void testUriFilteredQueryUsesCoveringIndex() throws IOException {
+        // Проверяется план H2, о планировщике PostgreSQL тест ничего не говорит. Схему H2 строит Hibernate,
+        // поэтому индекс создаётся здесь — тем же CREATE INDEX, что выполняет schema-postgresql.sql
+        jdbcTemplate.execute(productionIndexDdl("stats_uri_timestamp_idx"));
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(hit("/events/" + (i % 10), "10.5.0." + (i % 7), NOW.minusMinutes(i)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        LocalDateTime start = NOW.minusHours(3);
+        LocalDateTime end = NOW.plusSeconds(1);
+        StatsQuery query = StatsQuery.builder()
+                .start(start)
+                .endExclusive(end)
+                .uriIds(dictionaryService.findUriIds(List.of("/events/1", "/events/2", "/events/missing")))
+                .unique(true)
+                .limit(1)
+                .build();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String plan = String.join("\n", new NamedParameterJdbcTemplate(jdbcTemplate)
+                .queryForList("EXPLAIN " + query.toSql(params), params, String.class));
+        assertTrue(plan.contains("STATS_URI_TIMESTAMP_IDX"), plan);
+        assertFalse(plan.contains("STATS.tableScan"), plan);
+
+        List<ViewStats> top = statsQueryRepository.find(query);
+        assertEquals(1, top.size());
+        assertEquals(7L, top.get(0).getHits());
+        assertEquals(getStats(start, NOW, true).get(top.get(0).getUri()), top.get(0).getHits());
+    }
+
+    private EndpointHitDto hit(String uri, String ip) {
+        return hit(uri, ip, NOW);
+    }
+
+    private EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private Map<String, Long> getStats(boolean unique) {
+        return getStats(NOW.minusHours(1), NOW.plusHours(1), unique);
+    }
+
+    private Map<String, Long> getStats(LocalDateTime start, LocalDateTime end, boolean unique) {
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                "/stats?start={start}&end={end}&unique={unique}",
+                ViewStats[].class,
+                start.format(FORMATTER),
+                end.format(FORMATTER),
+                unique);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return List.of(Objects.requireNonNull(response.getBody())).stream()
+                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits, Long::sum));
+    }
+
+    private ResponseEntity<String> streamStats(LocalDateTime start, LocalDateTime end, boolean unique,
+                                               boolean approximate) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        ResponseEntity<String> response = restTemplate.exchange(
+                "/stats?start={start}&end={end}&unique={unique}&approximate={approximate}", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class, start.format(FORMATTER), end.format(FORMATTER), unique,
+                approximate);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response;
+    }
+
+    private Map<String, Long> ndjson(ResponseEntity<String> response) {
+        Map<String, Long> streamed = new HashMap<>();
+        if (response.getBody() == null) {
+            return streamed;
+        }
+        for (String line : response.getBody().split("\n")) {
+            try {
+                ViewStats stats = objectMapper.readValue(line, ViewStats.class);
+                streamed.put(stats.getUri(), stats.getHits());
+            } catch (JsonProcessingException e) {
+                throw new AssertionError("Malformed NDJSON line: " + line, e);
+            }
+        }
+        return streamed;
+    }
+
+    // Точки ряда строками "uri начало хиты/уникальные" — у DTO нет equals
+    private List<String> getSeries(LocalDateTime start, LocalDateTime end, String interval) {
+        ResponseEntity<ViewSeriesDto[]> response = restTemplate.getForEntity(
+                "/stats/series?start={start}&end={end}&interval={interval}", ViewSeriesDto[].class,
+                start.format(FORMATTER), end.format(FORMATTER), interval);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return Arrays.stream(Objects.requireNonNull(response.getBody()))
+                .flatMap(series -> series.getPoints().stream()
+                        .map(point -> series.getUri() + " " + point.getBucket() + " " + point.getHits() + "/"
+                                + point.getUnique()))
+                .toList();
+    }
+
+    private List<String> getTopUnique(LocalDateTime start, LocalDateTime end) {
+        ResponseEntity<TopViewStatsDto> response = restTemplate.getForEntity(
+                "/stats/top?start={start}&end={end}&k=5&unique=true", TopViewStatsDto.class,
+                start.format(FORMATTER), end.format(FORMATTER));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return Objects.requireNonNull(response.getBody()).getStats().stream()
+                .map(stats -> stats.getUri() + "=" + stats.getHits())
+                .toList();
+    }
+
+    // Оператор создания индекса из schema-postgresql.sql — в скрипте он внутри DO-блока PostgreSQL
+    private String productionIndexDdl(String index) throws IOException {
+        String script = new ClassPathResource("schema-postgresql.sql").getContentAsString(StandardCharsets.UTF_8);
+        Matcher ddl = Pattern.compile("CREATE INDEX IF NOT EXISTS " + index + " ON stats \\([^)]*\\)")
+                .matcher(script);
+        assertTrue(ddl.find(), "No " + index + " in schema-postgresql.sql");
+        return ddl.group();
+    }
+
+    private long countRows() {
+        return Objects.requireNonNull(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stats", Long.class));
+    }
+}
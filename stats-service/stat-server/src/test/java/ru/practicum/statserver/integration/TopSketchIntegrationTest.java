@@ -0,0 +1,90 @@
+package ru.practicum.statserver.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.TopViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.dto.TimeFormat.FORMATTER;
+
+// Скетч на один счётчик: в полном часе /events/top-d вытесняется /events/top-x, и floor часа становится 50
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stat_top_db;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "stats.top.capacity=1"
+})
+public class TopSketchIntegrationTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime HOUR = LocalDateTime.now().minusDays(3).withHour(10).withMinute(0)
+            .withSecond(0).withNano(0);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void clearDatabase() {
+        jdbcTemplate.execute("DELETE FROM stats");
+        jdbcTemplate.execute("DELETE FROM stats_minute");
+        jdbcTemplate.execute("DELETE FROM stats_hour");
+        jdbcTemplate.execute("DELETE FROM stats_top_hour");
+    }
+
+    @Test
+    public void testKeyEvictedFromSketchKeepsFloorInEdgeUpperBound() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(hit("/events/top-d", HOUR.plusSeconds(i)));
+            batch.add(hit("/events/top-x", HOUR.plusSeconds(i)));
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+        // край диапазона после полного часа: у /events/top-d всего 60 хитов, у каждого из 55 других uri — 20
+        batch.clear();
+        for (int i = 0; i < 10; i++) {
+            batch.add(hit("/events/top-d", HOUR.plusMinutes(65)));
+        }
+        for (int uri = 0; uri < 55; uri++) {
+            for (int i = 0; i < 20; i++) {
+                batch.add(hit("/events/edge-" + uri, HOUR.plusMinutes(70)));
+            }
+        }
+        restTemplate.postForEntity("/hits", batch, Void.class);
+
+        ResponseEntity<TopViewStatsDto> response = restTemplate.getForEntity(
+                "/stats/top?start={start}&end={end}&k=1&unique=false", TopViewStatsDto.class,
+                HOUR.format(FORMATTER), HOUR.plusMinutes(89).plusSeconds(59).format(FORMATTER));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        TopViewStatsDto top = Objects.requireNonNull(response.getBody());
+        assertEquals(1, top.getStats().size());
+        // без floor у краевых ключей /events/top-d не попадает в кандидаты, а /events/top-x с 50 хитами
+        // выдаётся за точный ответ
+        if (top.isExact()) {
+            assertEquals("/events/top-d", top.getStats().get(0).getUri());
+            assertEquals(60L, top.getStats().get(0).getHits());
+        } else {
+            assertTrue(top.getStats().get(0).getHits() <= 60L);
+        }
+    }
+
+    private EndpointHitDto hit(String uri, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri)
+                .ip("10.6.0.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}